@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.io.TimeSlotCodec;
+
+/**
+ * Measures round trips of time slots through {@link TimeSlotCodec}, with the
+ * same data and units as {@link SerializationBenchmark}; scores are per time
+ * slot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CodecBenchmark {
+	private static final int OPERATIONS = 1024;
+
+	private TimeSlot[] slots;
+
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setUp() {
+		slots = Slots.random(OPERATIONS).toArray(new TimeSlot[0]);
+		buffer = ByteBuffer.allocate(OPERATIONS * TimeSlotCodec.MAX_ENCODED_SIZE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void codec(Blackhole bh) {
+		buffer.clear();
+		for (TimeSlot ts : slots) {
+			TimeSlotCodec.write(ts, buffer);
+		}
+		buffer.flip();
+		for (int i = 0; i < OPERATIONS; i++) {
+			bh.consume(TimeSlotCodec.read(buffer));
+		}
+	}
+}
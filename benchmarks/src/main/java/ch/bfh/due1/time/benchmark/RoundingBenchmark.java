@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.bfh.due1.time.DateTimeFactory;
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+
+/**
+ * Measures {@link DateTimeFactory#roundTo(LocalDateTime, TimeSlotTypeSpec)}
+ * for every time slot type; scores are per date/time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RoundingBenchmark {
+	private static final int SIZE = 1024;
+
+	/**
+	 * All time slot types.
+	 */
+	@Param
+	private TimeSlotTypeSpec spec;
+
+	private LocalDateTime[] dateTimes;
+
+	@Setup
+	public void setUp() {
+		dateTimes = Slots.dateTimes(SIZE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void roundTo(Blackhole bh) {
+		for (LocalDateTime dateTime : dateTimes) {
+			bh.consume(DateTimeFactory.roundTo(dateTime, spec));
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * Measures round trips of time slots through Java serialization, one stream
+ * per time slot as in messages or cache entries; scores are per time slot.
+ * With -prof gc, the normalized allocation rate shows the bytes allocated per
+ * time slot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SerializationBenchmark {
+	private static final int OPERATIONS = 1024;
+
+	private TimeSlot[] slots;
+
+	@Setup
+	public void setUp() {
+		slots = Slots.random(OPERATIONS).toArray(new TimeSlot[0]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void javaSerialization(Blackhole bh) throws IOException, ClassNotFoundException {
+		for (TimeSlot ts : slots) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(ts);
+			}
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				bh.consume(in.readObject());
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+/**
+ * Creates the data the benchmarks work on. The data only depends on the
+ * size, so that runs of different versions see the same time slots.
+ */
+final class Slots {
+	static final LocalDateTime BASE = LocalDateTime.of(2016, 11, 24, 0, 0);
+
+	private static final long SEED = 42;
+
+	/**
+	 * Not used.
+	 */
+	private Slots() {
+	}
+
+	/**
+	 * Returns time slots starting within a year, at most a day long.
+	 */
+	static List<TimeSlot> random(int size) {
+		Random random = new Random(SEED);
+		List<TimeSlot> slots = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			LocalDateTime start = BASE.plusSeconds(random.nextInt(365 * 24 * 60 * 60));
+			slots.add(new TimeSlotImpl(start, start.plusMinutes(random.nextInt(24 * 60))));
+		}
+		return slots;
+	}
+
+	/**
+	 * Returns date/time values within the same year as the time slots.
+	 */
+	static LocalDateTime[] dateTimes(int size) {
+		Random random = new Random(SEED + 1);
+		LocalDateTime[] dateTimes = new LocalDateTime[size];
+		for (int i = 0; i < size; i++) {
+			dateTimes[i] = BASE.plusSeconds(random.nextInt(365 * 24 * 60 * 60)).plusNanos(random.nextInt(1000000000));
+		}
+		return dateTimes;
+	}
+}
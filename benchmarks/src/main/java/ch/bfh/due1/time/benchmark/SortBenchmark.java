@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * Measures sorting lists of time slots by their natural order through the
+ * comparator. The copy of the unsorted list is part of every invocation;
+ * {@link #copy()} measures it on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SortBenchmark {
+	@Param({ "1000", "100000", "1000000" })
+	private int size;
+
+	private List<TimeSlot> slots;
+
+	@Setup
+	public void setUp() {
+		slots = Slots.random(size);
+	}
+
+	@Benchmark
+	public List<TimeSlot> copy() {
+		return new ArrayList<>(slots);
+	}
+
+	@Benchmark
+	public List<TimeSlot> sort() {
+		List<TimeSlot> copy = new ArrayList<>(slots);
+		Collections.sort(copy);
+		return copy;
+	}
+}
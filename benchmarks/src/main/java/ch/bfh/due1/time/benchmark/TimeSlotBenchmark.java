@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+/**
+ * Measures the construction of time slots and their predicates. Every
+ * invocation walks over all time slots, so the data size decides whether
+ * they fit into the caches; scores are per time slot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TimeSlotBenchmark {
+	private static final int OPERATIONS = 1024;
+
+	@Param({ "1024", "65536", "1048576" })
+	private int size;
+
+	private TimeSlot[] slots;
+
+	private LocalDateTime[] starts;
+
+	private LocalDateTime[] finishes;
+
+	private LocalDateTime[] dateTimes;
+
+	/**
+	 * The window of time slots used by the current invocation.
+	 */
+	private int offset;
+
+	@Setup
+	public void setUp() {
+		slots = Slots.random(size).toArray(new TimeSlot[0]);
+		starts = new LocalDateTime[size];
+		finishes = new LocalDateTime[size];
+		for (int i = 0; i < size; i++) {
+			starts[i] = slots[i].getStart();
+			finishes[i] = slots[i].getFinish();
+		}
+		dateTimes = Slots.dateTimes(size);
+	}
+
+	/**
+	 * Returns the start of the next window of OPERATIONS time slots, so that
+	 * large data sizes are not measured on a cached prefix only.
+	 */
+	private int next() {
+		int o = offset;
+		offset = (o + OPERATIONS) % (size - OPERATIONS + 1);
+		return o;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void construct(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(new TimeSlotImpl(starts[i], finishes[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void includesDateTime(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(slots[i].includes(dateTimes[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void includesTimeSlot(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(slots[i].includes(slots[size - 1 - i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void overlaps(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(slots[i].overlaps(slots[size - 1 - i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void compareTo(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(slots[i].compareTo(slots[size - 1 - i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPERATIONS)
+	public void hashCode(Blackhole bh) {
+		int o = next();
+		for (int i = o; i < o + OPERATIONS; i++) {
+			bh.consume(slots[i].hashCode());
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics.jfr;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Metrics emitting JDK Flight Recorder events: a
+ * <code>ch.bfh.due1.time.SlotOperation</code> event per operation, with its
+ * duration and items, and a periodic
+ * <code>ch.bfh.due1.time.SlotStatistics</code> event with the number of time
+ * slots created so far. Both are in the category "Time Slot" and can be
+ * enabled, thresholded and correlated with GC events like any JDK event.
+ * <p>
+ * Requires Java 11 or later.
+ */
+public class JfrMetrics implements SlotMetrics, AutoCloseable {
+	/**
+	 * The type of the operation events, checked before allocating any.
+	 */
+	private static final EventType OPERATION = EventType.getEventType(SlotOperationEvent.class);
+
+	private final LongAdder slotsCreated = new LongAdder();
+
+	private final Runnable hook = this::emitStatistics;
+
+	/**
+	 * Constructs the metrics and registers the periodic event.
+	 */
+	public JfrMetrics() {
+		FlightRecorder.addPeriodicEvent(SlotStatisticsEvent.class, hook);
+	}
+
+	@Override
+	public void slotCreated() {
+		slotsCreated.increment();
+	}
+
+	@Override
+	public Timer start(Operation operation) {
+		if (!OPERATION.isEnabled()) {
+			return SlotMetrics.NOOP.start(operation);
+		}
+		SlotOperationEvent event = new SlotOperationEvent();
+		event.begin();
+		return items -> {
+			event.end();
+			if (event.shouldCommit()) {
+				event.operation = operation.name();
+				event.items = items;
+				event.commit();
+			}
+		};
+	}
+
+	/**
+	 * @return the number of time slots created
+	 */
+	public long getSlotsCreated() {
+		return slotsCreated.sum();
+	}
+
+	private void emitStatistics() {
+		SlotStatisticsEvent event = new SlotStatisticsEvent();
+		event.slotsCreated = slotsCreated.sum();
+		event.commit();
+	}
+
+	/**
+	 * Unregisters the periodic event.
+	 */
+	@Override
+	public void close() {
+		FlightRecorder.removePeriodicEvent(hook);
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for one operation of the library.
+ */
+@Name(SlotOperationEvent.NAME)
+@Label("Slot Operation")
+@Category("Time Slot")
+@Description("An operation of the Time Slot library")
+class SlotOperationEvent extends Event {
+	static final String NAME = "ch.bfh.due1.time.SlotOperation";
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Items")
+	@Description("The size of the structure the operation works on")
+	long items;
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * A periodic Flight Recorder event with the number of time slots created.
+ */
+@Name(SlotStatisticsEvent.NAME)
+@Label("Slot Statistics")
+@Category("Time Slot")
+@Description("The number of time slots created so far")
+@Period("1 s")
+class SlotStatisticsEvent extends Event {
+	static final String NAME = "ch.bfh.due1.time.SlotStatistics";
+
+	@Label("Slots Created")
+	long slotsCreated;
+}
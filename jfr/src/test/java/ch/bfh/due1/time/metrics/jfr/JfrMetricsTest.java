@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.join.OverlapJoin;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics;
+import ch.bfh.due1.time.pojo.TimeSlotFactoryImpl;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrMetricsTest {
+	private static final LocalDateTime BASE = LocalDateTime.of(2016, 11, 24, 0, 0);
+
+	@After
+	public void tearDown() {
+		Instrumentation.uninstall();
+	}
+
+	@Test
+	public void testEvents() throws Exception {
+		Path file = Files.createTempFile("slots", ".jfr");
+		try (JfrMetrics metrics = new JfrMetrics(); Recording recording = new Recording()) {
+			recording.enable(SlotOperationEvent.NAME);
+			recording.enable(SlotStatisticsEvent.NAME);
+			recording.start();
+			Instrumentation.install(metrics);
+			TimeSlot ts = new TimeSlotFactoryImpl().createTimeSlot(BASE, BASE.plusHours(1));
+			List<TimeSlot> slots = Arrays.asList(ts, ts);
+			OverlapJoin.join(slots, slots, (a, b) -> {
+			});
+			assertEquals(1, metrics.getSlotsCreated());
+			recording.stop();
+			recording.dump(file);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+				.filter(e -> e.getEventType().getName().equals(SlotOperationEvent.NAME)).collect(Collectors.toList());
+		Files.delete(file);
+		assertEquals(1, events.size());
+		assertEquals("JOIN", events.get(0).getString("operation"));
+		assertEquals(4, events.get(0).getLong("items"));
+		assertTrue(!events.get(0).getDuration().isNegative());
+	}
+
+	@Test
+	public void testDisabled() {
+		try (JfrMetrics metrics = new JfrMetrics()) {
+			// No recording enables the event.
+			assertSame(SlotMetrics.NOOP.start(Operation.JOIN), metrics.start(Operation.JOIN));
+		}
+	}
+}
@@ -11,7 +11,6 @@
 package ch.bfh.due1.time;
 
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 
 /**
  * This utility class offers static methods to create a local date/time object
@@ -19,7 +18,20 @@ import java.time.temporal.ChronoUnit;
  */
 public class DateTimeFactory {
 	public enum TimeSlotTypeSpec {
-		MINUTES, TENMINUTES, FITHTEENMINUTES, HOURS, DAYS
+		MINUTES(1), TENMINUTES(10), FITHTEENMINUTES(15), HOURS(60), DAYS(24 * 60);
+
+		private final int minutes;
+
+		private TimeSlotTypeSpec(int minutes) {
+			this.minutes = minutes;
+		}
+
+		/**
+		 * @return the length of a time slot of this type in minutes
+		 */
+		public int getMinutes() {
+			return minutes;
+		}
 	}
 
 	/**
@@ -37,38 +49,18 @@ public class DateTimeFactory {
 		return LocalDateTime.now();
 	}
 
+	/**
+	 * Rounds the given local date/time down to the start of the time slot of
+	 * the given type it falls into.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @param spec
+	 *            the time slot type
+	 * @return the rounded local date/time
+	 * @see Granularity
+	 */
 	public static LocalDateTime roundTo(LocalDateTime dateTime, TimeSlotTypeSpec spec) {
-		// Takes current time and truncates seconds and nanoseconds to zero.
-		LocalDateTime tmp = dateTime.truncatedTo(ChronoUnit.MINUTES);
-		switch (spec) {
-		case MINUTES:
-			return tmp;
-		case TENMINUTES:
-			// 0 <= minToAdjust <= 9
-			int minToAdjust = tmp.getMinute() % 10;
-			// subtract minToAdjust from tmp to get a date/time value having 0,
-			// 10, 20, ..., 50 minutes only
-			return tmp.minusMinutes(minToAdjust);
-		case FITHTEENMINUTES:
-			int min = tmp.getMinute();
-			// assume 0 <= min <= 59
-			int finalMin;
-			if (0 <= min && min <= 14) {
-				finalMin = 0;
-			} else if (15 <= min && min <= 29) {
-				finalMin = 15;
-			} else if (30 <= min && min <= 44) {
-				finalMin = 30;
-			} else {
-				finalMin = 45;
-			}
-			return LocalDateTime.of(tmp.getYear(), tmp.getMonthValue(), tmp.getDayOfMonth(), tmp.getHour(), finalMin);
-		case HOURS:
-			return tmp.truncatedTo(ChronoUnit.HOURS);
-		case DAYS:
-			return tmp.truncatedTo(ChronoUnit.DAYS);
-		default:
-			throw new UnsupportedOperationException("Can support one out of: " + TimeSlotTypeSpec.values());
-		}
+		return Granularity.of(spec).round(dateTime, Granularity.RoundingMode.FLOOR);
 	}
 }
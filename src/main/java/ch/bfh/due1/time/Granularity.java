@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+
+/**
+ * A grid of equally long buckets on the time axis, used to round local
+ * date/time values. The grid consists of the points
+ * <code>offset + k * length</code> for every integer <code>k</code>, counted
+ * from 1970-01-01T00:00:00. Length and offset are whole seconds.
+ * <p>
+ * Besides local date/time objects, values are rounded as primitive epoch
+ * seconds, milliseconds or nanoseconds, that is, local date/time values
+ * interpreted as if they were UTC. These methods do not allocate, also not
+ * when rounding a whole <code>long[]</code> in place.
+ * <p>
+ * A grid of N minutes, hours or days is aligned with 1970-01-01T00:00:00,
+ * and thus with the start of the hour or day only if N divides 60 or 24
+ * respectively. Weeks start on Monday, as ISO weeks do.
+ * <p>
+ * Instances are immutable.
+ */
+public final class Granularity {
+	/**
+	 * Selects the grid point a value is rounded to.
+	 */
+	public enum RoundingMode {
+		/**
+		 * Rounds to the grid point at or before the value.
+		 */
+		FLOOR,
+
+		/**
+		 * Rounds to the grid point at or after the value.
+		 */
+		CEIL,
+
+		/**
+		 * Rounds to the closest grid point; a value halfway between two grid
+		 * points is rounded up.
+		 */
+		NEAREST
+	}
+
+	private static final long MILLIS_PER_SECOND = 1000L;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private static final long SECONDS_PER_MINUTE = 60L;
+
+	private static final long SECONDS_PER_HOUR = 60L * SECONDS_PER_MINUTE;
+
+	private static final long SECONDS_PER_DAY = 24L * SECONDS_PER_HOUR;
+
+	private static final long SECONDS_PER_WEEK = 7L * SECONDS_PER_DAY;
+
+	/**
+	 * 1970-01-01 is a Thursday, the Monday before is 1969-12-29.
+	 */
+	private static final long MONDAY_OFFSET = Math.floorMod(-3L * SECONDS_PER_DAY, SECONDS_PER_WEEK);
+
+	/**
+	 * Lengths and offsets above this value cannot be expressed in nanoseconds.
+	 */
+	private static final long MAX_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND;
+
+	private static final Granularity[] SPECS = new Granularity[TimeSlotTypeSpec.values().length];
+
+	static {
+		for (TimeSlotTypeSpec spec : TimeSlotTypeSpec.values()) {
+			SPECS[spec.ordinal()] = ofMinutes(spec.getMinutes());
+		}
+	}
+
+	private final long lengthSeconds;
+
+	private final long offsetSeconds;
+
+	private final long lengthMillis;
+
+	private final long offsetMillis;
+
+	private final long lengthNanos;
+
+	private final long offsetNanos;
+
+	private Granularity(long lengthSeconds, long offsetSeconds) {
+		if (lengthSeconds <= 0 || lengthSeconds > MAX_SECONDS) {
+			throw new IllegalArgumentException("Length must be positive and at most " + MAX_SECONDS + " seconds");
+		}
+		this.lengthSeconds = lengthSeconds;
+		this.offsetSeconds = Math.floorMod(offsetSeconds, lengthSeconds);
+		this.lengthMillis = lengthSeconds * MILLIS_PER_SECOND;
+		this.offsetMillis = this.offsetSeconds * MILLIS_PER_SECOND;
+		this.lengthNanos = lengthSeconds * NANOS_PER_SECOND;
+		this.offsetNanos = this.offsetSeconds * NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Returns a granularity of N minutes.
+	 *
+	 * @param n
+	 *            the number of minutes, positive
+	 * @return the granularity
+	 */
+	public static Granularity ofMinutes(long n) {
+		return new Granularity(seconds(n, SECONDS_PER_MINUTE), 0);
+	}
+
+	/**
+	 * Returns a granularity of N hours.
+	 *
+	 * @param n
+	 *            the number of hours, positive
+	 * @return the granularity
+	 */
+	public static Granularity ofHours(long n) {
+		return new Granularity(seconds(n, SECONDS_PER_HOUR), 0);
+	}
+
+	/**
+	 * Returns a granularity of N days.
+	 *
+	 * @param n
+	 *            the number of days, positive
+	 * @return the granularity
+	 */
+	public static Granularity ofDays(long n) {
+		return new Granularity(seconds(n, SECONDS_PER_DAY), 0);
+	}
+
+	/**
+	 * Returns a granularity of N ISO weeks, starting on Monday, 1969-12-29.
+	 *
+	 * @param n
+	 *            the number of weeks, positive
+	 * @return the granularity
+	 */
+	public static Granularity ofWeeks(long n) {
+		return new Granularity(seconds(n, SECONDS_PER_WEEK), MONDAY_OFFSET);
+	}
+
+	/**
+	 * Returns a granularity of the given length, aligned with
+	 * 1970-01-01T00:00:00.
+	 *
+	 * @param length
+	 *            the length, a positive number of whole seconds
+	 * @return the granularity
+	 */
+	public static Granularity of(Duration length) {
+		return of(length, Duration.ZERO);
+	}
+
+	/**
+	 * Returns a granularity of the given length whose grid points are shifted
+	 * by the given offset from 1970-01-01T00:00:00.
+	 *
+	 * @param length
+	 *            the length, a positive number of whole seconds
+	 * @param offset
+	 *            the offset, a number of whole seconds
+	 * @return the granularity
+	 */
+	public static Granularity of(Duration length, Duration offset) {
+		if (length.getNano() != 0 || offset.getNano() != 0) {
+			throw new IllegalArgumentException("Length and offset must be whole seconds");
+		}
+		return new Granularity(length.getSeconds(), offset.getSeconds());
+	}
+
+	/**
+	 * Returns the granularity of the given time slot type.
+	 *
+	 * @param spec
+	 *            the time slot type
+	 * @return the granularity
+	 */
+	public static Granularity of(TimeSlotTypeSpec spec) {
+		return SPECS[spec.ordinal()];
+	}
+
+	private static long seconds(long n, long unit) {
+		if (n <= 0 || n > MAX_SECONDS / unit) {
+			throw new IllegalArgumentException("Number of units out of range: " + n);
+		}
+		return n * unit;
+	}
+
+	/**
+	 * @return the distance between two grid points
+	 */
+	public Duration getLength() {
+		return Duration.ofSeconds(lengthSeconds);
+	}
+
+	/**
+	 * @return the offset of the grid points from 1970-01-01T00:00:00, in the
+	 *         range [0, length)
+	 */
+	public Duration getOffset() {
+		return Duration.ofSeconds(offsetSeconds);
+	}
+
+	/**
+	 * Rounds the given local date/time to this granularity.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @param mode
+	 *            the rounding mode
+	 * @return the rounded local date/time
+	 */
+	public LocalDateTime round(LocalDateTime dateTime, RoundingMode mode) {
+		long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+		int nano = dateTime.getNano();
+		long rounded;
+		if (nano == 0) {
+			rounded = round(second, lengthSeconds, offsetSeconds, mode);
+		} else if (mode == RoundingMode.FLOOR) {
+			rounded = floor(second, lengthSeconds, offsetSeconds);
+		} else if (mode == RoundingMode.CEIL) {
+			// The value lies strictly between second and second + 1.
+			rounded = ceil(second + 1, lengthSeconds, offsetSeconds);
+		} else {
+			long r = remainder(second, lengthSeconds, offsetSeconds) * NANOS_PER_SECOND + nano;
+			rounded = r < lengthNanos - r ? floor(second, lengthSeconds, offsetSeconds)
+					: ceil(second + 1, lengthSeconds, offsetSeconds);
+		}
+		return LocalDateTime.ofEpochSecond(rounded, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Rounds the given epoch second to this granularity.
+	 *
+	 * @param epochSecond
+	 *            the seconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @return the rounded epoch second
+	 * @throws ArithmeticException
+	 *             if the result overflows a <code>long</code>
+	 */
+	public long roundEpochSecond(long epochSecond, RoundingMode mode) {
+		return round(epochSecond, lengthSeconds, offsetSeconds, mode);
+	}
+
+	/**
+	 * Rounds the given epoch millisecond to this granularity.
+	 *
+	 * @param epochMilli
+	 *            the milliseconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @return the rounded epoch millisecond
+	 * @throws ArithmeticException
+	 *             if the result overflows a <code>long</code>
+	 */
+	public long roundEpochMilli(long epochMilli, RoundingMode mode) {
+		return round(epochMilli, lengthMillis, offsetMillis, mode);
+	}
+
+	/**
+	 * Rounds the given epoch nanosecond to this granularity.
+	 *
+	 * @param epochNano
+	 *            the nanoseconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @return the rounded epoch nanosecond
+	 * @throws ArithmeticException
+	 *             if the result overflows a <code>long</code>
+	 */
+	public long roundEpochNano(long epochNano, RoundingMode mode) {
+		return round(epochNano, lengthNanos, offsetNanos, mode);
+	}
+
+	/**
+	 * Rounds the given epoch seconds to this granularity, in place.
+	 *
+	 * @param epochSeconds
+	 *            the seconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @throws ArithmeticException
+	 *             if a result overflows a <code>long</code>; the values
+	 *             before it are rounded already
+	 */
+	public void roundEpochSeconds(long[] epochSeconds, RoundingMode mode) {
+		round(epochSeconds, lengthSeconds, offsetSeconds, mode);
+	}
+
+	/**
+	 * Rounds the given epoch milliseconds to this granularity, in place.
+	 *
+	 * @param epochMillis
+	 *            the milliseconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @throws ArithmeticException
+	 *             if a result overflows a <code>long</code>; the values
+	 *             before it are rounded already
+	 */
+	public void roundEpochMillis(long[] epochMillis, RoundingMode mode) {
+		round(epochMillis, lengthMillis, offsetMillis, mode);
+	}
+
+	/**
+	 * Rounds the given epoch nanoseconds to this granularity, in place.
+	 *
+	 * @param epochNanos
+	 *            the nanoseconds elapsed since 1970-01-01T00:00:00
+	 * @param mode
+	 *            the rounding mode
+	 * @throws ArithmeticException
+	 *             if a result overflows a <code>long</code>; the values
+	 *             before it are rounded already
+	 */
+	public void roundEpochNanos(long[] epochNanos, RoundingMode mode) {
+		round(epochNanos, lengthNanos, offsetNanos, mode);
+	}
+
+	/**
+	 * Returns the distance of the value from the grid point at or before it.
+	 * The offset lies in [0, length), so nothing overflows.
+	 */
+	private static long remainder(long value, long length, long offset) {
+		long r = Math.floorMod(value, length) - offset;
+		return r < 0 ? r + length : r;
+	}
+
+	private static long floor(long value, long length, long offset) {
+		return Math.subtractExact(value, remainder(value, length, offset));
+	}
+
+	private static long ceil(long value, long length, long offset) {
+		long r = remainder(value, length, offset);
+		return r == 0 ? value : Math.addExact(value, length - r);
+	}
+
+	private static long nearest(long value, long length, long offset) {
+		long r = remainder(value, length, offset);
+		return r < length - r ? value - r : Math.addExact(value, length - r);
+	}
+
+	private static long round(long value, long length, long offset, RoundingMode mode) {
+		switch (mode) {
+		case FLOOR:
+			return floor(value, length, offset);
+		case CEIL:
+			return ceil(value, length, offset);
+		default:
+			return nearest(value, length, offset);
+		}
+	}
+
+	/**
+	 * Selects the rounding function once for the whole array.
+	 */
+	private static void round(long[] values, long length, long offset, RoundingMode mode) {
+		switch (mode) {
+		case FLOOR:
+			for (int i = 0; i < values.length; i++) {
+				values[i] = floor(values[i], length, offset);
+			}
+			break;
+		case CEIL:
+			for (int i = 0; i < values.length; i++) {
+				values[i] = ceil(values[i], length, offset);
+			}
+			break;
+		default:
+			for (int i = 0; i < values.length; i++) {
+				values[i] = nearest(values[i], length, offset);
+			}
+			break;
+		}
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Granularity)) {
+			return false;
+		}
+		Granularity o = (Granularity) other;
+		return lengthSeconds == o.lengthSeconds && offsetSeconds == o.offsetSeconds;
+	}
+
+	@Override
+	public int hashCode() {
+		return 37 + 17 * Long.hashCode(lengthSeconds) + 17 * Long.hashCode(offsetSeconds);
+	}
+
+	@Override
+	public String toString() {
+		return "Granularity[length=" + getLength() + ", offset=" + getOffset() + "]";
+	}
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.analytics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.Granularity.RoundingMode;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+/**
+ * This utility class computes how many time slots of a collection are active
+ * at the same time, in the sense of {@link TimeSlot#includes(java.time.LocalDateTime)}.
+ * <p>
+ * The starts and the finishes of the time slots are sorted separately and
+ * swept as events in time order, starts before finishes at equal times. The
+ * number of active time slots rises by one at every start and falls by one
+ * at every finish, which takes O(n log n) time in total.
+ * <p>
+ * The parallel variants partition the time axis at quantiles of the starts.
+ * The number of time slots active when a partition begins is the number of
+ * starts minus the number of finishes before it, two binary searches, so
+ * every partition is swept by its own fork/join task. The peak is computed in
+ * two passes: the first one finds the maximum of every partition, the second
+ * one the periods during which the overall maximum is reached. Periods
+ * spanning several partitions are joined when the results are concatenated.
+ * <p>
+ * Limits are compared as epoch nanoseconds, see {@link EpochNanos}.
+ */
+public final class Concurrency {
+	/**
+	 * Partitions with fewer time slots are not split.
+	 */
+	private static final int MIN_PARTITION_SIZE = 4096;
+
+	/**
+	 * Not used.
+	 */
+	private Concurrency() {
+	}
+
+	/**
+	 * Returns the maximum number of simultaneously active time slots and the
+	 * periods during which it is reached.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @return the peak
+	 */
+	public static Peak peak(Collection<? extends TimeSlot> slots) {
+		Events events = new Events(slots, false);
+		int depth = events.maxDepth(0, events.size(), 0, events.size(), 0);
+		return new Peak(depth, ranges(events.boundaries(0, events.size(), 0, events.size(), 0, depth)));
+	}
+
+	/**
+	 * Returns the peak using the common fork/join pool, see
+	 * {@link #peak(Collection)}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @return the peak
+	 */
+	public static Peak parallelPeak(Collection<? extends TimeSlot> slots) {
+		return parallelPeak(slots, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the peak using the given fork/join pool, see
+	 * {@link #peak(Collection)}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param pool
+	 *            the pool sweeping the partitions
+	 * @return the peak
+	 */
+	public static Peak parallelPeak(Collection<? extends TimeSlot> slots, ForkJoinPool pool) {
+		Events events = new Events(slots, true);
+		long[] bounds = events.boundaries(partitions(events.size(), pool));
+		PeakTask first = new PeakTask(events, bounds, 0, bounds.length + 1, -1);
+		pool.invoke(first);
+		int depth = 0;
+		for (int max : first.maxima) {
+			depth = Math.max(depth, max);
+		}
+		PeakTask second = new PeakTask(events, bounds, 0, bounds.length + 1, depth);
+		pool.invoke(second);
+		int n = 0;
+		for (long[] b : second.boundaries) {
+			n += b.length;
+		}
+		long[] all = new long[n];
+		n = 0;
+		for (long[] b : second.boundaries) {
+			System.arraycopy(b, 0, all, n, b.length);
+			n += b.length;
+		}
+		return new Peak(depth, ranges(all));
+	}
+
+	/**
+	 * Returns the maximum concurrency within each bucket of the given type
+	 * from the bucket including the start of the window up to the bucket
+	 * including its finish.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param window
+	 *            the window
+	 * @param spec
+	 *            the time slot type of the buckets
+	 * @return the load profile
+	 * @throws IllegalArgumentException
+	 *             if a limit cannot be encoded as epoch nanoseconds, or if
+	 *             the window has too many buckets
+	 */
+	public static LoadProfile profile(Collection<? extends TimeSlot> slots, TimeSlot window,
+			TimeSlotTypeSpec spec) {
+		Events events = new Events(slots, false);
+		Buckets buckets = new Buckets(window, spec);
+		int[] peaks = new int[buckets.count];
+		events.profile(buckets, 0, buckets.count, peaks);
+		return new LoadProfile(spec, buckets.base, buckets.length, peaks);
+	}
+
+	/**
+	 * Returns the load profile using the common fork/join pool, see
+	 * {@link #profile(Collection, TimeSlot, TimeSlotTypeSpec)}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param window
+	 *            the window
+	 * @param spec
+	 *            the time slot type of the buckets
+	 * @return the load profile
+	 */
+	public static LoadProfile parallelProfile(Collection<? extends TimeSlot> slots, TimeSlot window,
+			TimeSlotTypeSpec spec) {
+		return parallelProfile(slots, window, spec, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the load profile using the given fork/join pool, see
+	 * {@link #profile(Collection, TimeSlot, TimeSlotTypeSpec)}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param window
+	 *            the window
+	 * @param spec
+	 *            the time slot type of the buckets
+	 * @param pool
+	 *            the pool sweeping the partitions
+	 * @return the load profile
+	 */
+	public static LoadProfile parallelProfile(Collection<? extends TimeSlot> slots, TimeSlot window,
+			TimeSlotTypeSpec spec, ForkJoinPool pool) {
+		Events events = new Events(slots, true);
+		Buckets buckets = new Buckets(window, spec);
+		int[] peaks = new int[buckets.count];
+		int partitions = Math.min(partitions(events.size(), pool), buckets.count);
+		pool.invoke(new ProfileTask(events, buckets, peaks, 0, buckets.count, Math.max(1, partitions)));
+		return new LoadProfile(spec, buckets.base, buckets.length, peaks);
+	}
+
+	private static int partitions(int size, ForkJoinPool pool) {
+		return (int) Math.min(4L * pool.getParallelism(), Math.max(1, size / MIN_PARTITION_SIZE));
+	}
+
+	/**
+	 * Turns alternating starts and finishes of periods into a set.
+	 */
+	private static TimeSlotSet ranges(long[] boundaries) {
+		TimeSlotSet.Builder builder = TimeSlotSet.builder(boundaries.length / 2);
+		for (int i = 0; i + 1 < boundaries.length; i += 2) {
+			builder.add(boundaries[i], boundaries[i + 1]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * The sorted starts and finishes of the time slots.
+	 */
+	private static final class Events {
+		private final long[] starts;
+
+		private final long[] finishes;
+
+		private Events(Collection<? extends TimeSlot> slots, boolean parallel) {
+			this.starts = new long[slots.size()];
+			this.finishes = new long[slots.size()];
+			int i = 0;
+			for (TimeSlot ts : slots) {
+				starts[i] = EpochNanos.startOf(ts);
+				finishes[i] = EpochNanos.finishOf(ts);
+				i++;
+			}
+			if (parallel) {
+				Arrays.parallelSort(starts);
+				Arrays.parallelSort(finishes);
+			} else {
+				Arrays.sort(starts);
+				Arrays.sort(finishes);
+			}
+		}
+
+		private int size() {
+			return starts.length;
+		}
+
+		/**
+		 * Returns strictly increasing partition boundaries at quantiles of the
+		 * starts. Partition p covers the events in [bounds[p - 1], bounds[p]),
+		 * where the first and the last partition are open.
+		 */
+		private long[] boundaries(int partitions) {
+			long[] bounds = new long[Math.max(0, partitions - 1)];
+			int n = 0;
+			for (int i = 1; i < partitions; i++) {
+				long b = starts[(int) ((long) starts.length * i / partitions)];
+				if (b != Long.MIN_VALUE && (n == 0 || b > bounds[n - 1])) {
+					bounds[n++] = b;
+				}
+			}
+			return Arrays.copyOf(bounds, n);
+		}
+
+		/**
+		 * Returns the number of time slots active just before the given time.
+		 */
+		private int depthBefore(long time) {
+			return lowerBound(starts, time) - lowerBound(finishes, time);
+		}
+
+		/**
+		 * Returns the maximum depth reached by the events [i, iTo) and [j,
+		 * jTo), starting at the given depth.
+		 */
+		private int maxDepth(int i, int iTo, int j, int jTo, int depth) {
+			int max = depth;
+			while (i < iTo || j < jTo) {
+				if (j >= jTo || (i < iTo && starts[i] <= finishes[j])) {
+					depth++;
+					max = Math.max(max, depth);
+					i++;
+				} else {
+					depth--;
+					j++;
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * Returns the times at which the depth reaches and leaves the given
+		 * target, which is not exceeded. If the initial depth is the target,
+		 * the result starts with a leaving time.
+		 */
+		private long[] boundaries(int i, int iTo, int j, int jTo, int depth, int target) {
+			long[] result = new long[16];
+			int n = 0;
+			while (i < iTo || j < jTo) {
+				long time;
+				if (j >= jTo || (i < iTo && starts[i] <= finishes[j])) {
+					time = starts[i++];
+					depth++;
+					if (depth != target) {
+						continue;
+					}
+				} else {
+					time = finishes[j++];
+					depth--;
+					if (depth != target - 1) {
+						continue;
+					}
+				}
+				if (n == result.length) {
+					result = Arrays.copyOf(result, 2 * n);
+				}
+				result[n++] = time;
+			}
+			return Arrays.copyOf(result, n);
+		}
+
+		/**
+		 * Computes the peaks of the buckets [from, to).
+		 */
+		private void profile(Buckets buckets, int from, int to, int[] peaks) {
+			long begin = buckets.startOf(from);
+			long end = buckets.startOf(to);
+			int i = lowerBound(starts, begin);
+			int j = lowerBound(finishes, begin);
+			int iTo = lowerBound(starts, end);
+			int jTo = lowerBound(finishes, end);
+			int depth = i - j;
+			int peak = depth;
+			int k = from;
+			long bucketEnd = buckets.startOf(k + 1);
+			while (i < iTo || j < jTo) {
+				boolean start = j >= jTo || (i < iTo && starts[i] <= finishes[j]);
+				long time = start ? starts[i] : finishes[j];
+				while (time >= bucketEnd) {
+					peaks[k++] = peak;
+					bucketEnd = buckets.startOf(k + 1);
+					peak = depth;
+				}
+				if (start) {
+					depth++;
+					peak = Math.max(peak, depth);
+					i++;
+				} else {
+					depth--;
+					j++;
+				}
+			}
+			while (k < to) {
+				peaks[k++] = peak;
+				peak = depth;
+			}
+		}
+
+		/**
+		 * Returns the index of the first value at or after the given one.
+		 */
+		private static int lowerBound(long[] values, long value) {
+			int lo = 0;
+			int hi = values.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (values[mid] < value) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * The grid of buckets covering a window.
+	 */
+	private static final class Buckets {
+		private final long base;
+
+		private final long length;
+
+		private final int count;
+
+		private Buckets(TimeSlot window, TimeSlotTypeSpec spec) {
+			Granularity granularity = Granularity.of(spec);
+			this.length = granularity.getLength().toNanos();
+			try {
+				this.base = granularity.roundEpochNano(EpochNanos.startOf(window), RoundingMode.FLOOR);
+				long last = granularity.roundEpochNano(EpochNanos.finishOf(window), RoundingMode.FLOOR);
+				// The end of the last bucket must be representable.
+				Math.addExact(last, length);
+				long count = (last - base) / length + 1;
+				if (count > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("Too many buckets: " + count);
+				}
+				this.count = (int) count;
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException("Window out of epoch nanosecond range: " + window);
+			}
+		}
+
+		private long startOf(int k) {
+			return base + k * length;
+		}
+	}
+
+	/**
+	 * Sweeps a range of partitions, splitting it in halves. Without a target,
+	 * it computes the maximum depth of every partition, otherwise the
+	 * boundaries of the periods of the target depth.
+	 */
+	@SuppressWarnings("serial")
+	private static final class PeakTask extends RecursiveAction {
+		private final Events events;
+
+		private final long[] bounds;
+
+		private final int from;
+
+		private final int to;
+
+		private final int target;
+
+		private final int[] maxima;
+
+		private final long[][] boundaries;
+
+		private PeakTask(Events events, long[] bounds, int from, int to, int target) {
+			this(events, bounds, from, to, target, new int[bounds.length + 1], new long[bounds.length + 1][]);
+		}
+
+		private PeakTask(Events events, long[] bounds, int from, int to, int target, int[] maxima,
+				long[][] boundaries) {
+			this.events = events;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+			this.target = target;
+			this.maxima = maxima;
+			this.boundaries = boundaries;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PeakTask(events, bounds, from, mid, target, maxima, boundaries),
+						new PeakTask(events, bounds, mid, to, target, maxima, boundaries));
+				return;
+			}
+			int p = from;
+			int i = p == 0 ? 0 : Events.lowerBound(events.starts, bounds[p - 1]);
+			int iTo = p == bounds.length ? events.size() : Events.lowerBound(events.starts, bounds[p]);
+			int j = p == 0 ? 0 : Events.lowerBound(events.finishes, bounds[p - 1]);
+			int jTo = p == bounds.length ? events.size() : Events.lowerBound(events.finishes, bounds[p]);
+			int depth = p == 0 ? 0 : events.depthBefore(bounds[p - 1]);
+			if (target < 0) {
+				maxima[p] = events.maxDepth(i, iTo, j, jTo, depth);
+			} else {
+				boundaries[p] = events.boundaries(i, iTo, j, jTo, depth, target);
+			}
+		}
+	}
+
+	/**
+	 * Computes the peaks of a range of buckets, splitting it in halves.
+	 */
+	@SuppressWarnings("serial")
+	private static final class ProfileTask extends RecursiveAction {
+		private final Events events;
+
+		private final Buckets buckets;
+
+		private final int[] peaks;
+
+		private final int from;
+
+		private final int to;
+
+		private final int partitions;
+
+		private ProfileTask(Events events, Buckets buckets, int[] peaks, int from, int to, int partitions) {
+			this.events = events;
+			this.buckets = buckets;
+			this.peaks = peaks;
+			this.from = from;
+			this.to = to;
+			this.partitions = partitions;
+		}
+
+		@Override
+		protected void compute() {
+			if (partitions > 1) {
+				int half = partitions / 2;
+				int mid = from + (int) ((long) (to - from) * half / partitions);
+				invokeAll(new ProfileTask(events, buckets, peaks, from, mid, half),
+						new ProfileTask(events, buckets, peaks, mid, to, partitions - half));
+				return;
+			}
+			events.profile(buckets, from, to, peaks);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.analytics;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * A concurrency time series: for each bucket of a {@link TimeSlotTypeSpec}
+ * grid, the maximum number of time slots active at a common date/time within
+ * the bucket. Buckets are half-open, i.e. a bucket does not include the start
+ * of the next one.
+ */
+public final class LoadProfile {
+	private final TimeSlotTypeSpec spec;
+
+	private final long base;
+
+	private final long length;
+
+	private final int[] peaks;
+
+	LoadProfile(TimeSlotTypeSpec spec, long base, long length, int[] peaks) {
+		this.spec = spec;
+		this.base = base;
+		this.length = length;
+		this.peaks = peaks;
+	}
+
+	/**
+	 * @return the time slot type of the buckets
+	 */
+	public TimeSlotTypeSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * @return the number of buckets
+	 */
+	public int size() {
+		return peaks.length;
+	}
+
+	/**
+	 * Returns the start of the given bucket.
+	 *
+	 * @param i
+	 *            the index of the bucket
+	 * @return the start of the bucket
+	 */
+	public LocalDateTime getStart(int i) {
+		return EpochNanos.toLocalDateTime(startOf(i));
+	}
+
+	/**
+	 * Returns the given bucket as a time slot, from its start to the start of
+	 * the next bucket.
+	 *
+	 * @param i
+	 *            the index of the bucket
+	 * @return the bucket
+	 */
+	public TimeSlot getBucket(int i) {
+		long start = startOf(i);
+		return new EpochTimeSlot(start, start + length);
+	}
+
+	/**
+	 * Returns the maximum concurrency within the given bucket.
+	 *
+	 * @param i
+	 *            the index of the bucket
+	 * @return the maximum number of time slots active at a common date/time
+	 */
+	public int getPeak(int i) {
+		return peaks[i];
+	}
+
+	/**
+	 * @return the maximum concurrency over all buckets
+	 */
+	public int getMaximum() {
+		int max = 0;
+		for (int peak : peaks) {
+			max = Math.max(max, peak);
+		}
+		return max;
+	}
+
+	/**
+	 * @return the maximum concurrency of each bucket
+	 */
+	public int[] toArray() {
+		return peaks.clone();
+	}
+
+	private long startOf(int i) {
+		if (i < 0 || i >= peaks.length) {
+			throw new IndexOutOfBoundsException("Bucket " + i + " of " + peaks.length);
+		}
+		return base + i * length;
+	}
+
+	@Override
+	public String toString() {
+		return spec + " from " + EpochNanos.toLocalDateTime(base) + ": " + Arrays.toString(peaks);
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.analytics;
+
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+/**
+ * The maximum number of simultaneously active time slots of a collection,
+ * and the periods during which it is reached.
+ */
+public final class Peak {
+	private final int depth;
+
+	private final TimeSlotSet ranges;
+
+	Peak(int depth, TimeSlotSet ranges) {
+		this.depth = depth;
+		this.ranges = ranges;
+	}
+
+	/**
+	 * @return the maximum number of time slots including a common date/time,
+	 *         0 for no time slots
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the periods during which the maximum is reached, sorted and
+	 *         disjoint
+	 */
+	public TimeSlotSet getRanges() {
+		return ranges;
+	}
+
+	@Override
+	public String toString() {
+		return depth + " during " + ranges;
+	}
+}
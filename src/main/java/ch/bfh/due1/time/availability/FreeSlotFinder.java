@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.availability;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * This utility class finds the time slots within a window at which none of
+ * several calendars is busy.
+ * <p>
+ * Each calendar is a sequence of busy time slots sorted by start; the time
+ * slots of one calendar may overlap. The calendars are merged lazily by a
+ * k-way merge over a heap, so finding the first n gaps reads each calendar
+ * only up to the end of the n-th gap, and the merged timeline is never
+ * materialized. Merging takes O(log k) time per busy time slot read, for k
+ * calendars.
+ * <p>
+ * As time slots are closed, the free periods are open at the busy time slots
+ * around them: a free period lies strictly after the finish of a busy time
+ * slot and strictly before the start of the next one. The gaps reported by
+ * {@link #gaps(Iterable, TimeSlot)} are the closures of the free periods, so
+ * they touch the busy time slots; gaps of zero length are not reported. The
+ * time slots fitted into the free periods lie within them, so they overlap
+ * no busy time slot and can be reserved next to them, for instance in a
+ * {@link ch.bfh.due1.time.booking.BookingCalendar}.
+ * <p>
+ * Limits are compared as epoch nanoseconds, see {@link EpochNanos}.
+ */
+public final class FreeSlotFinder {
+	/**
+	 * Not used.
+	 */
+	private FreeSlotFinder() {
+	}
+
+	/**
+	 * Returns the gaps within the window, ordered by start. The calendars are
+	 * read while the stream is consumed; a calendar out of order makes the
+	 * stream throw an IllegalArgumentException when it is reached.
+	 *
+	 * @param calendars
+	 *            the calendars, each sorted by start
+	 * @param window
+	 *            the window
+	 * @return the gaps, lazily
+	 * @throws IllegalArgumentException
+	 *             if a limit of the window cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static Stream<TimeSlot> gaps(Iterable<? extends Iterable<? extends TimeSlot>> calendars,
+			TimeSlot window) {
+		long start = EpochNanos.startOf(window);
+		long finish = EpochNanos.finishOf(window);
+		return StreamSupport.stream(new GapSpliterator(calendars, start, finish), false);
+	}
+
+	/**
+	 * Returns one time slot of the given length per free period it fits into,
+	 * ordered by start. Each time slot starts at the earliest boundary of the
+	 * given time slot type within its free period, and overlaps no busy time
+	 * slot.
+	 *
+	 * @param calendars
+	 *            the calendars, each sorted by start
+	 * @param window
+	 *            the window
+	 * @param length
+	 *            the length of the time slots, not negative
+	 * @param alignment
+	 *            the time slot type whose boundaries the time slots start at
+	 * @return the fitting time slots, lazily
+	 * @throws IllegalArgumentException
+	 *             if the length is negative, or if a limit of the window
+	 *             cannot be encoded as epoch nanoseconds
+	 */
+	public static Stream<TimeSlot> fits(Iterable<? extends Iterable<? extends TimeSlot>> calendars,
+			TimeSlot window, Duration length, TimeSlotTypeSpec alignment) {
+		if (length.isNegative()) {
+			throw new IllegalArgumentException("Length must not be negative: " + length);
+		}
+		long nanos = length.toNanos();
+		Granularity granularity = Granularity.of(alignment);
+		long start = EpochNanos.startOf(window);
+		long finish = EpochNanos.finishOf(window);
+		return StreamSupport.stream(new GapSpliterator(calendars, start, finish,
+				(from, fromFree, to, toFree) -> fit(from, fromFree, to, toFree, nanos, granularity)), false);
+	}
+
+	/**
+	 * Returns the earliest time slot of the given length and alignment in
+	 * which no calendar is busy.
+	 *
+	 * @param calendars
+	 *            the calendars, each sorted by start
+	 * @param window
+	 *            the window
+	 * @param length
+	 *            the length of the time slot, not negative
+	 * @param alignment
+	 *            the time slot type whose boundaries the time slot starts at
+	 * @return the earliest time slot, or empty if none fits
+	 * @throws IllegalArgumentException
+	 *             if the length is negative, if a limit of the window cannot
+	 *             be encoded as epoch nanoseconds, or if a calendar is out of
+	 *             order
+	 * @see #fits(Iterable, TimeSlot, Duration, TimeSlotTypeSpec)
+	 */
+	public static Optional<TimeSlot> first(Iterable<? extends Iterable<? extends TimeSlot>> calendars,
+			TimeSlot window, Duration length, TimeSlotTypeSpec alignment) {
+		return fits(calendars, window, length, alignment).findFirst();
+	}
+
+	/**
+	 * Returns the n earliest time slots of the given length and alignment in
+	 * which no calendar is busy, taken from distinct free periods.
+	 *
+	 * @param calendars
+	 *            the calendars, each sorted by start
+	 * @param window
+	 *            the window
+	 * @param length
+	 *            the length of the time slots, not negative
+	 * @param alignment
+	 *            the time slot type whose boundaries the time slots start at
+	 * @param n
+	 *            the maximal number of time slots
+	 * @return at most n time slots, ordered by start
+	 * @throws IllegalArgumentException
+	 *             if the length or n is negative, if a limit of the window
+	 *             cannot be encoded as epoch nanoseconds, or if a calendar is
+	 *             out of order
+	 * @see #fits(Iterable, TimeSlot, Duration, TimeSlotTypeSpec)
+	 */
+	public static List<TimeSlot> first(Iterable<? extends Iterable<? extends TimeSlot>> calendars,
+			TimeSlot window, Duration length, TimeSlotTypeSpec alignment, int n) {
+		return fits(calendars, window, length, alignment).limit(n).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the aligned time slot of the given length at the start of the
+	 * free period, or null if it does not fit. A limit at which a calendar is
+	 * busy is excluded: the nanosecond next to it is the first one free.
+	 */
+	private static TimeSlot fit(long from, boolean fromFree, long to, boolean toFree, long length,
+			Granularity granularity) {
+		long first = fromFree ? from : from + 1;
+		long last = toFree ? to : to - 1;
+		long start;
+		try {
+			start = granularity.roundEpochNano(first, Granularity.RoundingMode.CEIL);
+		} catch (ArithmeticException e) {
+			// No boundary after the start of the free period can be encoded.
+			return null;
+		}
+		long end = start + length;
+		// The end overflows only if it is less than the start.
+		return end >= start && end <= last ? new EpochTimeSlot(start, end) : null;
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.availability;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * A spliterator over the gaps between the busy time slots of many calendars
+ * within a window. The calendars are merged through a heap holding the next
+ * busy time slot of each calendar; a calendar is read only as far as the
+ * gaps consumed so far require.
+ * <p>
+ * Without a {@link FreePeriod}, the spliterator reports the closures of the
+ * gaps. With one, it reports what the free period returns for each maximal
+ * period in which no calendar is busy; such periods are also separated by
+ * busy time slots of zero length.
+ */
+class GapSpliterator implements Spliterator<TimeSlot> {
+	/**
+	 * Maps a free period to the time slot reported for it.
+	 */
+	@FunctionalInterface
+	interface FreePeriod {
+		/**
+		 * @param start
+		 *            the start of the period in epoch nanoseconds
+		 * @param startFree
+		 *            whether no calendar is busy at the start itself
+		 * @param finish
+		 *            the finish of the period in epoch nanoseconds
+		 * @param finishFree
+		 *            whether no calendar is busy at the finish itself
+		 * @return the time slot to report, or null to report none
+		 */
+		TimeSlot map(long start, boolean startFree, long finish, boolean finishFree);
+	}
+
+	private final PriorityQueue<Cursor> heap;
+
+	private final long windowFinish;
+
+	/**
+	 * The mapping of free periods, or null to report the closures of gaps.
+	 */
+	private final FreePeriod period;
+
+	/**
+	 * The start of the current run of overlapping busy time slots.
+	 */
+	private long runStart;
+
+	/**
+	 * The finish of the current run: every date/time in the window before
+	 * this value is known to be busy.
+	 */
+	private long reach;
+
+	/**
+	 * Whether no busy time slot read so far includes the reach.
+	 */
+	private boolean reachFree;
+
+	/**
+	 * The start of the gap before the current run while that run has zero
+	 * length. The gap is reported once the run grows; a run of zero length
+	 * does not interrupt the closure of a gap.
+	 */
+	private long pendingStart;
+
+	private boolean hasPending;
+
+	private boolean done;
+
+	GapSpliterator(Iterable<? extends Iterable<? extends TimeSlot>> calendars, long windowStart,
+			long windowFinish) {
+		this(calendars, windowStart, windowFinish, null);
+	}
+
+	GapSpliterator(Iterable<? extends Iterable<? extends TimeSlot>> calendars, long windowStart,
+			long windowFinish, FreePeriod period) {
+		this.heap = new PriorityQueue<>();
+		this.windowFinish = windowFinish;
+		this.period = period;
+		this.runStart = windowStart;
+		this.reach = windowStart;
+		this.reachFree = true;
+		for (Iterable<? extends TimeSlot> calendar : calendars) {
+			Cursor cursor = new Cursor(calendar.iterator());
+			if (cursor.advance()) {
+				heap.add(cursor);
+			}
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super TimeSlot> action) {
+		while (!done) {
+			Cursor cursor = heap.poll();
+			if (cursor == null || cursor.start > windowFinish) {
+				done = true;
+				break;
+			}
+			long start = cursor.start;
+			long finish = cursor.finish;
+			if (cursor.advance()) {
+				heap.add(cursor);
+			}
+			TimeSlot gap = null;
+			if (start > reach) {
+				// A new run starts, with zero length so far.
+				if (period != null) {
+					gap = period.map(reach, reachFree, start, false);
+				} else if (!hasPending) {
+					pendingStart = reach;
+					hasPending = true;
+				}
+				runStart = start;
+				reach = start;
+			}
+			if (finish > reach) {
+				reach = finish;
+				done = reach >= windowFinish;
+				if (hasPending) {
+					hasPending = false;
+					gap = new EpochTimeSlot(pendingStart, runStart);
+				}
+			}
+			if (finish == reach) {
+				// The start is at most the reach here.
+				reachFree = false;
+			}
+			if (gap != null) {
+				action.accept(gap);
+				return true;
+			}
+		}
+		return flush(action);
+	}
+
+	/**
+	 * Reports the gap after the last run within the window.
+	 */
+	private boolean flush(Consumer<? super TimeSlot> action) {
+		long tailStart = hasPending ? pendingStart : reach;
+		boolean tailStartFree = reachFree;
+		hasPending = false;
+		if (tailStart < windowFinish) {
+			reach = windowFinish;
+			// Every busy time slot including the finish of the window has been
+			// read, and it would have moved the reach there.
+			TimeSlot gap = period != null ? period.map(tailStart, tailStartFree, windowFinish, true)
+					: new EpochTimeSlot(tailStart, windowFinish);
+			if (gap != null) {
+				action.accept(gap);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Spliterator<TimeSlot> trySplit() {
+		// Gaps depend on everything merged before them.
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | DISTINCT | SORTED | NONNULL;
+	}
+
+	@Override
+	public Comparator<? super TimeSlot> getComparator() {
+		// Natural order of time slots.
+		return null;
+	}
+
+	/**
+	 * The next busy time slot of one calendar.
+	 */
+	private static final class Cursor implements Comparable<Cursor> {
+		private final Iterator<? extends TimeSlot> slots;
+
+		private long start;
+
+		private long finish;
+
+		private Cursor(Iterator<? extends TimeSlot> slots) {
+			this.slots = slots;
+			this.start = Long.MIN_VALUE;
+		}
+
+		/**
+		 * Reads the next time slot of the calendar, if any.
+		 */
+		private boolean advance() {
+			if (!slots.hasNext()) {
+				return false;
+			}
+			TimeSlot ts = slots.next();
+			long next = EpochNanos.startOf(ts);
+			if (next < start) {
+				throw new IllegalArgumentException("Time slots of a calendar must be sorted by start: " + ts);
+			}
+			start = next;
+			finish = EpochNanos.finishOf(ts);
+			return true;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return Long.compare(start, other.start);
+		}
+	}
+}
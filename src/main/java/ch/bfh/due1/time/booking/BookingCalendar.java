@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * A thread-safe calendar of reservations, no two of which overlap in the
+ * sense of {@link TimeSlot#overlaps(TimeSlot)}.
+ * <p>
+ * The time axis is divided into the buckets of a {@link Granularity}, and
+ * consecutive buckets are assigned to a fixed number of stripes in turn.
+ * Reserving or cancelling a time slot locks the stripes of the buckets it
+ * touches, in ascending order. Two overlapping time slots share at least one
+ * bucket, so their reservations are serialized, while reservations of
+ * disjoint periods proceed in parallel. The bucket length should therefore be
+ * in the order of a typical reservation.
+ * <p>
+ * The reservations are kept in a concurrent skip list ordered by their
+ * starts. Since they do not overlap, the only reservation which may overlap a
+ * time slot from the left is the one starting last at or before its finish;
+ * checking a time slot is a single lookup. Queries do not lock at all; they
+ * see each reservation either completely or not at all.
+ * <p>
+ * Limits are compared as epoch nanoseconds, see {@link EpochNanos}; time
+ * slots outside of that range cannot be reserved.
+ */
+public class BookingCalendar {
+	/**
+	 * The maximum number of stripes; the stripes touched by a time slot fit
+	 * into the bits of a <code>long</code>.
+	 */
+	public static final int MAX_STRIPES = 64;
+
+	private final ConcurrentSkipListMap<Long, Reservation> reservations = new ConcurrentSkipListMap<>();
+
+	private final ReentrantLock[] stripes;
+
+	private final long bucketLength;
+
+	private final long bucketOffset;
+
+	/**
+	 * Constructs an empty calendar with one stripe per available processor,
+	 * rounded up to a power of two.
+	 *
+	 * @param granularity
+	 *            the buckets the stripes are assigned to
+	 */
+	public BookingCalendar(Granularity granularity) {
+		this(granularity, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an empty calendar.
+	 *
+	 * @param granularity
+	 *            the buckets the stripes are assigned to
+	 * @param stripes
+	 *            the number of stripes, between 1 and {@value #MAX_STRIPES};
+	 *            it is rounded up to a power of two
+	 */
+	public BookingCalendar(Granularity granularity, int stripes) {
+		if (stripes < 1 || stripes > MAX_STRIPES) {
+			throw new IllegalArgumentException("Number of stripes must be between 1 and " + MAX_STRIPES);
+		}
+		int n = Integer.highestOneBit(stripes);
+		if (n < stripes) {
+			n *= 2;
+		}
+		this.stripes = new ReentrantLock[n];
+		for (int i = 0; i < n; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.bucketLength = granularity.getLength().toNanos();
+		this.bucketOffset = granularity.getOffset().toNanos();
+	}
+
+	/**
+	 * Reserves the given time slot unless it overlaps a reservation.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff the time slot has been reserved
+	 * @throws IllegalArgumentException
+	 *             if a limit of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public boolean reserve(TimeSlot ts) {
+		return reserve(ts, null);
+	}
+
+	/**
+	 * Reserves the given time slot unless it overlaps a reservation, running
+	 * the given action after reserving it while its buckets are still locked.
+	 * Actions of conflicting reservations and cancellations thus run in the
+	 * order of the changes.
+	 */
+	boolean reserve(TimeSlot ts, Runnable whileLocked) {
+		long start = EpochNanos.startOf(ts);
+		long finish = EpochNanos.finishOf(ts);
+		Timer timer = Instrumentation.current().start(Operation.BOOKING);
+		boolean reserved = false;
+		long locked = lock(start, finish);
+		try {
+			if (!overlaps(start, finish)) {
+				reservations.put(start, new Reservation(ts, finish));
+				reserved = true;
+				if (whileLocked != null) {
+					whileLocked.run();
+				}
+			}
+		} finally {
+			unlock(locked);
+		}
+		timer.stop(reserved ? 1 : 0);
+		return reserved;
+	}
+
+	/**
+	 * Cancels the reservation of the given time slot.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff a reservation equal to the time slot has been removed
+	 * @throws IllegalArgumentException
+	 *             if a limit of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public boolean cancel(TimeSlot ts) {
+		return cancel(ts, null);
+	}
+
+	/**
+	 * Cancels the reservation of the given time slot, running the given
+	 * action after removing it while its buckets are still locked.
+	 */
+	boolean cancel(TimeSlot ts, Runnable whileLocked) {
+		long start = EpochNanos.startOf(ts);
+		long finish = EpochNanos.finishOf(ts);
+		Timer timer = Instrumentation.current().start(Operation.BOOKING);
+		boolean cancelled = false;
+		long locked = lock(start, finish);
+		try {
+			Reservation r = reservations.get(start);
+			if (r != null && r.finish == finish) {
+				reservations.remove(start);
+				cancelled = true;
+				if (whileLocked != null) {
+					whileLocked.run();
+				}
+			}
+		} finally {
+			unlock(locked);
+		}
+		timer.stop(cancelled ? 1 : 0);
+		return cancelled;
+	}
+
+	/**
+	 * Returns true iff the given time slot overlaps no reservation at the
+	 * time of the call.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff the time slot could be reserved
+	 */
+	public boolean isAvailable(TimeSlot ts) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return true;
+		}
+		return !overlaps(EpochNanos.saturatedOf(start), EpochNanos.saturatedOf(finish));
+	}
+
+	/**
+	 * Returns the reservations overlapping the given window, ordered by their
+	 * starts.
+	 *
+	 * @param window
+	 *            the window
+	 * @return the overlapping reservations
+	 */
+	public List<TimeSlot> reservations(TimeSlot window) {
+		List<TimeSlot> result = new ArrayList<>();
+		LocalDateTime start = window.getStart();
+		LocalDateTime finish = window.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return result;
+		}
+		long s = EpochNanos.saturatedOf(start);
+		long f = EpochNanos.saturatedOf(finish);
+		Map.Entry<Long, Reservation> left = reservations.lowerEntry(s);
+		if (left != null && left.getValue().finish >= s) {
+			result.add(left.getValue().slot);
+		}
+		for (Reservation r : reservations.subMap(s, true, f, true).values()) {
+			result.add(r.slot);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns all reservations, ordered by their starts.
+	 *
+	 * @return the reservations
+	 */
+	public List<TimeSlot> reservations() {
+		List<TimeSlot> result = new ArrayList<>();
+		for (Reservation r : reservations.values()) {
+			result.add(r.slot);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of reservations
+	 */
+	public int size() {
+		return reservations.size();
+	}
+
+	/**
+	 * Runs the given action with all stripes locked, i.e. without any
+	 * reservation or cancellation in progress.
+	 */
+	<T> T exclusively(Supplier<T> action) {
+		long mask = stripes.length == MAX_STRIPES ? -1L : (1L << stripes.length) - 1;
+		for (long m = mask; m != 0; m &= m - 1) {
+			stripes[Long.numberOfTrailingZeros(m)].lock();
+		}
+		try {
+			return action.get();
+		} finally {
+			unlock(mask);
+		}
+	}
+
+	/**
+	 * Returns true iff a reservation overlaps [start, finish]. Reservations
+	 * do not overlap, so their finishes increase with their starts.
+	 */
+	private boolean overlaps(long start, long finish) {
+		Map.Entry<Long, Reservation> e = reservations.floorEntry(finish);
+		return e != null && e.getValue().finish >= start;
+	}
+
+	/**
+	 * Returns the index of the bucket including the given value, without
+	 * overflowing.
+	 */
+	private long bucket(long value) {
+		long index = Math.floorDiv(value, bucketLength);
+		return Math.floorMod(value, bucketLength) < bucketOffset ? index - 1 : index;
+	}
+
+	/**
+	 * Locks the stripes of the buckets touched by [start, finish] in
+	 * ascending order.
+	 *
+	 * @return the locked stripes as a bit set
+	 */
+	private long lock(long start, long finish) {
+		long first = bucket(start);
+		long last = bucket(finish);
+		long mask;
+		if (last - first >= stripes.length - 1) {
+			mask = stripes.length == MAX_STRIPES ? -1L : (1L << stripes.length) - 1;
+		} else {
+			mask = 0;
+			for (long b = first; b <= last; b++) {
+				mask |= 1L << (b & (stripes.length - 1));
+			}
+		}
+		for (long m = mask; m != 0; m &= m - 1) {
+			stripes[Long.numberOfTrailingZeros(m)].lock();
+		}
+		return mask;
+	}
+
+	private void unlock(long mask) {
+		for (long m = mask; m != 0; m &= m - 1) {
+			stripes[Long.numberOfTrailingZeros(m)].unlock();
+		}
+	}
+
+	/**
+	 * A reserved time slot and its finish.
+	 */
+	private static final class Reservation {
+		private final TimeSlot slot;
+
+		private final long finish;
+
+		private Reservation(TimeSlot slot, long finish) {
+			this.slot = slot;
+			this.finish = finish;
+		}
+	}
+}
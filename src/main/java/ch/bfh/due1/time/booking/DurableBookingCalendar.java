@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.booking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.io.MappedTimeSlotFile;
+import ch.bfh.due1.time.io.TimeSlotFileWriter;
+
+/**
+ * A {@link BookingCalendar} whose reservations survive restarts.
+ * <p>
+ * Every reservation and cancellation is appended to a write-ahead log before
+ * it is reported as done. The log record is created while the buckets of the
+ * time slot are still locked, so conflicting changes are logged in the order
+ * they have been applied. Concurrent writers share a single
+ * <code>fsync</code>; see <code>ReservationLog</code>.
+ * <p>
+ * The directory holds the logs <code>log-&lt;n&gt;</code> and a checkpoint
+ * <code>checkpoint-&lt;n&gt;</code>, a time slot file with the reservations
+ * logged in all logs before generation n. A checkpoint starts a new log
+ * generation, writes the file aside, and then deletes the older logs and
+ * checkpoints. Opening the calendar loads the latest checkpoint, replays the
+ * newer logs, and drops a record torn by a crash at the end of the last log.
+ * New logs and checkpoints are made durable in the directory before any
+ * file they replace is deleted.
+ * <p>
+ * Changes are visible before they are durable: a reservation is applied to
+ * the calendar, and only then is its record forced to the disk. Meanwhile,
+ * other threads already see it, and conflicting reservations are refused.
+ * A crash before the record is durable rolls the reservation back, although
+ * other threads may have observed it; the same holds for cancellations. The
+ * thread making a change is only told about it once it is durable.
+ * <p>
+ * Recovered reservations are instances of {@link EpochTimeSlot}. After an
+ * {@link IOException} the calendar may hold changes which are not durable;
+ * it should be closed and opened again.
+ */
+public class DurableBookingCalendar implements Closeable {
+	/**
+	 * The default number of logged records after which a checkpoint is taken.
+	 */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+	private static final String LOG = "log-";
+
+	private static final String CHECKPOINT = "checkpoint-";
+
+	private static final String TEMPORARY = ".tmp";
+
+	private final Path directory;
+
+	private final BookingCalendar calendar;
+
+	private final ReservationLog log;
+
+	private final long checkpointInterval;
+
+	private final AtomicLong records = new AtomicLong();
+
+	private final AtomicBoolean checkpointing = new AtomicBoolean();
+
+	private long generation;
+
+	private DurableBookingCalendar(Path directory, BookingCalendar calendar, ReservationLog log, long generation,
+			long checkpointInterval) {
+		this.directory = directory;
+		this.calendar = calendar;
+		this.log = log;
+		this.generation = generation;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Opens the calendar stored in the given directory, taking a checkpoint
+	 * after every {@value #DEFAULT_CHECKPOINT_INTERVAL} records.
+	 *
+	 * @param directory
+	 *            the directory, which is created if necessary
+	 * @param granularity
+	 *            the buckets the stripes of the calendar are assigned to
+	 * @return the opened calendar
+	 * @throws IOException
+	 *             if the directory cannot be read
+	 */
+	public static DurableBookingCalendar open(Path directory, Granularity granularity) throws IOException {
+		return open(directory, granularity, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Opens the calendar stored in the given directory.
+	 *
+	 * @param directory
+	 *            the directory, which is created if necessary
+	 * @param granularity
+	 *            the buckets the stripes of the calendar are assigned to
+	 * @param checkpointInterval
+	 *            the number of records after which a checkpoint is taken
+	 * @return the opened calendar
+	 * @throws IOException
+	 *             if the directory cannot be read
+	 */
+	public static DurableBookingCalendar open(Path directory, Granularity granularity, long checkpointInterval)
+			throws IOException {
+		if (checkpointInterval <= 0) {
+			throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+		}
+		Files.createDirectories(directory);
+		// Checkpoints interrupted by a crash before their rename.
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, CHECKPOINT + "*" + TEMPORARY)) {
+			for (Path p : stream) {
+				Files.delete(p);
+			}
+		}
+		List<Long> logs = generations(directory, LOG);
+		List<Long> checkpoints = generations(directory, CHECKPOINT);
+		BookingCalendar calendar = new BookingCalendar(granularity);
+		long first = 0;
+		if (!checkpoints.isEmpty()) {
+			first = checkpoints.get(checkpoints.size() - 1);
+			try (MappedTimeSlotFile file = MappedTimeSlotFile.open(directory.resolve(CHECKPOINT + first))) {
+				for (long i = 0; i < file.size(); i++) {
+					calendar.reserve(file.get(i));
+				}
+			}
+		}
+		long current = first;
+		long valid = 0;
+		for (long g : logs) {
+			if (g >= first) {
+				valid = ReservationLog.replay(directory.resolve(LOG + g), (type, start, finish) -> {
+					if (type == ReservationLog.RESERVE) {
+						calendar.reserve(new EpochTimeSlot(start, finish));
+					} else {
+						calendar.cancel(new EpochTimeSlot(start, finish));
+					}
+				});
+				current = g;
+			}
+		}
+		ReservationLog log = new ReservationLog(directory.resolve(LOG + current), valid);
+		return new DurableBookingCalendar(directory, calendar, log, current, checkpointInterval);
+	}
+
+	/**
+	 * Returns the generations of the files with the given prefix, in
+	 * ascending order.
+	 */
+	private static List<Long> generations(Path directory, String prefix) throws IOException {
+		List<Long> result = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+			for (Path p : stream) {
+				String suffix = p.getFileName().toString().substring(prefix.length());
+				if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+					result.add(Long.parseLong(suffix));
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Reserves the given time slot unless it overlaps a reservation. The
+	 * reservation is durable when the method returns.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff the time slot has been reserved
+	 * @throws IOException
+	 *             if the reservation cannot be logged
+	 * @throws IllegalArgumentException
+	 *             if a limit of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public boolean reserve(TimeSlot ts) throws IOException {
+		long start = EpochNanos.startOf(ts);
+		long finish = EpochNanos.finishOf(ts);
+		long[] seq = new long[1];
+		if (!calendar.reserve(ts, () -> seq[0] = log.append(ReservationLog.RESERVE, start, finish))) {
+			return false;
+		}
+		logged(seq[0]);
+		return true;
+	}
+
+	/**
+	 * Cancels the reservation of the given time slot. The cancellation is
+	 * durable when the method returns.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff a reservation equal to the time slot has been removed
+	 * @throws IOException
+	 *             if the cancellation cannot be logged
+	 * @throws IllegalArgumentException
+	 *             if a limit of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public boolean cancel(TimeSlot ts) throws IOException {
+		long start = EpochNanos.startOf(ts);
+		long finish = EpochNanos.finishOf(ts);
+		long[] seq = new long[1];
+		if (!calendar.cancel(ts, () -> seq[0] = log.append(ReservationLog.CANCEL, start, finish))) {
+			return false;
+		}
+		logged(seq[0]);
+		return true;
+	}
+
+	/**
+	 * Waits until the given record is durable, and takes a checkpoint if due
+	 * and no other thread takes one.
+	 */
+	private void logged(long seq) throws IOException {
+		log.await(seq);
+		if (records.incrementAndGet() >= checkpointInterval && checkpointing.compareAndSet(false, true)) {
+			try {
+				checkpoint();
+			} finally {
+				checkpointing.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Returns true iff the given time slot overlaps no reservation at the
+	 * time of the call.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return true iff the time slot could be reserved
+	 */
+	public boolean isAvailable(TimeSlot ts) {
+		return calendar.isAvailable(ts);
+	}
+
+	/**
+	 * Returns the reservations overlapping the given window, ordered by their
+	 * starts.
+	 *
+	 * @param window
+	 *            the window
+	 * @return the overlapping reservations
+	 */
+	public List<TimeSlot> reservations(TimeSlot window) {
+		return calendar.reservations(window);
+	}
+
+	/**
+	 * Returns all reservations, ordered by their starts.
+	 *
+	 * @return the reservations
+	 */
+	public List<TimeSlot> reservations() {
+		return calendar.reservations();
+	}
+
+	/**
+	 * @return the number of reservations
+	 */
+	public int size() {
+		return calendar.size();
+	}
+
+	/**
+	 * Writes the current reservations into a new checkpoint and deletes the
+	 * logs it covers. Reservations and cancellations wait only while a new
+	 * log is started, not while the checkpoint is written.
+	 *
+	 * @throws IOException
+	 *             if the checkpoint cannot be written
+	 */
+	public synchronized void checkpoint() throws IOException {
+		long next = generation + 1;
+		Path nextLog = directory.resolve(LOG + next);
+		IOException[] failure = new IOException[1];
+		List<TimeSlot> snapshot = calendar.exclusively(() -> {
+			try {
+				log.roll(nextLog);
+			} catch (IOException e) {
+				failure[0] = e;
+				return null;
+			}
+			records.set(0);
+			return calendar.reservations();
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		generation = next;
+		Path target = directory.resolve(CHECKPOINT + next);
+		Path temporary = directory.resolve(CHECKPOINT + next + TEMPORARY);
+		try (TimeSlotFileWriter writer = new TimeSlotFileWriter(temporary)) {
+			for (TimeSlot ts : snapshot) {
+				writer.append(ts);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+		// The rename must be durable before the logs it replaces are deleted.
+		ReservationLog.forceDirectory(directory);
+		for (long g : generations(directory, LOG)) {
+			if (g < next) {
+				Files.deleteIfExists(directory.resolve(LOG + g));
+			}
+		}
+		for (long g : generations(directory, CHECKPOINT)) {
+			if (g < next) {
+				Files.deleteIfExists(directory.resolve(CHECKPOINT + g));
+			}
+		}
+	}
+
+	/**
+	 * Makes all changes durable and closes the log.
+	 *
+	 * @throws IOException
+	 *             if the log cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		log.close();
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.booking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of reservations and cancellations with group commit.
+ * <p>
+ * Every record takes {@value #RECORD_SIZE} bytes: its type, the limits of
+ * the time slot in epoch nanoseconds, and a CRC-32 of these, which detects
+ * a record torn by a crash. Appending a record only copies it into a buffer
+ * and returns its sequence number. A writer then waits until its record is
+ * durable. The first waiting writer becomes the leader: it takes the whole
+ * buffer, writes it and forces it to the disk, while further records
+ * collect in a second buffer. All records of the batch become durable with a
+ * single <code>fsync</code>, and the next waiting writer leads the next
+ * batch.
+ */
+final class ReservationLog implements Closeable {
+	static final byte RESERVE = 1;
+
+	static final byte CANCEL = 2;
+
+	static final int RECORD_SIZE = 1 + 8 + 8 + 4;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition synced = lock.newCondition();
+
+	private FileChannel channel;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The sequence number of the last record appended.
+	 */
+	private long appended;
+
+	/**
+	 * The sequence number of the last durable record.
+	 */
+	private long durable;
+
+	private boolean syncing;
+
+	private IOException failure;
+
+	/**
+	 * Opens the given log for appending after its first valid bytes.
+	 */
+	ReservationLog(Path path, long validLength) throws IOException {
+		this.channel = open(path, validLength);
+	}
+
+	private static FileChannel open(Path path, long validLength) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			// Drop a torn record left by a crash.
+			channel.truncate(validLength);
+			channel.position(validLength);
+			// The directory entry of a new log must be durable before its
+			// records are.
+			forceDirectory(path.toAbsolutePath().getParent());
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Forces the entries of the given directory, i.e. created, renamed, and
+	 * deleted files, to the disk. Does nothing on platforms which cannot
+	 * open a directory, such as Windows; their file systems do not offer a
+	 * way to force directory entries.
+	 */
+	static void forceDirectory(Path directory) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try (FileChannel c = channel) {
+			c.force(true);
+		}
+	}
+
+	/**
+	 * Appends a record to the buffer.
+	 *
+	 * @return the sequence number of the record
+	 */
+	long append(byte type, long start, long finish) {
+		lock.lock();
+		try {
+			if (buffer.remaining() < RECORD_SIZE) {
+				ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			int position = buffer.position();
+			buffer.put(type).putLong(start).putLong(finish);
+			crc.reset();
+			crc.update(buffer.array(), position, RECORD_SIZE - 4);
+			buffer.putInt((int) crc.getValue());
+			return ++appended;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until the record of the given sequence number is durable,
+	 * leading a batch if no other writer does.
+	 */
+	void await(long seq) throws IOException {
+		lock.lock();
+		try {
+			while (durable < seq) {
+				if (failure != null) {
+					throw new IOException("Log failed", failure);
+				}
+				if (syncing) {
+					synced.awaitUninterruptibly();
+				} else {
+					sync();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes and forces the buffer, releasing the lock meanwhile.
+	 */
+	private void sync() {
+		syncing = true;
+		ByteBuffer batch = buffer;
+		buffer = spare;
+		long target = appended;
+		FileChannel c = channel;
+		lock.unlock();
+		IOException error = null;
+		try {
+			batch.flip();
+			while (batch.hasRemaining()) {
+				c.write(batch);
+			}
+			c.force(false);
+		} catch (IOException e) {
+			error = e;
+		} finally {
+			lock.lock();
+		}
+		batch.clear();
+		spare = batch;
+		syncing = false;
+		if (error != null) {
+			failure = error;
+		} else {
+			durable = target;
+		}
+		synced.signalAll();
+	}
+
+	/**
+	 * Makes all records appended so far durable, and continues with the given
+	 * file. Must be called with no record being appended.
+	 */
+	void roll(Path path) throws IOException {
+		lock.lock();
+		try {
+			while (durable < appended && failure == null) {
+				if (syncing) {
+					synced.awaitUninterruptibly();
+				} else {
+					sync();
+				}
+			}
+			if (failure != null) {
+				throw new IOException("Log failed", failure);
+			}
+			while (syncing) {
+				synced.awaitUninterruptibly();
+			}
+			FileChannel next = open(path, 0);
+			channel.close();
+			channel = next;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Makes all records appended so far durable and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			try {
+				await(appended);
+			} finally {
+				while (syncing) {
+					synced.awaitUninterruptibly();
+				}
+				channel.close();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Receives the records of a log.
+	 */
+	interface Replay {
+		void accept(byte type, long start, long finish);
+	}
+
+	/**
+	 * Reads the valid records of the given log, stopping at the first torn
+	 * or corrupt one.
+	 *
+	 * @return the length of the valid records
+	 */
+	static long replay(Path path, Replay replay) throws IOException {
+		CRC32 crc = new CRC32();
+		long valid = 0;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % RECORD_SIZE);
+			while (channel.read(in) >= 0 || in.position() > 0) {
+				in.flip();
+				if (in.remaining() < RECORD_SIZE) {
+					// Torn record at the end; nothing more to read.
+					return valid;
+				}
+				while (in.remaining() >= RECORD_SIZE) {
+					int position = in.position();
+					crc.reset();
+					crc.update(in.array(), position, RECORD_SIZE - 4);
+					byte type = in.get();
+					long start = in.getLong();
+					long finish = in.getLong();
+					int checksum = in.getInt();
+					if (checksum != (int) crc.getValue() || (type != RESERVE && type != CANCEL) || start > finish) {
+						return valid;
+					}
+					replay.accept(type, start, finish);
+					valid += RECORD_SIZE;
+				}
+				in.compact();
+			}
+		}
+		return valid;
+	}
+}
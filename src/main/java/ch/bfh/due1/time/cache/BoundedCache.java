@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A thread-safe cache bounded by the total weight of its entries.
+ * <p>
+ * The entries are spread over up to {@value #MAX_SEGMENTS} segments by the
+ * hash code of their keys. Every segment is locked on its own and holds an
+ * equal share of the maximum weight; when a segment exceeds its share, it
+ * evicts entries in the order given by the {@link EvictionPolicy}. With the
+ * default weigher every entry weighs 1, which bounds the number of entries.
+ * <p>
+ * Keys and values must not be null.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+public class BoundedCache<K, V> {
+	/**
+	 * The maximum number of segments.
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Segments receive at least this share of the maximum weight.
+	 */
+	private static final long MIN_SEGMENT_WEIGHT = 16;
+
+	private final Segment[] segments;
+
+	private final ToLongBiFunction<? super K, ? super V> weigher;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Constructs a cache holding at most the given number of entries.
+	 *
+	 * @param maximumSize
+	 *            the maximum number of entries, not negative
+	 * @param policy
+	 *            the eviction policy
+	 */
+	public BoundedCache(long maximumSize, EvictionPolicy policy) {
+		this(maximumSize, policy, (k, v) -> 1);
+	}
+
+	/**
+	 * Constructs a cache whose entries weigh at most the given total weight.
+	 *
+	 * @param maximumWeight
+	 *            the maximum total weight, not negative
+	 * @param policy
+	 *            the eviction policy
+	 * @param weigher
+	 *            returns the weight of an entry, not negative; it is called
+	 *            once when the entry is stored
+	 */
+	@SuppressWarnings("unchecked")
+	public BoundedCache(long maximumWeight, EvictionPolicy policy, ToLongBiFunction<? super K, ? super V> weigher) {
+		if (maximumWeight < 0) {
+			throw new IllegalArgumentException("Maximum weight cannot be negative");
+		}
+		if (policy == null || weigher == null) {
+			throw new NullPointerException();
+		}
+		int count = 1;
+		while (count < MAX_SEGMENTS && maximumWeight / (2 * count) >= MIN_SEGMENT_WEIGHT) {
+			count *= 2;
+		}
+		this.segments = (Segment[]) new BoundedCache<?, ?>.Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(maximumWeight / count, policy == EvictionPolicy.LRU);
+		}
+		this.weigher = weigher;
+	}
+
+	private Segment segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * Returns the value cached for the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or null if there is none
+	 */
+	public V get(K key) {
+		V value = segmentFor(key).get(key);
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value cached for the given key, computing and caching it if
+	 * there is none. The function is called without holding a lock, so
+	 * concurrent callers may compute a value for the same key; all of them
+	 * receive the value cached first.
+	 *
+	 * @param key
+	 *            the key
+	 * @param function
+	 *            computes the value of a key
+	 * @return the cached value, or null if the function returned null
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+		Segment segment = segmentFor(key);
+		V value = segment.get(key);
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		value = function.apply(key);
+		if (value == null) {
+			return null;
+		}
+		return segment.putIfAbsent(key, value, weight(key, value));
+	}
+
+	/**
+	 * Caches the given value, replacing the value cached for the key so far.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 */
+	public void put(K key, V value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		segmentFor(key).put(key, value, weight(key, value));
+	}
+
+	private long weight(K key, V value) {
+		long weight = weigher.applyAsLong(key, value);
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight cannot be negative");
+		}
+		return weight;
+	}
+
+	/**
+	 * Removes the value cached for the given key.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	public void invalidate(K key) {
+		segmentFor(key).remove(key);
+	}
+
+	/**
+	 * Removes all cached values.
+	 */
+	public void invalidateAll() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return the number of cached values
+	 */
+	public long size() {
+		long size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the total weight of the cached values
+	 */
+	public long weight() {
+		long weight = 0;
+		for (Segment segment : segments) {
+			weight += segment.weight();
+		}
+		return weight;
+	}
+
+	/**
+	 * @return a snapshot of the statistics recorded so far
+	 */
+	public CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+	}
+
+	/**
+	 * A cached value and its weight.
+	 */
+	private static final class Node<V> {
+		private final V value;
+
+		private final long weight;
+
+		private Node(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * A part of the cache with its own lock. The iteration order of the map
+	 * is the eviction order.
+	 */
+	private final class Segment {
+		private final LinkedHashMap<K, Node<V>> map;
+
+		private final long maximumWeight;
+
+		private long weight;
+
+		private Segment(long maximumWeight, boolean accessOrder) {
+			this.map = new LinkedHashMap<>(16, 0.75f, accessOrder);
+			this.maximumWeight = maximumWeight;
+		}
+
+		private synchronized V get(K key) {
+			Node<V> node = map.get(key);
+			return node == null ? null : node.value;
+		}
+
+		private synchronized V putIfAbsent(K key, V value, long w) {
+			Node<V> node = map.get(key);
+			if (node != null) {
+				return node.value;
+			}
+			store(key, value, w);
+			return value;
+		}
+
+		private synchronized void put(K key, V value, long w) {
+			Node<V> node = map.remove(key);
+			if (node != null) {
+				weight -= node.weight;
+			}
+			store(key, value, w);
+		}
+
+		private void store(K key, V value, long w) {
+			if (w > maximumWeight) {
+				// Would evict everything including itself.
+				evictions.increment();
+				return;
+			}
+			map.put(key, new Node<>(value, w));
+			weight += w;
+			Iterator<Map.Entry<K, Node<V>>> it = map.entrySet().iterator();
+			while (weight > maximumWeight) {
+				Node<V> eldest = it.next().getValue();
+				it.remove();
+				weight -= eldest.weight;
+				evictions.increment();
+			}
+		}
+
+		private synchronized void remove(K key) {
+			Node<V> node = map.remove(key);
+			if (node != null) {
+				weight -= node.weight;
+			}
+		}
+
+		private synchronized void clear() {
+			map.clear();
+			weight = 0;
+		}
+
+		private synchronized int size() {
+			return map.size();
+		}
+
+		private synchronized long weight() {
+			return weight;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.cache;
+
+/**
+ * An immutable snapshot of the statistics of a {@link BoundedCache}.
+ */
+public final class CacheStats {
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long evictionCount;
+
+	/**
+	 * Constructs a statistics snapshot.
+	 *
+	 * @param hitCount
+	 *            the number of lookups which found an entry
+	 * @param missCount
+	 *            the number of lookups which did not find an entry
+	 * @param evictionCount
+	 *            the number of entries evicted because of the weight bound
+	 */
+	public CacheStats(long hitCount, long missCount, long evictionCount) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+	}
+
+	/**
+	 * @return the number of lookups which found an entry
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return the number of lookups which did not find an entry
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the number of entries evicted because of the weight bound
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return the number of lookups
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * @return the ratio of hits to lookups, or 1 if there were no lookups
+	 */
+	public double getHitRate() {
+		long requests = getRequestCount();
+		return requests == 0 ? 1.0 : (double) hitCount / requests;
+	}
+
+	/**
+	 * Returns the difference of this and an earlier snapshot.
+	 *
+	 * @param other
+	 *            the earlier snapshot
+	 * @return the statistics recorded in between
+	 */
+	public CacheStats minus(CacheStats other) {
+		return new CacheStats(hitCount - other.hitCount, missCount - other.missCount,
+				evictionCount - other.evictionCount);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CacheStats)) {
+			return false;
+		}
+		CacheStats o = (CacheStats) other;
+		return hitCount == o.hitCount && missCount == o.missCount && evictionCount == o.evictionCount;
+	}
+
+	@Override
+	public int hashCode() {
+		return 37 + 17 * Long.hashCode(hitCount) + 17 * Long.hashCode(missCount) + 17 * Long.hashCode(evictionCount);
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.cache;
+
+import java.time.LocalDateTime;
+
+import ch.bfh.due1.time.DateTimeFactory;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.pojo.TimeSlotFactoryImpl;
+
+/**
+ * Decorates a time slot factory such that equal time slots share one
+ * instance. This pays off where the same time slots are created over and
+ * over again, for instance from limits rounded with
+ * {@link DateTimeFactory#roundTo(LocalDateTime, DateTimeFactory.TimeSlotTypeSpec)}.
+ * <p>
+ * The time slots of the decorated factory must be immutable. The number of
+ * shared instances is bounded; an evicted time slot is created anew on its
+ * next request.
+ */
+public class CachingTimeSlotFactory implements TimeSlotFactory {
+	/**
+	 * The default maximum number of cached time slots.
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private final TimeSlotFactory delegate;
+
+	private final BoundedCache<Key, TimeSlot> cache;
+
+	/**
+	 * Constructs a factory caching up to {@value #DEFAULT_MAXIMUM_SIZE} time
+	 * slot POJO instances in LRU order.
+	 */
+	public CachingTimeSlotFactory() {
+		this(new TimeSlotFactoryImpl(), DEFAULT_MAXIMUM_SIZE, EvictionPolicy.LRU);
+	}
+
+	/**
+	 * Constructs a factory caching the time slots of the given factory.
+	 *
+	 * @param delegate
+	 *            creates the time slots which are not cached
+	 * @param maximumSize
+	 *            the maximum number of cached time slots
+	 * @param policy
+	 *            the eviction policy
+	 */
+	public CachingTimeSlotFactory(TimeSlotFactory delegate, long maximumSize, EvictionPolicy policy) {
+		if (delegate == null) {
+			throw new NullPointerException();
+		}
+		this.delegate = delegate;
+		this.cache = new BoundedCache<>(maximumSize, policy);
+	}
+
+	/**
+	 * Returns the cached time slot with the given limits, creating it with
+	 * the decorated factory if there is none.
+	 */
+	@Override
+	public TimeSlot createTimeSlot(LocalDateTime start, LocalDateTime end) {
+		return cache.computeIfAbsent(new Key(start, end), k -> delegate.createTimeSlot(k.start, k.end));
+	}
+
+	/**
+	 * @return a snapshot of the cache statistics
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/**
+	 * @return the number of cached time slots
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Removes all cached time slots.
+	 */
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * The limits of a time slot.
+	 */
+	private static final class Key {
+		private final LocalDateTime start;
+
+		private final LocalDateTime end;
+
+		private Key(LocalDateTime start, LocalDateTime end) {
+			if (start == null || end == null) {
+				throw new NullPointerException();
+			}
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key o = (Key) other;
+			return start.equals(o.start) && end.equals(o.end);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * start.hashCode() + end.hashCode();
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.cache;
+
+/**
+ * Selects the entry a {@link BoundedCache} evicts when it exceeds its maximum
+ * weight.
+ */
+public enum EvictionPolicy {
+	/**
+	 * Evicts the least recently used entry first.
+	 */
+	LRU,
+
+	/**
+	 * Evicts the entry inserted first, regardless of its use. Reads do not
+	 * reorder entries, which keeps them cheaper than with {@link #LRU}.
+	 */
+	FIFO
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.column;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A column store keeping its columns in direct byte buffers in native byte
+ * order. A direct buffer is limited to 2 GB, hence a column holds at most
+ * 2^28 rows.
+ */
+class DirectTimeSlotColumnStore extends TimeSlotColumnStore {
+	private LongBuffer starts;
+
+	private LongBuffer finishes;
+
+	DirectTimeSlotColumnStore(int initialCapacity) {
+		this.starts = allocate(initialCapacity);
+		this.finishes = allocate(initialCapacity);
+	}
+
+	private static LongBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+	}
+
+	@Override
+	public long startAt(int row) {
+		checkRow(row);
+		return starts.get(row);
+	}
+
+	@Override
+	public long finishAt(int row) {
+		checkRow(row);
+		return finishes.get(row);
+	}
+
+	@Override
+	public int countOverlapping(long from, long to) {
+		LongBuffer s = starts;
+		LongBuffer f = finishes;
+		int n = size;
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			count += (s.get(i) <= to & f.get(i) >= from) ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Override
+	public int[] selectOverlapping(long from, long to) {
+		LongBuffer s = starts;
+		LongBuffer f = finishes;
+		int n = size;
+		int[] rows = new int[Math.min(n, SELECT_BLOCK)];
+		int count = 0;
+		for (int block = 0; block < n; block += SELECT_BLOCK) {
+			int end = Math.min(n, block + SELECT_BLOCK);
+			rows = ensureRoom(rows, count + end - block);
+			for (int i = block; i < end; i++) {
+				rows[count] = i;
+				count += (s.get(i) <= to & f.get(i) >= from) ? 1 : 0;
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	@Override
+	protected int capacity() {
+		return starts.capacity();
+	}
+
+	@Override
+	protected int maxCapacity() {
+		return Integer.MAX_VALUE / Long.BYTES;
+	}
+
+	@Override
+	protected void grow(int newCapacity) {
+		starts = copy(starts, newCapacity);
+		finishes = copy(finishes, newCapacity);
+	}
+
+	private LongBuffer copy(LongBuffer column, int newCapacity) {
+		LongBuffer target = allocate(newCapacity);
+		LongBuffer source = column.duplicate();
+		source.clear().limit(size);
+		target.put(source);
+		target.clear();
+		return target;
+	}
+
+	@Override
+	protected void set(int row, long start, long finish) {
+		starts.put(row, start);
+		finishes.put(row, finish);
+	}
+}
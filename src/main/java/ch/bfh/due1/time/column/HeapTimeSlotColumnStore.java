@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.column;
+
+import java.util.Arrays;
+
+/**
+ * A column store keeping its columns in <code>long</code> arrays.
+ */
+class HeapTimeSlotColumnStore extends TimeSlotColumnStore {
+	private long[] starts;
+
+	private long[] finishes;
+
+	HeapTimeSlotColumnStore(int initialCapacity) {
+		this.starts = new long[initialCapacity];
+		this.finishes = new long[initialCapacity];
+	}
+
+	@Override
+	public long startAt(int row) {
+		checkRow(row);
+		return starts[row];
+	}
+
+	@Override
+	public long finishAt(int row) {
+		checkRow(row);
+		return finishes[row];
+	}
+
+	@Override
+	public int countOverlapping(long from, long to) {
+		long[] s = starts;
+		long[] f = finishes;
+		int n = size;
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			count += (s[i] <= to & f[i] >= from) ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Override
+	public int[] selectOverlapping(long from, long to) {
+		long[] s = starts;
+		long[] f = finishes;
+		int n = size;
+		int[] rows = new int[Math.min(n, SELECT_BLOCK)];
+		int count = 0;
+		for (int block = 0; block < n; block += SELECT_BLOCK) {
+			int end = Math.min(n, block + SELECT_BLOCK);
+			rows = ensureRoom(rows, count + end - block);
+			for (int i = block; i < end; i++) {
+				// Always store, only advance on a match: no branch to mispredict.
+				rows[count] = i;
+				count += (s[i] <= to & f[i] >= from) ? 1 : 0;
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	@Override
+	protected int capacity() {
+		return starts.length;
+	}
+
+	@Override
+	protected int maxCapacity() {
+		return Integer.MAX_VALUE - 8;
+	}
+
+	@Override
+	protected void grow(int newCapacity) {
+		starts = Arrays.copyOf(starts, newCapacity);
+		finishes = Arrays.copyOf(finishes, newCapacity);
+	}
+
+	@Override
+	protected void set(int row, long start, long finish) {
+		starts[row] = start;
+		finishes[row] = finish;
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.column;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * An append-only store packing time slots into two parallel columns of
+ * primitive epoch nanosecond values (see {@link EpochNanos}), one for the
+ * starts and one for the finishes. The columns either live on the Java heap
+ * ({@link #onHeap(int)}) or in direct byte buffers outside of it
+ * ({@link #offHeap(int)}); in both cases the store consists of a handful of
+ * objects only, independent of the number of rows.
+ * <p>
+ * Batch predicates run over the whole columns in tight, branch-free loops
+ * that the JIT compiler can unroll and vectorize. Their results follow the
+ * semantics of {@link TimeSlot#overlaps(TimeSlot)} and
+ * {@link TimeSlot#includes(LocalDateTime)}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public abstract class TimeSlotColumnStore {
+	/**
+	 * The number of rows a selection scans between checks of the room left
+	 * in its result.
+	 */
+	protected static final int SELECT_BLOCK = 1024;
+
+	/**
+	 * The number of rows in use.
+	 */
+	protected int size;
+
+	/**
+	 * Creates a store keeping its columns in <code>long</code> arrays.
+	 *
+	 * @param initialCapacity
+	 *            the initial number of rows
+	 * @return an empty store
+	 */
+	public static TimeSlotColumnStore onHeap(int initialCapacity) {
+		return new HeapTimeSlotColumnStore(initialCapacity);
+	}
+
+	/**
+	 * Creates a store keeping its columns in direct byte buffers.
+	 *
+	 * @param initialCapacity
+	 *            the initial number of rows
+	 * @return an empty store
+	 */
+	public static TimeSlotColumnStore offHeap(int initialCapacity) {
+		return new DirectTimeSlotColumnStore(initialCapacity);
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Appends a time slot.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @return the row of the time slot
+	 * @throws IllegalArgumentException
+	 *             if the limits of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public int add(TimeSlot ts) {
+		return add(EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+	}
+
+	/**
+	 * Appends a time slot given by its limits in epoch nanoseconds.
+	 *
+	 * @param start
+	 *            the start where the condition start &lt;= finish must be true
+	 * @param finish
+	 *            the finish
+	 * @return the row of the time slot
+	 */
+	public int add(long start, long finish) {
+		if (start > finish) {
+			throw new IllegalArgumentException("Finish time of time slot cannot be smaller than start time");
+		}
+		if (size == capacity()) {
+			if (size == maxCapacity()) {
+				throw new IllegalStateException("Column store is full: " + size + " rows");
+			}
+			grow((int) Math.min(maxCapacity(), Math.max(16L, 2L * size)));
+		}
+		set(size, start, finish);
+		return size++;
+	}
+
+	/**
+	 * Returns a lightweight time slot holding the limits of the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the time slot
+	 */
+	public EpochTimeSlot get(int row) {
+		checkRow(row);
+		return new EpochTimeSlot(startAt(row), finishAt(row));
+	}
+
+	/**
+	 * Returns the start of the given row in epoch nanoseconds.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the start
+	 */
+	public abstract long startAt(int row);
+
+	/**
+	 * Returns the finish of the given row in epoch nanoseconds.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the finish
+	 */
+	public abstract long finishAt(int row);
+
+	/**
+	 * Counts the rows overlapping the given time slot.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the number of rows <code>r</code> for which
+	 *         <code>get(r).overlaps(ts)</code> is true
+	 */
+	public int countOverlapping(TimeSlot ts) {
+		if (outOfRange(ts.getStart(), ts.getFinish())) {
+			return 0;
+		}
+		Timer timer = Instrumentation.current().start(Operation.COLUMN_SCAN);
+		int count = countOverlapping(EpochNanos.saturatedOf(ts.getStart()), EpochNanos.saturatedOf(ts.getFinish()));
+		timer.stop(size);
+		return count;
+	}
+
+	/**
+	 * Selects the rows overlapping the given time slot.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the rows <code>r</code> in ascending order for which
+	 *         <code>get(r).overlaps(ts)</code> is true
+	 */
+	public int[] selectOverlapping(TimeSlot ts) {
+		if (outOfRange(ts.getStart(), ts.getFinish())) {
+			return new int[0];
+		}
+		Timer timer = Instrumentation.current().start(Operation.COLUMN_SCAN);
+		int[] rows = selectOverlapping(EpochNanos.saturatedOf(ts.getStart()), EpochNanos.saturatedOf(ts.getFinish()));
+		timer.stop(size);
+		return rows;
+	}
+
+	/**
+	 * Counts the rows including the given date/time.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the number of rows <code>r</code> for which
+	 *         <code>get(r).includes(dateTime)</code> is true
+	 */
+	public int countIncluding(LocalDateTime dateTime) {
+		if (!EpochNanos.isRepresentable(dateTime)) {
+			return 0;
+		}
+		long t = EpochNanos.of(dateTime);
+		Timer timer = Instrumentation.current().start(Operation.COLUMN_SCAN);
+		int count = countOverlapping(t, t);
+		timer.stop(size);
+		return count;
+	}
+
+	/**
+	 * Selects the rows including the given date/time.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the rows <code>r</code> in ascending order for which
+	 *         <code>get(r).includes(dateTime)</code> is true
+	 */
+	public int[] selectIncluding(LocalDateTime dateTime) {
+		if (!EpochNanos.isRepresentable(dateTime)) {
+			return new int[0];
+		}
+		long t = EpochNanos.of(dateTime);
+		Timer timer = Instrumentation.current().start(Operation.COLUMN_SCAN);
+		int[] rows = selectOverlapping(t, t);
+		timer.stop(size);
+		return rows;
+	}
+
+	/**
+	 * Counts the rows with start &lt;= to and finish &gt;= from.
+	 *
+	 * @param from
+	 *            the start of the closed query interval in epoch nanoseconds
+	 * @param to
+	 *            the finish of the closed query interval in epoch nanoseconds
+	 * @return the number of matching rows
+	 */
+	public abstract int countOverlapping(long from, long to);
+
+	/**
+	 * Selects the rows with start &lt;= to and finish &gt;= from.
+	 *
+	 * @param from
+	 *            the start of the closed query interval in epoch nanoseconds
+	 * @param to
+	 *            the finish of the closed query interval in epoch nanoseconds
+	 * @return the matching rows in ascending order
+	 */
+	public abstract int[] selectOverlapping(long from, long to);
+
+	/**
+	 * Returns a result buffer with room for the given number of rows, which
+	 * is the given one if it is large enough. The buffer grows with the
+	 * matches found, so a selection allocates in proportion to its result,
+	 * not to the number of rows scanned.
+	 *
+	 * @param rows
+	 *            the result buffer
+	 * @param required
+	 *            the number of rows the buffer must hold
+	 * @return the buffer
+	 */
+	protected static int[] ensureRoom(int[] rows, int required) {
+		if (rows.length >= required) {
+			return rows;
+		}
+		return Arrays.copyOf(rows, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * rows.length)));
+	}
+
+	/**
+	 * Returns the number of rows that fit without growing the columns.
+	 *
+	 * @return the capacity
+	 */
+	protected abstract int capacity();
+
+	/**
+	 * Returns the largest number of rows the columns can hold.
+	 *
+	 * @return the maximal capacity
+	 */
+	protected abstract int maxCapacity();
+
+	/**
+	 * Grows the columns, keeping the first size rows.
+	 *
+	 * @param newCapacity
+	 *            the new capacity
+	 */
+	protected abstract void grow(int newCapacity);
+
+	/**
+	 * Writes the given row.
+	 *
+	 * @param row
+	 *            the row
+	 * @param start
+	 *            the start
+	 * @param finish
+	 *            the finish
+	 */
+	protected abstract void set(int row, long start, long finish);
+
+	/**
+	 * Checks the given row index.
+	 *
+	 * @param row
+	 *            the row
+	 */
+	protected void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + " not in [0, " + size + ")");
+		}
+	}
+
+	private static boolean outOfRange(LocalDateTime start, LocalDateTime finish) {
+		return EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.epoch;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * This utility class converts local date/time objects to and from a primitive
+ * <code>long</code> holding the nanoseconds elapsed since
+ * 1970-01-01T00:00:00. The local date/time is interpreted as if it were
+ * UTC, hence the encoding preserves the natural ordering of local date/time
+ * objects.
+ * <p>
+ * A <code>long</code> covers the local date/time objects between
+ * {@link #MIN} and {@link #MAX} (roughly the years 1677 to 2262) at full
+ * nanosecond precision.
+ */
+public final class EpochNanos {
+	/**
+	 * Number of nanoseconds per second.
+	 */
+	public static final long NANOS_PER_SECOND = 1000000000L;
+
+	private static final long NANOS_PER_DAY = 24 * 60 * 60 * NANOS_PER_SECOND;
+
+	private static final long DAYS_PER_CYCLE = 146097;
+
+	/**
+	 * Days from 0000-03-01 to 1970-01-01.
+	 */
+	private static final long DAYS_0000_03_TO_1970 = 5 * DAYS_PER_CYCLE - (30 * 365 + 7) - 60;
+
+	/**
+	 * The smallest local date/time object that can be encoded.
+	 */
+	public static final LocalDateTime MIN = toLocalDateTime(Long.MIN_VALUE);
+
+	/**
+	 * The largest local date/time object that can be encoded.
+	 */
+	public static final LocalDateTime MAX = toLocalDateTime(Long.MAX_VALUE);
+
+	private static final long MIN_SECOND = Math.floorDiv(Long.MIN_VALUE, NANOS_PER_SECOND);
+
+	private static final int MIN_NANO = (int) Math.floorMod(Long.MIN_VALUE, NANOS_PER_SECOND);
+
+	private static final long MAX_SECOND = Math.floorDiv(Long.MAX_VALUE, NANOS_PER_SECOND);
+
+	private static final int MAX_NANO = (int) Math.floorMod(Long.MAX_VALUE, NANOS_PER_SECOND);
+
+	/**
+	 * Not used.
+	 */
+	private EpochNanos() {
+	}
+
+	/**
+	 * Returns true iff the given local date/time can be encoded.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @return true iff {@link #MIN} &lt;= dateTime &lt;= {@link #MAX}
+	 */
+	public static boolean isRepresentable(LocalDateTime dateTime) {
+		return rangeCheck(dateTime.toEpochSecond(ZoneOffset.UTC), dateTime.getNano()) == 0;
+	}
+
+	/**
+	 * Encodes the given local date/time.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @return the nanoseconds elapsed since 1970-01-01T00:00:00
+	 * @throws IllegalArgumentException
+	 *             if the local date/time cannot be encoded
+	 */
+	public static long of(LocalDateTime dateTime) {
+		long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+		int nano = dateTime.getNano();
+		if (rangeCheck(second, nano) != 0) {
+			throw new IllegalArgumentException("Date/time out of epoch nanosecond range: " + dateTime);
+		}
+		// May wrap around for the extreme seconds; adding the nanos brings
+		// the result back into range.
+		return second * NANOS_PER_SECOND + nano;
+	}
+
+	/**
+	 * Encodes the given local date/time, mapping values before {@link #MIN}
+	 * to <code>Long.MIN_VALUE</code> and values after {@link #MAX} to
+	 * <code>Long.MAX_VALUE</code>. Useful for the limits of range queries.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @return the nanoseconds elapsed since 1970-01-01T00:00:00, saturated to
+	 *         the range of a long
+	 */
+	public static long saturatedOf(LocalDateTime dateTime) {
+		long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+		int nano = dateTime.getNano();
+		int range = rangeCheck(second, nano);
+		if (range < 0) {
+			return Long.MIN_VALUE;
+		}
+		if (range > 0) {
+			return Long.MAX_VALUE;
+		}
+		return second * NANOS_PER_SECOND + nano;
+	}
+
+	/**
+	 * Decodes the given number of nanoseconds.
+	 *
+	 * @param epochNanos
+	 *            the nanoseconds elapsed since 1970-01-01T00:00:00
+	 * @return the corresponding local date/time
+	 */
+	public static LocalDateTime toLocalDateTime(long epochNanos) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+				(int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+	}
+
+	/**
+	 * Returns the hash code of the local date/time the given number of
+	 * nanoseconds decodes to, without creating it.
+	 *
+	 * @param epochNanos
+	 *            the nanoseconds elapsed since 1970-01-01T00:00:00
+	 * @return <code>toLocalDateTime(epochNanos).hashCode()</code>
+	 */
+	public static int hashCode(long epochNanos) {
+		long nanoOfDay = Math.floorMod(epochNanos, NANOS_PER_DAY);
+		// The date as computed by LocalDate.ofEpochDay, counting years from
+		// March so that leap days come last. All encoded dates follow
+		// 0000-03-01, hence the day is never negative.
+		long day = Math.floorDiv(epochNanos, NANOS_PER_DAY) + DAYS_0000_03_TO_1970;
+		long year = (400 * day + 591) / DAYS_PER_CYCLE;
+		long dayOfYear = day - (365 * year + year / 4 - year / 100 + year / 400);
+		if (dayOfYear < 0) {
+			year--;
+			dayOfYear = day - (365 * year + year / 4 - year / 100 + year / 400);
+		}
+		int marchMonth = ((int) dayOfYear * 5 + 2) / 153;
+		int y = (int) year + marchMonth / 10;
+		int m = (marchMonth + 2) % 12 + 1;
+		int d = (int) dayOfYear - (marchMonth * 306 + 5) / 10 + 1;
+		// LocalDate.hashCode() ^ LocalTime.hashCode()
+		return ((y & 0xFFFFF800) ^ ((y << 11) + (m << 6) + d)) ^ (int) (nanoOfDay ^ (nanoOfDay >>> 32));
+	}
+
+	/**
+	 * Compares an encoded date/time with a local date/time object. The local
+	 * date/time does not need to be representable.
+	 *
+	 * @param epochNanos
+	 *            an encoded date/time
+	 * @param dateTime
+	 *            a local date/time
+	 * @return -1, 0, or +1 as the encoded date/time is less than, equal to, or
+	 *         greater than the local date/time
+	 */
+	public static int compare(long epochNanos, LocalDateTime dateTime) {
+		long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+		int nano = dateTime.getNano();
+		int range = rangeCheck(second, nano);
+		if (range != 0) {
+			// Below MIN: the encoded value is greater; above MAX: it is less.
+			return -range;
+		}
+		return Long.compare(epochNanos, second * NANOS_PER_SECOND + nano);
+	}
+
+	/**
+	 * Returns the encoded start of the given time slot, avoiding the creation
+	 * of any object if the time slot is an {@link EpochTimeSlot}.
+	 *
+	 * @param ts
+	 *            a time slot
+	 * @return the encoded start
+	 * @throws IllegalArgumentException
+	 *             if the start cannot be encoded
+	 */
+	public static long startOf(TimeSlot ts) {
+		if (ts instanceof EpochTimeSlot) {
+			return ((EpochTimeSlot) ts).getStartEpochNanos();
+		}
+		return of(ts.getStart());
+	}
+
+	/**
+	 * Returns the encoded finish of the given time slot, avoiding the creation
+	 * of any object if the time slot is an {@link EpochTimeSlot}.
+	 *
+	 * @param ts
+	 *            a time slot
+	 * @return the encoded finish
+	 * @throws IllegalArgumentException
+	 *             if the finish cannot be encoded
+	 */
+	public static long finishOf(TimeSlot ts) {
+		if (ts instanceof EpochTimeSlot) {
+			return ((EpochTimeSlot) ts).getFinishEpochNanos();
+		}
+		return of(ts.getFinish());
+	}
+
+	/**
+	 * Returns -1 if below MIN, +1 if above MAX, 0 otherwise.
+	 */
+	private static int rangeCheck(long second, int nano) {
+		if (second < MIN_SECOND || (second == MIN_SECOND && nano < MIN_NANO)) {
+			return -1;
+		}
+		if (second > MAX_SECOND || (second == MAX_SECOND && nano > MAX_NANO)) {
+			return 1;
+		}
+		return 0;
+	}
+}
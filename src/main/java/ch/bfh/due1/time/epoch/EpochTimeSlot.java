@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.epoch;
+
+import java.time.LocalDateTime;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * A time slot storing its limits as two primitive epoch nanosecond values,
+ * see {@link EpochNanos}. Local date/time objects are only created when
+ * {@link #getStart()} or {@link #getFinish()} is called. Comparisons with
+ * other instances of this class are done on the primitive values directly.
+ * <p>
+ * Instances are interchangeable with any other time slot implementation with
+ * respect to {@link #equals(Object)}, {@link #hashCode()} and
+ * {@link #compareTo(TimeSlot)}.
+ */
+public class EpochTimeSlot implements TimeSlot {
+	/**
+	 * Generated serial version UID.
+	 */
+	private static final long serialVersionUID = 4620532137315424862L;
+
+	private final long start;
+
+	private final long finish;
+
+	/**
+	 * Constructs a time slot object.
+	 *
+	 * @param start
+	 *            the start of the time slot in epoch nanoseconds where the
+	 *            condition start &lt;= finish must be true
+	 * @param finish
+	 *            the end of the time slot in epoch nanoseconds
+	 */
+	public EpochTimeSlot(long start, long finish) {
+		if (start > finish) {
+			throw new IllegalArgumentException("Finish time of time slot cannot be smaller than start time");
+		}
+		this.start = start;
+		this.finish = finish;
+	}
+
+	/**
+	 * Constructs a time slot object.
+	 *
+	 * @param start
+	 *            the start of the time slot where the condition start &lt;=
+	 *            finish must be true
+	 * @param finish
+	 *            the end of the time slot
+	 * @throws IllegalArgumentException
+	 *             if start or finish cannot be encoded, see
+	 *             {@link EpochNanos#isRepresentable(LocalDateTime)}
+	 */
+	public EpochTimeSlot(LocalDateTime start, LocalDateTime finish) {
+		this(EpochNanos.of(start), EpochNanos.of(finish));
+	}
+
+	/**
+	 * Returns the start of the time slot in epoch nanoseconds.
+	 *
+	 * @return the start of the time slot
+	 */
+	public long getStartEpochNanos() {
+		return start;
+	}
+
+	/**
+	 * Returns the end of the time slot in epoch nanoseconds.
+	 *
+	 * @return the end of the time slot
+	 */
+	public long getFinishEpochNanos() {
+		return finish;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public LocalDateTime getFinish() {
+		return EpochNanos.toLocalDateTime(finish);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public LocalDateTime getStart() {
+		return EpochNanos.toLocalDateTime(start);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isEmpty() {
+		return start == finish;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean includes(LocalDateTime dateTime) {
+		return EpochNanos.compare(start, dateTime) <= 0 && EpochNanos.compare(finish, dateTime) >= 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean includes(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			EpochTimeSlot ets = (EpochTimeSlot) other;
+			return start <= ets.start && ets.finish <= finish;
+		}
+		return this.includes(other.getStart()) && this.includes(other.getFinish());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean overlaps(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			EpochTimeSlot ets = (EpochTimeSlot) other;
+			// Same as the definition for closed intervals with start <= finish.
+			return start <= ets.finish && ets.start <= finish;
+		}
+		return EpochNanos.compare(start, other.getFinish()) <= 0 && EpochNanos.compare(finish, other.getStart()) >= 0;
+	}
+
+	/**
+	 * Tests another time slot object for equality. Two time slot objects are
+	 * equal iff their start time and end time are equal.
+	 *
+	 * @param other
+	 *            the object to compare
+	 * @return true iff other is a time slot object and the the start time and
+	 *         end time are equal.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof EpochTimeSlot) {
+			EpochTimeSlot ets = (EpochTimeSlot) other;
+			return start == ets.start && finish == ets.finish;
+		}
+		if (!(other instanceof TimeSlot))
+			return false;
+		TimeSlot ts = (TimeSlot) other;
+		return EpochNanos.compare(start, ts.getStart()) == 0 && EpochNanos.compare(finish, ts.getFinish()) == 0;
+	}
+
+	/**
+	 * Returns the hash code of this object. The hash code is the same as the
+	 * one of {@link ch.bfh.due1.time.pojo.TimeSlotImpl} for equal limits; it
+	 * is computed without creating the local date/time objects.
+	 *
+	 * @return The hash code.
+	 */
+	@Override
+	public int hashCode() {
+		int rval = 37;
+		rval += 17 * EpochNanos.hashCode(start);
+		rval += 17 * EpochNanos.hashCode(finish);
+		return rval;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public int compareTo(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			EpochTimeSlot ets = (EpochTimeSlot) other;
+			int rval = Long.compare(start, ets.start);
+			if (rval == 0) {
+				// Start times do not differ -- take finish times, too.
+				return Long.compare(finish, ets.finish);
+			}
+			return rval;
+		}
+		int rval = EpochNanos.compare(start, other.getStart());
+		if (rval == 0) {
+			return EpochNanos.compare(finish, other.getFinish());
+		}
+		return rval;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean startsBefore(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			return start < ((EpochTimeSlot) other).start;
+		}
+		return EpochNanos.compare(start, other.getStart()) < 0;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean startsAfter(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			return start > ((EpochTimeSlot) other).start;
+		}
+		return EpochNanos.compare(start, other.getStart()) > 0;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean endsBefore(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			return finish < ((EpochTimeSlot) other).finish;
+		}
+		return EpochNanos.compare(finish, other.getFinish()) < 0;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean endsAfter(TimeSlot other) {
+		if (other instanceof EpochTimeSlot) {
+			return finish > ((EpochTimeSlot) other).finish;
+		}
+		return EpochNanos.compare(finish, other.getFinish()) > 0;
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean strictlyIncludes(TimeSlot other) {
+		return includes(other) && startsBefore(other) && endsAfter(other);
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	public boolean exactlyMatches(TimeSlot other) {
+		return includes(other) && !startsBefore(other) && !endsAfter(other);
+	}
+}
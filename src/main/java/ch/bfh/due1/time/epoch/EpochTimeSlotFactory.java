@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.epoch;
+
+import java.time.LocalDateTime;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+/**
+ * Creates time slot instances storing their limits as primitive epoch
+ * nanosecond values.
+ */
+public class EpochTimeSlotFactory implements TimeSlotFactory {
+
+	/**
+	 * Creates an epoch time slot instance. If one of the limits is outside of
+	 * the range supported by {@link EpochNanos} then a time slot POJO instance
+	 * is returned instead.
+	 *
+	 * @see EpochTimeSlot
+	 * @see TimeSlotImpl
+	 */
+	@Override
+	public TimeSlot createTimeSlot(LocalDateTime start, LocalDateTime end) {
+		TimeSlot ts;
+		if (EpochNanos.isRepresentable(start) && EpochNanos.isRepresentable(end)) {
+			ts = new EpochTimeSlot(EpochNanos.of(start), EpochNanos.of(end));
+		} else {
+			ts = new TimeSlotImpl(start, end);
+		}
+		Instrumentation.current().slotCreated();
+		return ts;
+	}
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * An immutable interval tree over time slots. Like {@link TimeSlotIndex}, it
+ * is an AVL tree ordered by {@link TimeSlot#compareTo(TimeSlot)} where each
+ * node is augmented with the largest finish time of its subtree, but its
+ * nodes are never modified: an update copies the O(log n) nodes on the path
+ * to the changed node and shares all others with the previous version. Every
+ * version therefore stays valid and can be queried by any number of threads
+ * without locking, see {@link VersionedTimeSlotIndex}. Queries have the same
+ * cost as those of {@link TimeSlotIndex}: O(min(n, log n + k log n)) nodes
+ * for k reported time slots rather than O(log n + k), for the reasons given
+ * there; path copying relies on updates touching a single path.
+ * <p>
+ * Query results follow the semantics of {@link TimeSlot#overlaps(TimeSlot)}
+ * and {@link TimeSlot#includes(LocalDateTime)}: time slots are closed
+ * intervals. The index is a multiset, i.e. equal time slots may be inserted
+ * more than once. Limits are stored as epoch nanoseconds, see
+ * {@link EpochNanos}.
+ */
+public final class PersistentTimeSlotIndex {
+	private static final PersistentTimeSlotIndex EMPTY = new PersistentTimeSlotIndex(null, 0, 0);
+
+	private final Node root;
+
+	private final int size;
+
+	private final long version;
+
+	private PersistentTimeSlotIndex(Node root, int size, long version) {
+		this.root = root;
+		this.size = size;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the empty index of version 0.
+	 *
+	 * @return the empty index
+	 */
+	public static PersistentTimeSlotIndex empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns an index holding the time slots of this one and the given one.
+	 * Insertion takes O(log n) time.
+	 *
+	 * @param ts
+	 *            the time slot to insert
+	 * @return the next version
+	 * @throws IllegalArgumentException
+	 *             if the limits of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public PersistentTimeSlotIndex insert(TimeSlot ts) {
+		Node leaf = new Node(null, ts, EpochNanos.startOf(ts), EpochNanos.finishOf(ts), null);
+		return new PersistentTimeSlotIndex(insert(root, leaf), size + 1, version + 1);
+	}
+
+	/**
+	 * Returns an index holding the time slots of this one except one time
+	 * slot equal to the given one. Removal takes O(log n) time.
+	 *
+	 * @param ts
+	 *            the time slot to remove
+	 * @return the next version, or this index if it holds no such time slot
+	 */
+	public PersistentTimeSlotIndex remove(TimeSlot ts) {
+		if (!EpochNanos.isRepresentable(ts.getStart()) || !EpochNanos.isRepresentable(ts.getFinish())) {
+			return this;
+		}
+		Node newRoot = remove(root, EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+		return newRoot == root ? this : new PersistentTimeSlotIndex(newRoot, size - 1, version + 1);
+	}
+
+	/**
+	 * Returns the version of this index: the number of updates leading to it
+	 * from the empty index.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the number of time slots in this index.
+	 *
+	 * @return the number of time slots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true iff this index holds no time slot.
+	 *
+	 * @return true iff this index is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the overlapping time slots
+	 */
+	public List<TimeSlot> overlapping(TimeSlot ts) {
+		List<TimeSlot> result = new ArrayList<>();
+		overlapping(ts, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true to the given consumer, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @param consumer
+	 *            receives the overlapping time slots
+	 */
+	public void overlapping(TimeSlot ts, Consumer<? super TimeSlot> consumer) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return;
+		}
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		query(root, EpochNanos.saturatedOf(start), EpochNanos.saturatedOf(finish), consumer);
+		timer.stop(size);
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the time slots including the date/time
+	 */
+	public List<TimeSlot> containing(LocalDateTime dateTime) {
+		List<TimeSlot> result = new ArrayList<>();
+		containing(dateTime, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true to the given consumer, ordered
+	 * by {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @param consumer
+	 *            receives the time slots including the date/time
+	 */
+	public void containing(LocalDateTime dateTime, Consumer<? super TimeSlot> consumer) {
+		if (EpochNanos.isRepresentable(dateTime)) {
+			long t = EpochNanos.of(dateTime);
+			Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+			query(root, t, t, consumer);
+			timer.stop(size);
+		}
+	}
+
+	/**
+	 * Returns all time slots starting within the given closed range, ordered
+	 * by {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param from
+	 *            the smallest start
+	 * @param to
+	 *            the largest start
+	 * @return the time slots
+	 */
+	public List<TimeSlot> range(LocalDateTime from, LocalDateTime to) {
+		List<TimeSlot> result = new ArrayList<>();
+		range(from, to, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots starting within the given closed range to the
+	 * given consumer, ordered by {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param from
+	 *            the smallest start
+	 * @param to
+	 *            the largest start
+	 * @param consumer
+	 *            receives the time slots
+	 */
+	public void range(LocalDateTime from, LocalDateTime to, Consumer<? super TimeSlot> consumer) {
+		if (EpochNanos.compare(Long.MAX_VALUE, from) < 0 || EpochNanos.compare(Long.MIN_VALUE, to) > 0) {
+			return;
+		}
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		range(root, EpochNanos.saturatedOf(from), EpochNanos.saturatedOf(to), consumer);
+		timer.stop(size);
+	}
+
+	/**
+	 * Returns all time slots, ordered by {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @return the time slots
+	 */
+	public List<TimeSlot> toList() {
+		List<TimeSlot> result = new ArrayList<>(size);
+		range(root, Long.MIN_VALUE, Long.MAX_VALUE, result::add);
+		return result;
+	}
+
+	/**
+	 * Reports all nodes with start &lt;= to and finish &gt;= from, in order.
+	 */
+	private static void query(Node node, long from, long to, Consumer<? super TimeSlot> consumer) {
+		while (node != null && node.maxFinish >= from) {
+			query(node.left, from, to, consumer);
+			if (node.start > to) {
+				// All nodes to the right start even later.
+				return;
+			}
+			if (node.finish >= from) {
+				consumer.accept(node.slot);
+			}
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Reports all nodes with from &lt;= start &lt;= to, in order.
+	 */
+	private static void range(Node node, long from, long to, Consumer<? super TimeSlot> consumer) {
+		while (node != null) {
+			if (node.start < from) {
+				// All nodes to the left start even earlier.
+				node = node.right;
+				continue;
+			}
+			range(node.left, from, to, consumer);
+			if (node.start > to) {
+				return;
+			}
+			consumer.accept(node.slot);
+			node = node.right;
+		}
+	}
+
+	private static int compare(long start1, long finish1, long start2, long finish2) {
+		int rval = Long.compare(start1, start2);
+		return rval != 0 ? rval : Long.compare(finish1, finish2);
+	}
+
+	private static Node insert(Node node, Node leaf) {
+		if (node == null) {
+			return leaf;
+		}
+		if (compare(leaf.start, leaf.finish, node.start, node.finish) < 0) {
+			return balance(insert(node.left, leaf), node, node.right);
+		}
+		return balance(node.left, node, insert(node.right, leaf));
+	}
+
+	/**
+	 * Returns the given subtree without one node of the given limits, or the
+	 * subtree itself if there is none.
+	 */
+	private static Node remove(Node node, long start, long finish) {
+		if (node == null) {
+			return null;
+		}
+		int c = compare(start, finish, node.start, node.finish);
+		if (c < 0) {
+			Node left = remove(node.left, start, finish);
+			return left == node.left ? node : balance(left, node, node.right);
+		}
+		if (c > 0) {
+			Node right = remove(node.right, start, finish);
+			return right == node.right ? node : balance(node.left, node, right);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		Node successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(node.left, successor, removeMin(node.right));
+	}
+
+	private static Node removeMin(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(removeMin(node.left), node, node.right);
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Returns a balanced tree of the given subtrees and the time slot of the
+	 * given node, which differ in height by at most 2.
+	 */
+	private static Node balance(Node left, Node key, Node right) {
+		int diff = height(left) - height(right);
+		if (diff > 1) {
+			if (height(left.left) < height(left.right)) {
+				Node pivot = left.right;
+				return pivot.with(left.with(left.left, pivot.left), key.with(pivot.right, right));
+			}
+			return left.with(left.left, key.with(left.right, right));
+		}
+		if (diff < -1) {
+			if (height(right.right) < height(right.left)) {
+				Node pivot = right.left;
+				return pivot.with(key.with(left, pivot.left), right.with(pivot.right, right.right));
+			}
+			return right.with(key.with(left, right.left), right.right);
+		}
+		return key.with(left, right);
+	}
+
+	/**
+	 * An immutable tree node holding one time slot.
+	 */
+	private static final class Node {
+		private final TimeSlot slot;
+
+		private final long start;
+
+		private final long finish;
+
+		private final long maxFinish;
+
+		private final int height;
+
+		private final Node left;
+
+		private final Node right;
+
+		private Node(Node left, TimeSlot slot, long start, long finish, Node right) {
+			this.slot = slot;
+			this.start = start;
+			this.finish = finish;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+			long max = finish;
+			if (left != null && left.maxFinish > max) {
+				max = left.maxFinish;
+			}
+			if (right != null && right.maxFinish > max) {
+				max = right.maxFinish;
+			}
+			this.maxFinish = max;
+		}
+
+		/**
+		 * Returns a node holding the same time slot with the given subtrees.
+		 */
+		private Node with(Node newLeft, Node newRight) {
+			if (newLeft == left && newRight == right) {
+				return this;
+			}
+			return new Node(newLeft, slot, start, finish, newRight);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+import ch.bfh.due1.time.sort.TimeSlotSorter;
+
+/**
+ * Answers many stabbing queries at once: for each of a large number of probe
+ * date/times, the time slots <code>s</code> for which
+ * <code>s.includes(probe)</code> is true.
+ * <p>
+ * The time slots are sorted once by {@link TimeSlot#compareTo(TimeSlot)}.
+ * The probes are read in chunks of a fixed size, which bounds the memory
+ * used per query. Every chunk is sorted and swept against the time slots in
+ * ascending order, keeping the time slots which have started and not yet
+ * finished. A chunk starts at the first time slot which may still include
+ * its smallest probe, found by a binary search over the running maximum of
+ * the finishes. Sweeping a chunk of m probes takes O(m log m + k) time for k
+ * matches, plus the time slots passed over.
+ * <p>
+ * Time slots are identified by their position in the iteration order of the
+ * collection given to the constructor. Results follow the semantics of
+ * {@link TimeSlot#includes(LocalDateTime)}: time slots are closed intervals.
+ * Limits are stored as epoch nanoseconds, see {@link EpochNanos}; probes
+ * outside of that range are included in no time slot. Instances are
+ * immutable and thread-safe.
+ */
+public class ProbeMatcher {
+	/**
+	 * Receives a match of a probe and a time slot.
+	 */
+	@FunctionalInterface
+	public interface MatchConsumer {
+		/**
+		 * @param probe
+		 *            the index of the probe
+		 * @param slot
+		 *            the id of a time slot including the probe
+		 */
+		void accept(int probe, int slot);
+	}
+
+	/**
+	 * The default number of probes per chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private final TimeSlot[] slots;
+
+	/**
+	 * The ids of the time slots in sorted order.
+	 */
+	private final int[] ids;
+
+	private final long[] starts;
+
+	private final long[] finishes;
+
+	/**
+	 * The largest finish of the sorted time slots up to each position.
+	 */
+	private final long[] maxFinishes;
+
+	private final int chunkSize;
+
+	/**
+	 * Creates a matcher with the default chunk size.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public ProbeMatcher(Collection<? extends TimeSlot> slots) {
+		this(slots, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a matcher.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param chunkSize
+	 *            the number of probes sorted at a time, positive
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public ProbeMatcher(Collection<? extends TimeSlot> slots, int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.slots = slots.toArray(new TimeSlot[slots.size()]);
+		this.ids = TimeSlotSorter.order(this.slots);
+		int n = ids.length;
+		this.starts = new long[n];
+		this.finishes = new long[n];
+		this.maxFinishes = new long[n];
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			TimeSlot ts = this.slots[ids[i]];
+			starts[i] = EpochNanos.startOf(ts);
+			finishes[i] = EpochNanos.finishOf(ts);
+			max = Math.max(max, finishes[i]);
+			maxFinishes[i] = max;
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @return the number of time slots
+	 */
+	public int size() {
+		return slots.length;
+	}
+
+	/**
+	 * Returns the time slot with the given id.
+	 *
+	 * @param slot
+	 *            the id, i.e. the position in the collection given to the
+	 *            constructor
+	 * @return the time slot
+	 */
+	public TimeSlot get(int slot) {
+		return slots[slot];
+	}
+
+	/**
+	 * Passes every pair of a probe and a time slot including it to the given
+	 * consumer. Within a chunk, the pairs are ordered by probe and then by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param probes
+	 *            the probes
+	 * @param consumer
+	 *            receives the index of the probe and the id of the time slot
+	 */
+	public void matches(LocalDateTime[] probes, MatchConsumer consumer) {
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		for (int from = 0; from < probes.length; from += chunkSize) {
+			int offset = from;
+			sweep(probes, from, Math.min(probes.length, from + chunkSize), (probe, active, size) -> {
+				for (int k = 0; k < size; k++) {
+					consumer.accept(offset + probe, ids[active[k]]);
+				}
+			});
+		}
+		timer.stop(slots.length);
+	}
+
+	/**
+	 * Returns, for each probe, the first time slot including it with respect
+	 * to {@link TimeSlot#compareTo(TimeSlot)}. For disjoint time slots such
+	 * as the buckets of a grid, this is the only one.
+	 *
+	 * @param probes
+	 *            the probes
+	 * @return the id of the first including time slot for each probe, or -1
+	 */
+	public int[] first(LocalDateTime[] probes) {
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		int[] result = new int[probes.length];
+		Arrays.fill(result, -1);
+		for (int from = 0; from < probes.length; from += chunkSize) {
+			int offset = from;
+			sweep(probes, from, Math.min(probes.length, from + chunkSize), (probe, active, size) -> {
+				if (size > 0) {
+					result[offset + probe] = ids[active[0]];
+				}
+			});
+		}
+		timer.stop(slots.length);
+		return result;
+	}
+
+	/**
+	 * Returns, for each probe, the number of time slots including it.
+	 *
+	 * @param probes
+	 *            the probes
+	 * @return the number of including time slots for each probe
+	 */
+	public int[] count(LocalDateTime[] probes) {
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		int[] result = new int[probes.length];
+		for (int from = 0; from < probes.length; from += chunkSize) {
+			int offset = from;
+			sweep(probes, from, Math.min(probes.length, from + chunkSize),
+					(probe, active, size) -> result[offset + probe] = size);
+		}
+		timer.stop(slots.length);
+		return result;
+	}
+
+	/**
+	 * Passes every pair of a probe and a time slot including it to the given
+	 * consumer, reading the probes one chunk at a time. Within a chunk, the
+	 * pairs are ordered by probe and then by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param probes
+	 *            the probes
+	 * @param consumer
+	 *            receives the probe and the time slot
+	 */
+	public void matches(Stream<LocalDateTime> probes, BiConsumer<? super LocalDateTime, ? super TimeSlot> consumer) {
+		Iterator<LocalDateTime> i = probes.iterator();
+		LocalDateTime[] chunk = new LocalDateTime[chunkSize];
+		while (i.hasNext()) {
+			int n = 0;
+			while (n < chunk.length && i.hasNext()) {
+				chunk[n++] = i.next();
+			}
+			Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+			sweep(chunk, 0, n, (probe, active, size) -> {
+				for (int k = 0; k < size; k++) {
+					consumer.accept(chunk[probe], slots[ids[active[k]]]);
+				}
+			});
+			timer.stop(slots.length);
+		}
+	}
+
+	/**
+	 * Sweeps the probes [from, to) in ascending order, passing each
+	 * representable one with the sorted positions of the time slots
+	 * including it to the given visitor.
+	 */
+	private void sweep(LocalDateTime[] probes, int from, int to, Visitor visitor) {
+		int n = 0;
+		long[] values = new long[to - from];
+		int[] positions = new int[to - from];
+		for (int p = from; p < to; p++) {
+			if (EpochNanos.isRepresentable(probes[p])) {
+				values[n] = EpochNanos.of(probes[p]);
+				positions[n++] = p - from;
+			}
+		}
+		if (n == 0) {
+			return;
+		}
+		if (n < values.length) {
+			values = Arrays.copyOf(values, n);
+		}
+		int[] order = TimeSlotSorter.order(values);
+		// Time slots before the first one finishing at or after the smallest
+		// probe include no probe of this chunk.
+		int next = lowerBound(maxFinishes, values[order[0]]);
+		int[] active = new int[16];
+		int size = 0;
+		for (int k = 0; k < n; k++) {
+			long probe = values[order[k]];
+			int m = 0;
+			for (int a = 0; a < size; a++) {
+				if (finishes[active[a]] >= probe) {
+					active[m++] = active[a];
+				}
+			}
+			size = m;
+			for (; next < starts.length && starts[next] <= probe; next++) {
+				if (finishes[next] >= probe) {
+					if (size == active.length) {
+						active = Arrays.copyOf(active, 2 * size);
+					}
+					active[size++] = next;
+				}
+			}
+			visitor.visit(positions[order[k]], active, size);
+		}
+	}
+
+	/**
+	 * Returns the index of the first value at or after the given one.
+	 */
+	private static int lowerBound(long[] values, long value) {
+		int lo = 0;
+		int hi = values.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (values[mid] < value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Receives a probe and the time slots including it.
+	 */
+	@FunctionalInterface
+	private interface Visitor {
+		void visit(int probe, int[] active, int size);
+	}
+}
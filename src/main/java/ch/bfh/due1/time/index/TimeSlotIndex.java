@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * An interval tree over time slots answering overlap and stabbing queries
+ * without looking at every time slot. The tree is an AVL tree ordered by
+ * {@link TimeSlot#compareTo(TimeSlot)} where each node is augmented with the
+ * largest finish time of its subtree. A query skips every subtree whose
+ * largest finish lies before the query, and every right subtree whose
+ * smallest start lies after the query.
+ * <p>
+ * A query visits O(min(n, log n + k log n)) nodes for k reported time slots,
+ * not the O(log n + k) of a priority search tree or a centered interval
+ * tree: below a node whose subtree holds a match, a query may descend the
+ * height of the tree before it reaches that match. This is accepted in
+ * exchange for plain AVL rotations, which keep the augmentation valid by
+ * recomputing one maximum per node. Insertion and removal thus stay
+ * O(log n) and change only the nodes on one path, which is what makes the
+ * path-copying {@link PersistentTimeSlotIndex} cheap. A priority search tree
+ * has to repair its heap order along a path on every rotation, and a centered
+ * interval tree has to be rebuilt as its centers drift. Queries matching few
+ * time slots, the common case of stabbing a calendar, visit O(log n) nodes
+ * either way.
+ * <p>
+ * Query results follow the semantics of {@link TimeSlot#overlaps(TimeSlot)}
+ * and {@link TimeSlot#includes(LocalDateTime)}: time slots are closed
+ * intervals, hence time slots touching at one end overlap. The index is a
+ * multiset, i.e. equal time slots may be inserted more than once.
+ * <p>
+ * Limits are stored as epoch nanoseconds, see {@link EpochNanos}. This class
+ * is not thread-safe.
+ */
+public class TimeSlotIndex {
+	private Node root;
+
+	private int size;
+
+	/**
+	 * Inserts a time slot. Insertion takes O(log n) time.
+	 *
+	 * @param ts
+	 *            the time slot to insert
+	 * @throws IllegalArgumentException
+	 *             if the limits of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public void insert(TimeSlot ts) {
+		root = insert(root, new Node(ts, EpochNanos.startOf(ts), EpochNanos.finishOf(ts)));
+		size++;
+	}
+
+	/**
+	 * Removes one time slot equal to the given one. Removal takes O(log n)
+	 * time.
+	 *
+	 * @param ts
+	 *            the time slot to remove
+	 * @return true iff a time slot has been removed
+	 */
+	public boolean remove(TimeSlot ts) {
+		if (!EpochNanos.isRepresentable(ts.getStart()) || !EpochNanos.isRepresentable(ts.getFinish())) {
+			return false;
+		}
+		int oldSize = size;
+		root = remove(root, EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+		return size < oldSize;
+	}
+
+	/**
+	 * Returns the number of time slots in this index.
+	 *
+	 * @return the number of time slots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true iff this index contains no time slot.
+	 *
+	 * @return true iff this index is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}. The query visits O(min(n, log n +
+	 * k log n)) nodes for k reported time slots, see above.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the overlapping time slots
+	 */
+	public List<TimeSlot> overlapping(TimeSlot ts) {
+		List<TimeSlot> result = new ArrayList<>();
+		overlapping(ts, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true to the given consumer, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @param consumer
+	 *            receives the overlapping time slots
+	 */
+	public void overlapping(TimeSlot ts, Consumer<? super TimeSlot> consumer) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return;
+		}
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		query(root, EpochNanos.saturatedOf(start), EpochNanos.saturatedOf(finish), consumer);
+		timer.stop(size());
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true, ordered by
+	 * {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the time slots including the date/time
+	 */
+	public List<TimeSlot> containing(LocalDateTime dateTime) {
+		List<TimeSlot> result = new ArrayList<>();
+		containing(dateTime, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true to the given consumer, ordered
+	 * by {@link TimeSlot#compareTo(TimeSlot)}.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @param consumer
+	 *            receives the time slots including the date/time
+	 */
+	public void containing(LocalDateTime dateTime, Consumer<? super TimeSlot> consumer) {
+		if (EpochNanos.isRepresentable(dateTime)) {
+			long t = EpochNanos.of(dateTime);
+			Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+			query(root, t, t, consumer);
+			timer.stop(size());
+		}
+	}
+
+	/**
+	 * Reports all nodes with start &lt;= to and finish &gt;= from, in order.
+	 */
+	private static void query(Node node, long from, long to, Consumer<? super TimeSlot> consumer) {
+		while (node != null && node.maxFinish >= from) {
+			query(node.left, from, to, consumer);
+			if (node.start > to) {
+				// All nodes to the right start even later.
+				return;
+			}
+			if (node.finish >= from) {
+				consumer.accept(node.slot);
+			}
+			node = node.right;
+		}
+	}
+
+	private static int compare(long start1, long finish1, long start2, long finish2) {
+		int rval = Long.compare(start1, start2);
+		return rval != 0 ? rval : Long.compare(finish1, finish2);
+	}
+
+	private static Node insert(Node node, Node newNode) {
+		if (node == null) {
+			return newNode;
+		}
+		if (compare(newNode.start, newNode.finish, node.start, node.finish) < 0) {
+			node.left = insert(node.left, newNode);
+		} else {
+			node.right = insert(node.right, newNode);
+		}
+		return balance(node);
+	}
+
+	private Node remove(Node node, long start, long finish) {
+		if (node == null) {
+			return null;
+		}
+		int c = compare(start, finish, node.start, node.finish);
+		if (c < 0) {
+			node.left = remove(node.left, start, finish);
+		} else if (c > 0) {
+			node.right = remove(node.right, start, finish);
+		} else {
+			size--;
+			if (node.left == null) {
+				return node.right;
+			}
+			if (node.right == null) {
+				return node.left;
+			}
+			Node successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			successor.right = removeMin(node.right);
+			successor.left = node.left;
+			node = successor;
+		}
+		return balance(node);
+	}
+
+	private static Node removeMin(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = removeMin(node.left);
+		return balance(node);
+	}
+
+	private static int height(Node node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static void update(Node node) {
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		long max = node.finish;
+		if (node.left != null && node.left.maxFinish > max) {
+			max = node.left.maxFinish;
+		}
+		if (node.right != null && node.right.maxFinish > max) {
+			max = node.right.maxFinish;
+		}
+		node.maxFinish = max;
+	}
+
+	private static Node balance(Node node) {
+		update(node);
+		int diff = height(node.left) - height(node.right);
+		if (diff > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		}
+		if (diff < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node pivot = node.left;
+		node.left = pivot.right;
+		pivot.right = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node pivot = node.right;
+		node.right = pivot.left;
+		pivot.left = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	/**
+	 * A tree node holding one time slot.
+	 */
+	private static final class Node {
+		private final TimeSlot slot;
+
+		private final long start;
+
+		private final long finish;
+
+		private long maxFinish;
+
+		private int height;
+
+		private Node left;
+
+		private Node right;
+
+		private Node(TimeSlot slot, long start, long finish) {
+			this.slot = slot;
+			this.start = start;
+			this.finish = finish;
+			this.maxFinish = finish;
+			this.height = 1;
+		}
+	}
+}
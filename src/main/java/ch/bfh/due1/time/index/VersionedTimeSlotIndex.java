@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * A thread-safe, mutable view of a sequence of {@link PersistentTimeSlotIndex}
+ * versions.
+ * <p>
+ * Readers take a {@link #snapshot()}, a single volatile read, and query it
+ * as long as they like: it never changes, regardless of later updates.
+ * Writers derive the next version from the current one and install it with
+ * a compare-and-set, retrying if another writer was faster. Neither readers
+ * nor writers lock, and nothing is copied except the O(log n) nodes on the
+ * path of an update.
+ */
+public class VersionedTimeSlotIndex {
+	private final AtomicReference<PersistentTimeSlotIndex> current;
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public VersionedTimeSlotIndex() {
+		this(PersistentTimeSlotIndex.empty());
+	}
+
+	/**
+	 * Constructs an index starting with the given version.
+	 *
+	 * @param initial
+	 *            the initial version
+	 */
+	public VersionedTimeSlotIndex(PersistentTimeSlotIndex initial) {
+		this.current = new AtomicReference<>(initial);
+	}
+
+	/**
+	 * Returns the current version, which stays queryable without locking.
+	 *
+	 * @return the current version
+	 */
+	public PersistentTimeSlotIndex snapshot() {
+		return current.get();
+	}
+
+	/**
+	 * Inserts a time slot.
+	 *
+	 * @param ts
+	 *            the time slot to insert
+	 * @return the version holding the time slot
+	 * @throws IllegalArgumentException
+	 *             if the limits of the time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public PersistentTimeSlotIndex insert(TimeSlot ts) {
+		return update(index -> index.insert(ts));
+	}
+
+	/**
+	 * Removes one time slot equal to the given one.
+	 *
+	 * @param ts
+	 *            the time slot to remove
+	 * @return true iff a time slot has been removed
+	 */
+	public boolean remove(TimeSlot ts) {
+		while (true) {
+			PersistentTimeSlotIndex index = current.get();
+			PersistentTimeSlotIndex next = index.remove(ts);
+			if (next == index) {
+				return false;
+			}
+			if (current.compareAndSet(index, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Applies the given function to the current version and installs its
+	 * result atomically. The function may be applied more than once if other
+	 * updates interfere, so it must not have side effects. Useful to apply
+	 * several changes at once, or only under some condition.
+	 *
+	 * @param function
+	 *            derives the next version
+	 * @return the version installed
+	 */
+	public PersistentTimeSlotIndex update(UnaryOperator<PersistentTimeSlotIndex> function) {
+		while (true) {
+			PersistentTimeSlotIndex index = current.get();
+			PersistentTimeSlotIndex next = function.apply(index);
+			if (next == index || current.compareAndSet(index, next)) {
+				return next;
+			}
+		}
+	}
+}
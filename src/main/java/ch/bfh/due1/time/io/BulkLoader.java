@@ -0,0 +1,619 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * Sorts more time slots than fit into the heap into
+ * {@link TimeSlot#compareTo(TimeSlot)} order, using temporary files.
+ * <p>
+ * The input is read into runs of a fixed number of time slots. Every full
+ * run is sorted by a task of a fork/join pool and spilled to a temporary
+ * file of a compact varint encoding, while the next run is read. The run
+ * files are then merged through a heap, at most <code>fanIn</code> at a
+ * time: if there are more, groups of them are merged into longer runs
+ * first. The final merge is streamed to the caller or written into a
+ * {@link TimeSlotFileWriter time slot file}.
+ * <p>
+ * Memory use is bounded by the runs being read or sorted, at most
+ * <code>(parallelism + 1) * runSize * 16</code> bytes, plus a buffer of
+ * 64 KB per run file being merged.
+ * <p>
+ * Limits are stored as epoch nanoseconds, see {@link EpochNanos}; time slots
+ * outside of that range cannot be sorted.
+ */
+public class BulkLoader {
+	/**
+	 * Selects the time slots of the output.
+	 */
+	public enum Mode {
+		/**
+		 * All time slots, including duplicates.
+		 */
+		ALL,
+
+		/**
+		 * One time slot of each group of equal time slots.
+		 */
+		DISTINCT,
+
+		/**
+		 * The runs of overlapping or touching time slots, each coalesced into
+		 * one time slot covering it, as in a TimeSlotSet.
+		 */
+		COALESCE
+	}
+
+	/**
+	 * The default number of time slots per run, taking 16 MB.
+	 */
+	public static final int DEFAULT_RUN_SIZE = 1 << 20;
+
+	/**
+	 * The default number of runs merged at a time.
+	 */
+	public static final int DEFAULT_FAN_IN = 64;
+
+	/**
+	 * Runs of at most this many time slots are sorted by insertion sort.
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private final Path directory;
+
+	private final int runSize;
+
+	private final int fanIn;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a loader with the default run size and fan-in, sorting runs in
+	 * the common fork/join pool.
+	 *
+	 * @param directory
+	 *            the directory of the temporary files
+	 */
+	public BulkLoader(Path directory) {
+		this(directory, DEFAULT_RUN_SIZE, DEFAULT_FAN_IN, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a loader.
+	 *
+	 * @param directory
+	 *            the directory of the temporary files
+	 * @param runSize
+	 *            the number of time slots per run, positive
+	 * @param fanIn
+	 *            the number of runs merged at a time, at least 2
+	 * @param pool
+	 *            the pool sorting the runs; at most as many runs as its
+	 *            parallelism are sorted at a time
+	 */
+	public BulkLoader(Path directory, int runSize, int fanIn, ForkJoinPool pool) {
+		if (runSize <= 0 || runSize > Integer.MAX_VALUE / 2) {
+			throw new IllegalArgumentException("Run size out of range: " + runSize);
+		}
+		if (fanIn < 2) {
+			throw new IllegalArgumentException("Fan-in must be at least 2: " + fanIn);
+		}
+		this.directory = directory;
+		this.runSize = runSize;
+		this.fanIn = fanIn;
+		this.pool = pool;
+	}
+
+	/**
+	 * Sorts the given time slots. The input is consumed before this method
+	 * returns; the temporary files are deleted when the returned stream is
+	 * closed.
+	 *
+	 * @param slots
+	 *            the time slots, in any order
+	 * @param mode
+	 *            selects the time slots of the output
+	 * @return the sorted time slots, to be closed after use; I/O errors
+	 *         while reading it are thrown as UncheckedIOException
+	 * @throws IOException
+	 *             if the temporary files cannot be written
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public Stream<TimeSlot> sort(Iterator<? extends TimeSlot> slots, Mode mode) throws IOException {
+		MergeSource merge = merge(slots, mode);
+		Source source = new ModeSource(merge, mode);
+		Spliterator<TimeSlot> spliterator = new Spliterators.AbstractSpliterator<TimeSlot>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super TimeSlot> action) {
+				try {
+					if (!source.next()) {
+						return false;
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				action.accept(new EpochTimeSlot(source.start(), source.finish()));
+				return true;
+			}
+
+			@Override
+			public Comparator<? super TimeSlot> getComparator() {
+				// Natural order of time slots.
+				return null;
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(() -> {
+			try {
+				merge.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Sorts the time slots of the given stream, see
+	 * {@link #sort(Iterator, Mode)}. The input stream is not closed.
+	 *
+	 * @param slots
+	 *            the time slots, in any order
+	 * @param mode
+	 *            selects the time slots of the output
+	 * @return the sorted time slots, to be closed after use
+	 * @throws IOException
+	 *             if the temporary files cannot be written
+	 */
+	public Stream<TimeSlot> sort(Stream<? extends TimeSlot> slots, Mode mode) throws IOException {
+		return sort(slots.iterator(), mode);
+	}
+
+	/**
+	 * Sorts the given time slots into a time slot file, which can then be
+	 * opened with {@link MappedTimeSlotFile#open(Path)}.
+	 *
+	 * @param slots
+	 *            the time slots, in any order
+	 * @param mode
+	 *            selects the time slots of the output
+	 * @param target
+	 *            the file to write; an existing file is overwritten
+	 * @return the number of time slots written
+	 * @throws IOException
+	 *             if a file cannot be written
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public long load(Iterator<? extends TimeSlot> slots, Mode mode, Path target) throws IOException {
+		try (MergeSource merge = merge(slots, mode); TimeSlotFileWriter writer = new TimeSlotFileWriter(target)) {
+			Source source = new ModeSource(merge, mode);
+			while (source.next()) {
+				writer.append(source.start(), source.finish());
+			}
+			return writer.count();
+		}
+	}
+
+	/**
+	 * Spills the input into runs and merges them down to at most fanIn runs.
+	 */
+	private MergeSource merge(Iterator<? extends TimeSlot> slots, Mode mode) throws IOException {
+		List<Path> runs = new ArrayList<>();
+		try {
+			spill(slots, mode, runs);
+			while (runs.size() > fanIn) {
+				List<Path> group = new ArrayList<>(runs.subList(0, fanIn));
+				runs.subList(0, fanIn).clear();
+				Path run = Files.createTempFile(directory, "slots", ".run");
+				runs.add(run);
+				try (MergeSource merge = new MergeSource(group)) {
+					write(new ModeSource(merge, mode), run);
+				}
+			}
+			return new MergeSource(runs);
+		} catch (IOException | RuntimeException e) {
+			delete(runs, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the input into runs, sorts them in the pool and adds the files
+	 * written to the given list.
+	 */
+	private void spill(Iterator<? extends TimeSlot> slots, Mode mode, List<Path> runs) throws IOException {
+		Deque<ForkJoinTask<Path>> pending = new ArrayDeque<>();
+		try {
+			long[] run = new long[2 * runSize];
+			int n = 0;
+			while (slots.hasNext()) {
+				TimeSlot ts = slots.next();
+				run[n++] = EpochNanos.startOf(ts);
+				run[n++] = EpochNanos.finishOf(ts);
+				if (n == run.length) {
+					submit(run, n, mode, pending, runs);
+					run = new long[2 * runSize];
+					n = 0;
+				}
+			}
+			if (n > 0 || (runs.isEmpty() && pending.isEmpty())) {
+				submit(run, n, mode, pending, runs);
+			}
+			while (!pending.isEmpty()) {
+				runs.add(join(pending.poll()));
+			}
+		} catch (IOException | RuntimeException e) {
+			// Wait for the runs being written, to delete them as well.
+			while (!pending.isEmpty()) {
+				try {
+					runs.add(join(pending.poll()));
+				} catch (IOException | RuntimeException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw e;
+		}
+	}
+
+	private void submit(long[] run, int n, Mode mode, Deque<ForkJoinTask<Path>> pending, List<Path> runs)
+			throws IOException {
+		while (pending.size() >= pool.getParallelism()) {
+			runs.add(join(pending.poll()));
+		}
+		pending.add(pool.submit(() -> {
+			sort(run, 0, n / 2);
+			Path path = Files.createTempFile(directory, "slots", ".run");
+			write(new ModeSource(new ArraySource(run, n), mode), path);
+			return path;
+		}));
+	}
+
+	private static Path join(ForkJoinTask<Path> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while sorting runs");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static void write(Source source, Path path) throws IOException {
+		try (RunFile.Writer writer = new RunFile.Writer(path)) {
+			while (source.next()) {
+				writer.write(source.start(), source.finish());
+			}
+		}
+	}
+
+	private static void delete(List<Path> paths, Exception e) {
+		for (Path path : paths) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+		}
+	}
+
+	/**
+	 * Sorts the time slots [from, to) of the given run, stored as pairs of
+	 * start and finish, by quicksort.
+	 */
+	static void sort(long[] run, int from, int to) {
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			int mid = (from + to) >>> 1;
+			// Move the median of three to the middle.
+			if (compare(run, mid, from) < 0) {
+				swap(run, mid, from);
+			}
+			if (compare(run, to - 1, mid) < 0) {
+				swap(run, to - 1, mid);
+				if (compare(run, mid, from) < 0) {
+					swap(run, mid, from);
+				}
+			}
+			long pivotStart = run[2 * mid];
+			long pivotFinish = run[2 * mid + 1];
+			int i = from - 1;
+			int j = to;
+			while (true) {
+				do {
+					i++;
+				} while (compare(run, i, pivotStart, pivotFinish) < 0);
+				do {
+					j--;
+				} while (compare(run, j, pivotStart, pivotFinish) > 0);
+				if (i >= j) {
+					break;
+				}
+				swap(run, i, j);
+			}
+			// Recurse into the smaller part, loop over the larger one.
+			if (j + 1 - from < to - j - 1) {
+				sort(run, from, j + 1);
+				from = j + 1;
+			} else {
+				sort(run, j + 1, to);
+				to = j + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++) {
+			long start = run[2 * i];
+			long finish = run[2 * i + 1];
+			int j = i - 1;
+			while (j >= from && compare(run, j, start, finish) > 0) {
+				run[2 * j + 2] = run[2 * j];
+				run[2 * j + 3] = run[2 * j + 1];
+				j--;
+			}
+			run[2 * j + 2] = start;
+			run[2 * j + 3] = finish;
+		}
+	}
+
+	private static int compare(long[] run, int i, int j) {
+		return compare(run, i, run[2 * j], run[2 * j + 1]);
+	}
+
+	private static int compare(long[] run, int i, long start, long finish) {
+		int c = Long.compare(run[2 * i], start);
+		return c != 0 ? c : Long.compare(run[2 * i + 1], finish);
+	}
+
+	private static void swap(long[] run, int i, int j) {
+		long start = run[2 * i];
+		long finish = run[2 * i + 1];
+		run[2 * i] = run[2 * j];
+		run[2 * i + 1] = run[2 * j + 1];
+		run[2 * j] = start;
+		run[2 * j + 1] = finish;
+	}
+
+	/**
+	 * A sorted sequence of time slots, read one after the other.
+	 */
+	private interface Source {
+		/**
+		 * Moves to the next time slot.
+		 *
+		 * @return false at the end
+		 */
+		boolean next() throws IOException;
+
+		long start();
+
+		long finish();
+	}
+
+	/**
+	 * The time slots of a sorted run in memory.
+	 */
+	private static final class ArraySource implements Source {
+		private final long[] run;
+
+		private final int length;
+
+		private int position = -2;
+
+		private ArraySource(long[] run, int length) {
+			this.run = run;
+			this.length = length;
+		}
+
+		@Override
+		public boolean next() {
+			position += 2;
+			return position < length;
+		}
+
+		@Override
+		public long start() {
+			return run[position];
+		}
+
+		@Override
+		public long finish() {
+			return run[position + 1];
+		}
+	}
+
+	/**
+	 * Merges run files through a heap; closing it deletes the files.
+	 */
+	private static final class MergeSource implements Source, Closeable {
+		private final List<Path> paths;
+
+		private final List<RunFile.Reader> readers = new ArrayList<>();
+
+		private final PriorityQueue<RunFile.Reader> heap;
+
+		/**
+		 * The reader holding the current time slot.
+		 */
+		private RunFile.Reader top;
+
+		private MergeSource(List<Path> paths) throws IOException {
+			this.paths = paths;
+			this.heap = new PriorityQueue<>(Math.max(1, paths.size()), (a, b) -> {
+				int c = Long.compare(a.start(), b.start());
+				return c != 0 ? c : Long.compare(a.finish(), b.finish());
+			});
+			try {
+				for (Path path : paths) {
+					RunFile.Reader reader = new RunFile.Reader(path);
+					readers.add(reader);
+					if (reader.next()) {
+						heap.add(reader);
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				try {
+					close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			if (top != null && top.next()) {
+				heap.add(top);
+			}
+			top = heap.poll();
+			return top != null;
+		}
+
+		@Override
+		public long start() {
+			return top.start();
+		}
+
+		@Override
+		public long finish() {
+			return top.finish();
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOException failure = null;
+			for (RunFile.Reader reader : readers) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			for (Path path : paths) {
+				try {
+					Files.deleteIfExists(path);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * Applies a mode to a sorted source.
+	 */
+	private static final class ModeSource implements Source {
+		private final Source source;
+
+		private final Mode mode;
+
+		private long start;
+
+		private long finish;
+
+		private boolean started;
+
+		/**
+		 * True iff the source holds a time slot not reported yet.
+		 */
+		private boolean peeked;
+
+		private ModeSource(Source source, Mode mode) {
+			this.source = source;
+			this.mode = mode;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			if (!peeked && !source.next()) {
+				return false;
+			}
+			peeked = false;
+			switch (mode) {
+			case DISTINCT:
+				while (started && source.start() == start && source.finish() == finish) {
+					if (!source.next()) {
+						return false;
+					}
+				}
+				start = source.start();
+				finish = source.finish();
+				break;
+			case COALESCE:
+				start = source.start();
+				finish = source.finish();
+				while (source.next()) {
+					if (source.start() > finish) {
+						peeked = true;
+						break;
+					}
+					finish = Math.max(finish, source.finish());
+				}
+				break;
+			default:
+				start = source.start();
+				finish = source.finish();
+				break;
+			}
+			started = true;
+			return true;
+		}
+
+		@Override
+		public long start() {
+			return start;
+		}
+
+		@Override
+		public long finish() {
+			return finish;
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * Decodes time slots encoded by {@link CompressedBlockEncoder}.
+ * <p>
+ * The decoder is a cursor: {@link #next()} moves to the next time slot, whose
+ * limits are then returned by {@link #start()} and {@link #finish()}. A whole
+ * block is decoded at once into arrays which are reused for the following
+ * blocks, so iterating allocates nothing. The block index allows to start at
+ * any block, or at the first time slot starting at or after a given
+ * date/time, without decoding the blocks before.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class CompressedBlockDecoder {
+	private final ByteBuffer in;
+
+	/**
+	 * The blocks, read with relative operations.
+	 */
+	private final ByteBuffer blocks;
+
+	private final int base;
+
+	private final int indexOffset;
+
+	private final int blockCount;
+
+	private final long count;
+
+	private long[] starts = new long[CompressedBlockFormat.DEFAULT_BLOCK_SIZE];
+
+	private long[] finishes = new long[CompressedBlockFormat.DEFAULT_BLOCK_SIZE];
+
+	/**
+	 * The number of time slots of the current block.
+	 */
+	private int size;
+
+	/**
+	 * The current block, or -1 before the first one.
+	 */
+	private int block = -1;
+
+	/**
+	 * The position of the current time slot within the current block.
+	 */
+	private int cursor;
+
+	/**
+	 * The bits of the packed block not read yet, and their number.
+	 */
+	private int bits;
+
+	private int bitCount;
+
+	/**
+	 * Creates a decoder positioned before the first time slot.
+	 *
+	 * @param in
+	 *            the buffer, whose remaining bytes hold the encoded time
+	 *            slots; it is not modified
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not hold encoded time slots
+	 */
+	public CompressedBlockDecoder(ByteBuffer in) {
+		this.in = in.duplicate();
+		this.base = in.position();
+		int end = in.limit();
+		if (end - base < CompressedBlockFormat.FOOTER_SIZE
+				|| this.in.getInt(end - 4) != CompressedBlockFormat.MAGIC) {
+			throw new IllegalArgumentException("Not a compressed time slot stream");
+		}
+		this.count = this.in.getLong(end - CompressedBlockFormat.FOOTER_SIZE);
+		this.blockCount = this.in.getInt(end - 8);
+		this.indexOffset = end - CompressedBlockFormat.FOOTER_SIZE
+				- blockCount * CompressedBlockFormat.INDEX_ENTRY_SIZE;
+		if (blockCount < 0 || count < blockCount || indexOffset < base) {
+			throw new IllegalArgumentException("Corrupt compressed time slot stream");
+		}
+		for (int i = 0; i < blockCount; i++) {
+			int offset = offset(i);
+			if (offset < 0 || offset > indexOffset - base - 8) {
+				throw new IllegalArgumentException("Corrupt block index");
+			}
+		}
+		this.blocks = this.in.duplicate();
+		this.blocks.limit(indexOffset);
+	}
+
+	/**
+	 * @return the number of time slots
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of blocks
+	 */
+	public int blockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Positions this decoder before the first time slot of the given block.
+	 *
+	 * @param block
+	 *            the block, 0 &lt;= block &lt;= blockCount(); blockCount()
+	 *            positions this decoder at the end
+	 */
+	public void seekBlock(int block) {
+		if (block < 0 || block > blockCount) {
+			throw new IndexOutOfBoundsException("Block: " + block);
+		}
+		if (block == blockCount) {
+			this.block = blockCount;
+			this.size = 0;
+			this.cursor = 0;
+			return;
+		}
+		decode(block);
+		this.cursor = -1;
+	}
+
+	/**
+	 * Positions this decoder before the first time slot starting at or after
+	 * the given date/time.
+	 *
+	 * @param dateTime
+	 *            the date/time
+	 */
+	public void seek(LocalDateTime dateTime) {
+		if (EpochNanos.compare(Long.MIN_VALUE, dateTime) >= 0) {
+			seekBlock(0);
+		} else if (EpochNanos.compare(Long.MAX_VALUE, dateTime) < 0) {
+			seekBlock(blockCount);
+		} else {
+			seek(EpochNanos.saturatedOf(dateTime));
+		}
+	}
+
+	/**
+	 * Positions this decoder before the first time slot starting at or after
+	 * the given epoch nanoseconds.
+	 *
+	 * @param start
+	 *            the start in epoch nanoseconds
+	 */
+	public void seek(long start) {
+		// The last block whose first time slot starts before the given start.
+		int lo = 0;
+		int hi = blockCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (in.getLong(base + offset(mid)) < start) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		if (lo == 0) {
+			seekBlock(0);
+			return;
+		}
+		decode(lo - 1);
+		int i = 0;
+		while (i < size && starts[i] < start) {
+			i++;
+		}
+		cursor = i - 1;
+	}
+
+	/**
+	 * Moves to the next time slot.
+	 *
+	 * @return false at the end
+	 * @throws IllegalArgumentException
+	 *             if a block is corrupt
+	 */
+	public boolean next() {
+		if (cursor + 1 < size) {
+			cursor++;
+			return true;
+		}
+		if (block + 1 >= blockCount) {
+			block = blockCount;
+			size = 0;
+			cursor = 0;
+			return false;
+		}
+		decode(block + 1);
+		cursor = 0;
+		return true;
+	}
+
+	/**
+	 * @return the start of the current time slot in epoch nanoseconds
+	 */
+	public long start() {
+		return starts[cursor];
+	}
+
+	/**
+	 * @return the finish of the current time slot in epoch nanoseconds
+	 */
+	public long finish() {
+		return finishes[cursor];
+	}
+
+	/**
+	 * @return the current time slot
+	 */
+	public EpochTimeSlot slot() {
+		return new EpochTimeSlot(starts[cursor], finishes[cursor]);
+	}
+
+	/**
+	 * Returns the remaining time slots.
+	 *
+	 * @return the time slots following the current one
+	 */
+	public List<TimeSlot> toList() {
+		List<TimeSlot> result = new ArrayList<>();
+		while (next()) {
+			result.add(slot());
+		}
+		return result;
+	}
+
+	private int offset(int block) {
+		return in.getInt(indexOffset + block * CompressedBlockFormat.INDEX_ENTRY_SIZE);
+	}
+
+	/**
+	 * Decodes the given block into the arrays.
+	 */
+	private void decode(int block) {
+		blocks.position(base + offset(block));
+		try {
+			long first = blocks.getLong();
+			byte encoding = blocks.get();
+			long n = CompressedBlockFormat.getVarint(blocks);
+			long unit = CompressedBlockFormat.getVarint(blocks);
+			if (n <= 0 || n > Integer.MAX_VALUE - 8 || unit == 0) {
+				throw new IllegalArgumentException("Corrupt block header");
+			}
+			if (n > starts.length) {
+				starts = new long[(int) n];
+				finishes = new long[(int) n];
+			}
+			size = (int) n;
+			this.block = block;
+			switch (encoding) {
+			case CompressedBlockFormat.VARINT:
+				decodeVarints(first, unit);
+				break;
+			case CompressedBlockFormat.PACKED:
+				decodePacked(first, unit);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown block encoding: " + encoding);
+			}
+		} catch (BufferUnderflowException e) {
+			size = 0;
+			throw new IllegalArgumentException("Truncated block: " + block, e);
+		} catch (IllegalArgumentException e) {
+			size = 0;
+			throw e;
+		}
+	}
+
+	private void decodeVarints(long first, long unit) {
+		long start = first;
+		long length = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				start += CompressedBlockFormat.getVarint(blocks) * unit;
+			}
+			length += CompressedBlockFormat.unZigZag(CompressedBlockFormat.getVarint(blocks));
+			starts[i] = start;
+			finishes[i] = start + length * unit;
+		}
+	}
+
+	private void decodePacked(long first, long unit) {
+		long minDistance = CompressedBlockFormat.getVarint(blocks);
+		int distanceBits = blocks.get();
+		long minLength = CompressedBlockFormat.getVarint(blocks);
+		int lengthBits = blocks.get();
+		if (distanceBits < 0 || distanceBits > 64 || lengthBits < 0 || lengthBits > 64) {
+			throw new IllegalArgumentException("Corrupt bit width");
+		}
+		bitCount = 0;
+		long start = first;
+		starts[0] = first;
+		for (int i = 1; i < size; i++) {
+			start += (minDistance + getBits(distanceBits)) * unit;
+			starts[i] = start;
+		}
+		for (int i = 0; i < size; i++) {
+			finishes[i] = starts[i] + (minLength + getBits(lengthBits)) * unit;
+		}
+	}
+
+	/**
+	 * Reads a bit field of a packed block, least significant bit first.
+	 */
+	private long getBits(int width) {
+		long value = 0;
+		int shift = 0;
+		while (shift < width) {
+			if (bitCount == 0) {
+				bits = blocks.get() & 0xFF;
+				bitCount = 8;
+			}
+			int n = Math.min(bitCount, width - shift);
+			value |= (long) (bits & ((1 << n) - 1)) << shift;
+			bits >>>= n;
+			bitCount -= n;
+			shift += n;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+
+/**
+ * Encodes a sorted sequence of time slots into the compressed block format
+ * described in {@link CompressedBlockFormat}.
+ * <p>
+ * Consecutive starts of a sorted sequence are close together, and most
+ * lengths repeat. Every block therefore stores its first start and then
+ * the distances between starts and the changes of the lengths as varints,
+ * or, if smaller, as fixed-width bit fields relative to the smallest
+ * distance and length of the block (frame of reference). All of them are
+ * counted in the largest unit dividing them, such as a minute for limits
+ * rounded to minutes. Time slots of such a granularity take two bytes or
+ * less instead of sixteen; regularly spaced time slots of equal length
+ * pack into no bits at all.
+ * <p>
+ * Time slots are written to the buffer one block at a time; only the
+ * current block and the block offsets are kept in memory. {@link #finish()}
+ * writes the last block and the block index. This class is not thread-safe.
+ */
+public class CompressedBlockEncoder {
+	private final ByteBuffer out;
+
+	private final int base;
+
+	private final boolean packing;
+
+	private final long[] starts;
+
+	private final long[] finishes;
+
+	private int size;
+
+	private int[] offsets = new int[16];
+
+	private int blockCount;
+
+	private long count;
+
+	private long lastStart = Long.MIN_VALUE;
+
+	private long lastFinish = Long.MIN_VALUE;
+
+	/**
+	 * The unit of the current block.
+	 */
+	private long unit;
+
+	private boolean finished;
+
+	/**
+	 * Creates an encoder with blocks of 128 time slots, choosing the smaller
+	 * encoding for every block.
+	 *
+	 * @param out
+	 *            the buffer, written from its position
+	 */
+	public CompressedBlockEncoder(ByteBuffer out) {
+		this(out, CompressedBlockFormat.DEFAULT_BLOCK_SIZE, true);
+	}
+
+	/**
+	 * Creates an encoder.
+	 *
+	 * @param out
+	 *            the buffer, written from its position
+	 * @param blockSize
+	 *            the maximum number of time slots per block
+	 * @param packing
+	 *            true iff a block may be bit-packed if this is smaller, false
+	 *            for varints only
+	 */
+	public CompressedBlockEncoder(ByteBuffer out, int blockSize, boolean packing) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.out = out;
+		this.base = out.position();
+		this.packing = packing;
+		this.starts = new long[blockSize];
+		this.finishes = new long[blockSize];
+	}
+
+	/**
+	 * Returns an upper bound of the encoded size of the given number of time
+	 * slots.
+	 *
+	 * @param count
+	 *            the number of time slots
+	 * @param blockSize
+	 *            the maximum number of time slots per block
+	 * @return the maximum number of bytes written
+	 */
+	public static long maxEncodedSize(long count, int blockSize) {
+		if (count < 0 || blockSize <= 0) {
+			throw new IllegalArgumentException("Count must not be negative and block size must be positive");
+		}
+		long blocks = (count + blockSize - 1) / blockSize;
+		// A packed block is only written if it is smaller than its varints.
+		return blocks * (CompressedBlockFormat.MAX_BLOCK_HEADER_SIZE + CompressedBlockFormat.INDEX_ENTRY_SIZE)
+				+ count * 2 * CompressedBlockFormat.MAX_VARINT_SIZE + CompressedBlockFormat.FOOTER_SIZE;
+	}
+
+	/**
+	 * Encodes the given time slots into a new buffer, sorting them first.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @return the encoded time slots, flipped for reading
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static ByteBuffer encode(Collection<? extends TimeSlot> slots) {
+		List<TimeSlot> sorted = new ArrayList<>(slots);
+		Collections.sort(sorted);
+		ByteBuffer out = ByteBuffer.allocate(
+				Math.toIntExact(maxEncodedSize(sorted.size(), CompressedBlockFormat.DEFAULT_BLOCK_SIZE)));
+		CompressedBlockEncoder encoder = new CompressedBlockEncoder(out);
+		for (TimeSlot ts : sorted) {
+			encoder.append(ts);
+		}
+		encoder.finish();
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Appends a time slot.
+	 *
+	 * @param ts
+	 *            the time slot, not smaller than the previous one
+	 * @throws BufferOverflowException
+	 *             if the buffer is full
+	 * @throws IllegalArgumentException
+	 *             if the time slot is out of order or cannot be encoded as
+	 *             epoch nanoseconds
+	 */
+	public void append(TimeSlot ts) {
+		append(EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+	}
+
+	/**
+	 * Appends a time slot given by its limits.
+	 *
+	 * @param start
+	 *            the start in epoch nanoseconds
+	 * @param finish
+	 *            the finish in epoch nanoseconds, not before the start
+	 * @throws BufferOverflowException
+	 *             if the buffer is full
+	 * @throws IllegalArgumentException
+	 *             if the time slot is out of order
+	 */
+	public void append(long start, long finish) {
+		if (finished) {
+			throw new IllegalStateException("Encoder is finished");
+		}
+		if (finish < start) {
+			throw new IllegalArgumentException("Finish before start");
+		}
+		if (count > 0 && (start < lastStart || (start == lastStart && finish < lastFinish))) {
+			throw new IllegalArgumentException("Time slots must be appended in ascending order");
+		}
+		starts[size] = start;
+		finishes[size] = finish;
+		lastStart = start;
+		lastFinish = finish;
+		count++;
+		if (++size == starts.length) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the last block and the block index. No time slots can be
+	 * appended afterwards.
+	 *
+	 * @throws BufferOverflowException
+	 *             if the buffer is full
+	 */
+	public void finish() {
+		if (finished) {
+			return;
+		}
+		flush();
+		for (int i = 0; i < blockCount; i++) {
+			out.putInt(offsets[i]);
+		}
+		out.putLong(count);
+		out.putInt(blockCount);
+		out.putInt(CompressedBlockFormat.MAGIC);
+		finished = true;
+	}
+
+	/**
+	 * @return the number of time slots appended so far
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return the number of blocks written so far
+	 */
+	public int blockCount() {
+		return blockCount;
+	}
+
+	private void flush() {
+		if (size == 0) {
+			return;
+		}
+		if (blockCount == offsets.length) {
+			offsets = Arrays.copyOf(offsets, 2 * blockCount);
+		}
+		offsets[blockCount++] = out.position() - base;
+		out.putLong(starts[0]);
+		unit = unit();
+		long[] frame = packing ? frame() : null;
+		if (packing && packedSize(frame) < varintSize()) {
+			out.put(CompressedBlockFormat.PACKED);
+			CompressedBlockFormat.putVarint(out, size);
+			CompressedBlockFormat.putVarint(out, unit);
+			writePacked(frame);
+		} else {
+			out.put(CompressedBlockFormat.VARINT);
+			CompressedBlockFormat.putVarint(out, size);
+			CompressedBlockFormat.putVarint(out, unit);
+			writeVarints();
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the greatest common divisor of all distances and lengths of
+	 * the block, or 1 if they are all 0. They are unsigned.
+	 */
+	private long unit() {
+		long gcd = 0;
+		for (int i = 0; i < size && gcd != 1; i++) {
+			if (i > 0) {
+				gcd = gcd(gcd, starts[i] - starts[i - 1]);
+			}
+			gcd = gcd(gcd, finishes[i] - starts[i]);
+		}
+		return gcd == 0 ? 1 : gcd;
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long r = Long.remainderUnsigned(a, b);
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	/**
+	 * Returns the given distance or length in units of the block.
+	 */
+	private long scaled(long value) {
+		return unit == 1 ? value : Long.divideUnsigned(value, unit);
+	}
+
+	private int varintSize() {
+		int bytes = 0;
+		long previousLength = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				bytes += CompressedBlockFormat.varintSize(scaled(starts[i] - starts[i - 1]));
+			}
+			long l = scaled(finishes[i] - starts[i]);
+			bytes += CompressedBlockFormat.varintSize(CompressedBlockFormat.zigZag(l - previousLength));
+			previousLength = l;
+		}
+		return bytes;
+	}
+
+	private void writeVarints() {
+		long previousLength = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				CompressedBlockFormat.putVarint(out, scaled(starts[i] - starts[i - 1]));
+			}
+			long l = scaled(finishes[i] - starts[i]);
+			CompressedBlockFormat.putVarint(out, CompressedBlockFormat.zigZag(l - previousLength));
+			previousLength = l;
+		}
+	}
+
+	/**
+	 * Returns the smallest distance of two starts and the smallest length,
+	 * with the largest ones relative to these, in units of the block.
+	 * Distances and lengths are unsigned.
+	 */
+	private long[] frame() {
+		long minDistance = -1L;
+		long maxDistance = 0;
+		for (int i = 1; i < size; i++) {
+			long d = scaled(starts[i] - starts[i - 1]);
+			minDistance = Long.compareUnsigned(d, minDistance) < 0 ? d : minDistance;
+			maxDistance = Long.compareUnsigned(d, maxDistance) > 0 ? d : maxDistance;
+		}
+		if (size == 1) {
+			minDistance = 0;
+		}
+		long minLength = -1L;
+		long maxLength = 0;
+		for (int i = 0; i < size; i++) {
+			long l = scaled(finishes[i] - starts[i]);
+			minLength = Long.compareUnsigned(l, minLength) < 0 ? l : minLength;
+			maxLength = Long.compareUnsigned(l, maxLength) > 0 ? l : maxLength;
+		}
+		return new long[] { minDistance, maxDistance - minDistance, minLength, maxLength - minLength };
+	}
+
+	private int packedSize(long[] frame) {
+		long bits = (long) (size - 1) * CompressedBlockFormat.bits(frame[1])
+				+ (long) size * CompressedBlockFormat.bits(frame[3]);
+		return CompressedBlockFormat.varintSize(frame[0]) + 1 + CompressedBlockFormat.varintSize(frame[2]) + 1
+				+ (int) ((bits + 7) / 8);
+	}
+
+	private void writePacked(long[] frame) {
+		int distanceBits = CompressedBlockFormat.bits(frame[1]);
+		int lengthBits = CompressedBlockFormat.bits(frame[3]);
+		CompressedBlockFormat.putVarint(out, frame[0]);
+		out.put((byte) distanceBits);
+		CompressedBlockFormat.putVarint(out, frame[2]);
+		out.put((byte) lengthBits);
+		BitWriter writer = new BitWriter(out);
+		for (int i = 1; i < size; i++) {
+			writer.put(scaled(starts[i] - starts[i - 1]) - frame[0], distanceBits);
+		}
+		for (int i = 0; i < size; i++) {
+			writer.put(scaled(finishes[i] - starts[i]) - frame[2], lengthBits);
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Writes bit fields, least significant bit first.
+	 */
+	private static final class BitWriter {
+		private final ByteBuffer out;
+
+		private int current;
+
+		private int used;
+
+		private BitWriter(ByteBuffer out) {
+			this.out = out;
+		}
+
+		private void put(long value, int bits) {
+			while (bits > 0) {
+				int n = Math.min(8 - used, bits);
+				current |= (int) (value & ((1 << n) - 1)) << used;
+				value >>>= n;
+				bits -= n;
+				used += n;
+				if (used == 8) {
+					out.put((byte) current);
+					current = 0;
+					used = 0;
+				}
+			}
+		}
+
+		private void flush() {
+			if (used > 0) {
+				out.put((byte) current);
+				current = 0;
+				used = 0;
+			}
+		}
+	}
+}
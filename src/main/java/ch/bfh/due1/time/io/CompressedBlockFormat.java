@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and primitives of the compressed block format written by
+ * {@link CompressedBlockEncoder} and read by {@link CompressedBlockDecoder}.
+ * Fixed-width values are stored in big-endian byte order, varints as
+ * unsigned LEB128, and signed varints zig-zag encoded first.
+ *
+ * <pre>
+ * stream
+ *   blocks
+ *   index    (4 bytes per block)
+ *     int    offset of the block from the start of the stream
+ *   footer   (16 bytes)
+ *     long   time slot count
+ *     int    block count
+ *     int    magic            0x54534C43 ("TSLC")
+ * block      (time slots sorted by TimeSlot.compareTo order)
+ *   long     start of the first time slot, epoch nanoseconds
+ *   byte     encoding         0 VARINT, 1 PACKED
+ *   varint   time slot count n, 1 &lt;= n &lt;= block size
+ *   varint   unit u dividing all distances and lengths below
+ *   VARINT body, for every time slot, in units u
+ *     varint        distance of the start from the previous start
+ *                   (omitted for the first time slot)
+ *     signed varint length minus the length of the previous time slot
+ *                   (minus 0 for the first time slot)
+ *   PACKED body, in units u
+ *     varint   smallest distance d of a start from the previous start
+ *     byte     bits per distance
+ *     varint   smallest length l
+ *     byte     bits per length
+ *     bits     n - 1 distances minus d, least significant bit first
+ *     bits     n lengths minus l, least significant bit first
+ *              (padded to a whole byte)
+ * </pre>
+ *
+ * Distances and lengths are nanoseconds computed modulo 2^64, so every
+ * start and finish encodable as <code>long</code> round-trips.
+ */
+final class CompressedBlockFormat {
+	static final int MAGIC = 0x54534C43;
+
+	static final int FOOTER_SIZE = 16;
+
+	static final int INDEX_ENTRY_SIZE = 4;
+
+	static final int DEFAULT_BLOCK_SIZE = 128;
+
+	static final byte VARINT = 0;
+
+	static final byte PACKED = 1;
+
+	/**
+	 * The largest size of a block header: start, encoding, count, and unit.
+	 */
+	static final int MAX_BLOCK_HEADER_SIZE = 8 + 1 + 5 + 10;
+
+	/**
+	 * The largest size of a varint.
+	 */
+	static final int MAX_VARINT_SIZE = 10;
+
+	/**
+	 * Not used.
+	 */
+	private CompressedBlockFormat() {
+	}
+
+	static void putVarint(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static long getVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			if (shift > 63) {
+				throw new IllegalArgumentException("Corrupt varint");
+			}
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	static int varintSize(long value) {
+		// One byte per started group of 7 bits, at least one.
+		return value == 0 ? 1 : (64 - Long.numberOfLeadingZeros(value) + 6) / 7;
+	}
+
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Returns the number of bits of the given unsigned value.
+	 */
+	static int bits(long value) {
+		return 64 - Long.numberOfLeadingZeros(value);
+	}
+}
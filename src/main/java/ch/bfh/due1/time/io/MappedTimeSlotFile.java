@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * Read-only access to a time slot file written by {@link TimeSlotFileWriter}.
+ * The records are mapped into memory with {@link FileChannel#map} and are
+ * only read when a query touches them; opening a file reads the header and
+ * the sparse block index only.
+ * <p>
+ * Range lookups binary search the block index and then the records of one
+ * block. Overlap lookups use the running maximum of the finish times kept in
+ * the block index to skip all blocks whose time slots end before the query,
+ * and stop at the first record starting after the query.
+ * <p>
+ * Instances may be shared by several threads.
+ */
+public class MappedTimeSlotFile implements Closeable {
+	/**
+	 * Records per mapped segment: 2^26 records of 16 bytes make 1 GB.
+	 */
+	private static final int SEGMENT_SHIFT = 26;
+
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private final FileChannel channel;
+
+	private final long count;
+
+	private final int blockSize;
+
+	private final long[] blockFirstStarts;
+
+	private final long[] blockMaxFinishes;
+
+	private final MappedByteBuffer[] segments;
+
+	private MappedTimeSlotFile(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(TimeSlotFileFormat.HEADER_SIZE);
+		readFully(header, 0);
+		if (header.getInt(TimeSlotFileFormat.MAGIC_OFFSET) != TimeSlotFileFormat.MAGIC) {
+			throw new IOException("Not a time slot file");
+		}
+		int version = header.getInt(TimeSlotFileFormat.VERSION_OFFSET);
+		if (version != TimeSlotFileFormat.VERSION) {
+			throw new IOException("Unsupported time slot file version: " + version);
+		}
+		this.count = header.getLong(TimeSlotFileFormat.COUNT_OFFSET);
+		this.blockSize = header.getInt(TimeSlotFileFormat.BLOCK_SIZE_OFFSET);
+		int blockCount = header.getInt(TimeSlotFileFormat.BLOCK_COUNT_OFFSET);
+		long indexOffset = header.getLong(TimeSlotFileFormat.INDEX_OFFSET_OFFSET);
+		if (count < 0 || blockSize <= 0 || blockCount != (count + blockSize - 1) / blockSize
+				|| indexOffset != TimeSlotFileFormat.HEADER_SIZE + count * TimeSlotFileFormat.RECORD_SIZE
+				|| channel.size() < indexOffset + (long) blockCount * TimeSlotFileFormat.INDEX_ENTRY_SIZE) {
+			throw new IOException("Corrupt time slot file header");
+		}
+		ByteBuffer index = ByteBuffer.allocate(blockCount * TimeSlotFileFormat.INDEX_ENTRY_SIZE);
+		readFully(index, indexOffset);
+		this.blockFirstStarts = new long[blockCount];
+		this.blockMaxFinishes = new long[blockCount];
+		for (int i = 0; i < blockCount; i++) {
+			blockFirstStarts[i] = index.getLong(i * TimeSlotFileFormat.INDEX_ENTRY_SIZE);
+			blockMaxFinishes[i] = index.getLong(i * TimeSlotFileFormat.INDEX_ENTRY_SIZE + 8);
+		}
+		int segmentCount = (int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		this.segments = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			long first = (long) i << SEGMENT_SHIFT;
+			long records = Math.min(count - first, 1L << SEGMENT_SHIFT);
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+					TimeSlotFileFormat.HEADER_SIZE + first * TimeSlotFileFormat.RECORD_SIZE,
+					records * TimeSlotFileFormat.RECORD_SIZE);
+		}
+	}
+
+	/**
+	 * Opens a time slot file.
+	 *
+	 * @param path
+	 *            the file
+	 * @return the opened file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a time slot file
+	 */
+	public static MappedTimeSlotFile open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new MappedTimeSlotFile(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of time slots in the file.
+	 *
+	 * @return the number of time slots
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * Returns the start of the given record in epoch nanoseconds.
+	 *
+	 * @param i
+	 *            the record, 0 &lt;= i &lt; size()
+	 * @return the start
+	 */
+	public long startAt(long i) {
+		checkIndex(i);
+		return segments[(int) (i >>> SEGMENT_SHIFT)].getLong((int) (i & SEGMENT_MASK) * TimeSlotFileFormat.RECORD_SIZE);
+	}
+
+	/**
+	 * Returns the finish of the given record in epoch nanoseconds.
+	 *
+	 * @param i
+	 *            the record, 0 &lt;= i &lt; size()
+	 * @return the finish
+	 */
+	public long finishAt(long i) {
+		checkIndex(i);
+		return segments[(int) (i >>> SEGMENT_SHIFT)]
+				.getLong((int) (i & SEGMENT_MASK) * TimeSlotFileFormat.RECORD_SIZE + 8);
+	}
+
+	/**
+	 * Returns the given record as time slot.
+	 *
+	 * @param i
+	 *            the record, 0 &lt;= i &lt; size()
+	 * @return the time slot
+	 */
+	public EpochTimeSlot get(long i) {
+		return new EpochTimeSlot(startAt(i), finishAt(i));
+	}
+
+	/**
+	 * Returns the index of the first record whose start is not smaller than
+	 * the given one, or size() if there is none.
+	 *
+	 * @param start
+	 *            a start in epoch nanoseconds
+	 * @return the index of the first record with a start &gt;= the given one
+	 */
+	public long lowerBound(long start) {
+		// Last block whose first start is smaller than the given start.
+		int lo = 0;
+		int hi = blockFirstStarts.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (blockFirstStarts[mid] < start) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		if (lo == 0) {
+			return 0;
+		}
+		long first = (long) (lo - 1) * blockSize;
+		long last = Math.min(first + blockSize, count);
+		while (first < last) {
+			long mid = (first + last) >>> 1;
+			if (startAt(mid) < start) {
+				first = mid + 1;
+			} else {
+				last = mid;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Passes all time slots starting within the given closed range to the
+	 * given consumer, in ascending order.
+	 *
+	 * @param from
+	 *            the smallest start
+	 * @param to
+	 *            the largest start
+	 * @param consumer
+	 *            receives the time slots
+	 */
+	public void range(LocalDateTime from, LocalDateTime to, Consumer<? super EpochTimeSlot> consumer) {
+		if (EpochNanos.compare(Long.MAX_VALUE, from) < 0 || EpochNanos.compare(Long.MIN_VALUE, to) > 0) {
+			return;
+		}
+		long last = EpochNanos.saturatedOf(to);
+		for (long i = lowerBound(EpochNanos.saturatedOf(from)); i < count; i++) {
+			long start = startAt(i);
+			if (start > last) {
+				break;
+			}
+			consumer.accept(new EpochTimeSlot(start, finishAt(i)));
+		}
+	}
+
+	/**
+	 * Returns all time slots starting within the given closed range, in
+	 * ascending order.
+	 *
+	 * @param from
+	 *            the smallest start
+	 * @param to
+	 *            the largest start
+	 * @return the time slots
+	 */
+	public List<TimeSlot> range(LocalDateTime from, LocalDateTime to) {
+		List<TimeSlot> result = new ArrayList<>();
+		range(from, to, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true to the given consumer, in ascending
+	 * order.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @param consumer
+	 *            receives the overlapping time slots
+	 */
+	public void overlapping(TimeSlot ts, Consumer<? super EpochTimeSlot> consumer) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			return;
+		}
+		scan(EpochNanos.saturatedOf(start), EpochNanos.saturatedOf(finish), consumer);
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true, in ascending order.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the overlapping time slots
+	 */
+	public List<TimeSlot> overlapping(TimeSlot ts) {
+		List<TimeSlot> result = new ArrayList<>();
+		overlapping(ts, result::add);
+		return result;
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true, in ascending order.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the time slots including the date/time
+	 */
+	public List<TimeSlot> containing(LocalDateTime dateTime) {
+		List<TimeSlot> result = new ArrayList<>();
+		if (EpochNanos.isRepresentable(dateTime)) {
+			long t = EpochNanos.of(dateTime);
+			scan(t, t, result::add);
+		}
+		return result;
+	}
+
+	/**
+	 * Closes the underlying file. The mapped memory is released once it is no
+	 * longer referenced.
+	 *
+	 * @throws IOException
+	 *             if closing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reports all records with start &lt;= to and finish &gt;= from.
+	 */
+	private void scan(long from, long to, Consumer<? super EpochTimeSlot> consumer) {
+		// First block whose running maximum finish reaches the query; all
+		// records of the blocks before end earlier.
+		int lo = 0;
+		int hi = blockMaxFinishes.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (blockMaxFinishes[mid] < from) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		for (long i = (long) lo * blockSize; i < count; i++) {
+			long start = startAt(i);
+			if (start > to) {
+				break;
+			}
+			long finish = finishAt(i);
+			if (finish >= from) {
+				consumer.accept(new EpochTimeSlot(start, finish));
+			}
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + buffer.position());
+			if (n < 0) {
+				throw new IOException("Unexpected end of time slot file");
+			}
+		}
+		buffer.flip();
+	}
+
+	private void checkIndex(long i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("Record " + i + " not in [0, " + count + ")");
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A temporary file holding a sorted run of time slots. Each time slot is
+ * written as two unsigned LEB128 varints: the distance of its start from the
+ * previous start, and its length, both in nanoseconds. Distances and lengths
+ * are computed modulo 2^64, so every pair of <code>long</code> values can be
+ * encoded. Time slots close together in a sorted run take a few bytes.
+ */
+final class RunFile {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Not used.
+	 */
+	private RunFile() {
+	}
+
+	/**
+	 * Writes a run.
+	 */
+	static final class Writer implements Closeable {
+		private final OutputStream out;
+
+		private long previous;
+
+		Writer(Path path) throws IOException {
+			this.out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+		}
+
+		void write(long start, long finish) throws IOException {
+			writeVarint(start - previous);
+			writeVarint(finish - start);
+			previous = start;
+		}
+
+		private void writeVarint(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				out.write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write((int) value);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a run, one time slot after the other.
+	 */
+	static final class Reader implements Closeable {
+		private final InputStream in;
+
+		private long start;
+
+		private long finish;
+
+		Reader(Path path) throws IOException {
+			this.in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+		}
+
+		/**
+		 * Reads the next time slot.
+		 *
+		 * @return false at the end of the run
+		 */
+		boolean next() throws IOException {
+			int first = in.read();
+			if (first < 0) {
+				return false;
+			}
+			start += readVarint(first);
+			finish = start + readVarint(in.read());
+			return true;
+		}
+
+		long start() {
+			return start;
+		}
+
+		long finish() {
+			return finish;
+		}
+
+		private long readVarint(int b) throws IOException {
+			long value = 0;
+			for (int shift = 0;; shift += 7) {
+				if (b < 0) {
+					throw new EOFException("Truncated run file");
+				}
+				if (shift > 63) {
+					throw new IOException("Corrupt run file");
+				}
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+				b = in.read();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
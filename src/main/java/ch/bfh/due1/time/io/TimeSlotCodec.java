@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+/**
+ * This utility class reads and writes single time slots in a compact binary
+ * encoding. An encoded time slot starts with a tag byte:
+ *
+ * <pre>
+ * tag 0 (COMPACT, 17 bytes)   long start, long finish   epoch nanoseconds
+ * tag 1 (FULL, 25 bytes)      long start second, int start nano,
+ *                             long finish second, int finish nano
+ * </pre>
+ *
+ * The compact form is used whenever both limits can be encoded as epoch
+ * nanoseconds (see {@link EpochNanos}), the full form covers the whole range
+ * of local date/time objects. Seconds are counted from 1970-01-01T00:00:00.
+ */
+public final class TimeSlotCodec {
+	/**
+	 * The largest number of bytes of an encoded time slot.
+	 */
+	public static final int MAX_ENCODED_SIZE = 25;
+
+	private static final byte COMPACT = 0;
+
+	private static final byte FULL = 1;
+
+	/**
+	 * Not used.
+	 */
+	private TimeSlotCodec() {
+	}
+
+	/**
+	 * Returns the number of bytes needed to encode the given time slot.
+	 *
+	 * @param ts
+	 *            a time slot
+	 * @return the encoded size in bytes
+	 */
+	public static int encodedSize(TimeSlot ts) {
+		return isCompact(ts) ? 17 : MAX_ENCODED_SIZE;
+	}
+
+	/**
+	 * Writes a time slot.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void write(TimeSlot ts, DataOutput out) throws IOException {
+		if (isCompact(ts)) {
+			out.writeByte(COMPACT);
+			out.writeLong(EpochNanos.startOf(ts));
+			out.writeLong(EpochNanos.finishOf(ts));
+		} else {
+			out.writeByte(FULL);
+			out.writeLong(ts.getStart().toEpochSecond(ZoneOffset.UTC));
+			out.writeInt(ts.getStart().getNano());
+			out.writeLong(ts.getFinish().toEpochSecond(ZoneOffset.UTC));
+			out.writeInt(ts.getFinish().getNano());
+		}
+	}
+
+	/**
+	 * Writes a time slot at the position of the given buffer.
+	 *
+	 * @param ts
+	 *            the time slot
+	 * @param buffer
+	 *            the buffer with at least {@link #encodedSize(TimeSlot)}
+	 *            bytes remaining
+	 */
+	public static void write(TimeSlot ts, ByteBuffer buffer) {
+		if (isCompact(ts)) {
+			buffer.put(COMPACT);
+			buffer.putLong(EpochNanos.startOf(ts));
+			buffer.putLong(EpochNanos.finishOf(ts));
+		} else {
+			buffer.put(FULL);
+			buffer.putLong(ts.getStart().toEpochSecond(ZoneOffset.UTC));
+			buffer.putInt(ts.getStart().getNano());
+			buffer.putLong(ts.getFinish().toEpochSecond(ZoneOffset.UTC));
+			buffer.putInt(ts.getFinish().getNano());
+		}
+	}
+
+	/**
+	 * Reads a time slot. A compactly encoded time slot is returned as
+	 * {@link EpochTimeSlot}, any other as {@link TimeSlotImpl}.
+	 *
+	 * @param in
+	 *            the input
+	 * @return the time slot
+	 * @throws IOException
+	 *             if reading fails or the input is corrupt
+	 */
+	public static TimeSlot read(DataInput in) throws IOException {
+		return read(in, null);
+	}
+
+	/**
+	 * Reads a time slot and creates it with the given factory.
+	 *
+	 * @param in
+	 *            the input
+	 * @param factory
+	 *            the factory creating the time slot; if null then the time
+	 *            slot is created as for {@link #read(DataInput)}
+	 * @return the time slot
+	 * @throws IOException
+	 *             if reading fails or the input is corrupt
+	 */
+	public static TimeSlot read(DataInput in, TimeSlotFactory factory) throws IOException {
+		byte tag = in.readByte();
+		try {
+			switch (tag) {
+			case COMPACT:
+				return create(in.readLong(), in.readLong(), factory);
+			case FULL:
+				return create(in.readLong(), in.readInt(), in.readLong(), in.readInt(), factory);
+			default:
+				throw new IOException("Unknown time slot encoding: " + tag);
+			}
+		} catch (DateTimeException | IllegalArgumentException e) {
+			throw new IOException("Corrupt time slot encoding", e);
+		}
+	}
+
+	/**
+	 * Reads a time slot from the position of the given buffer. A compactly
+	 * encoded time slot is returned as {@link EpochTimeSlot}, any other as
+	 * {@link TimeSlotImpl}.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the time slot
+	 * @throws BufferUnderflowException
+	 *             if the buffer ends within the encoded time slot
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not contain a valid time slot
+	 */
+	public static TimeSlot read(ByteBuffer buffer) {
+		return read(buffer, null);
+	}
+
+	/**
+	 * Reads a time slot from the position of the given buffer and creates it
+	 * with the given factory.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param factory
+	 *            the factory creating the time slot; if null then the time
+	 *            slot is created as for {@link #read(ByteBuffer)}
+	 * @return the time slot
+	 * @throws BufferUnderflowException
+	 *             if the buffer ends within the encoded time slot
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not contain a valid time slot
+	 */
+	public static TimeSlot read(ByteBuffer buffer, TimeSlotFactory factory) {
+		byte tag = buffer.get();
+		try {
+			switch (tag) {
+			case COMPACT:
+				return create(buffer.getLong(), buffer.getLong(), factory);
+			case FULL:
+				return create(buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getInt(), factory);
+			default:
+				throw new IllegalArgumentException("Unknown time slot encoding: " + tag);
+			}
+		} catch (DateTimeException e) {
+			throw new IllegalArgumentException("Corrupt time slot encoding", e);
+		}
+	}
+
+	private static boolean isCompact(TimeSlot ts) {
+		return ts instanceof EpochTimeSlot
+				|| (EpochNanos.isRepresentable(ts.getStart()) && EpochNanos.isRepresentable(ts.getFinish()));
+	}
+
+	private static TimeSlot create(long start, long finish, TimeSlotFactory factory) {
+		if (factory == null) {
+			return new EpochTimeSlot(start, finish);
+		}
+		return factory.createTimeSlot(EpochNanos.toLocalDateTime(start), EpochNanos.toLocalDateTime(finish));
+	}
+
+	private static TimeSlot create(long startSecond, int startNano, long finishSecond, int finishNano,
+			TimeSlotFactory factory) {
+		LocalDateTime start = LocalDateTime.ofEpochSecond(startSecond, startNano, ZoneOffset.UTC);
+		LocalDateTime finish = LocalDateTime.ofEpochSecond(finishSecond, finishNano, ZoneOffset.UTC);
+		return factory == null ? new TimeSlotImpl(start, finish) : factory.createTimeSlot(start, finish);
+	}
+}
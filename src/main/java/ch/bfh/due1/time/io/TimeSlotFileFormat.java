@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+/**
+ * Constants of the fixed-width binary time slot file format written by
+ * {@link TimeSlotFileWriter} and read by {@link MappedTimeSlotFile}. All
+ * values are stored in big-endian byte order.
+ *
+ * <pre>
+ * header   (64 bytes)
+ *   int    magic          0x54534C46 ("TSLF")
+ *   int    version        1
+ *   long   record count
+ *   int    block size     records per index entry
+ *   int    block count
+ *   long   index offset   file position of the block index
+ *   (padding up to 64 bytes)
+ * records  (16 bytes each, sorted by TimeSlot.compareTo order)
+ *   long   start          epoch nanoseconds
+ *   long   finish         epoch nanoseconds
+ * index    (16 bytes per block)
+ *   long   start of the first record of the block
+ *   long   largest finish of all records up to and including the block
+ * </pre>
+ */
+final class TimeSlotFileFormat {
+	static final int MAGIC = 0x54534C46;
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 64;
+
+	static final int RECORD_SIZE = 16;
+
+	static final int INDEX_ENTRY_SIZE = 16;
+
+	static final int DEFAULT_BLOCK_SIZE = 256;
+
+	static final int MAGIC_OFFSET = 0;
+
+	static final int VERSION_OFFSET = 4;
+
+	static final int COUNT_OFFSET = 8;
+
+	static final int BLOCK_SIZE_OFFSET = 16;
+
+	static final int BLOCK_COUNT_OFFSET = 20;
+
+	static final int INDEX_OFFSET_OFFSET = 24;
+
+	/**
+	 * Not used.
+	 */
+	private TimeSlotFileFormat() {
+	}
+}
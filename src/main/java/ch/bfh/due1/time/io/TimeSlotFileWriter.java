@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+
+/**
+ * Writes time slots into a file of the format described in
+ * {@link TimeSlotFileFormat}. Time slots must be appended in
+ * {@link TimeSlot#compareTo(TimeSlot)} order; the header and the sparse
+ * block index are written by {@link #close()}. Only the block index is kept
+ * in memory, hence files of any size can be written.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class TimeSlotFileWriter implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final int blockSize;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private long[] blockFirstStarts = new long[16];
+
+	private long[] blockMaxFinishes = new long[16];
+
+	private int blockCount;
+
+	private long count;
+
+	private long lastStart = Long.MIN_VALUE;
+
+	private long lastFinish = Long.MIN_VALUE;
+
+	private long maxFinish = Long.MIN_VALUE;
+
+	private boolean closed;
+
+	/**
+	 * Creates a writer with the default block size. An existing file is
+	 * overwritten.
+	 *
+	 * @param path
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public TimeSlotFileWriter(Path path) throws IOException {
+		this(path, TimeSlotFileFormat.DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a writer. An existing file is overwritten.
+	 *
+	 * @param path
+	 *            the file to write
+	 * @param blockSize
+	 *            the number of records per block index entry
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public TimeSlotFileWriter(Path path, int blockSize) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.blockSize = blockSize;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.channel.position(TimeSlotFileFormat.HEADER_SIZE);
+	}
+
+	/**
+	 * Writes the given time slots into a file, sorting them first.
+	 *
+	 * @param path
+	 *            the file to write
+	 * @param slots
+	 *            the time slots
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void write(Path path, Collection<? extends TimeSlot> slots) throws IOException {
+		List<TimeSlot> sorted = new ArrayList<>(slots);
+		Collections.sort(sorted);
+		try (TimeSlotFileWriter writer = new TimeSlotFileWriter(path)) {
+			for (TimeSlot ts : sorted) {
+				writer.append(ts);
+			}
+		}
+	}
+
+	/**
+	 * Appends a time slot.
+	 *
+	 * @param ts
+	 *            the time slot, not smaller than the previous one
+	 * @throws IOException
+	 *             if writing fails
+	 * @throws IllegalArgumentException
+	 *             if the time slot is out of order or cannot be encoded as
+	 *             epoch nanoseconds
+	 */
+	public void append(TimeSlot ts) throws IOException {
+		append(EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+	}
+
+	/**
+	 * Appends a time slot given by its limits in epoch nanoseconds.
+	 *
+	 * @param start
+	 *            the start
+	 * @param finish
+	 *            the finish, not smaller than start
+	 * @throws IOException
+	 *             if writing fails
+	 * @throws IllegalArgumentException
+	 *             if the time slot is out of order
+	 */
+	public void append(long start, long finish) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Writer is closed");
+		}
+		if (start > finish) {
+			throw new IllegalArgumentException("Finish time of time slot cannot be smaller than start time");
+		}
+		if (count > 0 && (start < lastStart || (start == lastStart && finish < lastFinish))) {
+			throw new IllegalArgumentException("Time slots must be appended in ascending order");
+		}
+		if (count % blockSize == 0) {
+			if (blockCount == blockFirstStarts.length) {
+				blockFirstStarts = Arrays.copyOf(blockFirstStarts, blockCount * 2);
+				blockMaxFinishes = Arrays.copyOf(blockMaxFinishes, blockCount * 2);
+			}
+			blockFirstStarts[blockCount++] = start;
+		}
+		maxFinish = Math.max(maxFinish, finish);
+		blockMaxFinishes[blockCount - 1] = maxFinish;
+		if (buffer.remaining() < TimeSlotFileFormat.RECORD_SIZE) {
+			flushBuffer();
+		}
+		buffer.putLong(start).putLong(finish);
+		lastStart = start;
+		lastFinish = finish;
+		count++;
+	}
+
+	/**
+	 * Returns the number of time slots written so far.
+	 *
+	 * @return the number of time slots
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Writes the block index and the header, and closes the file.
+	 *
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			long indexOffset = TimeSlotFileFormat.HEADER_SIZE + count * TimeSlotFileFormat.RECORD_SIZE;
+			for (int i = 0; i < blockCount; i++) {
+				if (buffer.remaining() < TimeSlotFileFormat.INDEX_ENTRY_SIZE) {
+					flushBuffer();
+				}
+				buffer.putLong(blockFirstStarts[i]).putLong(blockMaxFinishes[i]);
+			}
+			flushBuffer();
+			ByteBuffer header = ByteBuffer.allocate(TimeSlotFileFormat.HEADER_SIZE);
+			header.putInt(TimeSlotFileFormat.MAGIC_OFFSET, TimeSlotFileFormat.MAGIC);
+			header.putInt(TimeSlotFileFormat.VERSION_OFFSET, TimeSlotFileFormat.VERSION);
+			header.putLong(TimeSlotFileFormat.COUNT_OFFSET, count);
+			header.putInt(TimeSlotFileFormat.BLOCK_SIZE_OFFSET, blockSize);
+			header.putInt(TimeSlotFileFormat.BLOCK_COUNT_OFFSET, blockCount);
+			header.putLong(TimeSlotFileFormat.INDEX_OFFSET_OFFSET, indexOffset);
+			long position = 0;
+			while (header.hasRemaining()) {
+				position += channel.write(header, position);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.join;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * This utility class finds all pairs <code>(a, b)</code> of two time slot
+ * collections for which <code>a.overlaps(b)</code> is true, without
+ * comparing every time slot of one collection with every time slot of the
+ * other.
+ * <p>
+ * Both sides are sorted by {@link TimeSlot#compareTo(TimeSlot)} and swept in
+ * the order of their starts. Each side keeps the time slots seen so far
+ * which have not finished yet; a time slot pairs with every such time slot
+ * of the other side. A pair is therefore reported when the later of its two
+ * starts is reached, which takes O((n + m) log(n + m) + k) time for k
+ * pairs.
+ * <p>
+ * The parallel variant partitions the time axis at quantiles of the starts.
+ * Every partition is swept by its own fork/join task, which is additionally
+ * seeded with the time slots straddling the start of the partition. A pair
+ * is reported only by the partition holding the later of its two starts,
+ * hence exactly once.
+ * <p>
+ * Limits are compared as epoch nanoseconds, see {@link EpochNanos}.
+ */
+public final class OverlapJoin {
+	/**
+	 * Partitions with fewer time slots are not split.
+	 */
+	private static final int MIN_PARTITION_SIZE = 4096;
+
+	/**
+	 * Not used.
+	 */
+	private OverlapJoin() {
+	}
+
+	/**
+	 * Passes all overlapping pairs to the given consumer.
+	 *
+	 * @param left
+	 *            the first collection
+	 * @param right
+	 *            the second collection
+	 * @param consumer
+	 *            receives each pair <code>(a, b)</code> with <code>a</code>
+	 *            from left and <code>b</code> from right once
+	 */
+	public static void join(Collection<? extends TimeSlot> left, Collection<? extends TimeSlot> right,
+			BiConsumer<? super TimeSlot, ? super TimeSlot> consumer) {
+		Timer timer = Instrumentation.current().start(Operation.JOIN);
+		Side a = new Side(left, false);
+		Side b = new Side(right, false);
+		sweep(a, b, new int[0], new int[0], 0, a.size(), 0, b.size(), consumer);
+		timer.stop(a.size() + b.size());
+	}
+
+	/**
+	 * Passes all overlapping pairs to the given consumer, using the common
+	 * fork/join pool.
+	 *
+	 * @param left
+	 *            the first collection
+	 * @param right
+	 *            the second collection
+	 * @param consumer
+	 *            receives each pair <code>(a, b)</code> with <code>a</code>
+	 *            from left and <code>b</code> from right once; it is called
+	 *            concurrently and must be thread-safe
+	 */
+	public static void parallelJoin(Collection<? extends TimeSlot> left, Collection<? extends TimeSlot> right,
+			BiConsumer<? super TimeSlot, ? super TimeSlot> consumer) {
+		parallelJoin(left, right, consumer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Passes all overlapping pairs to the given consumer, using the given
+	 * fork/join pool.
+	 *
+	 * @param left
+	 *            the first collection
+	 * @param right
+	 *            the second collection
+	 * @param consumer
+	 *            receives each pair <code>(a, b)</code> with <code>a</code>
+	 *            from left and <code>b</code> from right once; it is called
+	 *            concurrently and must be thread-safe
+	 * @param pool
+	 *            the pool running the partitions
+	 */
+	public static void parallelJoin(Collection<? extends TimeSlot> left, Collection<? extends TimeSlot> right,
+			BiConsumer<? super TimeSlot, ? super TimeSlot> consumer, ForkJoinPool pool) {
+		Timer timer = Instrumentation.current().start(Operation.JOIN);
+		Side a = new Side(left, true);
+		Side b = new Side(right, true);
+		int total = a.size() + b.size();
+		int partitions = (int) Math.min(4L * pool.getParallelism(), Math.max(1, total / MIN_PARTITION_SIZE));
+		long[] bounds = boundaries(a, b, partitions);
+		int[][] straddlingA = a.straddling(bounds);
+		int[][] straddlingB = b.straddling(bounds);
+		pool.invoke(new PartitionTask(a, b, bounds, straddlingA, straddlingB, 0, bounds.length + 1, consumer));
+		timer.stop(total);
+	}
+
+	/**
+	 * Returns strictly increasing partition boundaries at quantiles of the
+	 * starts of both sides. Partition p covers the starts in [bounds[p - 1],
+	 * bounds[p]), where the first and the last partition are open.
+	 */
+	private static long[] boundaries(Side a, Side b, int partitions) {
+		if (partitions <= 1) {
+			return new long[0];
+		}
+		long[] candidates = new long[2 * (partitions - 1)];
+		for (int i = 1; i < partitions; i++) {
+			candidates[2 * i - 2] = a.size() == 0 ? Long.MIN_VALUE : a.starts[(int) ((long) a.size() * i / partitions)];
+			candidates[2 * i - 1] = b.size() == 0 ? Long.MIN_VALUE : b.starts[(int) ((long) b.size() * i / partitions)];
+		}
+		Arrays.sort(candidates);
+		long[] bounds = new long[partitions - 1];
+		int n = 0;
+		for (int i = 1; i < candidates.length; i += 2) {
+			long c = candidates[i];
+			if (c != Long.MIN_VALUE && (n == 0 || c > bounds[n - 1])) {
+				bounds[n++] = c;
+			}
+		}
+		return Arrays.copyOf(bounds, n);
+	}
+
+	/**
+	 * Sweeps the time slots [aFrom, aTo) and [bFrom, bTo) of both sides after
+	 * seeding the active sets with the given straddling time slots, which
+	 * start before the partition and thus never trigger a pair themselves.
+	 */
+	private static void sweep(Side a, Side b, int[] seedA, int[] seedB, int aFrom, int aTo, int bFrom, int bTo,
+			BiConsumer<? super TimeSlot, ? super TimeSlot> consumer) {
+		ActiveSet activeA = new ActiveSet(seedA);
+		ActiveSet activeB = new ActiveSet(seedB);
+		int i = aFrom;
+		int j = bFrom;
+		while (i < aTo || j < bTo) {
+			// On equal starts, either side may go first: the second one finds
+			// the first one in its active set.
+			if (j >= bTo || (i < aTo && a.starts[i] <= b.starts[j])) {
+				long start = a.starts[i];
+				activeB.expire(b.finishes, start);
+				for (int k = 0; k < activeB.size; k++) {
+					consumer.accept(a.slots[i], b.slots[activeB.items[k]]);
+				}
+				activeA.add(i++);
+			} else {
+				long start = b.starts[j];
+				activeA.expire(a.finishes, start);
+				for (int k = 0; k < activeA.size; k++) {
+					consumer.accept(a.slots[activeA.items[k]], b.slots[j]);
+				}
+				activeB.add(j++);
+			}
+		}
+	}
+
+	/**
+	 * One side of the join, sorted by start and finish.
+	 */
+	private static final class Side {
+		private final TimeSlot[] slots;
+
+		private final long[] starts;
+
+		private final long[] finishes;
+
+		private Side(Collection<? extends TimeSlot> collection, boolean parallel) {
+			this.slots = collection.toArray(new TimeSlot[collection.size()]);
+			if (parallel) {
+				Arrays.parallelSort(slots);
+			} else {
+				Arrays.sort(slots);
+			}
+			this.starts = new long[slots.length];
+			this.finishes = new long[slots.length];
+			for (int i = 0; i < slots.length; i++) {
+				starts[i] = EpochNanos.startOf(slots[i]);
+				finishes[i] = EpochNanos.finishOf(slots[i]);
+			}
+		}
+
+		private int size() {
+			return slots.length;
+		}
+
+		/**
+		 * Returns the index of the first time slot starting at or after the
+		 * given value.
+		 */
+		private int lowerBound(long value) {
+			int lo = 0;
+			int hi = starts.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (starts[mid] < value) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+
+		/**
+		 * Returns, for each partition, the time slots starting before and
+		 * finishing at or after the start of the partition.
+		 */
+		private int[][] straddling(long[] bounds) {
+			int[] counts = new int[bounds.length + 1];
+			for (int i = 0; i < slots.length; i++) {
+				for (int p = firstStraddled(bounds, i); p <= bounds.length && bounds[p - 1] <= finishes[i]; p++) {
+					counts[p]++;
+				}
+			}
+			int[][] result = new int[bounds.length + 1][];
+			for (int p = 0; p < result.length; p++) {
+				result[p] = new int[counts[p]];
+				counts[p] = 0;
+			}
+			for (int i = 0; i < slots.length; i++) {
+				for (int p = firstStraddled(bounds, i); p <= bounds.length && bounds[p - 1] <= finishes[i]; p++) {
+					result[p][counts[p]++] = i;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the first partition starting after the given time slot.
+		 */
+		private int firstStraddled(long[] bounds, int i) {
+			return upperBound(bounds, starts[i]) + 1;
+		}
+
+		private static int upperBound(long[] values, long value) {
+			int lo = 0;
+			int hi = values.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (values[mid] <= value) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * The time slots of one side that have started and may not have finished
+	 * yet.
+	 */
+	private static final class ActiveSet {
+		private int[] items;
+
+		private int size;
+
+		private ActiveSet(int[] seed) {
+			this.items = Arrays.copyOf(seed, Math.max(16, seed.length));
+			this.size = seed.length;
+		}
+
+		private void add(int item) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			items[size++] = item;
+		}
+
+		/**
+		 * Removes the time slots finishing before the given time.
+		 */
+		private void expire(long[] finishes, long time) {
+			int n = 0;
+			for (int k = 0; k < size; k++) {
+				int item = items[k];
+				if (finishes[item] >= time) {
+					items[n++] = item;
+				}
+			}
+			size = n;
+		}
+	}
+
+	/**
+	 * Sweeps a range of partitions, splitting it in halves.
+	 */
+	@SuppressWarnings("serial")
+	private static final class PartitionTask extends RecursiveAction {
+		private final Side a;
+
+		private final Side b;
+
+		private final long[] bounds;
+
+		private final int[][] straddlingA;
+
+		private final int[][] straddlingB;
+
+		private final int from;
+
+		private final int to;
+
+		private final BiConsumer<? super TimeSlot, ? super TimeSlot> consumer;
+
+		private PartitionTask(Side a, Side b, long[] bounds, int[][] straddlingA, int[][] straddlingB, int from,
+				int to, BiConsumer<? super TimeSlot, ? super TimeSlot> consumer) {
+			this.a = a;
+			this.b = b;
+			this.bounds = bounds;
+			this.straddlingA = straddlingA;
+			this.straddlingB = straddlingB;
+			this.from = from;
+			this.to = to;
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PartitionTask(a, b, bounds, straddlingA, straddlingB, from, mid, consumer),
+						new PartitionTask(a, b, bounds, straddlingA, straddlingB, mid, to, consumer));
+				return;
+			}
+			int p = from;
+			int aFrom = p == 0 ? 0 : a.lowerBound(bounds[p - 1]);
+			int aTo = p == bounds.length ? a.size() : a.lowerBound(bounds[p]);
+			int bFrom = p == 0 ? 0 : b.lowerBound(bounds[p - 1]);
+			int bTo = p == bounds.length ? b.size() : b.lowerBound(bounds[p]);
+			sweep(a, b, straddlingA[p], straddlingB[p], aFrom, aTo, bFrom, bTo, consumer);
+		}
+	}
+}
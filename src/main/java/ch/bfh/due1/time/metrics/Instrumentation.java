@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+/**
+ * This utility class holds the {@link SlotMetrics} the library reports to.
+ * By default, measurements are discarded by {@link SlotMetrics#NOOP}, which
+ * costs a field read and an inlined empty call per report.
+ */
+public final class Instrumentation {
+	private static volatile SlotMetrics current = SlotMetrics.NOOP;
+
+	/**
+	 * Not used.
+	 */
+	private Instrumentation() {
+	}
+
+	/**
+	 * @return the metrics reported to
+	 */
+	public static SlotMetrics current() {
+		return current;
+	}
+
+	/**
+	 * Reports all subsequent measurements to the given metrics.
+	 *
+	 * @param metrics
+	 *            the metrics
+	 */
+	public static void install(SlotMetrics metrics) {
+		if (metrics == null) {
+			throw new NullPointerException("Metrics must not be null");
+		}
+		current = metrics;
+	}
+
+	/**
+	 * Discards all subsequent measurements.
+	 */
+	public static void uninstall() {
+		current = SlotMetrics.NOOP;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations with one bucket per power of two
+ * nanoseconds, along with the count, total duration and total items of the
+ * operations recorded.
+ */
+public final class LatencyHistogram {
+	private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final LongAdder totalItems = new LongAdder();
+
+	LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void record(long nanos, long items) {
+		long n = Math.max(0, nanos);
+		buckets[Long.SIZE - Long.numberOfLeadingZeros(n)].increment();
+		count.increment();
+		totalNanos.add(n);
+		totalItems.add(items);
+	}
+
+	/**
+	 * @return the number of operations
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the total duration of the operations in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * @return the total number of items of the operations
+	 */
+	public long getTotalItems() {
+		return totalItems.sum();
+	}
+
+	/**
+	 * Returns the number of operations of bucket i: those taking at least
+	 * 2^(i - 1) and less than 2^i nanoseconds, or 0 nanoseconds for i = 0.
+	 *
+	 * @param i
+	 *            the bucket, in [0, 64)
+	 * @return the number of operations
+	 */
+	public long getBucketCount(int i) {
+		return buckets[i].sum();
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the durations: the
+	 * exclusive upper limit of the bucket holding it.
+	 *
+	 * @param percentile
+	 *            the percentile, in (0, 100]
+	 * @return the upper bound in nanoseconds, or 0 if nothing is recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile out of range: " + percentile);
+		}
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return i == Long.SIZE - 1 ? Long.MAX_VALUE : 1L << i;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[count=" + getCount() + ", totalNanos=" + getTotalNanos() + ", totalItems="
+				+ getTotalItems() + "]";
+	}
+}
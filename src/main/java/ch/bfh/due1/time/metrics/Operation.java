@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+/**
+ * The operations of the library reported to {@link SlotMetrics}. Along with
+ * its duration, each operation reports a number of items: the size of the
+ * structure it works on, that is, its working set.
+ */
+public enum Operation {
+	/**
+	 * A query of a TimeSlotIndex or a ProbeMatcher; the items are the time
+	 * slots in the index, not the probes.
+	 */
+	INDEX_QUERY,
+
+	/**
+	 * A batch predicate of a TimeSlotColumnStore; the items are its rows.
+	 */
+	COLUMN_SCAN,
+
+	/**
+	 * An OverlapJoin; the items are the time slots of both sides.
+	 */
+	JOIN,
+
+	/**
+	 * A set operation of a TimeSlotSet or an Occupancy, or building a
+	 * TimeSlotSet; the items are the runs or containers of the operands, or
+	 * the time slots added to the builder.
+	 */
+	SET_OPERATION,
+
+	/**
+	 * A reservation or cancellation of a BookingCalendar, including the wait
+	 * for its locks; the items are 1 if it succeeded, 0 otherwise.
+	 */
+	BOOKING
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics keeping a counter of the time slots created and a
+ * {@link LatencyHistogram} per operation in memory, to be read by
+ * monitoring code.
+ */
+public class RecordingMetrics implements SlotMetrics {
+	private final LongAdder slotsCreated = new LongAdder();
+
+	private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+
+	/**
+	 * Constructs empty metrics.
+	 */
+	public RecordingMetrics() {
+		for (Operation operation : Operation.values()) {
+			histograms.put(operation, new LatencyHistogram());
+		}
+	}
+
+	@Override
+	public void slotCreated() {
+		slotsCreated.increment();
+	}
+
+	@Override
+	public Timer start(Operation operation) {
+		LatencyHistogram histogram = histograms.get(operation);
+		long start = System.nanoTime();
+		return items -> histogram.record(System.nanoTime() - start, items);
+	}
+
+	/**
+	 * @return the number of time slots created
+	 */
+	public long getSlotsCreated() {
+		return slotsCreated.sum();
+	}
+
+	/**
+	 * Returns the histogram of the given operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the histogram
+	 */
+	public LatencyHistogram getHistogram(Operation operation) {
+		return histograms.get(operation);
+	}
+}
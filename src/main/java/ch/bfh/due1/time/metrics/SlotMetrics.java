@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+/**
+ * Receives measurements from the hot paths of the library, see
+ * {@link Instrumentation}. Implementations must be thread-safe and fast;
+ * they are called on every time slot created.
+ */
+public interface SlotMetrics {
+	/**
+	 * Measures one operation.
+	 */
+	public interface Timer {
+		/**
+		 * Ends the operation.
+		 *
+		 * @param items
+		 *            the number of items the operation worked on, see
+		 *            {@link Operation}
+		 */
+		public void stop(long items);
+	}
+
+	/**
+	 * Discards all measurements, the default.
+	 */
+	public static final SlotMetrics NOOP = new SlotMetrics() {
+		private final Timer timer = items -> {
+		};
+
+		@Override
+		public void slotCreated() {
+		}
+
+		@Override
+		public Timer start(Operation operation) {
+			return timer;
+		}
+	};
+
+	/**
+	 * Called by a time slot factory for every time slot created.
+	 */
+	public void slotCreated();
+
+	/**
+	 * Called when an operation starts.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the timer to stop when the operation ends
+	 */
+	public Timer start(Operation operation);
+}
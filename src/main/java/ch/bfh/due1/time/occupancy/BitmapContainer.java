@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.occupancy;
+
+import java.util.Arrays;
+
+/**
+ * A set of 16-bit values kept as a bitmap of 1024 words.
+ */
+class BitmapContainer extends Container {
+	private final long[] words;
+
+	private final int cardinality;
+
+	BitmapContainer(long[] words, int cardinality) {
+		this.words = words;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Sets the values in [start, end) in the given bitmap.
+	 */
+	static void set(long[] words, int start, int end) {
+		if (start >= end) {
+			return;
+		}
+		int first = start / Long.SIZE;
+		int last = (end - 1) / Long.SIZE;
+		long firstMask = -1L << (start % Long.SIZE);
+		long lastMask = -1L >>> (Long.SIZE - 1 - (end - 1) % Long.SIZE);
+		if (first == last) {
+			words[first] |= firstMask & lastMask;
+			return;
+		}
+		words[first] |= firstMask;
+		for (int i = first + 1; i < last; i++) {
+			words[i] = -1L;
+		}
+		words[last] |= lastMask;
+	}
+
+	@Override
+	int cardinality() {
+		return cardinality;
+	}
+
+	@Override
+	boolean contains(int value) {
+		return (words[value / Long.SIZE] & (1L << value)) != 0;
+	}
+
+	@Override
+	int[] runs() {
+		int[] runs = new int[16];
+		int n = 0;
+		for (int start = nextSet(0); start < BITS; start = nextSet(runs[n - 1])) {
+			if (n == runs.length) {
+				runs = Arrays.copyOf(runs, 2 * n);
+			}
+			runs[n++] = start;
+			runs[n++] = nextClear(start);
+		}
+		return Arrays.copyOf(runs, n);
+	}
+
+	/**
+	 * Returns the first value at or after the given one in the set, or BITS.
+	 */
+	private int nextSet(int from) {
+		return next(from, 0);
+	}
+
+	/**
+	 * Returns the first value at or after the given one not in the set, or
+	 * BITS.
+	 */
+	private int nextClear(int from) {
+		return next(from, -1L);
+	}
+
+	/**
+	 * Scans the words, flipped by the given mask, for a set bit.
+	 */
+	private int next(int from, long flip) {
+		if (from >= BITS) {
+			return BITS;
+		}
+		int i = from / Long.SIZE;
+		long word = (words[i] ^ flip) & (-1L << from);
+		while (word == 0) {
+			if (++i == WORDS) {
+				return BITS;
+			}
+			word = words[i] ^ flip;
+		}
+		return i * Long.SIZE + Long.numberOfTrailingZeros(word);
+	}
+
+	@Override
+	long[] words() {
+		return words;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof BitmapContainer && Arrays.equals(words, ((BitmapContainer) other).words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+}
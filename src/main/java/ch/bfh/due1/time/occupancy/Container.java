@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.occupancy;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of 16-bit values, the low bits of the cells sharing the
+ * same high bits. A set holding few runs of consecutive values is kept as a
+ * {@link RunContainer}, any other set as a {@link BitmapContainer}.
+ * <p>
+ * Operations return null instead of an empty container.
+ */
+abstract class Container {
+	/**
+	 * The number of values a container can hold.
+	 */
+	static final int BITS = 1 << 16;
+
+	/**
+	 * The number of words of a bitmap.
+	 */
+	static final int WORDS = BITS / Long.SIZE;
+
+	/**
+	 * Sets with this many runs or more take less memory as a bitmap.
+	 */
+	static final int MAX_RUNS = 1024;
+
+	/**
+	 * A set operation, applied value by value or word by word.
+	 */
+	enum Operation {
+		AND {
+			@Override
+			long apply(long a, long b) {
+				return a & b;
+			}
+		},
+		OR {
+			@Override
+			long apply(long a, long b) {
+				return a | b;
+			}
+		},
+		ANDNOT {
+			@Override
+			long apply(long a, long b) {
+				return a & ~b;
+			}
+		};
+
+		abstract long apply(long a, long b);
+
+		boolean apply(boolean a, boolean b) {
+			return apply(a ? 1L : 0L, b ? 1L : 0L) != 0;
+		}
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	abstract int cardinality();
+
+	/**
+	 * @param value
+	 *            a value in [0, BITS)
+	 * @return true iff the value is in the set
+	 */
+	abstract boolean contains(int value);
+
+	/**
+	 * @return the runs of consecutive values, the start of run i at index 2i
+	 *         and its exclusive end at index 2i + 1
+	 */
+	abstract int[] runs();
+
+	/**
+	 * @return the set as a bitmap, which must not be modified
+	 */
+	abstract long[] words();
+
+	/**
+	 * Combines this with the other set, word by word.
+	 *
+	 * @return the result, or null if it is empty
+	 */
+	Container combine(Container other, Operation operation) {
+		long[] a = words();
+		long[] b = other.words();
+		long[] result = new long[WORDS];
+		for (int i = 0; i < WORDS; i++) {
+			result[i] = operation.apply(a[i], b[i]);
+		}
+		return ofWords(result);
+	}
+
+	/**
+	 * Returns the smaller container holding the given bitmap.
+	 *
+	 * @param words
+	 *            the bitmap, owned by the container from now on
+	 * @return the container, or null if the bitmap is empty
+	 */
+	static Container ofWords(long[] words) {
+		int cardinality = 0;
+		int runs = 0;
+		long carry = 0;
+		for (long word : words) {
+			cardinality += Long.bitCount(word);
+			// Count the values whose predecessor is not in the set.
+			runs += Long.bitCount(word & ~((word << 1) | carry));
+			carry = word >>> 63;
+		}
+		if (cardinality == 0) {
+			return null;
+		}
+		BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+		return runs < MAX_RUNS ? new RunContainer(bitmap.runs()) : bitmap;
+	}
+
+	/**
+	 * Returns the smaller container holding the given runs.
+	 *
+	 * @param runs
+	 *            sorted, disjoint and not touching runs
+	 * @param length
+	 *            the number of elements of runs in use
+	 * @return the container, or null if there are no runs
+	 */
+	static Container ofRuns(int[] runs, int length) {
+		if (length == 0) {
+			return null;
+		}
+		if (length / 2 < MAX_RUNS) {
+			return new RunContainer(Arrays.copyOf(runs, length));
+		}
+		long[] words = new long[WORDS];
+		int cardinality = 0;
+		for (int i = 0; i < length; i += 2) {
+			BitmapContainer.set(words, runs[i], runs[i + 1]);
+			cardinality += runs[i + 1] - runs[i];
+		}
+		return new BitmapContainer(words, cardinality);
+	}
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.occupancy;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+/**
+ * An immutable set of cells, the time slots of a {@link TimeSlotTypeSpec}
+ * starting at the grid points of {@link Granularity#of(TimeSlotTypeSpec)},
+ * for instance the occupancy of a room in 15 minute steps.
+ * <p>
+ * A time slot occupies every cell sharing more than its limits with it:
+ * from the cell containing its start up to the cell containing its finish,
+ * the latter only if the finish is not on a grid point. A time slot of zero
+ * length occupies no cell.
+ * <p>
+ * Cells are numbered from 1970-01-01T00:00:00 and compressed as in Roaring
+ * bitmaps: the high bits of a cell number select a container, which holds
+ * the low 16 bits either as runs or, if there are many runs, as a bitmap.
+ * Set operations work container by container; bitmaps are combined word by
+ * word, runs without expanding them. Occupancies with different time slot
+ * types cannot be combined.
+ */
+public final class Occupancy {
+	private static final int LOW_BITS = 16;
+
+	private static final long[] NO_KEYS = new long[0];
+
+	private static final Container[] NO_CONTAINERS = new Container[0];
+
+	private final TimeSlotTypeSpec spec;
+
+	/**
+	 * The high bits of the cells in container i, ascending.
+	 */
+	private final long[] keys;
+
+	private final Container[] containers;
+
+	private Occupancy(TimeSlotTypeSpec spec, long[] keys, Container[] containers) {
+		this.spec = spec;
+		this.keys = keys;
+		this.containers = containers;
+	}
+
+	/**
+	 * Returns the empty occupancy.
+	 *
+	 * @param spec
+	 *            the time slot type of the cells
+	 * @return the empty occupancy
+	 */
+	public static Occupancy empty(TimeSlotTypeSpec spec) {
+		return new Occupancy(spec, NO_KEYS, NO_CONTAINERS);
+	}
+
+	/**
+	 * Returns the cells occupied by the given time slots.
+	 *
+	 * @param spec
+	 *            the time slot type of the cells
+	 * @param slots
+	 *            the time slots, in any order
+	 * @return the occupancy
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static Occupancy of(TimeSlotTypeSpec spec, Collection<? extends TimeSlot> slots) {
+		return of(spec, TimeSlotSet.of(slots));
+	}
+
+	/**
+	 * Returns the cells occupied by the runs of the given set.
+	 *
+	 * @param spec
+	 *            the time slot type of the cells
+	 * @param set
+	 *            the set
+	 * @return the occupancy
+	 */
+	public static Occupancy of(TimeSlotTypeSpec spec, TimeSlotSet set) {
+		long length = Granularity.of(spec).getLength().toNanos();
+		Appender out = new Appender(spec);
+		for (TimeSlot run : set) {
+			long start = EpochNanos.startOf(run);
+			long finish = EpochNanos.finishOf(run);
+			if (start < finish) {
+				out.add(Math.floorDiv(start, length), -Math.floorDiv(-finish, length));
+			}
+		}
+		return out.toOccupancy();
+	}
+
+	/**
+	 * Returns the cells occupied in all of the given occupancies. The
+	 * occupancies are combined starting with the smallest one.
+	 *
+	 * @param spec
+	 *            the time slot type of the cells
+	 * @param occupancies
+	 *            the occupancies
+	 * @return the intersection, empty if there are no occupancies
+	 */
+	public static Occupancy and(TimeSlotTypeSpec spec, Collection<Occupancy> occupancies) {
+		if (occupancies.isEmpty()) {
+			return empty(spec);
+		}
+		List<Occupancy> sorted = new ArrayList<>(occupancies);
+		Collections.sort(sorted, Comparator.comparingLong(Occupancy::cardinality));
+		Iterator<Occupancy> it = sorted.iterator();
+		Occupancy result = it.next();
+		while (it.hasNext() && !result.isEmpty()) {
+			result = result.and(it.next());
+		}
+		result.checkSpec(spec);
+		return result;
+	}
+
+	/**
+	 * Returns the cells occupied in any of the given occupancies.
+	 *
+	 * @param spec
+	 *            the time slot type of the cells
+	 * @param occupancies
+	 *            the occupancies
+	 * @return the union
+	 */
+	public static Occupancy or(TimeSlotTypeSpec spec, Collection<Occupancy> occupancies) {
+		Occupancy result = empty(spec);
+		for (Occupancy o : occupancies) {
+			result = result.or(o);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the time slot type of the cells
+	 */
+	public TimeSlotTypeSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * @return true iff no cell is occupied
+	 */
+	public boolean isEmpty() {
+		return keys.length == 0;
+	}
+
+	/**
+	 * @return the number of occupied cells
+	 */
+	public long cardinality() {
+		long cardinality = 0;
+		for (Container c : containers) {
+			cardinality += c.cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return the total length of the occupied cells
+	 */
+	public Duration duration() {
+		return Granularity.of(spec).getLength().multipliedBy(cardinality());
+	}
+
+	/**
+	 * Returns true iff the cell containing the given date/time is occupied.
+	 *
+	 * @param dateTime
+	 *            a date/time
+	 * @return true iff the cell is occupied
+	 */
+	public boolean contains(LocalDateTime dateTime) {
+		long cell = Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC),
+				Granularity.of(spec).getLength().getSeconds());
+		int i = Arrays.binarySearch(keys, cell >> LOW_BITS);
+		return i >= 0 && containers[i].contains(low(cell));
+	}
+
+	/**
+	 * Returns true iff a cell is occupied in both this and the other
+	 * occupancy.
+	 *
+	 * @param other
+	 *            the other occupancy
+	 * @return true iff the occupancies share a cell
+	 */
+	public boolean intersects(Occupancy other) {
+		checkSpec(other.spec);
+		int i = 0;
+		int j = 0;
+		while (i < keys.length && j < other.keys.length) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else if (containers[i++].combine(other.containers[j++], Container.Operation.AND) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the cells occupied in both this and the other occupancy.
+	 *
+	 * @param other
+	 *            the other occupancy
+	 * @return the intersection
+	 */
+	public Occupancy and(Occupancy other) {
+		return combine(other, Container.Operation.AND);
+	}
+
+	/**
+	 * Returns the cells occupied in this or the other occupancy.
+	 *
+	 * @param other
+	 *            the other occupancy
+	 * @return the union
+	 */
+	public Occupancy or(Occupancy other) {
+		return combine(other, Container.Operation.OR);
+	}
+
+	/**
+	 * Returns the cells occupied in this but not in the other occupancy.
+	 *
+	 * @param other
+	 *            the other occupancy
+	 * @return the difference
+	 */
+	public Occupancy andNot(Occupancy other) {
+		return combine(other, Container.Operation.ANDNOT);
+	}
+
+	private Occupancy combine(Occupancy other, Container.Operation operation) {
+		checkSpec(other.spec);
+		Timer timer = Instrumentation.current().start(Operation.SET_OPERATION);
+		int n = keys.length;
+		int m = other.keys.length;
+		long[] k = new long[n + m];
+		Container[] c = new Container[n + m];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < n || j < m) {
+			long key;
+			Container result;
+			if (j >= m || (i < n && keys[i] < other.keys[j])) {
+				// Only in this occupancy.
+				key = keys[i];
+				result = operation == Container.Operation.AND ? null : containers[i];
+				i++;
+			} else if (i >= n || keys[i] > other.keys[j]) {
+				// Only in the other occupancy.
+				key = other.keys[j];
+				result = operation == Container.Operation.OR ? other.containers[j] : null;
+				j++;
+			} else {
+				key = keys[i];
+				result = containers[i++].combine(other.containers[j++], operation);
+			}
+			if (result != null) {
+				k[size] = key;
+				c[size++] = result;
+			}
+		}
+		timer.stop(n + m);
+		return new Occupancy(spec, Arrays.copyOf(k, size), Arrays.copyOf(c, size));
+	}
+
+	/**
+	 * Returns the occupied cells as time slots, adjacent cells joined into
+	 * one time slot.
+	 *
+	 * @return the time slots ordered by start
+	 * @throws ArithmeticException
+	 *             if a limit cannot be encoded as epoch nanoseconds
+	 */
+	public List<TimeSlot> toTimeSlots() {
+		long length = Granularity.of(spec).getLength().toNanos();
+		List<TimeSlot> slots = new ArrayList<>();
+		long start = 0;
+		long end = 0;
+		boolean open = false;
+		for (int i = 0; i < keys.length; i++) {
+			long base = keys[i] << LOW_BITS;
+			int[] runs = containers[i].runs();
+			for (int r = 0; r < runs.length; r += 2) {
+				if (open && base + runs[r] == end) {
+					end = base + runs[r + 1];
+					continue;
+				}
+				if (open) {
+					slots.add(slot(start, end, length));
+				}
+				start = base + runs[r];
+				end = base + runs[r + 1];
+				open = true;
+			}
+		}
+		if (open) {
+			slots.add(slot(start, end, length));
+		}
+		return slots;
+	}
+
+	private static TimeSlot slot(long startCell, long endCell, long length) {
+		return new EpochTimeSlot(Math.multiplyExact(startCell, length), Math.multiplyExact(endCell, length));
+	}
+
+	private static int low(long cell) {
+		return (int) (cell & ((1 << LOW_BITS) - 1));
+	}
+
+	private void checkSpec(TimeSlotTypeSpec other) {
+		if (spec != other) {
+			throw new IllegalArgumentException("Time slot types differ: " + spec + ", " + other);
+		}
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Occupancy)) {
+			return false;
+		}
+		Occupancy o = (Occupancy) other;
+		return spec == o.spec && Arrays.equals(keys, o.keys) && Arrays.equals(containers, o.containers);
+	}
+
+	@Override
+	public int hashCode() {
+		return 37 + 17 * spec.hashCode() + 17 * Arrays.hashCode(keys) + 17 * Arrays.hashCode(containers);
+	}
+
+	@Override
+	public String toString() {
+		return "Occupancy[" + spec + ", " + toTimeSlots() + "]";
+	}
+
+	/**
+	 * Collects ranges of cells in ascending order into containers, joining a
+	 * range with the previous one if they overlap or touch.
+	 */
+	private static final class Appender {
+		private final TimeSlotTypeSpec spec;
+
+		private final List<Long> keys = new ArrayList<>();
+
+		private final List<Container> containers = new ArrayList<>();
+
+		private long key;
+
+		private int[] runs = new int[16];
+
+		private int length;
+
+		private Appender(TimeSlotTypeSpec spec) {
+			this.spec = spec;
+		}
+
+		/**
+		 * Adds the cells in [from, to).
+		 */
+		private void add(long from, long to) {
+			while (from < to) {
+				long k = from >> LOW_BITS;
+				if (length > 0 && k != key) {
+					flush();
+				}
+				key = k;
+				int start = low(from);
+				// Cells up to the end of the container, at most.
+				long limit = Math.min(to, (k + 1) << LOW_BITS);
+				int end = (int) (limit - (k << LOW_BITS));
+				if (length > 0 && start <= runs[length - 1]) {
+					runs[length - 1] = Math.max(runs[length - 1], end);
+				} else {
+					if (length == runs.length) {
+						runs = Arrays.copyOf(runs, 2 * length);
+					}
+					runs[length++] = start;
+					runs[length++] = end;
+				}
+				from = limit;
+			}
+		}
+
+		private void flush() {
+			keys.add(key);
+			containers.add(Container.ofRuns(runs, length));
+			length = 0;
+		}
+
+		private Occupancy toOccupancy() {
+			if (length > 0) {
+				flush();
+			}
+			long[] k = new long[keys.size()];
+			for (int i = 0; i < k.length; i++) {
+				k[i] = keys.get(i);
+			}
+			return new Occupancy(spec, k, containers.toArray(new Container[0]));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.occupancy;
+
+import java.util.Arrays;
+
+/**
+ * A set of 16-bit values kept as sorted runs of consecutive values.
+ */
+class RunContainer extends Container {
+	/**
+	 * Start and exclusive end of run i at index 2i and 2i + 1.
+	 */
+	private final int[] runs;
+
+	private final int cardinality;
+
+	RunContainer(int[] runs) {
+		this.runs = runs;
+		int c = 0;
+		for (int i = 0; i < runs.length; i += 2) {
+			c += runs[i + 1] - runs[i];
+		}
+		this.cardinality = c;
+	}
+
+	@Override
+	int cardinality() {
+		return cardinality;
+	}
+
+	@Override
+	boolean contains(int value) {
+		int lo = 0;
+		int hi = runs.length / 2;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (runs[2 * mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo > 0 && value < runs[2 * lo - 1];
+	}
+
+	@Override
+	int[] runs() {
+		return runs;
+	}
+
+	@Override
+	long[] words() {
+		long[] words = new long[WORDS];
+		for (int i = 0; i < runs.length; i += 2) {
+			BitmapContainer.set(words, runs[i], runs[i + 1]);
+		}
+		return words;
+	}
+
+	/**
+	 * Combines two run containers by sweeping over the limits of their runs,
+	 * without going through bitmaps.
+	 */
+	@Override
+	Container combine(Container other, Operation operation) {
+		if (!(other instanceof RunContainer)) {
+			return super.combine(other, operation);
+		}
+		int[] a = runs;
+		int[] b = ((RunContainer) other).runs;
+		int[] out = new int[a.length + b.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		boolean in = false;
+		while (i < a.length || j < b.length) {
+			int x = Math.min(i < a.length ? a[i] : BITS + 1, j < b.length ? b[j] : BITS + 1);
+			if (i < a.length && a[i] == x) {
+				i++;
+			}
+			if (j < b.length && b[j] == x) {
+				j++;
+			}
+			// An odd index means the sweep is inside a run.
+			boolean result = operation.apply((i & 1) != 0, (j & 1) != 0);
+			if (result != in) {
+				out[n++] = x;
+				in = result;
+			}
+		}
+		return ofRuns(out, n);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof RunContainer && Arrays.equals(runs, ((RunContainer) other).runs);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(runs);
+	}
+}
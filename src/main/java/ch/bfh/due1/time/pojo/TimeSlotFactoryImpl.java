@@ -14,6 +14,7 @@ import java.time.LocalDateTime;
 
 import ch.bfh.due1.time.TimeSlot;
 import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.metrics.Instrumentation;
 
 /**
  * Creates a time slot POJO instance.
@@ -29,6 +30,8 @@ public class TimeSlotFactoryImpl implements TimeSlotFactory {
 	 */
 	@Override
 	public TimeSlot createTimeSlot(LocalDateTime start, LocalDateTime end) {
-		return new TimeSlotImpl(start, end);
+		TimeSlot ts = new TimeSlotImpl(start, end);
+		Instrumentation.current().slotCreated();
+		return ts;
 	}
 }
@@ -10,6 +10,9 @@
  */
 package ch.bfh.due1.time.pojo;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.time.LocalDateTime;
 
 import ch.bfh.due1.time.TimeSlot;
@@ -179,4 +182,32 @@ public class TimeSlotImpl implements TimeSlot {
 	public boolean exactlyMatches(TimeSlot other) {
 		return includes(other) && !startsBefore(other) && !endsAfter(other);
 	}
+
+	/**
+	 * Serializes this time slot in the compact form of its serialization
+	 * proxy.
+	 *
+	 * @return the serialization proxy
+	 */
+	private Object writeReplace() {
+		return new TimeSlotProxy(this);
+	}
+
+	/**
+	 * Reads a time slot written with the default serialized form, as done
+	 * before the serialization proxy was introduced.
+	 *
+	 * @param in
+	 *            the stream to read from
+	 * @throws IOException
+	 *             if reading fails
+	 * @throws ClassNotFoundException
+	 *             if a class of the stream cannot be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (start == null || finish == null || start.isAfter(finish)) {
+			throw new InvalidObjectException("Invalid time slot limits");
+		}
+	}
 }
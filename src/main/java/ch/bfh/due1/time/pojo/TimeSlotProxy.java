@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.pojo;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import ch.bfh.due1.time.TimeSlot;
+
+/**
+ * The serialization proxy of {@link TimeSlotImpl}. Writes a version byte
+ * followed by the time slot in the encoding of
+ * <code>ch.bfh.due1.time.io.TimeSlotCodec</code>, usually 18 bytes in total,
+ * instead of the class descriptors and data of two local date/time objects.
+ * The encoding is repeated here so that this package does not depend on the
+ * codec:
+ *
+ * <pre>
+ * tag 0 (COMPACT)   long start, long finish   epoch nanoseconds
+ * tag 1 (FULL)      long start second, int start nano,
+ *                   long finish second, int finish nano
+ * </pre>
+ */
+final class TimeSlotProxy implements Externalizable {
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final byte VERSION = 1;
+
+	private static final byte COMPACT = 0;
+
+	private static final byte FULL = 1;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private static final TimeSlotFactoryImpl FACTORY = new TimeSlotFactoryImpl();
+
+	private TimeSlot slot;
+
+	/**
+	 * Constructor for deserialization.
+	 */
+	public TimeSlotProxy() {
+	}
+
+	/**
+	 * Creates a proxy for the given time slot.
+	 *
+	 * @param slot
+	 *            the time slot to serialize
+	 */
+	TimeSlotProxy(TimeSlot slot) {
+		this.slot = slot;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(VERSION);
+		LocalDateTime start = slot.getStart();
+		LocalDateTime finish = slot.getFinish();
+		long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+		long finishSecond = finish.toEpochSecond(ZoneOffset.UTC);
+		try {
+			long startNanos = Math.addExact(Math.multiplyExact(startSecond, NANOS_PER_SECOND), start.getNano());
+			long finishNanos = Math.addExact(Math.multiplyExact(finishSecond, NANOS_PER_SECOND), finish.getNano());
+			out.writeByte(COMPACT);
+			out.writeLong(startNanos);
+			out.writeLong(finishNanos);
+		} catch (ArithmeticException e) {
+			// Beyond the range of epoch nanoseconds.
+			out.writeByte(FULL);
+			out.writeLong(startSecond);
+			out.writeInt(start.getNano());
+			out.writeLong(finishSecond);
+			out.writeInt(finish.getNano());
+		}
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException {
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new InvalidObjectException("Unsupported time slot serialization version: " + version);
+		}
+		byte tag = in.readByte();
+		try {
+			switch (tag) {
+			case COMPACT:
+				slot = FACTORY.createTimeSlot(ofEpochNanos(in.readLong()), ofEpochNanos(in.readLong()));
+				break;
+			case FULL:
+				slot = FACTORY.createTimeSlot(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC),
+						LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+				break;
+			default:
+				throw new InvalidObjectException("Unknown time slot encoding: " + tag);
+			}
+		} catch (DateTimeException | IllegalArgumentException e) {
+			InvalidObjectException ex = new InvalidObjectException("Corrupt time slot encoding");
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	private static LocalDateTime ofEpochNanos(long epochNanos) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+				(int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+	}
+
+	/**
+	 * Returns the deserialized time slot.
+	 *
+	 * @return the time slot
+	 */
+	private Object readResolve() {
+		return slot;
+	}
+}
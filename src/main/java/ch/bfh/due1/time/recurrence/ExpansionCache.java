@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.recurrence;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.cache.BoundedCache;
+import ch.bfh.due1.time.cache.CacheStats;
+import ch.bfh.due1.time.cache.EvictionPolicy;
+
+/**
+ * Memoizes the expansion of recurrence rules into windows.
+ * <p>
+ * A window covers a range of occurrence numbers, see
+ * {@link RecurrenceRule#spliterator(TimeSlot, TimeSlotFactory)}. For every
+ * rule the cache keeps the occurrences of disjoint ranges of numbers
+ * expanded so far. A window inside a cached range is answered by slicing
+ * that range. Otherwise only the numbers not cached yet are expanded, and
+ * the result is merged with the ranges it overlaps or touches. Views of the
+ * same week or month thus expand each occurrence once, and so do sliding
+ * or overlapping views.
+ * <p>
+ * Rules are immutable and compared by value, so a changed rule is a new key
+ * and never sees the occurrences of its former version. Use
+ * {@link #invalidate(RecurrenceRule)} to release those immediately instead of
+ * waiting for their eviction. The cache is bounded by the total number of
+ * cached occurrences; an evicted rule is expanded anew on its next request.
+ * <p>
+ * A window spanning more than {@value #MAXIMUM_RANGE} occurrence numbers, or
+ * more than the maximum weight, is not cached: unless a cached range covers
+ * it, it is expanded by {@link RecurrenceRule#expand(TimeSlot,
+ * TimeSlotFactory)} as if there were no cache. Use
+ * {@link #stream(RecurrenceRule, TimeSlot)} to consume such windows lazily,
+ * for instance those of a rule without count or until.
+ * <p>
+ * The time slots of the factory must be immutable, since they are shared
+ * among all callers. This class is thread-safe.
+ */
+public class ExpansionCache {
+	/**
+	 * The default maximum number of cached occurrences.
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 1 << 20;
+
+	/**
+	 * The largest number of occurrence numbers a single window may span to
+	 * be cached.
+	 */
+	public static final int MAXIMUM_RANGE = 1 << 16;
+
+	private final TimeSlotFactory factory;
+
+	/**
+	 * The largest number of occurrence numbers expanded into the cache for
+	 * one window.
+	 */
+	private final long maximumRange;
+
+	private final BoundedCache<RecurrenceRule, Expansion> cache;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructs a cache of up to {@value #DEFAULT_MAXIMUM_WEIGHT} occurrences
+	 * in LRU order.
+	 *
+	 * @param factory
+	 *            creates the time slots of the occurrences
+	 */
+	public ExpansionCache(TimeSlotFactory factory) {
+		this(factory, DEFAULT_MAXIMUM_WEIGHT, EvictionPolicy.LRU);
+	}
+
+	/**
+	 * Constructs a cache.
+	 *
+	 * @param factory
+	 *            creates the time slots of the occurrences
+	 * @param maximumWeight
+	 *            the maximum number of cached occurrences of all rules
+	 * @param policy
+	 *            the order in which rules are evicted
+	 */
+	public ExpansionCache(TimeSlotFactory factory, long maximumWeight, EvictionPolicy policy) {
+		if (factory == null) {
+			throw new NullPointerException();
+		}
+		this.factory = factory;
+		this.maximumRange = Math.min(MAXIMUM_RANGE, maximumWeight);
+		this.cache = new BoundedCache<>(maximumWeight, policy, (rule, expansion) -> expansion.weight());
+	}
+
+	/**
+	 * Returns the occurrences of the given rule overlapping the given window,
+	 * in ascending order, like {@link RecurrenceRule#expand(TimeSlot,
+	 * TimeSlotFactory)}.
+	 *
+	 * @param rule
+	 *            the rule
+	 * @param window
+	 *            the window
+	 * @return an unmodifiable list of the occurrences
+	 */
+	public List<TimeSlot> expand(RecurrenceRule rule, TimeSlot window) {
+		long origin = rule.indexOrigin(window);
+		long fence = rule.indexFence(window);
+		if (origin >= fence) {
+			return Collections.emptyList();
+		}
+		Expansion expansion = cache.get(rule);
+		Range range = expansion == null ? null : expansion.covering(origin, fence);
+		if (range != null) {
+			hits.increment();
+			return range.slice(origin, fence);
+		}
+		misses.increment();
+		if (fence - origin > maximumRange) {
+			return Collections.unmodifiableList(rule.expand(window, factory).collect(Collectors.toList()));
+		}
+		expansion = expansion == null ? new Expansion(new Range[0]) : expansion;
+		range = expansion.fill(rule, factory, origin, fence);
+		cache.put(rule, expansion.with(range));
+		return range.slice(origin, fence);
+	}
+
+	/**
+	 * Returns the occurrences of the given rule overlapping the given window,
+	 * in ascending order, like {@link #expand(RecurrenceRule, TimeSlot)}. A
+	 * window too large to be cached is expanded lazily by
+	 * {@link RecurrenceRule#expand(TimeSlot, TimeSlotFactory)}.
+	 *
+	 * @param rule
+	 *            the rule
+	 * @param window
+	 *            the window
+	 * @return the occurrences
+	 */
+	public Stream<TimeSlot> stream(RecurrenceRule rule, TimeSlot window) {
+		long origin = rule.indexOrigin(window);
+		long fence = rule.indexFence(window);
+		if (origin < fence && fence - origin > maximumRange) {
+			Expansion expansion = cache.get(rule);
+			Range range = expansion == null ? null : expansion.covering(origin, fence);
+			if (range == null) {
+				misses.increment();
+				return rule.expand(window, factory);
+			}
+		}
+		return expand(rule, window).stream();
+	}
+
+	/**
+	 * Removes the occurrences cached for the given rule.
+	 *
+	 * @param rule
+	 *            the rule
+	 */
+	public void invalidate(RecurrenceRule rule) {
+		cache.invalidate(rule);
+	}
+
+	/**
+	 * Removes all cached occurrences.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return the number of cached occurrences
+	 */
+	public long weight() {
+		return cache.weight();
+	}
+
+	/**
+	 * Returns a snapshot of the statistics recorded so far. A hit is a window
+	 * answered without expanding any occurrence; an eviction removes all
+	 * occurrences of one rule.
+	 *
+	 * @return the statistics
+	 */
+	public CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), cache.stats().getEvictionCount());
+	}
+
+	/**
+	 * The occurrences of a range of occurrence numbers. Excluded occurrences
+	 * are left out.
+	 */
+	private static final class Range {
+		/**
+		 * The first occurrence number.
+		 */
+		private final long from;
+
+		/**
+		 * The number following the last occurrence number.
+		 */
+		private final long to;
+
+		/**
+		 * The numbers of the occurrences, in ascending order.
+		 */
+		private final long[] indices;
+
+		private final TimeSlot[] slots;
+
+		private Range(long from, long to, long[] indices, TimeSlot[] slots) {
+			this.from = from;
+			this.to = to;
+			this.indices = indices;
+			this.slots = slots;
+		}
+
+		/**
+		 * Expands the occurrences numbered [from, to).
+		 */
+		private static Range expand(RecurrenceRule rule, TimeSlotFactory factory, long from, long to) {
+			int n = Math.toIntExact(to - from);
+			long[] indices = new long[n];
+			TimeSlot[] slots = new TimeSlot[n];
+			int size = 0;
+			for (long i = from; i < to; i++) {
+				LocalDateTime start = rule.occurrenceStart(i);
+				if (!rule.isExcluded(start)) {
+					indices[size] = i;
+					slots[size++] = factory.createTimeSlot(start, start.plus(rule.getDuration()));
+				}
+			}
+			return size == n ? new Range(from, to, indices, slots)
+					: new Range(from, to, Arrays.copyOf(indices, size), Arrays.copyOf(slots, size));
+		}
+
+		/**
+		 * Returns the occurrences numbered [origin, fence), which this range
+		 * covers.
+		 */
+		private List<TimeSlot> slice(long origin, long fence) {
+			int lo = lowerBound(origin);
+			int hi = lowerBound(fence);
+			return Collections.unmodifiableList(Arrays.asList(slots).subList(lo, hi));
+		}
+
+		private int lowerBound(long index) {
+			int position = Arrays.binarySearch(indices, index);
+			return position >= 0 ? position : -position - 1;
+		}
+	}
+
+	/**
+	 * The disjoint, non-adjacent ranges cached for one rule, ordered by their
+	 * numbers. Expansions are immutable; adding a range creates a new one.
+	 */
+	private static final class Expansion {
+		private final Range[] ranges;
+
+		private Expansion(Range[] ranges) {
+			this.ranges = ranges;
+		}
+
+		private long weight() {
+			long weight = 0;
+			for (Range r : ranges) {
+				weight += r.slots.length;
+			}
+			return weight;
+		}
+
+		/**
+		 * Returns the range covering [origin, fence), or null if there is
+		 * none.
+		 */
+		private Range covering(long origin, long fence) {
+			int lo = 0;
+			int hi = ranges.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (ranges[mid].to <= origin) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo < ranges.length && ranges[lo].from <= origin && fence <= ranges[lo].to ? ranges[lo] : null;
+		}
+
+		/**
+		 * Returns a range covering [origin, fence) and all ranges overlapping
+		 * or touching it, expanding only the numbers not covered yet.
+		 */
+		private Range fill(RecurrenceRule rule, TimeSlotFactory factory, long origin, long fence) {
+			List<Range> parts = new ArrayList<>();
+			long from = origin;
+			long to = fence;
+			long next = origin;
+			for (Range r : ranges) {
+				if (r.to < origin || r.from > fence) {
+					continue;
+				}
+				from = Math.min(from, r.from);
+				to = Math.max(to, r.to);
+				if (next < r.from) {
+					parts.add(Range.expand(rule, factory, next, r.from));
+				}
+				parts.add(r);
+				next = r.to;
+			}
+			if (next < fence) {
+				parts.add(Range.expand(rule, factory, next, fence));
+			}
+			if (parts.size() == 1) {
+				return parts.get(0);
+			}
+			int n = 0;
+			for (Range r : parts) {
+				n += r.slots.length;
+			}
+			long[] indices = new long[n];
+			TimeSlot[] slots = new TimeSlot[n];
+			int size = 0;
+			for (Range r : parts) {
+				System.arraycopy(r.indices, 0, indices, size, r.slots.length);
+				System.arraycopy(r.slots, 0, slots, size, r.slots.length);
+				size += r.slots.length;
+			}
+			return new Range(from, to, indices, slots);
+		}
+
+		/**
+		 * Returns a copy of this expansion with the given range replacing all
+		 * ranges it overlaps or touches.
+		 */
+		private Expansion with(Range range) {
+			List<Range> result = new ArrayList<>();
+			boolean added = false;
+			for (Range r : ranges) {
+				if (r.to < range.from) {
+					result.add(r);
+				} else if (r.from > range.to) {
+					if (!added) {
+						result.add(range);
+						added = true;
+					}
+					result.add(r);
+				}
+			}
+			if (!added) {
+				result.add(range);
+			}
+			return new Expansion(result.toArray(new Range[result.size()]));
+		}
+	}
+}
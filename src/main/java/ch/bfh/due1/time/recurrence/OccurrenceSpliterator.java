@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.recurrence;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+
+/**
+ * A spliterator over a range of occurrence numbers of a recurrence rule.
+ * Splitting halves the range, i.e. the covered date range.
+ */
+class OccurrenceSpliterator implements Spliterator<TimeSlot> {
+	/**
+	 * Ranges with fewer occurrences are not split any further.
+	 */
+	private static final long MIN_SPLIT_SIZE = 64;
+
+	private final RecurrenceRule rule;
+
+	private final TimeSlotFactory factory;
+
+	private long index;
+
+	private final long fence;
+
+	OccurrenceSpliterator(RecurrenceRule rule, TimeSlotFactory factory, long origin, long fence) {
+		this.rule = rule;
+		this.factory = factory;
+		this.index = origin;
+		this.fence = fence;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super TimeSlot> action) {
+		while (index < fence) {
+			LocalDateTime start = rule.occurrenceStart(index++);
+			if (!rule.isExcluded(start)) {
+				action.accept(factory.createTimeSlot(start, start.plus(rule.getDuration())));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super TimeSlot> action) {
+		long i = index;
+		index = fence;
+		for (; i < fence; i++) {
+			LocalDateTime start = rule.occurrenceStart(i);
+			if (!rule.isExcluded(start)) {
+				action.accept(factory.createTimeSlot(start, start.plus(rule.getDuration())));
+			}
+		}
+	}
+
+	@Override
+	public Spliterator<TimeSlot> trySplit() {
+		long size = fence - index;
+		if (size < MIN_SPLIT_SIZE) {
+			return null;
+		}
+		long mid = index + size / 2;
+		Spliterator<TimeSlot> prefix = new OccurrenceSpliterator(rule, factory, index, mid);
+		index = mid;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return fence - index;
+	}
+
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+		return rule.getExclusions().isEmpty() ? characteristics | SIZED | SUBSIZED : characteristics;
+	}
+
+	@Override
+	public Comparator<? super TimeSlot> getComparator() {
+		// Natural order of time slots.
+		return null;
+	}
+}
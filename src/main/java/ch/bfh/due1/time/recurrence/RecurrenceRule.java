@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.recurrence;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+
+/**
+ * An immutable rule describing a recurring event, see <a href =
+ * "http://martinfowler.com/apsupp/recurring.pdf">Recurring Events for
+ * Calendars</a>. Every occurrence lasts the same duration and starts at the
+ * time of day of the first occurrence.
+ * <ul>
+ * <li>{@link Frequency#DAILY}: every <i>interval</i> days.</li>
+ * <li>{@link Frequency#WEEKLY}: on the given days of every <i>interval</i>
+ * weeks; weeks start on Monday. Without days, on the day of the week of the
+ * first occurrence.</li>
+ * <li>{@link Frequency#MONTHLY}: on the day of the month of the first
+ * occurrence every <i>interval</i> months; in shorter months on their last
+ * day.</li>
+ * </ul>
+ * Occurrences are numbered from 0, starting on or after the start of the
+ * rule. The sequence ends after <i>count</i> occurrences or with the last
+ * occurrence starting no later than <i>until</i>, whatever comes first.
+ * Excluded occurrences (given by their start) still count but are never
+ * returned.
+ * <p>
+ * Occurrences are expanded lazily by {@link #expand(TimeSlot, TimeSlotFactory)}
+ * into a stream whose spliterator splits the requested window by occurrence
+ * number, hence by date range, which lets parallel streams expand long
+ * horizons on several cores.
+ */
+public final class RecurrenceRule {
+	/**
+	 * The frequency of a recurrence rule.
+	 */
+	public enum Frequency {
+		DAILY, WEEKLY, MONTHLY
+	}
+
+	private final Frequency frequency;
+
+	private final LocalDateTime start;
+
+	private final Duration duration;
+
+	private final int interval;
+
+	private final Set<DayOfWeek> days;
+
+	private final long count;
+
+	private final LocalDateTime until;
+
+	private final Set<LocalDateTime> exclusions;
+
+	/**
+	 * Days of the week as offsets from Monday in ascending order (weekly rules
+	 * only).
+	 */
+	private final int[] dayOffsets;
+
+	/**
+	 * Number of days of the first week before the first occurrence.
+	 */
+	private final int skippedDays;
+
+	private RecurrenceRule(Frequency frequency, LocalDateTime start, Duration duration, int interval,
+			Set<DayOfWeek> days, long count, LocalDateTime until, Set<LocalDateTime> exclusions) {
+		this.frequency = Objects.requireNonNull(frequency);
+		this.start = Objects.requireNonNull(start);
+		this.duration = Objects.requireNonNull(duration);
+		if (duration.isNegative()) {
+			throw new IllegalArgumentException("Duration must not be negative: " + duration);
+		}
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be positive: " + interval);
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("Count must not be negative: " + count);
+		}
+		this.interval = interval;
+		this.days = days;
+		this.count = count;
+		this.until = until;
+		this.exclusions = exclusions;
+		if (frequency == Frequency.WEEKLY) {
+			Set<DayOfWeek> effective = days.isEmpty() ? EnumSet.of(start.getDayOfWeek()) : days;
+			this.dayOffsets = new int[effective.size()];
+			int i = 0;
+			int skipped = 0;
+			for (DayOfWeek day : effective) {
+				// EnumSet iterates in ascending order, Monday first.
+				dayOffsets[i++] = day.ordinal();
+				if (day.compareTo(start.getDayOfWeek()) < 0) {
+					skipped++;
+				}
+			}
+			this.skippedDays = skipped;
+		} else {
+			this.dayOffsets = null;
+			this.skippedDays = 0;
+		}
+	}
+
+	/**
+	 * Creates an unbounded daily rule with an interval of 1.
+	 *
+	 * @param start
+	 *            the start of the first occurrence
+	 * @param duration
+	 *            the duration of every occurrence
+	 * @return the rule
+	 */
+	public static RecurrenceRule daily(LocalDateTime start, Duration duration) {
+		return new RecurrenceRule(Frequency.DAILY, start, duration, 1, Collections.<DayOfWeek> emptySet(), 0, null,
+				Collections.<LocalDateTime> emptySet());
+	}
+
+	/**
+	 * Creates an unbounded weekly rule with an interval of 1.
+	 *
+	 * @param start
+	 *            the start of the first occurrence
+	 * @param duration
+	 *            the duration of every occurrence
+	 * @param days
+	 *            the days of the week; if none is given then the day of the
+	 *            week of start is used
+	 * @return the rule
+	 */
+	public static RecurrenceRule weekly(LocalDateTime start, Duration duration, DayOfWeek... days) {
+		return new RecurrenceRule(Frequency.WEEKLY, start, duration, 1, toSet(days), 0, null,
+				Collections.<LocalDateTime> emptySet());
+	}
+
+	/**
+	 * Creates an unbounded monthly rule with an interval of 1.
+	 *
+	 * @param start
+	 *            the start of the first occurrence
+	 * @param duration
+	 *            the duration of every occurrence
+	 * @return the rule
+	 */
+	public static RecurrenceRule monthly(LocalDateTime start, Duration duration) {
+		return new RecurrenceRule(Frequency.MONTHLY, start, duration, 1, Collections.<DayOfWeek> emptySet(), 0,
+				null, Collections.<LocalDateTime> emptySet());
+	}
+
+	/**
+	 * Returns a copy of this rule with the given interval.
+	 *
+	 * @param interval
+	 *            the number of days, weeks, or months between two periods
+	 * @return the new rule
+	 */
+	public RecurrenceRule withInterval(int interval) {
+		return new RecurrenceRule(frequency, start, duration, interval, days, count, until, exclusions);
+	}
+
+	/**
+	 * Returns a copy of this weekly rule with the given days of the week.
+	 *
+	 * @param days
+	 *            the days of the week
+	 * @return the new rule
+	 */
+	public RecurrenceRule withDays(DayOfWeek... days) {
+		if (frequency != Frequency.WEEKLY) {
+			throw new IllegalStateException("Days of the week apply to weekly rules only");
+		}
+		return new RecurrenceRule(frequency, start, duration, interval, toSet(days), count, until, exclusions);
+	}
+
+	/**
+	 * Returns a copy of this rule ending after the given number of
+	 * occurrences.
+	 *
+	 * @param count
+	 *            the number of occurrences, 0 for no limit
+	 * @return the new rule
+	 */
+	public RecurrenceRule withCount(long count) {
+		return new RecurrenceRule(frequency, start, duration, interval, days, count, until, exclusions);
+	}
+
+	/**
+	 * Returns a copy of this rule ending with the last occurrence starting no
+	 * later than the given date/time.
+	 *
+	 * @param until
+	 *            the latest start of an occurrence, null for no limit
+	 * @return the new rule
+	 */
+	public RecurrenceRule withUntil(LocalDateTime until) {
+		return new RecurrenceRule(frequency, start, duration, interval, days, count, until, exclusions);
+	}
+
+	/**
+	 * Returns a copy of this rule additionally excluding the occurrences
+	 * starting at the given date/time objects.
+	 *
+	 * @param starts
+	 *            the starts of the occurrences to exclude
+	 * @return the new rule
+	 */
+	public RecurrenceRule excluding(LocalDateTime... starts) {
+		Set<LocalDateTime> set = new HashSet<>(exclusions);
+		set.addAll(Arrays.asList(starts));
+		return new RecurrenceRule(frequency, start, duration, interval, days, count, until,
+				Collections.unmodifiableSet(set));
+	}
+
+	/**
+	 * Returns the frequency.
+	 *
+	 * @return the frequency
+	 */
+	public Frequency getFrequency() {
+		return frequency;
+	}
+
+	/**
+	 * Returns the start of the first occurrence.
+	 *
+	 * @return the start
+	 */
+	public LocalDateTime getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the duration of every occurrence.
+	 *
+	 * @return the duration
+	 */
+	public Duration getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the interval.
+	 *
+	 * @return the interval
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns the days of the week of a weekly rule.
+	 *
+	 * @return the days, empty if not given
+	 */
+	public Set<DayOfWeek> getDays() {
+		return days;
+	}
+
+	/**
+	 * Returns the maximal number of occurrences.
+	 *
+	 * @return the number of occurrences, 0 for no limit
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the latest start of an occurrence.
+	 *
+	 * @return the latest start, null for no limit
+	 */
+	public LocalDateTime getUntil() {
+		return until;
+	}
+
+	/**
+	 * Returns the starts of the excluded occurrences.
+	 *
+	 * @return the excluded starts
+	 */
+	public Set<LocalDateTime> getExclusions() {
+		return exclusions;
+	}
+
+	/**
+	 * Returns the start of the occurrence with the given number, ignoring
+	 * count, until, and exclusions. Occurrence starts never decrease with
+	 * their number.
+	 *
+	 * @param index
+	 *            the occurrence number, starting from 0
+	 * @return the start of the occurrence
+	 * @throws DateTimeException
+	 *             if the start exceeds the supported range of date/time
+	 *             objects
+	 */
+	public LocalDateTime occurrenceStart(long index) {
+		switch (frequency) {
+		case DAILY:
+			return start.plusDays(Math.multiplyExact(index, (long) interval));
+		case WEEKLY:
+			long virtual = index + skippedDays;
+			long week = virtual / dayOffsets.length;
+			int offset = dayOffsets[(int) (virtual % dayOffsets.length)];
+			LocalDateTime monday = start.minusDays(start.getDayOfWeek().ordinal());
+			return monday.plusDays(Math.addExact(Math.multiplyExact(Math.multiplyExact(week, (long) interval), 7L),
+					offset));
+		case MONTHLY:
+			// Always from the first occurrence so that the day of the month
+			// does not drift after a short month.
+			return start.plusMonths(Math.multiplyExact(index, (long) interval));
+		default:
+			throw new UnsupportedOperationException("Unknown frequency: " + frequency);
+		}
+	}
+
+	/**
+	 * Returns true iff the occurrence starting at the given date/time is
+	 * excluded.
+	 *
+	 * @param occurrenceStart
+	 *            the start of an occurrence
+	 * @return true iff the occurrence is excluded
+	 */
+	public boolean isExcluded(LocalDateTime occurrenceStart) {
+		return !exclusions.isEmpty() && exclusions.contains(occurrenceStart);
+	}
+
+	/**
+	 * Returns the first occurrence number whose occurrence overlaps the
+	 * window, or a number not smaller than {@link #indexFence(TimeSlot)} if
+	 * there is none.
+	 *
+	 * @param window
+	 *            the window
+	 * @return the first occurrence number
+	 */
+	long indexOrigin(TimeSlot window) {
+		// s + duration >= window.start
+		LocalDateTime earliest;
+		try {
+			earliest = window.getStart().minus(duration);
+		} catch (DateTimeException e) {
+			return 0;
+		}
+		return firstIndexStartingAtOrAfter(earliest);
+	}
+
+	/**
+	 * Returns the number following the last occurrence overlapping the
+	 * window, taking count and until into account.
+	 *
+	 * @param window
+	 *            the window
+	 * @return the occurrence number fence
+	 */
+	long indexFence(TimeSlot window) {
+		LocalDateTime last = window.getFinish();
+		if (until != null && until.isBefore(last)) {
+			last = until;
+		}
+		long fence = firstIndexStartingAfter(last);
+		return count > 0 ? Math.min(fence, count) : fence;
+	}
+
+	/**
+	 * Expands the occurrences overlapping the given window into a lazy stream,
+	 * in ascending order. Use {@link Stream#parallel()} to expand long windows
+	 * in parallel.
+	 *
+	 * @param window
+	 *            the window
+	 * @param factory
+	 *            creates the time slots of the occurrences
+	 * @return the occurrences
+	 */
+	public Stream<TimeSlot> expand(TimeSlot window, TimeSlotFactory factory) {
+		return StreamSupport.stream(spliterator(window, factory), false);
+	}
+
+	/**
+	 * Returns a spliterator over the occurrences overlapping the given window.
+	 * It splits by occurrence number, i.e. into earlier and later date
+	 * ranges.
+	 *
+	 * @param window
+	 *            the window
+	 * @param factory
+	 *            creates the time slots of the occurrences
+	 * @return the spliterator
+	 */
+	public Spliterator<TimeSlot> spliterator(TimeSlot window, TimeSlotFactory factory) {
+		long origin = indexOrigin(window);
+		long fence = Math.max(origin, indexFence(window));
+		return new OccurrenceSpliterator(this, factory, origin, fence);
+	}
+
+	private long firstIndexStartingAtOrAfter(LocalDateTime dateTime) {
+		return firstIndex(dateTime, false);
+	}
+
+	private long firstIndexStartingAfter(LocalDateTime dateTime) {
+		return firstIndex(dateTime, true);
+	}
+
+	/**
+	 * Returns the first number whose occurrence starts at or after (or, if
+	 * strict, after) the given date/time, using an exponential search followed
+	 * by a binary search over the occurrence numbers.
+	 */
+	private long firstIndex(LocalDateTime dateTime, boolean strict) {
+		if (!before(0, dateTime, strict)) {
+			return 0;
+		}
+		long lo = 0;
+		long hi = 1;
+		while (before(hi, dateTime, strict)) {
+			lo = hi;
+			if (hi > Long.MAX_VALUE / 2) {
+				return Long.MAX_VALUE;
+			}
+			hi *= 2;
+		}
+		// before(lo) is true, before(hi) is false
+		while (hi - lo > 1) {
+			long mid = lo + (hi - lo) / 2;
+			if (before(mid, dateTime, strict)) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		return hi;
+	}
+
+	/**
+	 * Returns true iff the occurrence with the given number starts before (or,
+	 * if strict, at or before) the given date/time. Occurrences beyond the
+	 * supported range of date/time objects start after any date/time.
+	 */
+	private boolean before(long index, LocalDateTime dateTime, boolean strict) {
+		LocalDateTime s;
+		try {
+			s = occurrenceStart(index);
+		} catch (DateTimeException | ArithmeticException e) {
+			return false;
+		}
+		return strict ? !s.isAfter(dateTime) : s.isBefore(dateTime);
+	}
+
+	private static Set<DayOfWeek> toSet(DayOfWeek... days) {
+		if (days.length == 0) {
+			return Collections.<DayOfWeek> emptySet();
+		}
+		return Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(days)));
+	}
+
+	/**
+	 * Tests another object for equality. Two rules are equal iff all their
+	 * properties are equal.
+	 *
+	 * @param other
+	 *            the object to compare
+	 * @return true iff other is an equal rule
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof RecurrenceRule)) {
+			return false;
+		}
+		RecurrenceRule rule = (RecurrenceRule) other;
+		return frequency == rule.frequency && start.equals(rule.start) && duration.equals(rule.duration)
+				&& interval == rule.interval && days.equals(rule.days) && count == rule.count
+				&& Objects.equals(until, rule.until) && exclusions.equals(rule.exclusions);
+	}
+
+	/**
+	 * Returns the hash code of this object.
+	 *
+	 * @return The hash code.
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(frequency, start, duration, interval, days, count, until, exclusions);
+	}
+
+	/**
+	 * Returns a string representation of this rule.
+	 *
+	 * @return a string representation
+	 */
+	@Override
+	public String toString() {
+		return frequency + "(start=" + start + ", duration=" + duration + ", interval=" + interval
+				+ (days.isEmpty() ? "" : ", days=" + days) + (count > 0 ? ", count=" + count : "")
+				+ (until != null ? ", until=" + until : "")
+				+ (exclusions.isEmpty() ? "" : ", exclusions=" + exclusions.size()) + ")";
+	}
+}
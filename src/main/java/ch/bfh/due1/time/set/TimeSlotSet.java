@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.set;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * An immutable set of date/time values, represented as sorted runs: disjoint
+ * time slots none of which touches another one. Overlapping or touching time
+ * slots are coalesced when the set is built.
+ * <p>
+ * All set operations merge the runs of both operands in a single pass and
+ * take linear time. As time slots are closed, the difference and the
+ * complement return the closures of their pieces: a piece ends at the start
+ * of the run cut out of it, and a piece of zero length is dropped.
+ * <p>
+ * Limits are stored as epoch nanoseconds, see {@link EpochNanos}; time slots
+ * outside of that range cannot be added.
+ */
+public final class TimeSlotSet implements Iterable<TimeSlot> {
+	private static final TimeSlotSet EMPTY = new TimeSlotSet(new long[0], 0);
+
+	/**
+	 * Start and finish of run i at index 2i and 2i + 1.
+	 */
+	private final long[] runs;
+
+	private final int size;
+
+	private TimeSlotSet(long[] runs, int size) {
+		this.runs = runs;
+		this.size = size;
+	}
+
+	/**
+	 * @return the empty set
+	 */
+	public static TimeSlotSet empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns the set covered by the given time slots.
+	 *
+	 * @param slots
+	 *            the time slots, in any order
+	 * @return the set
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static TimeSlotSet of(Collection<? extends TimeSlot> slots) {
+		return builder(slots.size()).addAll(slots).build();
+	}
+
+	/**
+	 * @return a builder for a set
+	 */
+	public static Builder builder() {
+		return builder(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            the expected number of time slots
+	 * @return a builder for a set
+	 */
+	public static Builder builder(int expectedSize) {
+		return new Builder(expectedSize);
+	}
+
+	/**
+	 * @return the number of runs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true iff the set contains no date/time value
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the given run.
+	 *
+	 * @param i
+	 *            the index of the run, ordered by start
+	 * @return the run
+	 */
+	public TimeSlot get(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("Run: " + i + ", size: " + size);
+		}
+		return new EpochTimeSlot(runs[2 * i], runs[2 * i + 1]);
+	}
+
+	/**
+	 * @return the runs ordered by start, as an unmodifiable view
+	 */
+	public List<TimeSlot> asList() {
+		return new AbstractList<TimeSlot>() {
+			@Override
+			public TimeSlot get(int index) {
+				return TimeSlotSet.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Iterator<TimeSlot> iterator() {
+		return asList().iterator();
+	}
+
+	/**
+	 * Returns true iff the given date/time is contained in a run.
+	 *
+	 * @param dateTime
+	 *            a date/time
+	 * @return true iff the date/time is in the set
+	 */
+	public boolean includes(LocalDateTime dateTime) {
+		if (!EpochNanos.isRepresentable(dateTime)) {
+			return false;
+		}
+		long t = EpochNanos.of(dateTime);
+		int i = lastStartingAtOrBefore(t);
+		return i >= 0 && runs[2 * i + 1] >= t;
+	}
+
+	/**
+	 * Returns true iff the given time slot overlaps a run.
+	 *
+	 * @param ts
+	 *            a time slot
+	 * @return true iff the time slot and the set share a date/time
+	 */
+	public boolean overlaps(TimeSlot ts) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return false;
+		}
+		int i = lastStartingAtOrBefore(EpochNanos.saturatedOf(finish));
+		return i >= 0 && runs[2 * i + 1] >= EpochNanos.saturatedOf(start);
+	}
+
+	/**
+	 * Returns the index of the last run starting at or before the given
+	 * value, or -1.
+	 */
+	private int lastStartingAtOrBefore(long value) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (runs[2 * mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo - 1;
+	}
+
+	/**
+	 * Returns the sum of the lengths of all runs.
+	 *
+	 * @return the total duration
+	 */
+	public Duration totalDuration() {
+		// Seconds and nanoseconds are summed separately, so that nothing
+		// overflows.
+		long seconds = 0;
+		long nanos = 0;
+		for (int i = 0; i < 2 * size; i += 2) {
+			seconds += Math.floorDiv(runs[i + 1], EpochNanos.NANOS_PER_SECOND)
+					- Math.floorDiv(runs[i], EpochNanos.NANOS_PER_SECOND);
+			nanos += Math.floorMod(runs[i + 1], EpochNanos.NANOS_PER_SECOND)
+					- Math.floorMod(runs[i], EpochNanos.NANOS_PER_SECOND);
+		}
+		return Duration.ofSeconds(seconds, nanos);
+	}
+
+	/**
+	 * Returns the date/time values contained in this or the other set.
+	 *
+	 * @param other
+	 *            the other set
+	 * @return the union
+	 */
+	public TimeSlotSet union(TimeSlotSet other) {
+		Timer timer = Instrumentation.current().start(Operation.SET_OPERATION);
+		long[] a = this.runs;
+		long[] b = other.runs;
+		int n = 2 * this.size;
+		int m = 2 * other.size;
+		Appender out = new Appender(n + m);
+		int i = 0;
+		int j = 0;
+		while (i < n || j < m) {
+			if (j >= m || (i < n && a[i] <= b[j])) {
+				out.add(a[i], a[i + 1]);
+				i += 2;
+			} else {
+				out.add(b[j], b[j + 1]);
+				j += 2;
+			}
+		}
+		TimeSlotSet result = out.toSet();
+		timer.stop((n + m) / 2);
+		return result;
+	}
+
+	/**
+	 * Returns the date/time values contained in both this and the other set.
+	 * Runs touching each other intersect in a time slot of zero length.
+	 *
+	 * @param other
+	 *            the other set
+	 * @return the intersection
+	 */
+	public TimeSlotSet intersection(TimeSlotSet other) {
+		Timer timer = Instrumentation.current().start(Operation.SET_OPERATION);
+		long[] a = this.runs;
+		long[] b = other.runs;
+		int n = 2 * this.size;
+		int m = 2 * other.size;
+		Appender out = new Appender(n + m);
+		int i = 0;
+		int j = 0;
+		while (i < n && j < m) {
+			long lo = Math.max(a[i], b[j]);
+			long hi = Math.min(a[i + 1], b[j + 1]);
+			if (lo <= hi) {
+				out.add(lo, hi);
+			}
+			if (a[i + 1] < b[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		TimeSlotSet result = out.toSet();
+		timer.stop((n + m) / 2);
+		return result;
+	}
+
+	/**
+	 * Returns the closure of the date/time values contained in this but not
+	 * in the other set.
+	 *
+	 * @param other
+	 *            the other set
+	 * @return the difference
+	 */
+	public TimeSlotSet difference(TimeSlotSet other) {
+		return difference(this.runs, 2 * this.size, other.runs, 2 * other.size);
+	}
+
+	/**
+	 * Returns the closure of the date/time values contained in the given
+	 * window but not in this set.
+	 *
+	 * @param window
+	 *            the window
+	 * @return the complement within the window
+	 * @throws IllegalArgumentException
+	 *             if a limit of the window cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public TimeSlotSet complement(TimeSlot window) {
+		long[] w = { EpochNanos.startOf(window), EpochNanos.finishOf(window) };
+		return difference(w, 2, this.runs, 2 * this.size);
+	}
+
+	private static TimeSlotSet difference(long[] a, int n, long[] b, int m) {
+		Timer timer = Instrumentation.current().start(Operation.SET_OPERATION);
+		Appender out = new Appender(n + m);
+		int j = 0;
+		for (int i = 0; i < n; i += 2) {
+			long start = a[i];
+			long finish = a[i + 1];
+			while (j < m && b[j + 1] < start) {
+				j += 2;
+			}
+			long cur = start;
+			boolean cut = false;
+			boolean covered = false;
+			// A run of b reaching beyond this run of a is kept for the next one.
+			for (int k = j; k < m && b[k] <= finish; k += 2) {
+				cut = true;
+				if (b[k] > cur) {
+					out.add(cur, b[k]);
+				}
+				if (b[k + 1] >= finish) {
+					covered = true;
+					break;
+				}
+				cur = Math.max(cur, b[k + 1]);
+				j = k + 2;
+			}
+			if (!covered && (!cut || cur < finish)) {
+				out.add(cur, finish);
+			}
+		}
+		TimeSlotSet result = out.toSet();
+		timer.stop((n + m) / 2);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof TimeSlotSet)) {
+			return false;
+		}
+		TimeSlotSet o = (TimeSlotSet) other;
+		if (size != o.size) {
+			return false;
+		}
+		for (int i = 0; i < 2 * size; i++) {
+			if (runs[i] != o.runs[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 37;
+		for (int i = 0; i < 2 * size; i++) {
+			h = 17 * h + Long.hashCode(runs[i]);
+		}
+		return h;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 2 * size; i += 2) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append('[').append(EpochNanos.toLocalDateTime(runs[i])).append(", ")
+					.append(EpochNanos.toLocalDateTime(runs[i + 1])).append(']');
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Collects runs in ascending order of their starts, coalescing a run with
+	 * the previous one if they overlap or touch.
+	 */
+	private static final class Appender {
+		private long[] runs;
+
+		private int length;
+
+		private Appender(int capacity) {
+			this.runs = new long[Math.max(2, capacity)];
+		}
+
+		private void add(long start, long finish) {
+			if (length > 0 && start <= runs[length - 1]) {
+				if (finish > runs[length - 1]) {
+					runs[length - 1] = finish;
+				}
+				return;
+			}
+			if (length == runs.length) {
+				runs = Arrays.copyOf(runs, 2 * length);
+			}
+			runs[length++] = start;
+			runs[length++] = finish;
+		}
+
+		private TimeSlotSet toSet() {
+			return length == 0 ? EMPTY : new TimeSlotSet(runs, length / 2);
+		}
+	}
+
+	/**
+	 * Collects time slots in any order and normalizes them into a set in
+	 * O(n log n) time.
+	 * <p>
+	 * The union of closed time slots only depends on how many of them start
+	 * and finish at each date/time, so starts and finishes are sorted
+	 * separately as primitive arrays and swept with a counter.
+	 */
+	public static final class Builder {
+		private long[] starts;
+
+		private long[] finishes;
+
+		private int count;
+
+		private Builder(int expectedSize) {
+			this.starts = new long[Math.max(1, expectedSize)];
+			this.finishes = new long[Math.max(1, expectedSize)];
+		}
+
+		/**
+		 * Adds a time slot.
+		 *
+		 * @param ts
+		 *            the time slot
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if a limit of the time slot cannot be encoded as epoch
+		 *             nanoseconds
+		 */
+		public Builder add(TimeSlot ts) {
+			return add(EpochNanos.startOf(ts), EpochNanos.finishOf(ts));
+		}
+
+		/**
+		 * Adds a time slot given by epoch nanoseconds.
+		 *
+		 * @param start
+		 *            the start of the time slot
+		 * @param finish
+		 *            the finish of the time slot, not less than the start
+		 * @return this builder
+		 */
+		public Builder add(long start, long finish) {
+			if (start > finish) {
+				throw new IllegalArgumentException("Finish time of time slot cannot be smaller than start time");
+			}
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * count);
+				finishes = Arrays.copyOf(finishes, 2 * count);
+			}
+			starts[count] = start;
+			finishes[count] = finish;
+			count++;
+			return this;
+		}
+
+		/**
+		 * Adds the given time slots.
+		 *
+		 * @param slots
+		 *            the time slots
+		 * @return this builder
+		 * @throws IllegalArgumentException
+		 *             if a limit of a time slot cannot be encoded as epoch
+		 *             nanoseconds
+		 */
+		public Builder addAll(Collection<? extends TimeSlot> slots) {
+			for (TimeSlot ts : slots) {
+				add(ts);
+			}
+			return this;
+		}
+
+		/**
+		 * Builds the set covered by the time slots added so far.
+		 *
+		 * @return the set
+		 */
+		public TimeSlotSet build() {
+			Timer timer = Instrumentation.current().start(Operation.SET_OPERATION);
+			long[] s = Arrays.copyOf(starts, count);
+			long[] f = Arrays.copyOf(finishes, count);
+			Arrays.sort(s);
+			Arrays.sort(f);
+			Appender out = new Appender(2 * count);
+			int i = 0;
+			int j = 0;
+			int depth = 0;
+			long runStart = 0;
+			while (i < count) {
+				// At equal values, starts come first: touching slots coalesce.
+				if (s[i] <= f[j]) {
+					if (depth++ == 0) {
+						runStart = s[i];
+					}
+					i++;
+				} else {
+					if (--depth == 0) {
+						out.add(runStart, f[j]);
+					}
+					j++;
+				}
+			}
+			if (count > 0) {
+				out.add(runStart, f[count - 1]);
+			}
+			TimeSlotSet result = out.toSet();
+			timer.stop(count);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.sort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+
+/**
+ * This utility class sorts time slots into {@link TimeSlot#compareTo(TimeSlot)}
+ * order without calling the comparator.
+ * <p>
+ * The limits of every time slot are encoded once as epoch nanoseconds, see
+ * {@link EpochNanos}. Ordering by start and finish is the same as ordering by
+ * start and length, where the length is never negative. Both are taken
+ * relative to their minima, and if their significant bits fit into 64 bits
+ * together, they are packed into a single unsigned key, the start in the high
+ * bits. Otherwise, the lengths and the starts are sorted one after the other.
+ * <p>
+ * The keys are sorted together with the indexes of their time slots by a
+ * least significant digit radix sort of 8 bit digits. Digits equal for all
+ * keys are skipped, so the number of passes depends on the spread of the
+ * values only. The sort is stable: equal time slots keep their order. The
+ * parallel variants compute the histograms of a pass and scatter the keys
+ * chunk by chunk in a fork/join pool.
+ */
+public final class TimeSlotSorter {
+	private static final int DIGIT_BITS = 8;
+
+	private static final int RADIX = 1 << DIGIT_BITS;
+
+	/**
+	 * Chunks with fewer time slots are not sorted in parallel.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Not used.
+	 */
+	private TimeSlotSorter() {
+	}
+
+	/**
+	 * Sorts the given time slots.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static void sort(TimeSlot[] slots) {
+		permute(slots, order(slots, null));
+	}
+
+	/**
+	 * Sorts the given list of time slots, see {@link #sort(TimeSlot[])}.
+	 *
+	 * @param slots
+	 *            the time slots, a modifiable list
+	 */
+	public static <T extends TimeSlot> void sort(List<T> slots) {
+		TimeSlot[] array = slots.toArray(new TimeSlot[slots.size()]);
+		sort(array);
+		set(slots, array);
+	}
+
+	/**
+	 * Sorts the given time slots using the common fork/join pool, see
+	 * {@link #sort(TimeSlot[])}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 */
+	public static void parallelSort(TimeSlot[] slots) {
+		parallelSort(slots, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Sorts the given time slots using the given fork/join pool, see
+	 * {@link #sort(TimeSlot[])}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @param pool
+	 *            the pool running the passes
+	 */
+	public static void parallelSort(TimeSlot[] slots, ForkJoinPool pool) {
+		permute(slots, order(slots, pool));
+	}
+
+	/**
+	 * Sorts the given list of time slots using the common fork/join pool, see
+	 * {@link #sort(TimeSlot[])}.
+	 *
+	 * @param slots
+	 *            the time slots, a modifiable list
+	 */
+	public static <T extends TimeSlot> void parallelSort(List<T> slots) {
+		TimeSlot[] array = slots.toArray(new TimeSlot[slots.size()]);
+		parallelSort(array);
+		set(slots, array);
+	}
+
+	/**
+	 * Returns the sorting permutation of the given time slots, leaving them
+	 * in place. Useful to sort other arrays along with the time slots.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @return the index of the time slot at each sorted position
+	 * @throws IllegalArgumentException
+	 *             if a limit of a time slot cannot be encoded as epoch
+	 *             nanoseconds
+	 */
+	public static int[] order(TimeSlot[] slots) {
+		return order(slots, null);
+	}
+
+	/**
+	 * Returns the sorting permutation of the given time slots using the
+	 * common fork/join pool, see {@link #order(TimeSlot[])}.
+	 *
+	 * @param slots
+	 *            the time slots
+	 * @return the index of the time slot at each sorted position
+	 */
+	public static int[] parallelOrder(TimeSlot[] slots) {
+		return order(slots, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the sorting permutation of time slots given by their encoded
+	 * limits.
+	 *
+	 * @param starts
+	 *            the starts in epoch nanoseconds
+	 * @param finishes
+	 *            the finishes in epoch nanoseconds, none before its start
+	 * @return the index of the time slot at each sorted position
+	 */
+	public static int[] order(long[] starts, long[] finishes) {
+		if (starts.length != finishes.length) {
+			throw new IllegalArgumentException("Arrays differ in length");
+		}
+		return order(starts.clone(), finishes.clone(), null);
+	}
+
+	/**
+	 * Returns the sorting permutation of the given values, for instance
+	 * encoded date/times, leaving them in place.
+	 *
+	 * @param values
+	 *            the values
+	 * @return the index of the value at each sorted position, equal values
+	 *         in the order of their indexes
+	 */
+	public static int[] order(long[] values) {
+		int n = values.length;
+		int[] index = new int[n];
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+			index[i] = i;
+		}
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = values[i] - min;
+		}
+		sort(keys, index, bits(max - min), null);
+		return index;
+	}
+
+	private static int[] order(TimeSlot[] slots, ForkJoinPool pool) {
+		int n = slots.length;
+		long[] starts = new long[n];
+		long[] finishes = new long[n];
+		forEachChunk(pool, (n + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE, c -> {
+			int to = Math.min(n, (c + 1) * MIN_CHUNK_SIZE);
+			for (int i = c * MIN_CHUNK_SIZE; i < to; i++) {
+				starts[i] = EpochNanos.startOf(slots[i]);
+				finishes[i] = EpochNanos.finishOf(slots[i]);
+			}
+		});
+		return order(starts, finishes, pool);
+	}
+
+	/**
+	 * Sorts the given limits, overwriting them with the keys.
+	 */
+	private static int[] order(long[] starts, long[] lengths, ForkJoinPool pool) {
+		int n = starts.length;
+		int[] index = new int[n];
+		if (n == 0) {
+			return index;
+		}
+		long minStart = Long.MAX_VALUE;
+		long maxStart = Long.MIN_VALUE;
+		long maxLength = 0;
+		for (int i = 0; i < n; i++) {
+			if (lengths[i] < starts[i]) {
+				throw new IllegalArgumentException("Finish before start at index " + i);
+			}
+			long length = lengths[i] - starts[i];
+			lengths[i] = length;
+			minStart = Math.min(minStart, starts[i]);
+			maxStart = Math.max(maxStart, starts[i]);
+			// Unsigned, the length may exceed Long.MAX_VALUE.
+			maxLength = Long.compareUnsigned(maxLength, length) < 0 ? length : maxLength;
+			index[i] = i;
+		}
+		int startBits = bits(maxStart - minStart);
+		int lengthBits = bits(maxLength);
+		if (startBits + lengthBits <= Long.SIZE) {
+			for (int i = 0; i < n; i++) {
+				starts[i] = lengthBits == Long.SIZE ? lengths[i]
+						: ((starts[i] - minStart) << lengthBits) | lengths[i];
+			}
+			sort(starts, index, startBits + lengthBits, pool);
+		} else {
+			sort(lengths, index, lengthBits, pool);
+			// Bring the starts into the order of the lengths.
+			long[] keys = new long[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = starts[index[i]] - minStart;
+			}
+			sort(keys, index, startBits, pool);
+		}
+		return index;
+	}
+
+	private static int bits(long unsigned) {
+		return Long.SIZE - Long.numberOfLeadingZeros(unsigned);
+	}
+
+	/**
+	 * Sorts the unsigned keys, of which only the given number of low bits
+	 * may be set, and the indexes along with them.
+	 */
+	static void sort(long[] keys, int[] index, int bits, ForkJoinPool pool) {
+		int n = keys.length;
+		int chunks = pool == null ? 1 : Math.max(1, Math.min(4 * pool.getParallelism(), n / MIN_CHUNK_SIZE));
+		int chunkSize = (n + chunks - 1) / chunks;
+		int[][] counts = new int[chunks][RADIX];
+		long[] k = keys;
+		int[] x = index;
+		long[] kOut = new long[n];
+		int[] xOut = new int[n];
+		for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+			int s = shift;
+			long[] kIn = k;
+			forEachChunk(pool, chunks, c -> {
+				int[] count = counts[c];
+				Arrays.fill(count, 0);
+				int to = Math.min(n, (c + 1) * chunkSize);
+				for (int i = c * chunkSize; i < to; i++) {
+					count[(int) (kIn[i] >>> s) & (RADIX - 1)]++;
+				}
+			});
+			// Turn the counts into the first position of each digit and chunk.
+			boolean trivial = false;
+			int position = 0;
+			for (int d = 0; d < RADIX; d++) {
+				int total = 0;
+				for (int c = 0; c < chunks; c++) {
+					int count = counts[c][d];
+					counts[c][d] = position;
+					position += count;
+					total += count;
+				}
+				trivial |= total == n;
+			}
+			if (trivial) {
+				continue;
+			}
+			int[] xIn = x;
+			long[] kTo = kOut;
+			int[] xTo = xOut;
+			forEachChunk(pool, chunks, c -> {
+				int[] next = counts[c];
+				int to = Math.min(n, (c + 1) * chunkSize);
+				for (int i = c * chunkSize; i < to; i++) {
+					int p = next[(int) (kIn[i] >>> s) & (RADIX - 1)]++;
+					kTo[p] = kIn[i];
+					xTo[p] = xIn[i];
+				}
+			});
+			kOut = k;
+			xOut = x;
+			k = kTo;
+			x = xTo;
+		}
+		if (k != keys) {
+			System.arraycopy(k, 0, keys, 0, n);
+			System.arraycopy(x, 0, index, 0, n);
+		}
+	}
+
+	/**
+	 * Runs the given action for the chunks [0, chunks), in the given pool if
+	 * there is one.
+	 */
+	private static void forEachChunk(ForkJoinPool pool, int chunks, IntConsumer action) {
+		if (pool == null || chunks <= 1) {
+			for (int c = 0; c < chunks; c++) {
+				action.accept(c);
+			}
+		} else {
+			pool.invoke(new ChunkTask(action, 0, chunks));
+		}
+	}
+
+	private static void permute(TimeSlot[] slots, int[] index) {
+		TimeSlot[] copy = slots.clone();
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = copy[index[i]];
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends TimeSlot> void set(List<T> list, TimeSlot[] array) {
+		ListIterator<T> i = list.listIterator();
+		for (TimeSlot ts : array) {
+			i.next();
+			i.set((T) ts);
+		}
+	}
+
+	/**
+	 * Runs an action for a range of chunks, splitting it in halves.
+	 */
+	@SuppressWarnings("serial")
+	private static final class ChunkTask extends RecursiveAction {
+		private final IntConsumer action;
+
+		private final int from;
+
+		private final int to;
+
+		private ChunkTask(IntConsumer action, int from, int to) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ChunkTask(action, from, mid), new ChunkTask(action, mid, to));
+				return;
+			}
+			action.accept(from);
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.window;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.metrics.Instrumentation;
+import ch.bfh.due1.time.metrics.Operation;
+import ch.bfh.due1.time.metrics.SlotMetrics.Timer;
+
+/**
+ * A buffer of the most recent time slots of a live feed, such as the run
+ * periods of a machine. Time slots are appended in the order of their
+ * starts and evicted once their finish falls behind a watermark which only
+ * moves forward.
+ * <p>
+ * The time slots are kept in a ring of primitive arrays, numbered by a
+ * sequence. Eviction advances the head of the ring while the time slot at
+ * the head finishes before the watermark, which takes O(1) amortized time
+ * per time slot. A time slot finishing late holds back the eviction of the
+ * ones after it; these are no longer reported by queries and are freed once
+ * it has been evicted. The ring doubles its capacity when it is full.
+ * <p>
+ * Queries find the first time slot which may overlap by a binary search over
+ * the running maximum of the finishes, and stop at the first time slot
+ * starting too late. Results follow the semantics of
+ * {@link TimeSlot#overlaps(TimeSlot)} and
+ * {@link TimeSlot#includes(LocalDateTime)}, ordered by sequence.
+ * <p>
+ * One thread may append and evict while any number of threads query,
+ * without locks. Every entry of the ring carries the sequence it holds, and
+ * readers ignore entries whose sequence changes while they read them. A
+ * query sees the time slots appended before it started; time slots evicted
+ * while it runs may or may not be reported. Limits are stored as epoch
+ * nanoseconds, see {@link EpochNanos}.
+ */
+public class SlidingWindowBuffer {
+	/**
+	 * The default initial capacity.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The sequence of an entry holding no time slot.
+	 */
+	private static final long FREE = -1;
+
+	private volatile Ring ring;
+
+	/**
+	 * The sequence of the oldest time slot kept.
+	 */
+	private volatile long head;
+
+	/**
+	 * The sequence of the next time slot appended.
+	 */
+	private volatile long tail;
+
+	private volatile long watermark = Long.MIN_VALUE;
+
+	/**
+	 * The start of the last time slot appended, only accessed by the writer.
+	 */
+	private long lastStart = Long.MIN_VALUE;
+
+	/**
+	 * The largest finish appended so far, only accessed by the writer.
+	 */
+	private long maxFinish = Long.MIN_VALUE;
+
+	/**
+	 * Constructs an empty buffer with the default initial capacity.
+	 */
+	public SlidingWindowBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty buffer.
+	 *
+	 * @param initialCapacity
+	 *            the initial capacity, rounded up to a power of two
+	 */
+	public SlidingWindowBuffer(int initialCapacity) {
+		if (initialCapacity <= 0 || initialCapacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity out of range: " + initialCapacity);
+		}
+		int capacity = Integer.highestOneBit(initialCapacity);
+		if (capacity < initialCapacity) {
+			capacity *= 2;
+		}
+		this.ring = new Ring(capacity);
+	}
+
+	/**
+	 * Appends a time slot. Only the writing thread may call this method.
+	 *
+	 * @param ts
+	 *            the time slot, starting not before the previous one
+	 * @return true iff the time slot has been appended, false if it finishes
+	 *         before the watermark
+	 * @throws IllegalArgumentException
+	 *             if the time slot starts before the previous one, or if a
+	 *             limit cannot be encoded as epoch nanoseconds
+	 */
+	public boolean append(TimeSlot ts) {
+		long start = EpochNanos.startOf(ts);
+		long finish = EpochNanos.finishOf(ts);
+		if (start < lastStart) {
+			throw new IllegalArgumentException("Time slot starts before the previous one: " + ts);
+		}
+		if (finish < watermark) {
+			return false;
+		}
+		long seq = tail;
+		Ring r = ring;
+		if (seq - head == r.capacity()) {
+			r = r.grow(head, seq);
+			ring = r;
+		}
+		lastStart = start;
+		maxFinish = Math.max(maxFinish, finish);
+		r.set((int) seq & r.mask, seq, ts, start, finish, maxFinish);
+		tail = seq + 1;
+		return true;
+	}
+
+	/**
+	 * Moves the watermark forward and evicts the time slots finishing before
+	 * it. Only the writing thread may call this method.
+	 *
+	 * @param dateTime
+	 *            the new watermark; a watermark before the current one is
+	 *            ignored
+	 * @return the number of time slots evicted
+	 * @throws IllegalArgumentException
+	 *             if the watermark cannot be encoded as epoch nanoseconds
+	 */
+	public int advance(LocalDateTime dateTime) {
+		long w = EpochNanos.of(dateTime);
+		if (w > watermark) {
+			watermark = w;
+		}
+		w = watermark;
+		Ring r = ring;
+		long h = head;
+		long t = tail;
+		int evicted = 0;
+		while (h < t && r.finishes.get((int) h & r.mask) < w) {
+			r.free((int) h & r.mask);
+			h++;
+			evicted++;
+		}
+		head = h;
+		return evicted;
+	}
+
+	/**
+	 * @return the watermark, null if it has never been set
+	 */
+	public LocalDateTime getWatermark() {
+		long w = watermark;
+		return w == Long.MIN_VALUE ? null : EpochNanos.toLocalDateTime(w);
+	}
+
+	/**
+	 * Returns the number of time slots kept, including the ones finishing
+	 * before the watermark held back by an earlier one.
+	 *
+	 * @return the number of time slots kept
+	 */
+	public int size() {
+		long t = tail;
+		// The head may have passed the tail read before.
+		return (int) Math.max(0, t - head);
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true and which finish at or after the
+	 * watermark.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @return the overlapping time slots
+	 */
+	public List<TimeSlot> overlapping(TimeSlot ts) {
+		List<TimeSlot> result = new ArrayList<>();
+		overlapping(ts, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.overlaps(ts)</code> is true and which finish at or after the
+	 * watermark to the given consumer.
+	 *
+	 * @param ts
+	 *            the time slot to check
+	 * @param consumer
+	 *            receives the overlapping time slots
+	 */
+	public void overlapping(TimeSlot ts, Consumer<? super TimeSlot> consumer) {
+		LocalDateTime start = ts.getStart();
+		LocalDateTime finish = ts.getFinish();
+		if (EpochNanos.compare(Long.MAX_VALUE, start) < 0 || EpochNanos.compare(Long.MIN_VALUE, finish) > 0) {
+			// Entirely outside of the range of encoded values.
+			return;
+		}
+		query(EpochNanos.saturatedOf(start), EpochNanos.saturatedOf(finish), consumer);
+	}
+
+	/**
+	 * Returns all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true and which finish at or after
+	 * the watermark.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @return the time slots including the date/time
+	 */
+	public List<TimeSlot> containing(LocalDateTime dateTime) {
+		List<TimeSlot> result = new ArrayList<>();
+		containing(dateTime, result::add);
+		return result;
+	}
+
+	/**
+	 * Passes all time slots <code>s</code> for which
+	 * <code>s.includes(dateTime)</code> is true and which finish at or after
+	 * the watermark to the given consumer.
+	 *
+	 * @param dateTime
+	 *            the date/time to check
+	 * @param consumer
+	 *            receives the time slots including the date/time
+	 */
+	public void containing(LocalDateTime dateTime, Consumer<? super TimeSlot> consumer) {
+		if (EpochNanos.isRepresentable(dateTime)) {
+			long t = EpochNanos.of(dateTime);
+			query(t, t, consumer);
+		}
+	}
+
+	/**
+	 * Reports all time slots with start &lt;= to and finish &gt;= max(from,
+	 * watermark).
+	 */
+	private void query(long from, long to, Consumer<? super TimeSlot> consumer) {
+		Timer timer = Instrumentation.current().start(Operation.INDEX_QUERY);
+		// Read the tail before the ring: the ring holds all entries up to the
+		// tail.
+		long t = tail;
+		Ring r = ring;
+		long h = Math.min(head, t);
+		long min = Math.max(from, watermark);
+		// Entries overwritten meanwhile hold later time slots with larger
+		// values, so the search may only end too early.
+		long lo = h;
+		long hi = t;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (r.maxFinishes.get((int) mid & r.mask) < min) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		for (long seq = lo; seq < t; seq++) {
+			int i = (int) seq & r.mask;
+			if (r.sequences.get(i) != seq) {
+				continue;
+			}
+			long start = r.starts.get(i);
+			long finish = r.finishes.get(i);
+			TimeSlot slot = r.slots.get(i);
+			if (r.sequences.get(i) != seq) {
+				// Evicted and overwritten while reading.
+				continue;
+			}
+			if (start > to) {
+				break;
+			}
+			if (finish >= min) {
+				consumer.accept(slot);
+			}
+		}
+		timer.stop(t - h);
+	}
+
+	/**
+	 * The entries of the buffer. Each entry holds the sequence of its time
+	 * slot, which is written after the time slot and cleared on eviction.
+	 */
+	private static final class Ring {
+		private final int mask;
+
+		private final AtomicLongArray sequences;
+
+		private final AtomicReferenceArray<TimeSlot> slots;
+
+		private final AtomicLongArray starts;
+
+		private final AtomicLongArray finishes;
+
+		/**
+		 * The largest finish of all time slots up to each entry.
+		 */
+		private final AtomicLongArray maxFinishes;
+
+		private Ring(int capacity) {
+			this.mask = capacity - 1;
+			this.sequences = new AtomicLongArray(capacity);
+			this.slots = new AtomicReferenceArray<>(capacity);
+			this.starts = new AtomicLongArray(capacity);
+			this.finishes = new AtomicLongArray(capacity);
+			this.maxFinishes = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				sequences.set(i, FREE);
+			}
+		}
+
+		private int capacity() {
+			return mask + 1;
+		}
+
+		private void set(int i, long seq, TimeSlot slot, long start, long finish, long maxFinish) {
+			slots.set(i, slot);
+			starts.set(i, start);
+			finishes.set(i, finish);
+			maxFinishes.set(i, maxFinish);
+			sequences.set(i, seq);
+		}
+
+		private void free(int i) {
+			sequences.set(i, FREE);
+			slots.set(i, null);
+		}
+
+		/**
+		 * Returns a ring of twice the capacity holding the entries [from, to).
+		 */
+		private Ring grow(long from, long to) {
+			if (capacity() > 1 << 29) {
+				throw new IllegalStateException("Buffer full");
+			}
+			Ring r = new Ring(2 * capacity());
+			for (long seq = from; seq < to; seq++) {
+				int i = (int) seq & mask;
+				r.set((int) seq & r.mask, seq, slots.get(i), starts.get(i), finishes.get(i), maxFinishes.get(i));
+			}
+			return r;
+		}
+	}
+}
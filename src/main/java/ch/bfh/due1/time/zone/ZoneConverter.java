@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.zone;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+/**
+ * Converts the local limits of time slots into instants of a time zone and
+ * back, without consulting the zone rules for every value.
+ * <p>
+ * A converter is created for a range of local date/times. It looks up the
+ * offset transitions of the zone around that range once, and stores them as
+ * sorted arrays of epoch nanoseconds. Converting a value within the range is
+ * a binary search over these arrays followed by a subtraction; batch
+ * conversions first try the transition found for the previous value, which
+ * usually matches for sorted input. Values outside of the range fall back to
+ * the zone rules, with the same results.
+ * <p>
+ * Local date/times in a gap, where the clocks jump forward, do not exist,
+ * and local date/times in an overlap, where the clocks are set back, exist
+ * twice. They are resolved by a {@link GapPolicy} and an
+ * {@link OverlapPolicy}. The defaults, {@link GapPolicy#SHIFT} and
+ * {@link OverlapPolicy#EARLIER}, yield the same instants as
+ * {@link java.time.ZonedDateTime#of(LocalDateTime, ZoneId)}. With any of the
+ * policies, the conversion of local date/times does not decrease, hence the
+ * start of a converted time slot never follows its finish.
+ * <p>
+ * Values are encoded as epoch nanoseconds, see {@link EpochNanos}: local
+ * ones relative to 1970-01-01T00:00:00 and instants relative to
+ * 1970-01-01T00:00:00Z. Instances are immutable and thread-safe.
+ */
+public class ZoneConverter {
+	/**
+	 * Resolves a local date/time skipped by a transition.
+	 */
+	public enum GapPolicy {
+		/**
+		 * Shifts the local date/time forward by the length of the gap, as
+		 * done by java.time.
+		 */
+		SHIFT,
+
+		/**
+		 * Maps the local date/time to the instant of the transition, i.e. the
+		 * first valid local date/time after the gap.
+		 */
+		TRANSITION,
+
+		/**
+		 * Throws an IllegalArgumentException.
+		 */
+		REJECT
+	}
+
+	/**
+	 * Resolves a local date/time repeated by a transition.
+	 */
+	public enum OverlapPolicy {
+		/**
+		 * Uses the offset before the transition, i.e. the earlier instant, as
+		 * done by java.time.
+		 */
+		EARLIER,
+
+		/**
+		 * Uses the offset after the transition, i.e. the later instant.
+		 */
+		LATER,
+
+		/**
+		 * Throws an IllegalArgumentException.
+		 */
+		REJECT
+	}
+
+	/**
+	 * The margin of the transition table around the range, exceeding the
+	 * largest possible offset of 18 hours.
+	 */
+	private static final long MARGIN = 24L * 3600 * EpochNanos.NANOS_PER_SECOND;
+
+	private final ZoneId zone;
+
+	private final ZoneRules rules;
+
+	private final GapPolicy gapPolicy;
+
+	private final OverlapPolicy overlapPolicy;
+
+	/**
+	 * The local values converted through the table.
+	 */
+	private final long localFrom;
+
+	private final long localTo;
+
+	/**
+	 * The instants converted through the table.
+	 */
+	private final long instantFrom;
+
+	private final long instantTo;
+
+	/**
+	 * The offset before the first transition.
+	 */
+	private final long initialOffset;
+
+	/**
+	 * The instants of the transitions.
+	 */
+	private final long[] transitions;
+
+	/**
+	 * The local values of the transitions before and after the shift, the
+	 * lower one first; values in between lie in a gap or an overlap.
+	 */
+	private final long[] lows;
+
+	private final long[] highs;
+
+	private final long[] offsetsBefore;
+
+	private final long[] offsetsAfter;
+
+	/**
+	 * Creates a converter resolving gaps and overlaps as java.time does.
+	 *
+	 * @param zone
+	 *            the zone
+	 * @param range
+	 *            the local date/times to be converted through the transition
+	 *            table
+	 */
+	public ZoneConverter(ZoneId zone, TimeSlot range) {
+		this(zone, range, GapPolicy.SHIFT, OverlapPolicy.EARLIER);
+	}
+
+	/**
+	 * Creates a converter.
+	 *
+	 * @param zone
+	 *            the zone
+	 * @param range
+	 *            the local date/times to be converted through the transition
+	 *            table
+	 * @param gapPolicy
+	 *            resolves local date/times skipped by a transition
+	 * @param overlapPolicy
+	 *            resolves local date/times repeated by a transition
+	 */
+	public ZoneConverter(ZoneId zone, TimeSlot range, GapPolicy gapPolicy, OverlapPolicy overlapPolicy) {
+		if (zone == null || gapPolicy == null || overlapPolicy == null) {
+			throw new IllegalArgumentException("Zone and policies must not be null");
+		}
+		this.zone = zone;
+		this.rules = zone.getRules();
+		this.gapPolicy = gapPolicy;
+		this.overlapPolicy = overlapPolicy;
+		this.localFrom = EpochNanos.saturatedOf(range.getStart());
+		this.localTo = EpochNanos.saturatedOf(range.getFinish());
+		this.instantFrom = saturatedAdd(localFrom, -MARGIN);
+		this.instantTo = saturatedAdd(localTo, MARGIN);
+		this.initialOffset = offsetNanos(rules.getOffset(toInstant(instantFrom)).getTotalSeconds());
+		int n = 0;
+		long[] t = new long[8];
+		long[] before = new long[8];
+		long[] after = new long[8];
+		for (ZoneOffsetTransition z = rules.nextTransition(toInstant(instantFrom)); z != null; z = rules
+				.nextTransition(z.getInstant())) {
+			long instant = saturatedNanos(z.getInstant());
+			if (instant > instantTo) {
+				break;
+			}
+			if (n == t.length) {
+				t = Arrays.copyOf(t, 2 * n);
+				before = Arrays.copyOf(before, 2 * n);
+				after = Arrays.copyOf(after, 2 * n);
+			}
+			t[n] = instant;
+			before[n] = offsetNanos(z.getOffsetBefore().getTotalSeconds());
+			after[n] = offsetNanos(z.getOffsetAfter().getTotalSeconds());
+			n++;
+		}
+		this.transitions = Arrays.copyOf(t, n);
+		this.offsetsBefore = Arrays.copyOf(before, n);
+		this.offsetsAfter = Arrays.copyOf(after, n);
+		this.lows = new long[n];
+		this.highs = new long[n];
+		for (int i = 0; i < n; i++) {
+			long b = saturatedAdd(transitions[i], offsetsBefore[i]);
+			long a = saturatedAdd(transitions[i], offsetsAfter[i]);
+			lows[i] = Math.min(a, b);
+			highs[i] = Math.max(a, b);
+		}
+	}
+
+	/**
+	 * @return the zone
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/**
+	 * @return the policy resolving local date/times skipped by a transition
+	 */
+	public GapPolicy getGapPolicy() {
+		return gapPolicy;
+	}
+
+	/**
+	 * @return the policy resolving local date/times repeated by a transition
+	 */
+	public OverlapPolicy getOverlapPolicy() {
+		return overlapPolicy;
+	}
+
+	/**
+	 * Converts a local value into an instant.
+	 *
+	 * @param localEpochNanos
+	 *            a local date/time, see {@link EpochNanos}
+	 * @return the instant in epoch nanoseconds
+	 * @throws IllegalArgumentException
+	 *             if the local date/time is rejected by a policy, or if the
+	 *             instant cannot be encoded
+	 */
+	public long toEpochNanos(long localEpochNanos) {
+		return toEpochNanos(localEpochNanos, transitionAt(lows, localEpochNanos, -1));
+	}
+
+	/**
+	 * Converts a local date/time into an instant.
+	 *
+	 * @param dateTime
+	 *            a local date/time
+	 * @return the instant
+	 * @throws IllegalArgumentException
+	 *             if the local date/time is rejected by a policy, or if it or
+	 *             the instant cannot be encoded
+	 */
+	public Instant toInstant(LocalDateTime dateTime) {
+		return toInstant(toEpochNanos(EpochNanos.of(dateTime)));
+	}
+
+	/**
+	 * Converts a time slot into a zoned time slot.
+	 *
+	 * @param ts
+	 *            a time slot
+	 * @return the zoned time slot
+	 * @throws IllegalArgumentException
+	 *             if a limit is rejected by a policy, or if it or its instant
+	 *             cannot be encoded
+	 */
+	public ZonedTimeSlot toZoned(TimeSlot ts) {
+		return new ZonedTimeSlot(toInstant(toEpochNanos(EpochNanos.startOf(ts))),
+				toInstant(toEpochNanos(EpochNanos.finishOf(ts))), zone);
+	}
+
+	/**
+	 * Converts the limits of the given time slots into instants.
+	 *
+	 * @param slots
+	 *            the time slots, preferably sorted
+	 * @param starts
+	 *            receives the start instants in epoch nanoseconds
+	 * @param finishes
+	 *            receives the finish instants in epoch nanoseconds
+	 * @throws IllegalArgumentException
+	 *             if an array is too short, if a limit is rejected by a
+	 *             policy, or if it or its instant cannot be encoded
+	 */
+	public void toEpochNanos(TimeSlot[] slots, long[] starts, long[] finishes) {
+		if (starts.length < slots.length || finishes.length < slots.length) {
+			throw new IllegalArgumentException("Output arrays too short");
+		}
+		int hint = -1;
+		for (int i = 0; i < slots.length; i++) {
+			long start = EpochNanos.startOf(slots[i]);
+			long finish = EpochNanos.finishOf(slots[i]);
+			hint = transitionAt(lows, start, hint);
+			starts[i] = toEpochNanos(start, hint);
+			hint = transitionAt(lows, finish, hint);
+			finishes[i] = toEpochNanos(finish, hint);
+		}
+	}
+
+	/**
+	 * Converts the given time slots into zoned time slots.
+	 *
+	 * @param slots
+	 *            the time slots, preferably sorted
+	 * @return the zoned time slots
+	 * @throws IllegalArgumentException
+	 *             if a limit is rejected by a policy, or if it or its instant
+	 *             cannot be encoded
+	 */
+	public ZonedTimeSlot[] toZoned(TimeSlot[] slots) {
+		long[] starts = new long[slots.length];
+		long[] finishes = new long[slots.length];
+		toEpochNanos(slots, starts, finishes);
+		ZonedTimeSlot[] result = new ZonedTimeSlot[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			result[i] = new ZonedTimeSlot(toInstant(starts[i]), toInstant(finishes[i]), zone);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts an instant into a local value of the zone.
+	 *
+	 * @param epochNanos
+	 *            an instant in epoch nanoseconds
+	 * @return the local date/time, see {@link EpochNanos}
+	 * @throws IllegalArgumentException
+	 *             if the local date/time cannot be encoded
+	 */
+	public long toLocalEpochNanos(long epochNanos) {
+		return toLocalEpochNanos(epochNanos, transitionAt(transitions, epochNanos, -1));
+	}
+
+	/**
+	 * Converts an instant into a local date/time of the zone.
+	 *
+	 * @param instant
+	 *            an instant
+	 * @return the local date/time
+	 * @throws IllegalArgumentException
+	 *             if the instant or the local date/time cannot be encoded
+	 */
+	public LocalDateTime toLocalDateTime(Instant instant) {
+		return EpochNanos.toLocalDateTime(toLocalEpochNanos(epochNanosOf(instant)));
+	}
+
+	/**
+	 * Converts a zoned time slot into a time slot of the local date/times of
+	 * this converter's zone.
+	 *
+	 * @param ts
+	 *            a zoned time slot
+	 * @return the local time slot
+	 * @throws IllegalArgumentException
+	 *             if a limit cannot be encoded, or if the local finish
+	 *             precedes the local start, as may happen for a short time
+	 *             slot around a transition setting the clocks back
+	 */
+	public EpochTimeSlot toTimeSlot(ZonedTimeSlot ts) {
+		return new EpochTimeSlot(toLocalEpochNanos(epochNanosOf(ts.getStartInstant())),
+				toLocalEpochNanos(epochNanosOf(ts.getFinishInstant())));
+	}
+
+	/**
+	 * Converts time slots given as instants into time slots of the local
+	 * date/times of this converter's zone.
+	 *
+	 * @param starts
+	 *            the start instants in epoch nanoseconds, preferably sorted
+	 * @param finishes
+	 *            the finish instants in epoch nanoseconds
+	 * @return the local time slots
+	 * @throws IllegalArgumentException
+	 *             if the arrays differ in length, if a limit cannot be
+	 *             encoded, or if a local finish precedes its local start
+	 */
+	public EpochTimeSlot[] toTimeSlots(long[] starts, long[] finishes) {
+		if (starts.length != finishes.length) {
+			throw new IllegalArgumentException("Arrays differ in length");
+		}
+		EpochTimeSlot[] result = new EpochTimeSlot[starts.length];
+		int hint = -1;
+		for (int i = 0; i < starts.length; i++) {
+			hint = transitionAt(transitions, starts[i], hint);
+			long start = toLocalEpochNanos(starts[i], hint);
+			hint = transitionAt(transitions, finishes[i], hint);
+			long finish = toLocalEpochNanos(finishes[i], hint);
+			result[i] = new EpochTimeSlot(start, finish);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts a local value, given the index of the last transition whose
+	 * lower local value is at or before it.
+	 */
+	private long toEpochNanos(long local, int i) {
+		if (local < localFrom || local > localTo) {
+			return fromRules(local);
+		}
+		if (i < 0) {
+			return subtract(local, initialOffset);
+		}
+		if (local >= highs[i]) {
+			return subtract(local, offsetsAfter[i]);
+		}
+		return resolve(local, offsetsBefore[i], offsetsAfter[i], transitions[i]);
+	}
+
+	/**
+	 * Converts a local value outside of the table through the zone rules.
+	 */
+	private long fromRules(long local) {
+		LocalDateTime dateTime = EpochNanos.toLocalDateTime(local);
+		ZoneOffsetTransition z = rules.getTransition(dateTime);
+		if (z == null) {
+			return subtract(local, offsetNanos(rules.getOffset(dateTime).getTotalSeconds()));
+		}
+		return resolve(local, offsetNanos(z.getOffsetBefore().getTotalSeconds()),
+				offsetNanos(z.getOffsetAfter().getTotalSeconds()), saturatedNanos(z.getInstant()));
+	}
+
+	/**
+	 * Resolves a local value within the gap or overlap of a transition.
+	 */
+	private long resolve(long local, long before, long after, long transition) {
+		if (after > before) {
+			switch (gapPolicy) {
+			case SHIFT:
+				return subtract(local, before);
+			case TRANSITION:
+				return transition;
+			default:
+				throw new IllegalArgumentException(
+						"Local date/time in a gap of " + zone + ": " + EpochNanos.toLocalDateTime(local));
+			}
+		}
+		switch (overlapPolicy) {
+		case EARLIER:
+			return subtract(local, before);
+		case LATER:
+			return subtract(local, after);
+		default:
+			throw new IllegalArgumentException(
+					"Local date/time in an overlap of " + zone + ": " + EpochNanos.toLocalDateTime(local));
+		}
+	}
+
+	/**
+	 * Converts an instant, given the index of the last transition at or
+	 * before it.
+	 */
+	private long toLocalEpochNanos(long instant, int i) {
+		long offset;
+		if (instant < instantFrom || instant > instantTo) {
+			offset = offsetNanos(rules.getOffset(toInstant(instant)).getTotalSeconds());
+		} else {
+			offset = i < 0 ? initialOffset : offsetsAfter[i];
+		}
+		try {
+			return Math.addExact(instant, offset);
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Local date/time out of epoch nanosecond range");
+		}
+	}
+
+	/**
+	 * Returns the index of the last value at or before the given one, or -1,
+	 * trying the given hint first.
+	 */
+	private static int transitionAt(long[] values, long value, int hint) {
+		if (hint < values.length && (hint < 0 || values[hint] <= value)
+				&& (hint + 1 == values.length || values[hint + 1] > value)) {
+			return hint;
+		}
+		int lo = 0;
+		int hi = values.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (values[mid] <= value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo - 1;
+	}
+
+	private static long subtract(long local, long offset) {
+		try {
+			return Math.subtractExact(local, offset);
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Instant out of epoch nanosecond range");
+		}
+	}
+
+	private static long offsetNanos(int seconds) {
+		return seconds * EpochNanos.NANOS_PER_SECOND;
+	}
+
+	private static long saturatedAdd(long a, long b) {
+		long sum = a + b;
+		// Overflow iff both operands have the same sign, which differs from
+		// the sign of the sum.
+		if (((a ^ sum) & (b ^ sum)) < 0) {
+			return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return sum;
+	}
+
+	private static long saturatedNanos(Instant instant) {
+		long second = instant.getEpochSecond();
+		if (second >= Long.MAX_VALUE / EpochNanos.NANOS_PER_SECOND) {
+			return Long.MAX_VALUE;
+		}
+		if (second <= Long.MIN_VALUE / EpochNanos.NANOS_PER_SECOND) {
+			return Long.MIN_VALUE;
+		}
+		return second * EpochNanos.NANOS_PER_SECOND + instant.getNano();
+	}
+
+	private static long epochNanosOf(Instant instant) {
+		try {
+			return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), EpochNanos.NANOS_PER_SECOND),
+					instant.getNano());
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Instant out of epoch nanosecond range: " + instant);
+		}
+	}
+
+	private static Instant toInstant(long epochNanos) {
+		return Instant.ofEpochSecond(Math.floorDiv(epochNanos, EpochNanos.NANOS_PER_SECOND),
+				Math.floorMod(epochNanos, EpochNanos.NANOS_PER_SECOND));
+	}
+}
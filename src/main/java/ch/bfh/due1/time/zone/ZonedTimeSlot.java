@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.zone;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * A time slot between two instants, displayed in a time zone. In contrast to
+ * a {@link ch.bfh.due1.time.TimeSlot}, its limits are unambiguous and its
+ * duration is the elapsed time, across offset transitions. Instances are
+ * created directly or converted from time slots by a {@link ZoneConverter}.
+ * <p>
+ * Two instances are equal iff their instants and zones are equal; they are
+ * ordered by their instants only.
+ */
+public final class ZonedTimeSlot implements Comparable<ZonedTimeSlot> {
+	private final Instant start;
+
+	private final Instant finish;
+
+	private final ZoneId zone;
+
+	/**
+	 * Constructs a zoned time slot.
+	 *
+	 * @param start
+	 *            the start of the time slot where the condition start &lt;=
+	 *            finish must be true
+	 * @param finish
+	 *            the end of the time slot
+	 * @param zone
+	 *            the zone of the time slot
+	 */
+	public ZonedTimeSlot(Instant start, Instant finish, ZoneId zone) {
+		if (start.isAfter(finish)) {
+			throw new IllegalArgumentException("Finish time of time slot cannot be smaller than start time");
+		}
+		if (zone == null) {
+			throw new IllegalArgumentException("Zone must not be null");
+		}
+		this.start = start;
+		this.finish = finish;
+		this.zone = zone;
+	}
+
+	/**
+	 * @return the start of the time slot in its zone
+	 */
+	public ZonedDateTime getStart() {
+		return ZonedDateTime.ofInstant(start, zone);
+	}
+
+	/**
+	 * @return the end of the time slot in its zone
+	 */
+	public ZonedDateTime getFinish() {
+		return ZonedDateTime.ofInstant(finish, zone);
+	}
+
+	/**
+	 * @return the start of the time slot
+	 */
+	public Instant getStartInstant() {
+		return start;
+	}
+
+	/**
+	 * @return the end of the time slot
+	 */
+	public Instant getFinishInstant() {
+		return finish;
+	}
+
+	/**
+	 * @return the zone of the time slot
+	 */
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/**
+	 * @return the elapsed time between start and finish
+	 */
+	public Duration getDuration() {
+		return Duration.between(start, finish);
+	}
+
+	/**
+	 * Returns the same time slot displayed in another zone.
+	 *
+	 * @param other
+	 *            the other zone
+	 * @return a time slot with the same instants
+	 */
+	public ZonedTimeSlot withZone(ZoneId other) {
+		return other.equals(zone) ? this : new ZonedTimeSlot(start, finish, other);
+	}
+
+	/**
+	 * Returns true iff the given instant lies within this time slot, limits
+	 * included.
+	 *
+	 * @param instant
+	 *            an instant
+	 * @return true iff start &lt;= instant &lt;= finish
+	 */
+	public boolean includes(Instant instant) {
+		return !instant.isBefore(start) && !instant.isAfter(finish);
+	}
+
+	/**
+	 * Returns true iff this time slot and the given one share at least one
+	 * instant, regardless of their zones.
+	 *
+	 * @param other
+	 *            the other time slot
+	 * @return true iff the time slots overlap
+	 */
+	public boolean overlaps(ZonedTimeSlot other) {
+		return !start.isAfter(other.finish) && !other.start.isAfter(finish);
+	}
+
+	@Override
+	public int compareTo(ZonedTimeSlot other) {
+		int rval = start.compareTo(other.start);
+		if (rval == 0) {
+			// Start times do not differ -- take finish times, too.
+			return finish.compareTo(other.finish);
+		}
+		return rval;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ZonedTimeSlot)) {
+			return false;
+		}
+		ZonedTimeSlot ts = (ZonedTimeSlot) other;
+		return start.equals(ts.start) && finish.equals(ts.finish) && zone.equals(ts.zone);
+	}
+
+	@Override
+	public int hashCode() {
+		int rval = 37;
+		rval += 17 * start.hashCode();
+		rval += 17 * finish.hashCode();
+		rval += 17 * zone.hashCode();
+		return rval;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + getStart() + ", " + getFinish() + "]";
+	}
+}
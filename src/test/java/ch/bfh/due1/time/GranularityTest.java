@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.Granularity.RoundingMode;
+
+public class GranularityTest {
+	/**
+	 * Rounds like DateTimeFactory.roundTo did before it used Granularity.
+	 */
+	private static LocalDateTime legacyRoundTo(LocalDateTime dateTime, TimeSlotTypeSpec spec) {
+		LocalDateTime tmp = dateTime.truncatedTo(ChronoUnit.MINUTES);
+		switch (spec) {
+		case MINUTES:
+			return tmp;
+		case TENMINUTES:
+			return tmp.minusMinutes(tmp.getMinute() % 10);
+		case FITHTEENMINUTES:
+			return tmp.minusMinutes(tmp.getMinute() % 15);
+		case HOURS:
+			return tmp.truncatedTo(ChronoUnit.HOURS);
+		default:
+			return tmp.truncatedTo(ChronoUnit.DAYS);
+		}
+	}
+
+	@Test
+	public void testSameAsRoundTo() {
+		Random random = new Random(17);
+		for (int i = 0; i < 10000; i++) {
+			LocalDateTime dateTime = LocalDateTime.ofEpochSecond(random.nextLong() % (400L * 365 * 86400),
+					random.nextInt(1000000000), ZoneOffset.UTC);
+			for (TimeSlotTypeSpec spec : TimeSlotTypeSpec.values()) {
+				LocalDateTime expected = legacyRoundTo(dateTime, spec);
+				assertEquals(expected, DateTimeFactory.roundTo(dateTime, spec));
+				long epochSecond = dateTime.toEpochSecond(ZoneOffset.UTC);
+				assertEquals(expected.toEpochSecond(ZoneOffset.UTC),
+						Granularity.of(spec).roundEpochSecond(epochSecond, RoundingMode.FLOOR));
+			}
+		}
+	}
+
+	@Test
+	public void testRoundingModes() {
+		Granularity g = Granularity.ofMinutes(15);
+		LocalDateTime dt = LocalDateTime.of(2016, 11, 23, 9, 22, 30);
+		assertEquals(LocalDateTime.of(2016, 11, 23, 9, 15), g.round(dt, RoundingMode.FLOOR));
+		assertEquals(LocalDateTime.of(2016, 11, 23, 9, 30), g.round(dt, RoundingMode.CEIL));
+		// Halfway is rounded up.
+		assertEquals(LocalDateTime.of(2016, 11, 23, 9, 30), g.round(dt, RoundingMode.NEAREST));
+		assertEquals(LocalDateTime.of(2016, 11, 23, 9, 15), g.round(dt.minusNanos(1), RoundingMode.NEAREST));
+		assertEquals(LocalDateTime.of(2016, 11, 23, 9, 30), g.round(dt.plusNanos(1), RoundingMode.NEAREST));
+		LocalDateTime onGrid = LocalDateTime.of(2016, 11, 23, 9, 15);
+		assertEquals(onGrid, g.round(onGrid, RoundingMode.CEIL));
+		assertEquals(onGrid.plusMinutes(15), g.round(onGrid.plusNanos(1), RoundingMode.CEIL));
+	}
+
+	@Test
+	public void testWeeksStartOnMonday() {
+		Granularity g = Granularity.ofWeeks(1);
+		LocalDateTime floor = g.round(LocalDateTime.of(2016, 11, 24, 9, 15), RoundingMode.FLOOR);
+		assertEquals(LocalDateTime.of(2016, 11, 21, 0, 0), floor);
+		assertEquals(DayOfWeek.MONDAY, floor.getDayOfWeek());
+		assertEquals(LocalDateTime.of(1969, 12, 29, 0, 0),
+				g.round(LocalDateTime.of(1970, 1, 1, 0, 0), RoundingMode.FLOOR));
+		assertEquals(Duration.ofDays(4), g.getOffset());
+	}
+
+	@Test
+	public void testPrimitiveUnits() {
+		Granularity g = Granularity.ofHours(2);
+		long second = LocalDateTime.of(2016, 11, 23, 15, 34).toEpochSecond(ZoneOffset.UTC);
+		long expected = LocalDateTime.of(2016, 11, 23, 16, 0).toEpochSecond(ZoneOffset.UTC);
+		assertEquals(expected, g.roundEpochSecond(second, RoundingMode.NEAREST));
+		assertEquals(expected * 1000, g.roundEpochMilli(second * 1000 + 999, RoundingMode.CEIL));
+		assertEquals(expected * 1000000000L, g.roundEpochNano(second * 1000000000L + 1, RoundingMode.CEIL));
+		// Before 1970
+		assertEquals(-7200, g.roundEpochSecond(-1, RoundingMode.FLOOR));
+		assertEquals(0, g.roundEpochSecond(-1, RoundingMode.CEIL));
+	}
+
+	@Test
+	public void testArraysInPlace() {
+		Granularity g = Granularity.ofMinutes(10);
+		long[] millis = { 0, 1, 299999, 300000, 599999, -1 };
+		g.roundEpochMillis(millis, RoundingMode.NEAREST);
+		assertArrayEquals(new long[] { 0, 0, 0, 600000, 600000, 0 }, millis);
+		long[] seconds = { 0, 1, 600, -1 };
+		g.roundEpochSeconds(seconds, RoundingMode.CEIL);
+		assertArrayEquals(new long[] { 0, 600, 600, 0 }, seconds);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testOverflow() {
+		Granularity.ofDays(1).roundEpochNano(Long.MAX_VALUE, RoundingMode.CEIL);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSubSecondLength() {
+		Granularity.of(Duration.ofMillis(500));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared fixture of the tests. Time slots are created by the factory named
+ * by the <code>timeslotfactory.name</code> property, just like in
+ * {@link TimeSlotTest}, so that all tests can be run against any
+ * implementation.
+ */
+public final class TimeSlotFixture {
+	public static final String DEFAULTTIMESLOTFACTORYNAME = "ch.bfh.due1.time.pojo.TimeSlotFactoryImpl";
+
+	/**
+	 * The point in time the minutes of {@link #slot(long, long)} are counted
+	 * from.
+	 */
+	public static final LocalDateTime BASE = LocalDateTime.of(2016, 11, 24, 0, 0);
+
+	private static final TimeSlotFactory FACTORY = createFactory();
+
+	/**
+	 * Not used.
+	 */
+	private TimeSlotFixture() {
+	}
+
+	/**
+	 * Constructs a time slot factory object by using the
+	 * <code>timeslotfactory.name</code> property. If not set then the
+	 * <code>ch.bfh.due1.time.pojo.TimeSlotFactoryImpl</code> is used.
+	 */
+	private static TimeSlotFactory createFactory() {
+		String className = System.getProperty("timeslotfactory.name", DEFAULTTIMESLOTFACTORYNAME);
+		try {
+			Class<?> clazz = Class.forName(className);
+			return (TimeSlotFactory) clazz.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create time slot factory " + className, e);
+		}
+	}
+
+	/**
+	 * Returns the configured time slot factory.
+	 */
+	public static TimeSlotFactory factory() {
+		return FACTORY;
+	}
+
+	/**
+	 * Creates a time slot with the configured factory.
+	 */
+	public static TimeSlot slot(LocalDateTime start, LocalDateTime finish) {
+		return FACTORY.createTimeSlot(start, finish);
+	}
+
+	/**
+	 * Creates a time slot given in minutes after {@link #BASE}.
+	 */
+	public static TimeSlot slot(long startMinute, long finishMinute) {
+		return slot(BASE.plusMinutes(startMinute), BASE.plusMinutes(finishMinute));
+	}
+
+	/**
+	 * Creates the same random time slots on every call: each one starts
+	 * within the given number of minutes after {@link #BASE} and lasts less
+	 * than the given maximum length in minutes.
+	 */
+	public static List<TimeSlot> randomSlots(int n, int minutes, int maxLength) {
+		Random random = new Random(42);
+		List<TimeSlot> slots = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			int start = random.nextInt(minutes);
+			slots.add(slot(start, start + random.nextInt(maxLength)));
+		}
+		return slots;
+	}
+}
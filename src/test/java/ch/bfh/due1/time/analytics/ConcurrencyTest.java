@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.analytics;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.randomSlots;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+public class ConcurrencyTest {
+	/**
+	 * Counts the time slots including the given half minute.
+	 */
+	private static int depthAt(List<TimeSlot> slots, int halfMinute) {
+		LocalDateTime dateTime = BASE.plusSeconds(30L * halfMinute);
+		int depth = 0;
+		for (TimeSlot ts : slots) {
+			if (ts.includes(dateTime)) {
+				depth++;
+			}
+		}
+		return depth;
+	}
+
+	@Test
+	public void testEmpty() {
+		Peak peak = Concurrency.peak(Collections.<TimeSlot> emptyList());
+		assertEquals(0, peak.getDepth());
+		assertEquals(0, peak.getRanges().size());
+	}
+
+	@Test
+	public void testTouchingSlotsOverlap() {
+		List<TimeSlot> slots = new ArrayList<>();
+		slots.add(slot(0, 10));
+		slots.add(slot(10, 20));
+		slots.add(slot(30, 40));
+		slots.add(slot(35, 50));
+		Peak peak = Concurrency.peak(slots);
+		assertEquals(2, peak.getDepth());
+		assertEquals(TimeSlotSet.builder().add(slot(10, 10)).add(slot(35, 40)).build(), peak.getRanges());
+	}
+
+	@Test
+	public void testPeakMatchesBruteForce() {
+		List<TimeSlot> slots = randomSlots(300, 2000, 120);
+		// Limits are on whole minutes, so the depth is constant between two
+		// half minutes.
+		int[] depths = new int[4400];
+		int max = 0;
+		for (int h = 0; h < depths.length; h++) {
+			depths[h] = depthAt(slots, h);
+			max = Math.max(max, depths[h]);
+		}
+		TimeSlotSet.Builder ranges = TimeSlotSet.builder();
+		for (int h = 0; h < depths.length; h++) {
+			if (depths[h] == max) {
+				int first = h;
+				while (h + 1 < depths.length && depths[h + 1] == max) {
+					h++;
+				}
+				ranges.add(slot(BASE.plusSeconds(30L * first), BASE.plusSeconds(30L * h)));
+			}
+		}
+		Peak peak = Concurrency.peak(slots);
+		assertEquals(max, peak.getDepth());
+		assertEquals(ranges.build(), peak.getRanges());
+	}
+
+	@Test
+	public void testParallelPeak() {
+		List<TimeSlot> slots = randomSlots(50000, 500000, 120);
+		Peak expected = Concurrency.peak(slots);
+		Peak actual = Concurrency.parallelPeak(slots, new ForkJoinPool(4));
+		assertEquals(expected.getDepth(), actual.getDepth());
+		assertEquals(expected.getRanges(), actual.getRanges());
+	}
+
+	@Test
+	public void testProfile() {
+		List<TimeSlot> slots = randomSlots(200, 1440, 120);
+		TimeSlot window = slot(5, 1500);
+		LoadProfile profile = Concurrency.profile(slots, window, TimeSlotTypeSpec.HOURS);
+		assertEquals(26, profile.size());
+		assertEquals(BASE, profile.getStart(0));
+		for (int h = 0; h < profile.size(); h++) {
+			int max = 0;
+			for (int m = 120 * h; m < 120 * h + 120; m++) {
+				max = Math.max(max, depthAt(slots, m));
+			}
+			assertEquals("hour " + h, max, profile.getPeak(h));
+		}
+		assertEquals(Concurrency.peak(slots).getDepth(), profile.getMaximum());
+	}
+
+	@Test
+	public void testParallelProfile() {
+		List<TimeSlot> slots = randomSlots(50000, 500000, 120);
+		TimeSlot window = slot(-1000, 510000);
+		LoadProfile expected = Concurrency.profile(slots, window, TimeSlotTypeSpec.FITHTEENMINUTES);
+		LoadProfile actual = Concurrency.parallelProfile(slots, window, TimeSlotTypeSpec.FITHTEENMINUTES,
+				new ForkJoinPool(4));
+		assertArrayEquals(expected.toArray(), actual.toArray());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.availability;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.booking.BookingCalendar;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+public class FreeSlotFinderTest {
+	@Test
+	public void testGaps() {
+		List<List<TimeSlot>> calendars = Arrays.asList(Arrays.asList(slot(0, 10), slot(5, 20), slot(50, 60)),
+				Arrays.asList(slot(15, 30), slot(70, 200)), Collections.<TimeSlot> emptyList());
+		List<TimeSlot> gaps = FreeSlotFinder.gaps(calendars, slot(-10, 100)).collect(Collectors.toList());
+		assertEquals(Arrays.asList(slot(-10, 0), slot(30, 50), slot(60, 70)), gaps);
+		assertEquals(Arrays.asList(slot(5, 10)), FreeSlotFinder
+				.gaps(Arrays.asList(Arrays.asList(slot(0, 5))), slot(0, 10)).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testFits() {
+		List<List<TimeSlot>> calendars = Arrays.asList(Arrays.asList(slot(0, 7), slot(20, 42)),
+				Arrays.asList(slot(55, 80)));
+		TimeSlot window = slot(0, 120);
+		Duration length = Duration.ofMinutes(10);
+		// Busy limits are excluded: 10 to 20 and 80 to 90 would touch busy time
+		// slots.
+		assertEquals(slot(90, 100), FreeSlotFinder.first(calendars, window, length, TimeSlotTypeSpec.TENMINUTES).get());
+		assertEquals(Arrays.asList(slot(90, 100)),
+				FreeSlotFinder.first(calendars, window, length, TimeSlotTypeSpec.TENMINUTES, 5));
+		assertEquals(Arrays.asList(slot(8, 18), slot(43, 53)),
+				FreeSlotFinder.first(calendars, window, length, TimeSlotTypeSpec.MINUTES, 2));
+		assertEquals(Arrays.asList(slot(0, 10)), FreeSlotFinder.first(Arrays.asList(Arrays.asList(slot(20, 30))),
+				slot(0, 20), length, TimeSlotTypeSpec.TENMINUTES, 5));
+		assertFalse(FreeSlotFinder.first(calendars, window, Duration.ofHours(1), TimeSlotTypeSpec.HOURS).isPresent());
+	}
+
+	@Test
+	public void testStopsEarly() {
+		List<Iterable<TimeSlot>> calendars = new ArrayList<>();
+		int[] read = new int[1];
+		for (int c = 0; c < 3; c++) {
+			int offset = c;
+			calendars.add(() -> new Iterator<TimeSlot>() {
+				private int i;
+
+				@Override
+				public boolean hasNext() {
+					return true;
+				}
+
+				@Override
+				public TimeSlot next() {
+					read[0]++;
+					int from = 10 * i++ + offset;
+					return i == 3 ? slot(from, from + 30) : slot(from, from + 5);
+				}
+			});
+		}
+		TimeSlot first = FreeSlotFinder.first(calendars, slot(0, 1000000), Duration.ofMinutes(1),
+				TimeSlotTypeSpec.MINUTES).get();
+		assertEquals(slot(8, 9), first);
+		assertEquals(true, read[0] < 10);
+	}
+
+	@Test
+	public void testFitsBetweenTouchingLimits() {
+		List<List<TimeSlot>> calendars = Arrays.asList(Arrays.asList(slot(9 * 60, 10 * 60)),
+				Arrays.asList(slot(11 * 60, 12 * 60)));
+		TimeSlot window = slot(0, 24 * 60);
+		assertEquals(slot(13 * 60, 14 * 60), FreeSlotFinder
+				.first(calendars, slot(9 * 60, 24 * 60), Duration.ofHours(1), TimeSlotTypeSpec.HOURS).get());
+		// A busy time slot of zero length splits a free period.
+		assertEquals(Arrays.asList(slot(0, 30), slot(11 * 60 + 1, 11 * 60 + 31)),
+				FreeSlotFinder.first(Arrays.asList(Arrays.asList(slot(60, 60), slot(90, 11 * 60))), window,
+						Duration.ofMinutes(30), TimeSlotTypeSpec.MINUTES, 2));
+		assertFalse(FreeSlotFinder.first(Arrays.asList(Arrays.asList(slot(-10, 0), slot(30, 40))), slot(0, 30),
+				Duration.ofMinutes(30), TimeSlotTypeSpec.MINUTES).isPresent());
+	}
+
+	/**
+	 * Reserves every fitted time slot in a booking calendar holding the busy
+	 * time slots.
+	 */
+	@Test
+	public void testFitsCanBeReserved() {
+		Random random = new Random(9);
+		for (int round = 0; round < 200; round++) {
+			List<TimeSlot> busy = new ArrayList<>();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				int from = 15 * random.nextInt(100);
+				busy.add(slot(from, from + 15 * random.nextInt(5)));
+			}
+			// Disjoint busy time slots, spread over two calendars.
+			List<List<TimeSlot>> calendars = Arrays.asList(new ArrayList<>(), new ArrayList<>());
+			BookingCalendar calendar = new BookingCalendar(Granularity.ofHours(1));
+			for (TimeSlot ts : TimeSlotSet.of(busy).asList()) {
+				calendars.get(random.nextInt(2)).add(ts);
+				assertTrue(calendar.reserve(ts));
+			}
+			List<TimeSlot> fits = FreeSlotFinder.fits(calendars, slot(0, 1500), Duration.ofMinutes(15),
+					TimeSlotTypeSpec.FITHTEENMINUTES).collect(Collectors.toList());
+			for (TimeSlot fit : fits) {
+				assertTrue(calendar.reserve(fit));
+				assertTrue(calendar.cancel(fit));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsortedCalendar() {
+		FreeSlotFinder.gaps(Arrays.asList(Arrays.asList(slot(10, 20), slot(0, 5))), slot(0, 100)).count();
+	}
+
+	@Test
+	public void testAgainstComplement() {
+		Random random = new Random(5);
+		for (int round = 0; round < 200; round++) {
+			List<List<TimeSlot>> calendars = new ArrayList<>();
+			List<TimeSlot> all = new ArrayList<>();
+			for (int c = random.nextInt(6); c > 0; c--) {
+				List<TimeSlot> calendar = new ArrayList<>();
+				for (int i = random.nextInt(8); i > 0; i--) {
+					int from = random.nextInt(200) - 20;
+					calendar.add(slot(from, from + random.nextInt(30)));
+				}
+				Collections.sort(calendar);
+				calendars.add(calendar);
+				all.addAll(calendar);
+			}
+			TimeSlot window = slot(0, 150);
+			List<TimeSlot> expected = TimeSlotSet.of(all).complement(window).asList().stream()
+					.filter(ts -> !ts.getStart().equals(ts.getFinish())).collect(Collectors.toList());
+			assertEquals(expected, FreeSlotFinder.gaps(calendars, window).collect(Collectors.toList()));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.booking;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+
+public class BookingCalendarTest {
+	@Test
+	public void testReserveAndCancel() {
+		BookingCalendar calendar = new BookingCalendar(Granularity.ofHours(1), 4);
+		assertTrue(calendar.reserve(slot(60, 90)));
+		// Closed intervals: touching limits overlap.
+		assertFalse(calendar.reserve(slot(90, 120)));
+		assertFalse(calendar.reserve(slot(0, 60)));
+		assertFalse(calendar.reserve(slot(0, 600)));
+		assertTrue(calendar.reserve(slot(91, 120)));
+		assertTrue(calendar.reserve(slot(0, 59)));
+		assertEquals(3, calendar.size());
+		assertFalse(calendar.isAvailable(slot(75, 76)));
+		assertTrue(calendar.isAvailable(slot(121, 300)));
+		assertEquals(2, calendar.reservations(slot(59, 60)).size());
+		assertFalse(calendar.cancel(slot(60, 91)));
+		assertTrue(calendar.cancel(slot(60, 90)));
+		assertTrue(calendar.reserve(slot(60, 90)));
+		assertEquals(slot(0, 59), calendar.reservations().get(0));
+	}
+
+	@Test
+	public void testConcurrentReservations() throws Exception {
+		BookingCalendar calendar = new BookingCalendar(Granularity.ofMinutes(30), 16);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<List<TimeSlot>>> futures = new ArrayList<>();
+		try {
+			for (int t = 0; t < threads; t++) {
+				Random random = new Random(t);
+				futures.add(executor.submit((Callable<List<TimeSlot>>) () -> {
+					List<TimeSlot> rejected = new ArrayList<>();
+					for (int i = 0; i < 5000; i++) {
+						int from = random.nextInt(100000);
+						// Mostly short, sometimes spanning many buckets
+						int length = i % 100 == 0 ? random.nextInt(1000) : random.nextInt(40);
+						TimeSlot ts = slot(from, from + length);
+						if (!calendar.reserve(ts)) {
+							rejected.add(ts);
+						}
+					}
+					return rejected;
+				}));
+			}
+			List<TimeSlot> rejected = new ArrayList<>();
+			for (Future<List<TimeSlot>> f : futures) {
+				rejected.addAll(f.get());
+			}
+			List<TimeSlot> reserved = calendar.reservations();
+			assertEquals(threads * 5000, reserved.size() + rejected.size());
+			List<TimeSlot> sorted = new ArrayList<>(reserved);
+			Collections.sort(sorted);
+			assertEquals(sorted, reserved);
+			for (int i = 1; i < reserved.size(); i++) {
+				assertFalse(reserved.get(i - 1).overlaps(reserved.get(i)));
+			}
+			// Nothing was cancelled, so every rejection still has a reason.
+			for (TimeSlot ts : rejected) {
+				assertFalse(calendar.isAvailable(ts));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.booking;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.bfh.due1.time.Granularity;
+import ch.bfh.due1.time.TimeSlot;
+
+public class DurableBookingCalendarTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static long count(Path directory, String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(p -> p.getFileName().toString().startsWith(prefix)).count();
+		}
+	}
+
+	@Test
+	public void testRecovery() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertTrue(calendar.reserve(slot(0, 30)));
+			assertTrue(calendar.reserve(slot(60, 90)));
+			assertFalse(calendar.reserve(slot(90, 120)));
+			assertTrue(calendar.reserve(slot(120, 150)));
+			assertTrue(calendar.cancel(slot(60, 90)));
+			assertFalse(calendar.cancel(slot(60, 90)));
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			List<TimeSlot> expected = new ArrayList<>();
+			expected.add(slot(0, 30));
+			expected.add(slot(120, 150));
+			assertEquals(expected, calendar.reservations());
+			assertTrue(calendar.isAvailable(slot(60, 90)));
+			assertTrue(calendar.cancel(slot(0, 30)));
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(1, calendar.size());
+		}
+	}
+
+	@Test
+	public void testCheckpoint() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1), 10)) {
+			for (int i = 0; i < 95; i++) {
+				assertTrue(calendar.reserve(slot(10 * i, 10 * i + 5)));
+			}
+			assertTrue(calendar.cancel(slot(0, 5)));
+			// Checkpoints have deleted the logs they cover.
+			assertEquals(1, count(dir, "log-"));
+			assertEquals(1, count(dir, "checkpoint-"));
+			calendar.checkpoint();
+			assertTrue(calendar.cancel(slot(10, 15)));
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1), 10)) {
+			assertEquals(93, calendar.size());
+			assertEquals(slot(20, 25), calendar.reservations().get(0));
+			assertFalse(calendar.isAvailable(slot(940, 940)));
+		}
+	}
+
+	@Test
+	public void testInterruptedCheckpoint() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertTrue(calendar.reserve(slot(0, 30)));
+		}
+		// A crash while writing the checkpoint of generation 1.
+		Files.write(dir.resolve("checkpoint-1.tmp"), new byte[] { 1, 2, 3 });
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(1, calendar.size());
+			assertFalse(Files.exists(dir.resolve("checkpoint-1.tmp")));
+			calendar.checkpoint();
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(1, calendar.size());
+			assertEquals(1, count(dir, "checkpoint-"));
+		}
+	}
+
+	@Test
+	public void testTornRecord() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertTrue(calendar.reserve(slot(0, 30)));
+			assertTrue(calendar.reserve(slot(60, 90)));
+		}
+		Path log = dir.resolve("log-0");
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			// A crash in the middle of the second record.
+			channel.truncate(ReservationLog.RECORD_SIZE + 7);
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(1, calendar.size());
+			assertTrue(calendar.reserve(slot(100, 130)));
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(2, calendar.size());
+			assertEquals(slot(100, 130), calendar.reservations().get(1));
+		}
+	}
+
+	@Test
+	public void testCorruptRecord() throws IOException {
+		Path dir = folder.getRoot().toPath();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertTrue(calendar.reserve(slot(0, 30)));
+			assertTrue(calendar.reserve(slot(60, 90)));
+		}
+		byte[] bytes = Files.readAllBytes(dir.resolve("log-0"));
+		bytes[ReservationLog.RECORD_SIZE + 3] ^= 1;
+		Files.write(dir.resolve("log-0"), bytes);
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofHours(1))) {
+			assertEquals(1, calendar.size());
+		}
+	}
+
+	@Test
+	public void testConcurrentReservations() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		int threads = 8;
+		List<TimeSlot> reserved = new ArrayList<>();
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofMinutes(30), 500)) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			List<Future<Void>> futures = new ArrayList<>();
+			try {
+				for (int t = 0; t < threads; t++) {
+					Random random = new Random(t);
+					futures.add(executor.submit((Callable<Void>) () -> {
+						for (int i = 0; i < 500; i++) {
+							int from = random.nextInt(20000);
+							TimeSlot ts = slot(from, from + random.nextInt(40));
+							if (calendar.reserve(ts) && random.nextInt(4) == 0) {
+								assertTrue(calendar.cancel(ts));
+							}
+						}
+						return null;
+					}));
+				}
+				for (Future<Void> f : futures) {
+					f.get();
+				}
+			} finally {
+				executor.shutdown();
+			}
+			reserved.addAll(calendar.reservations());
+		}
+		try (DurableBookingCalendar calendar = DurableBookingCalendar.open(dir, Granularity.ofMinutes(30))) {
+			assertEquals(reserved, calendar.reservations());
+		}
+	}
+}
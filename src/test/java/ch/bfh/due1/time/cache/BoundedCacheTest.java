@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFixture;
+
+public class BoundedCacheTest {
+	@Test
+	public void testLruEviction() {
+		// Small enough for a single segment.
+		BoundedCache<Integer, String> cache = new BoundedCache<>(3, EvictionPolicy.LRU);
+		cache.put(1, "a");
+		cache.put(2, "b");
+		cache.put(3, "c");
+		assertEquals("a", cache.get(1));
+		cache.put(4, "d");
+		assertNull(cache.get(2));
+		assertEquals("a", cache.get(1));
+		assertEquals(3, cache.size());
+		assertEquals(new CacheStats(2, 1, 1), cache.stats());
+	}
+
+	@Test
+	public void testFifoEviction() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(3, EvictionPolicy.FIFO);
+		cache.put(1, "a");
+		cache.put(2, "b");
+		cache.put(3, "c");
+		assertEquals("a", cache.get(1));
+		cache.put(4, "d");
+		assertNull(cache.get(1));
+		assertEquals("b", cache.get(2));
+	}
+
+	@Test
+	public void testWeigher() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(10, EvictionPolicy.LRU, (k, v) -> v.length());
+		cache.put(1, "aaaa");
+		cache.put(2, "bbbb");
+		cache.put(3, "cccc");
+		assertEquals(8, cache.weight());
+		assertNull(cache.get(1));
+		// Heavier than the whole cache.
+		cache.put(4, "ddddddddddd");
+		assertNull(cache.get(4));
+		assertEquals(2, cache.stats().getEvictionCount());
+	}
+
+	@Test
+	public void testConcurrentComputeIfAbsent() {
+		BoundedCache<Integer, Object> cache = new BoundedCache<>(1000, EvictionPolicy.LRU);
+		Object[] values = IntStream.range(0, 100000).parallel()
+				.mapToObj(i -> cache.computeIfAbsent(i % 100, k -> new Object())).toArray();
+		for (int i = 100; i < values.length; i++) {
+			assertSame(values[i - 100], values[i]);
+		}
+		assertTrue(cache.stats().getHitRate() > 0.99);
+	}
+
+	@Test
+	public void testCachingTimeSlotFactory() {
+		CachingTimeSlotFactory factory = new CachingTimeSlotFactory(TimeSlotFixture.factory(), 100,
+				EvictionPolicy.LRU);
+		LocalDateTime start = LocalDateTime.of(2016, 11, 24, 9, 15);
+		TimeSlot t1 = factory.createTimeSlot(start, start.plusMinutes(15));
+		TimeSlot t2 = factory.createTimeSlot(LocalDateTime.of(2016, 11, 24, 9, 15), start.plusMinutes(15));
+		TimeSlot t3 = factory.createTimeSlot(start, start.plusMinutes(30));
+		assertSame(t1, t2);
+		assertNotEquals(t1, t3);
+		assertEquals(2, factory.size());
+		assertEquals(new CacheStats(1, 2, 0), factory.stats());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCachingTimeSlotFactoryValidates() {
+		LocalDateTime start = LocalDateTime.of(2016, 11, 24, 9, 15);
+		new CachingTimeSlotFactory().createTimeSlot(start, start.minusMinutes(1));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.column;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class TimeSlotColumnStoreTest {
+	@Test
+	public void testOnHeap() {
+		check(TimeSlotColumnStore.onHeap(4));
+	}
+
+	@Test
+	public void testOffHeap() {
+		check(TimeSlotColumnStore.offHeap(4));
+	}
+
+	/**
+	 * Compares the batch predicates with the time slots themselves on random
+	 * time slots, spanning several blocks of a selection.
+	 */
+	private void check(TimeSlotColumnStore store) {
+		Random random = new Random(7);
+		List<TimeSlot> all = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			int start = random.nextInt(5000);
+			TimeSlot ts = slot(start, start + random.nextInt(90));
+			assertEquals(i, store.add(ts));
+			all.add(ts);
+		}
+		assertEquals(all.size(), store.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(all.get(i), store.get(i));
+		}
+		for (int q = 0; q < 100; q++) {
+			int start = random.nextInt(5100) - 50;
+			TimeSlot query = slot(start, start + random.nextInt(30));
+			List<Integer> overlapping = new ArrayList<>();
+			List<Integer> including = new ArrayList<>();
+			for (int i = 0; i < all.size(); i++) {
+				if (all.get(i).overlaps(query)) {
+					overlapping.add(i);
+				}
+				if (all.get(i).includes(query.getFinish())) {
+					including.add(i);
+				}
+			}
+			assertEquals(overlapping.size(), store.countOverlapping(query));
+			assertArrayEquals(toArray(overlapping), store.selectOverlapping(query));
+			assertEquals(including.size(), store.countIncluding(query.getFinish()));
+			assertArrayEquals(toArray(including), store.selectIncluding(query.getFinish()));
+		}
+		int[] rows = store.selectOverlapping(slot(-1, 6000));
+		assertEquals(all.size(), rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			assertEquals(i, rows[i]);
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		return list.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.epoch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.pojo.TimeSlotFactoryImpl;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+public class EpochTimeSlotTest {
+	private final TimeSlotFactory epochFactory = new EpochTimeSlotFactory();
+
+	private final TimeSlotFactory pojoFactory = new TimeSlotFactoryImpl();
+
+	@Test
+	public void testEncoding() {
+		LocalDateTime dt = LocalDateTime.of(2016, 11, 24, 9, 15, 3, 123456789);
+		assertEquals(dt, EpochNanos.toLocalDateTime(EpochNanos.of(dt)));
+		assertEquals(EpochNanos.MIN, EpochNanos.toLocalDateTime(EpochNanos.of(EpochNanos.MIN)));
+		assertEquals(EpochNanos.MAX, EpochNanos.toLocalDateTime(EpochNanos.of(EpochNanos.MAX)));
+		assertFalse(EpochNanos.isRepresentable(EpochNanos.MIN.minusNanos(1)));
+		assertFalse(EpochNanos.isRepresentable(EpochNanos.MAX.plusNanos(1)));
+		assertTrue(EpochNanos.compare(EpochNanos.of(EpochNanos.MIN), LocalDateTime.MIN) > 0);
+		assertTrue(EpochNanos.compare(EpochNanos.of(EpochNanos.MAX), LocalDateTime.MAX) < 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodingOutOfRange() {
+		EpochNanos.of(LocalDateTime.of(3000, 1, 1, 0, 0));
+	}
+
+	@Test
+	public void testCreation() {
+		LocalDateTime start = LocalDateTime.of(2016, 11, 24, 9, 15);
+		LocalDateTime finish = LocalDateTime.of(2016, 11, 24, 9, 45);
+		TimeSlot ts = this.epochFactory.createTimeSlot(start, finish);
+		assertTrue(ts instanceof EpochTimeSlot);
+		assertEquals(start, ts.getStart());
+		assertEquals(finish, ts.getFinish());
+		// falls back to a POJO outside the supported range
+		TimeSlot far = this.epochFactory.createTimeSlot(start, LocalDateTime.of(3000, 1, 1, 0, 0));
+		assertTrue(far instanceof TimeSlotImpl);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCreation() {
+		this.epochFactory.createTimeSlot(LocalDateTime.of(2016, 11, 24, 9, 45), LocalDateTime.of(2016, 11, 24, 9, 15));
+	}
+
+	/**
+	 * Tests the hash code computed from epoch nanoseconds across the whole
+	 * range, including leap days, month ends, and both limits.
+	 */
+	@Test
+	public void testHashCodeAcrossRange() {
+		Random random = new Random(42);
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextLong();
+		}
+		values[0] = Long.MIN_VALUE;
+		values[1] = Long.MAX_VALUE;
+		values[2] = 0;
+		values[3] = -1;
+		values[4] = EpochNanos.of(LocalDateTime.of(2000, 2, 29, 23, 59, 59, 999999999));
+		values[5] = EpochNanos.of(LocalDateTime.of(1900, 3, 1, 0, 0));
+		values[6] = EpochNanos.of(LocalDateTime.of(2100, 2, 28, 12, 0));
+		values[7] = EpochNanos.of(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999999999));
+		for (int i = 0; i < values.length - 1; i++) {
+			long start = Math.min(values[i], values[i + 1]);
+			long finish = Math.max(values[i], values[i + 1]);
+			TimeSlot ets = new EpochTimeSlot(start, finish);
+			TimeSlot pojo = new TimeSlotImpl(EpochNanos.toLocalDateTime(start), EpochNanos.toLocalDateTime(finish));
+			assertEquals(pojo.hashCode(), ets.hashCode());
+			assertEquals(EpochNanos.toLocalDateTime(values[i]).hashCode(), EpochNanos.hashCode(values[i]));
+		}
+		// Every day of a few leap cycles.
+		long day = 24 * 60 * 60 * EpochNanos.NANOS_PER_SECOND;
+		for (long t = EpochNanos.of(LocalDateTime.of(1995, 1, 1, 7, 30)); t < EpochNanos
+				.of(LocalDateTime.of(2005, 1, 1, 0, 0)); t += day) {
+			assertEquals(EpochNanos.toLocalDateTime(t).hashCode(), EpochNanos.hashCode(t));
+		}
+	}
+
+	/**
+	 * Tests equality, hash code, and ordering across implementations.
+	 */
+	@Test
+	public void testInterchangeability() {
+		LocalDateTime[] times = { LocalDateTime.of(2016, 11, 24, 9, 0), LocalDateTime.of(2016, 11, 24, 9, 15),
+				LocalDateTime.of(2016, 11, 24, 9, 15, 0, 1), LocalDateTime.of(2016, 11, 24, 9, 45),
+				LocalDateTime.of(2016, 11, 25, 0, 0) };
+		for (int i = 0; i < times.length; i++) {
+			for (int j = i; j < times.length; j++) {
+				TimeSlot e1 = this.epochFactory.createTimeSlot(times[i], times[j]);
+				TimeSlot p1 = this.pojoFactory.createTimeSlot(times[i], times[j]);
+				assertTrue(e1.equals(p1));
+				assertTrue(p1.equals(e1));
+				assertEquals(p1.hashCode(), e1.hashCode());
+				for (int k = 0; k < times.length; k++) {
+					assertEquals(p1.includes(times[k]), e1.includes(times[k]));
+					for (int l = k; l < times.length; l++) {
+						TimeSlot e2 = this.epochFactory.createTimeSlot(times[k], times[l]);
+						TimeSlot p2 = this.pojoFactory.createTimeSlot(times[k], times[l]);
+						int expected = Integer.signum(p1.compareTo(p2));
+						assertEquals(expected, Integer.signum(e1.compareTo(e2)));
+						assertEquals(expected, Integer.signum(e1.compareTo(p2)));
+						assertEquals(expected, Integer.signum(p1.compareTo(e2)));
+						assertEquals(p1.equals(p2), e1.equals(e2));
+						assertEquals(p1.overlaps(p2), e1.overlaps(e2));
+						assertEquals(p1.overlaps(p2), e1.overlaps(p2));
+						assertEquals(p1.overlaps(p2), p1.overlaps(e2));
+						assertEquals(p1.includes(p2), e1.includes(e2));
+						assertEquals(p1.includes(p2), e1.includes(p2));
+						assertEquals(p1.strictlyIncludes(p2), e1.strictlyIncludes(e2));
+						assertEquals(p1.exactlyMatches(p2), e1.exactlyMatches(p2));
+					}
+				}
+			}
+		}
+	}
+}
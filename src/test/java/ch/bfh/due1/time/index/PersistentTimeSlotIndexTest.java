@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class PersistentTimeSlotIndexTest {
+	private static List<TimeSlot> overlapping(List<TimeSlot> slots, TimeSlot ts) {
+		List<TimeSlot> result = new ArrayList<>();
+		for (TimeSlot s : slots) {
+			if (s.overlaps(ts)) {
+				result.add(s);
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void testMatchesModel() {
+		Random random = new Random(42);
+		PersistentTimeSlotIndex index = PersistentTimeSlotIndex.empty();
+		List<TimeSlot> model = new ArrayList<>();
+		for (int step = 0; step < 3000; step++) {
+			int start = random.nextInt(1000);
+			TimeSlot ts = slot(start, start + random.nextInt(30));
+			if (random.nextInt(3) > 0) {
+				index = index.insert(ts);
+				model.add(ts);
+			} else {
+				PersistentTimeSlotIndex next = index.remove(ts);
+				assertEquals(model.remove(ts), next != index);
+				index = next;
+			}
+			assertEquals(model.size(), index.size());
+			int from = random.nextInt(1000);
+			TimeSlot query = slot(from, from + random.nextInt(50));
+			assertEquals(overlapping(model, query), index.overlapping(query));
+		}
+		List<TimeSlot> sorted = new ArrayList<>(model);
+		Collections.sort(sorted);
+		assertEquals(sorted, index.toList());
+	}
+
+	@Test
+	public void testSnapshotsUnchanged() {
+		PersistentTimeSlotIndex v1 = PersistentTimeSlotIndex.empty().insert(slot(0, 10)).insert(slot(20, 30));
+		PersistentTimeSlotIndex v2 = v1.insert(slot(5, 25));
+		PersistentTimeSlotIndex v3 = v2.remove(slot(0, 10));
+		assertEquals(2, v1.getVersion());
+		assertEquals(4, v3.getVersion());
+		assertEquals(1, v1.containing(BASE.plusMinutes(5)).size());
+		assertEquals(2, v2.containing(BASE.plusMinutes(5)).size());
+		assertEquals(1, v3.containing(BASE.plusMinutes(5)).size());
+		assertSame(v3, v3.remove(slot(0, 10)));
+	}
+
+	@Test
+	public void testRange() {
+		PersistentTimeSlotIndex index = PersistentTimeSlotIndex.empty();
+		for (int m = 0; m < 100; m += 10) {
+			index = index.insert(slot(m, m + 100));
+		}
+		List<TimeSlot> expected = new ArrayList<>();
+		expected.add(slot(20, 120));
+		expected.add(slot(30, 130));
+		assertEquals(expected, index.range(BASE.plusMinutes(15), BASE.plusMinutes(30)));
+	}
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException {
+		VersionedTimeSlotIndex index = new VersionedTimeSlotIndex();
+		List<Thread> writers = new ArrayList<>();
+		for (int w = 0; w < 4; w++) {
+			int offset = w * 1000;
+			Thread writer = new Thread(() -> {
+				for (int m = 0; m < 500; m++) {
+					index.insert(slot(offset + m, offset + m + 1));
+				}
+				for (int m = 0; m < 500; m += 2) {
+					index.remove(slot(offset + m, offset + m + 1));
+				}
+			});
+			writer.start();
+			writers.add(writer);
+		}
+		PersistentTimeSlotIndex snapshot = index.snapshot();
+		int size = snapshot.size();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertEquals(size, snapshot.toList().size());
+		assertEquals(1000, index.snapshot().size());
+		assertEquals(3000, index.snapshot().getVersion());
+	}
+}
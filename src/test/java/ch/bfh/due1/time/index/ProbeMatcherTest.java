@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFixture;
+
+public class ProbeMatcherTest {
+	private static List<TimeSlot> randomSlots(int n) {
+		List<TimeSlot> slots = TimeSlotFixture.randomSlots(n, 1000, 60);
+		slots.add(slot(0, 1200));
+		return slots;
+	}
+
+	private static LocalDateTime[] randomProbes(int n) {
+		Random random = new Random(7);
+		LocalDateTime[] probes = new LocalDateTime[n];
+		for (int i = 0; i < n; i++) {
+			probes[i] = BASE.plusSeconds(30L * (random.nextInt(2600) - 100));
+		}
+		probes[0] = LocalDateTime.MIN;
+		probes[1] = LocalDateTime.MAX;
+		return probes;
+	}
+
+	@Test
+	public void testMatchesIncludes() {
+		List<TimeSlot> slots = randomSlots(300);
+		LocalDateTime[] probes = randomProbes(2000);
+		ProbeMatcher matcher = new ProbeMatcher(slots, 64);
+		Set<List<Integer>> actual = new HashSet<>();
+		matcher.matches(probes, (probe, slot) -> actual.add(Arrays.asList(probe, slot)));
+		Set<List<Integer>> expected = new HashSet<>();
+		int[] counts = new int[probes.length];
+		int[] first = new int[probes.length];
+		for (int p = 0; p < probes.length; p++) {
+			first[p] = -1;
+			for (int s = 0; s < slots.size(); s++) {
+				if (slots.get(s).includes(probes[p])) {
+					expected.add(Arrays.asList(p, s));
+					counts[p]++;
+					if (first[p] < 0 || slots.get(s).compareTo(slots.get(first[p])) < 0) {
+						first[p] = s;
+					}
+				}
+			}
+		}
+		assertEquals(expected, actual);
+		assertArrayEquals(counts, matcher.count(probes));
+		int[] actualFirst = matcher.first(probes);
+		for (int p = 0; p < probes.length; p++) {
+			// Equal time slots are interchangeable.
+			assertEquals(first[p] < 0 ? null : slots.get(first[p]),
+					actualFirst[p] < 0 ? null : slots.get(actualFirst[p]));
+		}
+	}
+
+	@Test
+	public void testLimitsIncluded() {
+		List<TimeSlot> slots = new ArrayList<>();
+		slots.add(slot(0, 10));
+		slots.add(slot(10, 20));
+		ProbeMatcher matcher = new ProbeMatcher(slots);
+		LocalDateTime[] probes = { BASE.plusMinutes(10), BASE.plusMinutes(20), BASE.plusMinutes(21),
+				BASE.minusNanos(1) };
+		assertArrayEquals(new int[] { 2, 1, 0, 0 }, matcher.count(probes));
+		assertArrayEquals(new int[] { 0, 1, -1, -1 }, matcher.first(probes));
+	}
+
+	@Test
+	public void testStream() {
+		List<TimeSlot> slots = randomSlots(100);
+		LocalDateTime[] probes = randomProbes(500);
+		ProbeMatcher matcher = new ProbeMatcher(slots, 50);
+		int[] counts = new int[1];
+		matcher.matches(Arrays.stream(probes), (probe, slot) -> {
+			assertEquals(true, slot.includes(probe));
+			counts[0]++;
+		});
+		int total = 0;
+		for (int count : matcher.count(probes)) {
+			total += count;
+		}
+		assertEquals(total, counts[0]);
+	}
+
+	@Test
+	public void testNoSlots() {
+		ProbeMatcher matcher = new ProbeMatcher(Collections.<TimeSlot> emptyList());
+		assertArrayEquals(new int[] { -1 }, matcher.first(new LocalDateTime[] { BASE }));
+	}
+}
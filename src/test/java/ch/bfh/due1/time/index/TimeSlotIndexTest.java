@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.index;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class TimeSlotIndexTest {
+	@Test
+	public void testClosedEndpoints() {
+		TimeSlotIndex index = new TimeSlotIndex();
+		index.insert(slot(0, 10));
+		index.insert(slot(20, 30));
+		assertEquals(1, index.overlapping(slot(10, 15)).size());
+		assertEquals(0, index.overlapping(slot(11, 19)).size());
+		assertEquals(2, index.overlapping(slot(10, 20)).size());
+		assertEquals(1, index.containing(BASE.plusMinutes(30)).size());
+		assertEquals(0, index.containing(BASE.plusMinutes(31)).size());
+	}
+
+	@Test
+	public void testRemove() {
+		TimeSlotIndex index = new TimeSlotIndex();
+		index.insert(slot(0, 10));
+		index.insert(slot(0, 10));
+		assertEquals(2, index.size());
+		assertTrue(index.remove(slot(0, 10)));
+		assertEquals(1, index.containing(BASE.plusMinutes(5)).size());
+		assertTrue(index.remove(slot(0, 10)));
+		assertFalse(index.remove(slot(0, 10)));
+		assertTrue(index.isEmpty());
+	}
+
+	/**
+	 * Compares query results with a linear scan over random time slots.
+	 */
+	@Test
+	public void testAgainstLinearScan() {
+		Random random = new Random(42);
+		TimeSlotIndex index = new TimeSlotIndex();
+		List<TimeSlot> all = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			int start = random.nextInt(10000);
+			TimeSlot ts = slot(start, start + random.nextInt(120));
+			index.insert(ts);
+			all.add(ts);
+		}
+		for (int i = 0; i < 500; i++) {
+			TimeSlot removed = all.remove(random.nextInt(all.size()));
+			assertTrue(index.remove(removed));
+		}
+		Collections.sort(all);
+		for (int i = 0; i < 200; i++) {
+			int start = random.nextInt(10200) - 100;
+			TimeSlot query = slot(start, start + random.nextInt(60));
+			List<TimeSlot> expected = new ArrayList<>();
+			List<TimeSlot> expectedContaining = new ArrayList<>();
+			for (TimeSlot ts : all) {
+				if (ts.overlaps(query)) {
+					expected.add(ts);
+				}
+				if (ts.includes(query.getStart())) {
+					expectedContaining.add(ts);
+				}
+			}
+			assertEquals(expected, index.overlapping(query));
+			assertEquals(expectedContaining, index.containing(query.getStart()));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import static ch.bfh.due1.time.TimeSlotFixture.randomSlots;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.io.BulkLoader.Mode;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+public class BulkLoaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Returns a loader with small runs and a small fan-in, forcing several
+	 * merge passes.
+	 */
+	private BulkLoader loader(File directory) {
+		return new BulkLoader(directory.toPath(), 100, 3, new ForkJoinPool(2));
+	}
+
+	private static List<TimeSlot> sorted(BulkLoader loader, List<TimeSlot> slots, Mode mode) throws IOException {
+		try (Stream<TimeSlot> stream = loader.sort(slots.iterator(), mode)) {
+			return stream.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testSortAll() throws IOException {
+		File directory = folder.newFolder();
+		List<TimeSlot> slots = randomSlots(2500, 20000, 30);
+		List<TimeSlot> expected = new ArrayList<>(slots);
+		Collections.sort(expected);
+		assertEquals(expected, sorted(loader(directory), slots, Mode.ALL));
+		assertEquals(0, directory.list().length);
+	}
+
+	@Test
+	public void testSortDistinct() throws IOException {
+		List<TimeSlot> slots = randomSlots(2500, 20000, 30);
+		List<TimeSlot> expected = slots.stream().sorted().distinct().collect(Collectors.toList());
+		assertEquals(expected, sorted(loader(folder.newFolder()), slots, Mode.DISTINCT));
+	}
+
+	@Test
+	public void testSortCoalesce() throws IOException {
+		List<TimeSlot> slots = randomSlots(2500, 20000, 30);
+		assertEquals(TimeSlotSet.of(slots).asList(), sorted(loader(folder.newFolder()), slots, Mode.COALESCE));
+	}
+
+	@Test
+	public void testSortEmpty() throws IOException {
+		assertEquals(0, sorted(loader(folder.newFolder()), Collections.<TimeSlot> emptyList(), Mode.ALL).size());
+	}
+
+	@Test
+	public void testSortSingleRun() throws IOException {
+		List<TimeSlot> slots = new ArrayList<>();
+		slots.add(slot(10, 20));
+		slots.add(slot(0, 5));
+		slots.add(slot(5, 10));
+		List<TimeSlot> expected = new ArrayList<>();
+		expected.add(slot(0, 20));
+		assertEquals(expected, sorted(new BulkLoader(folder.newFolder().toPath()), slots, Mode.COALESCE));
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		File directory = folder.newFolder();
+		Path target = folder.newFile().toPath();
+		List<TimeSlot> slots = randomSlots(1000, 20000, 30);
+		List<TimeSlot> expected = slots.stream().sorted().distinct().collect(Collectors.toList());
+		assertEquals(expected.size(), loader(directory).load(slots.iterator(), Mode.DISTINCT, target));
+		assertEquals(0, directory.list().length);
+		try (MappedTimeSlotFile file = MappedTimeSlotFile.open(target)) {
+			assertEquals(expected.size(), file.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i), file.get(i));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFanInTooSmall() {
+		new BulkLoader(folder.getRoot().toPath(), 100, 1, ForkJoinPool.commonPool());
+	}
+
+	@Test
+	public void testSortPairs() {
+		Random random = new Random(7);
+		int n = 1000;
+		long[] run = new long[2 * n];
+		List<long[]> expected = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			run[2 * i] = random.nextInt(50);
+			run[2 * i + 1] = run[2 * i] + random.nextInt(5);
+			expected.add(new long[] { run[2 * i], run[2 * i + 1] });
+		}
+		expected.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		BulkLoader.sort(run, 0, n);
+		for (int i = 0; i < n; i++) {
+			assertEquals(expected.get(i)[0], run[2 * i]);
+			assertEquals(expected.get(i)[1], run[2 * i + 1]);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+
+public class CompressedBlockDecoderTest {
+	private static ByteBuffer encode(long[] starts, long[] finishes, int blockSize, boolean packing) {
+		ByteBuffer out = ByteBuffer.allocate((int) CompressedBlockEncoder.maxEncodedSize(starts.length, blockSize));
+		CompressedBlockEncoder encoder = new CompressedBlockEncoder(out, blockSize, packing);
+		for (int i = 0; i < starts.length; i++) {
+			encoder.append(starts[i], finishes[i]);
+		}
+		encoder.finish();
+		out.flip();
+		return out;
+	}
+
+	private static void assertDecodes(long[] starts, long[] finishes, ByteBuffer in) {
+		CompressedBlockDecoder decoder = new CompressedBlockDecoder(in);
+		assertEquals(starts.length, decoder.size());
+		for (int i = 0; i < starts.length; i++) {
+			assertTrue(decoder.next());
+			assertEquals(starts[i], decoder.start());
+			assertEquals(finishes[i], decoder.finish());
+		}
+		assertFalse(decoder.next());
+	}
+
+	@Test
+	public void testEmpty() {
+		ByteBuffer in = CompressedBlockEncoder.encode(Collections.<TimeSlot> emptyList());
+		CompressedBlockDecoder decoder = new CompressedBlockDecoder(in);
+		assertEquals(0, decoder.size());
+		assertEquals(0, decoder.blockCount());
+		assertFalse(decoder.next());
+		decoder.seek(BASE);
+		assertFalse(decoder.next());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		List<TimeSlot> slots = new ArrayList<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			int start = random.nextInt(100000);
+			slots.add(slot(start, start + 15 * random.nextInt(5)));
+		}
+		ByteBuffer in = CompressedBlockEncoder.encode(slots);
+		Collections.sort(slots);
+		assertEquals(slots, new CompressedBlockDecoder(in).toList());
+		// Minutes apart with few lengths: about two bytes per time slot.
+		assertTrue(in.remaining() < 3 * slots.size());
+	}
+
+	@Test
+	public void testPackedAndVarint() {
+		Random random = new Random(7);
+		int n = 2000;
+		long[] starts = new long[n];
+		long[] finishes = new long[n];
+		long start = EpochNanos.of(BASE);
+		for (int i = 0; i < n; i++) {
+			// Regular blocks alternate with irregular ones.
+			start += (i / 100) % 2 == 0 ? 1_800_000_000_000L : random.nextInt(1 << 30);
+			starts[i] = start;
+			finishes[i] = start + ((i / 100) % 2 == 0 ? 900_000_000_000L : random.nextInt(1 << 20));
+		}
+		ByteBuffer packed = encode(starts, finishes, 100, true);
+		ByteBuffer varints = encode(starts, finishes, 100, false);
+		assertDecodes(starts, finishes, packed);
+		assertDecodes(starts, finishes, varints);
+		assertTrue(packed.remaining() < varints.remaining());
+	}
+
+	@Test
+	public void testExtremeValues() {
+		long[] starts = { Long.MIN_VALUE, Long.MIN_VALUE, -1, 0, 0, Long.MAX_VALUE };
+		long[] finishes = { Long.MIN_VALUE, Long.MAX_VALUE, 0, 0, Long.MAX_VALUE, Long.MAX_VALUE };
+		for (int blockSize = 1; blockSize <= starts.length; blockSize++) {
+			assertDecodes(starts, finishes, encode(starts, finishes, blockSize, true));
+			assertDecodes(starts, finishes, encode(starts, finishes, blockSize, false));
+		}
+	}
+
+	@Test
+	public void testSeek() {
+		List<TimeSlot> slots = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			// Ten time slots per start, spanning block boundaries.
+			slots.add(slot(i / 10 * 5, i / 10 * 5 + i % 10));
+		}
+		ByteBuffer in = CompressedBlockEncoder.encode(slots);
+		CompressedBlockDecoder decoder = new CompressedBlockDecoder(in);
+		assertEquals(8, decoder.blockCount());
+		for (int minute = -5; minute <= 500; minute += 3) {
+			decoder.seek(BASE.plusMinutes(minute));
+			int first = minute <= 0 ? 0 : (minute + 4) / 5 * 10;
+			assertEquals(slots.subList(Math.min(first, 1000), 1000), decoder.toList());
+		}
+		decoder.seekBlock(3);
+		assertTrue(decoder.next());
+		assertEquals(slots.get(3 * 128), decoder.slot());
+		decoder.seekBlock(decoder.blockCount());
+		assertFalse(decoder.next());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfOrder() {
+		CompressedBlockEncoder encoder = new CompressedBlockEncoder(ByteBuffer.allocate(1024));
+		encoder.append(slot(10, 20));
+		encoder.append(slot(10, 15));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCorrupt() {
+		ByteBuffer in = CompressedBlockEncoder.encode(Collections.singletonList(slot(0, 10)));
+		in.put(in.limit() - 1, (byte) 0);
+		new CompressedBlockDecoder(in);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class MappedTimeSlotFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		Path path = folder.newFile().toPath();
+		TimeSlotFileWriter.write(path, Collections.<TimeSlot> emptyList());
+		try (MappedTimeSlotFile file = MappedTimeSlotFile.open(path)) {
+			assertEquals(0, file.size());
+			assertEquals(0, file.overlapping(slot(0, 10)).size());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfOrder() throws IOException {
+		try (TimeSlotFileWriter writer = new TimeSlotFileWriter(folder.newFile().toPath())) {
+			writer.append(slot(10, 20));
+			writer.append(slot(10, 15));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotATimeSlotFile() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), new byte[100]);
+		MappedTimeSlotFile.open(file.toPath());
+	}
+
+	/**
+	 * Compares the lookups with a linear scan over random time slots.
+	 */
+	@Test
+	public void testLookups() throws IOException {
+		Random random = new Random(3);
+		List<TimeSlot> all = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			int start = random.nextInt(20000);
+			// a few long time slots exercise the running maximum
+			all.add(slot(start, start + (i % 500 == 0 ? 5000 : random.nextInt(60))));
+		}
+		Path path = folder.newFile().toPath();
+		TimeSlotFileWriter.write(path, all);
+		Collections.sort(all);
+		try (MappedTimeSlotFile file = MappedTimeSlotFile.open(path)) {
+			assertEquals(all.size(), file.size());
+			for (int i = 0; i < all.size(); i++) {
+				assertEquals(all.get(i), file.get(i));
+			}
+			for (int q = 0; q < 200; q++) {
+				int start = random.nextInt(20200) - 100;
+				TimeSlot query = slot(start, start + random.nextInt(40));
+				List<TimeSlot> overlapping = new ArrayList<>();
+				List<TimeSlot> range = new ArrayList<>();
+				List<TimeSlot> containing = new ArrayList<>();
+				for (TimeSlot ts : all) {
+					if (ts.overlaps(query)) {
+						overlapping.add(ts);
+					}
+					if (query.includes(ts.getStart())) {
+						range.add(ts);
+					}
+					if (ts.includes(query.getStart())) {
+						containing.add(ts);
+					}
+				}
+				assertEquals(overlapping, file.overlapping(query));
+				assertEquals(range, file.range(query.getStart(), query.getFinish()));
+				assertEquals(containing, file.containing(query.getStart()));
+			}
+		}
+	}
+}
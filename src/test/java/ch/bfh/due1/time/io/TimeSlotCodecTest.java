@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+import ch.bfh.due1.time.pojo.TimeSlotFactoryImpl;
+import ch.bfh.due1.time.pojo.TimeSlotImpl;
+
+public class TimeSlotCodecTest {
+	/**
+	 * [2016-11-24T09:15, 2016-11-24T09:45] serialized with the default
+	 * serialized form of TimeSlotImpl (version 1.1).
+	 */
+	private static final String LEGACY_STREAM = "rO0ABXNyACJjaC5iZmguZHVlMS50aW1lLnBvam8uVGltZVNsb3RJbXBs0638XdzxEv4CAAJM"
+			+ "AAZmaW5pc2h0ABlMamF2YS90aW1lL0xvY2FsRGF0ZVRpbWU7TAAFc3RhcnRxAH4AAXhwc3IADWphdmEudGltZS5TZXKVXYS6GyJIsgwAAHhw"
+			+ "dwkFAAAH4AsYCdJ4c3EAfgADdwkFAAAH4AsYCfB4";
+
+	private static final TimeSlot NEAR = new TimeSlotImpl(LocalDateTime.of(2016, 11, 24, 9, 15, 1, 999),
+			LocalDateTime.of(2016, 11, 24, 9, 45));
+
+	private static final TimeSlot FAR = new TimeSlotImpl(LocalDateTime.of(1, 1, 1, 0, 0),
+			LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999999999));
+
+	@Test
+	public void testDataStreams() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		TimeSlotCodec.write(NEAR, out);
+		TimeSlotCodec.write(FAR, out);
+		assertEquals(TimeSlotCodec.encodedSize(NEAR) + TimeSlotCodec.encodedSize(FAR), bytes.size());
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		TimeSlot near = TimeSlotCodec.read(in);
+		assertTrue(near instanceof EpochTimeSlot);
+		assertEquals(NEAR, near);
+		assertEquals(FAR, TimeSlotCodec.read(in, new TimeSlotFactoryImpl()));
+	}
+
+	@Test
+	public void testByteBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocate(2 * TimeSlotCodec.MAX_ENCODED_SIZE);
+		TimeSlotCodec.write(NEAR, buffer);
+		TimeSlotCodec.write(FAR, buffer);
+		buffer.flip();
+		assertEquals(NEAR, TimeSlotCodec.read(buffer));
+		assertEquals(FAR, TimeSlotCodec.read(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCorruptBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocate(TimeSlotCodec.MAX_ENCODED_SIZE);
+		buffer.put((byte) 0).putLong(2).putLong(1).flip();
+		TimeSlotCodec.read(buffer);
+	}
+
+	@Test
+	public void testSerializationProxy() throws Exception {
+		byte[] bytes = serialize(NEAR);
+		// The default form took 165 bytes for this time slot.
+		assertTrue(bytes.length < 100);
+		Object read = deserialize(bytes);
+		assertTrue(read instanceof TimeSlotImpl);
+		assertEquals(NEAR, read);
+		assertEquals(FAR, deserialize(serialize(FAR)));
+	}
+
+	@Test
+	public void testSerializationProxyUsesCodec() throws Exception {
+		for (TimeSlot ts : new TimeSlot[] { NEAR, FAR }) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			// The version of the proxy, then the codec encoding.
+			out.writeByte(1);
+			TimeSlotCodec.write(ts, out);
+			assertTrue(Collections.indexOfSubList(toList(serialize(ts)), toList(bytes.toByteArray())) > 0);
+		}
+	}
+
+	private static List<Byte> toList(byte[] bytes) {
+		List<Byte> list = new ArrayList<>();
+		for (byte b : bytes) {
+			list.add(b);
+		}
+		return list;
+	}
+
+	@Test
+	public void testLegacyStream() throws Exception {
+		Object read = deserialize(Base64.getDecoder().decode(LEGACY_STREAM));
+		assertTrue(read instanceof TimeSlotImpl);
+		assertEquals(new TimeSlotImpl(LocalDateTime.of(2016, 11, 24, 9, 15), LocalDateTime.of(2016, 11, 24, 9, 45)),
+				read);
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+}
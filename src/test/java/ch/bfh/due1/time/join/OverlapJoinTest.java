@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.join;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class OverlapJoinTest {
+	/**
+	 * Creates distinct random time slots; some of them are long.
+	 */
+	private static List<TimeSlot> slots(Random random, int n, int range) {
+		List<TimeSlot> slots = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			LocalDateTime start = BASE.plusMinutes(random.nextInt(range)).plusNanos(i);
+			int minutes = i % 1000 == 0 ? range / 10 : random.nextInt(30);
+			slots.add(slot(start, start.plusMinutes(minutes)));
+		}
+		return slots;
+	}
+
+	@Test
+	public void testTouchingEndpoints() {
+		List<TimeSlot> left = Arrays.<TimeSlot> asList(slot(BASE, BASE.plusMinutes(10)));
+		List<TimeSlot> right = Arrays.<TimeSlot> asList(slot(BASE.plusMinutes(10), BASE.plusMinutes(20)),
+				slot(BASE.plusMinutes(11), BASE.plusMinutes(20)));
+		List<TimeSlot[]> pairs = new ArrayList<>();
+		OverlapJoin.join(left, right, (a, b) -> pairs.add(new TimeSlot[] { a, b }));
+		assertEquals(1, pairs.size());
+		assertEquals(right.get(0), pairs.get(0)[1]);
+	}
+
+	@Test
+	public void testAgainstNestedLoops() {
+		Random random = new Random(11);
+		List<TimeSlot> left = slots(random, 1500, 20000);
+		List<TimeSlot> right = slots(random, 1500, 20000);
+		Set<List<TimeSlot>> expected = new HashSet<>();
+		for (TimeSlot a : left) {
+			for (TimeSlot b : right) {
+				if (a.overlaps(b)) {
+					expected.add(Arrays.asList(a, b));
+				}
+			}
+		}
+		List<List<TimeSlot>> actual = new ArrayList<>();
+		OverlapJoin.join(left, right, (a, b) -> actual.add(Arrays.asList(a, b)));
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected, new HashSet<>(actual));
+	}
+
+	@Test
+	public void testParallelJoin() {
+		Random random = new Random(13);
+		List<TimeSlot> left = slots(random, 30000, 200000);
+		List<TimeSlot> right = slots(random, 30000, 200000);
+		Set<List<TimeSlot>> expected = new HashSet<>();
+		OverlapJoin.join(left, right, (a, b) -> expected.add(Arrays.asList(a, b)));
+		Set<List<TimeSlot>> actual = ConcurrentHashMap.newKeySet();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			OverlapJoin.parallelJoin(left, right, (a, b) -> assertTrue(actual.add(Arrays.asList(a, b))), pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(expected, actual);
+	}
+}
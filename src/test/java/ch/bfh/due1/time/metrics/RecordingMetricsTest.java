@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.metrics;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.epoch.EpochTimeSlotFactory;
+import ch.bfh.due1.time.index.ProbeMatcher;
+import ch.bfh.due1.time.index.TimeSlotIndex;
+import ch.bfh.due1.time.pojo.TimeSlotFactoryImpl;
+import ch.bfh.due1.time.set.TimeSlotSet;
+
+public class RecordingMetricsTest {
+	@After
+	public void tearDown() {
+		Instrumentation.uninstall();
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertSame(SlotMetrics.NOOP, Instrumentation.current());
+		SlotMetrics.NOOP.start(Operation.JOIN).stop(1);
+	}
+
+	@Test
+	public void testCounters() {
+		RecordingMetrics metrics = new RecordingMetrics();
+		Instrumentation.install(metrics);
+		TimeSlotIndex index = new TimeSlotIndex();
+		for (TimeSlotFactory factory : Arrays.asList(new TimeSlotFactoryImpl(), new EpochTimeSlotFactory())) {
+			for (int i = 0; i < 10; i++) {
+				index.insert(factory.createTimeSlot(BASE.plusHours(i), BASE.plusHours(i + 1)));
+			}
+		}
+		assertEquals(20, metrics.getSlotsCreated());
+		index.overlapping(slot(BASE, BASE.plusHours(2)));
+		index.containing(BASE);
+		LatencyHistogram histogram = metrics.getHistogram(Operation.INDEX_QUERY);
+		assertEquals(2, histogram.getCount());
+		assertEquals(40, histogram.getTotalItems());
+		assertTrue(histogram.getPercentileNanos(100) > 0);
+		TimeSlotSet set = TimeSlotSet.of(index.containing(BASE.plusHours(3)));
+		assertEquals(1, set.size());
+		assertEquals(0, metrics.getHistogram(Operation.JOIN).getCount());
+		assertEquals(1, metrics.getHistogram(Operation.SET_OPERATION).getCount());
+	}
+
+	@Test
+	public void testProbeMatcherItems() {
+		RecordingMetrics metrics = new RecordingMetrics();
+		Instrumentation.install(metrics);
+		ProbeMatcher matcher = new ProbeMatcher(Arrays.asList(slot(0, 60), slot(30, 90), slot(120, 180)), 4);
+		LocalDateTime[] probes = new LocalDateTime[10];
+		Arrays.fill(probes, BASE.plusMinutes(45));
+		matcher.count(probes);
+		matcher.matches(Arrays.stream(probes), (probe, ts) -> {
+		});
+		LatencyHistogram histogram = metrics.getHistogram(Operation.INDEX_QUERY);
+		// One query and three chunks, each of them over the three time slots.
+		assertEquals(4, histogram.getCount());
+		assertEquals(12, histogram.getTotalItems());
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(100, 1);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(5000, 1);
+		}
+		histogram.record(0, 0);
+		assertEquals(1, histogram.getBucketCount(0));
+		assertEquals(90, histogram.getBucketCount(7));
+		assertEquals(128, histogram.getPercentileNanos(50));
+		assertEquals(128, histogram.getPercentileNanos(90));
+		assertEquals(8192, histogram.getPercentileNanos(99));
+		assertEquals(101, histogram.getCount());
+	}
+}
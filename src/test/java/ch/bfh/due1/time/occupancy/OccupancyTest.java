@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.occupancy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.DateTimeFactory.TimeSlotTypeSpec;
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFixture;
+import ch.bfh.due1.time.recurrence.RecurrenceRule;
+
+public class OccupancyTest {
+	/**
+	 * A Monday, 2048 days or 45 * 2^16 minutes after 1970-01-01.
+	 */
+	private static final LocalDateTime BASE = LocalDateTime.of(1970, 1, 1, 0, 0).plusDays(2048);
+
+	private static TimeSlot slot(long from, long to) {
+		return TimeSlotFixture.slot(BASE.plusMinutes(from), BASE.plusMinutes(to));
+	}
+
+	@Test
+	public void testCells() {
+		Occupancy o = Occupancy.of(TimeSlotTypeSpec.FITHTEENMINUTES,
+				Arrays.asList(slot(0, 15), slot(31, 44), slot(60, 60), slot(75, 90)));
+		assertEquals(3, o.cardinality());
+		assertEquals(Duration.ofMinutes(45), o.duration());
+		assertEquals(Arrays.asList(slot(0, 15), slot(30, 45), slot(75, 90)), o.toTimeSlots());
+		assertTrue(o.contains(BASE.plusMinutes(44)));
+		assertFalse(o.contains(BASE.plusMinutes(45)));
+		assertFalse(o.contains(BASE.plusMinutes(60)));
+	}
+
+	@Test
+	public void testFreeRooms() {
+		// Office hours on weekdays over four weeks.
+		RecurrenceRule rule = RecurrenceRule.weekly(BASE.plusHours(9), Duration.ofHours(8), DayOfWeek.MONDAY,
+				DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY);
+		List<TimeSlot> hours = rule.expand(slot(0, 28 * 24 * 60), TimeSlotFixture.factory())
+				.collect(Collectors.toList());
+		Occupancy office = Occupancy.of(TimeSlotTypeSpec.FITHTEENMINUTES, hours);
+		assertEquals(20 * 8 * 4, office.cardinality());
+		List<Occupancy> rooms = new ArrayList<>();
+		for (int r = 0; r < 10; r++) {
+			// Room r is booked on day r, 10:00 to 11:00.
+			long from = r * 24 * 60 + 10 * 60;
+			rooms.add(Occupancy.of(TimeSlotTypeSpec.FITHTEENMINUTES, Arrays.asList(slot(from, from + 60))));
+		}
+		List<Occupancy> free = rooms.stream().map(room -> office.andNot(room)).collect(Collectors.toList());
+		assertEquals(office, free.get(5));
+		assertEquals(office.cardinality() - 4, free.get(0).cardinality());
+		// Rooms 5 and 6 are booked on the weekend.
+		assertEquals(office.cardinality() - 32, Occupancy.and(TimeSlotTypeSpec.FITHTEENMINUTES, free).cardinality());
+		assertTrue(Occupancy.or(TimeSlotTypeSpec.FITHTEENMINUTES, rooms).intersects(office));
+		assertFalse(rooms.get(5).intersects(office));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSpecsDiffer() {
+		Occupancy.empty(TimeSlotTypeSpec.HOURS).or(Occupancy.empty(TimeSlotTypeSpec.MINUTES));
+	}
+
+	@Test
+	public void testAgainstBitSet() {
+		Random random = new Random(13);
+		int cells = 4 << 16;
+		for (int round = 0; round < 40; round++) {
+			// Few long slots make run containers, many short ones bitmaps.
+			int n = round % 2 == 0 ? 20 : 6000;
+			int maxLength = round % 2 == 0 ? 100000 : 3;
+			BitSet x = new BitSet();
+			BitSet y = new BitSet();
+			Occupancy a = random(random, n, maxLength, cells, x);
+			Occupancy b = random(random, n, maxLength, cells, y);
+			assertBits(x, a);
+			BitSet and = (BitSet) x.clone();
+			and.and(y);
+			BitSet or = (BitSet) x.clone();
+			or.or(y);
+			BitSet andNot = (BitSet) x.clone();
+			andNot.andNot(y);
+			assertBits(and, a.and(b));
+			assertBits(or, a.or(b));
+			assertBits(andNot, a.andNot(b));
+			assertEquals(!and.isEmpty(), a.intersects(b));
+			assertEquals(a.or(b), Occupancy.of(TimeSlotTypeSpec.MINUTES, a.or(b).toTimeSlots()));
+		}
+	}
+
+	private static Occupancy random(Random random, int n, int maxLength, int cells, BitSet bits) {
+		List<TimeSlot> slots = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int from = random.nextInt(cells);
+			int to = Math.min(cells, from + 1 + random.nextInt(maxLength));
+			slots.add(slot(from, to));
+			bits.set(from, to);
+		}
+		return Occupancy.of(TimeSlotTypeSpec.MINUTES, slots);
+	}
+
+	private static void assertBits(BitSet expected, Occupancy actual) {
+		assertEquals(expected.cardinality(), actual.cardinality());
+		List<TimeSlot> runs = new ArrayList<>();
+		for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(expected.nextClearBit(i))) {
+			runs.add(slot(i, expected.nextClearBit(i)));
+		}
+		assertEquals(runs, actual.toTimeSlots());
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.recurrence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.TimeSlotFixture;
+import ch.bfh.due1.time.cache.EvictionPolicy;
+
+public class ExpansionCacheTest {
+	private static final LocalDateTime BASE = LocalDateTime.of(2016, 11, 24, 9, 15);
+
+	private final TimeSlotFactory factory = TimeSlotFixture.factory();
+
+	private TimeSlot days(int from, int to) {
+		return this.factory.createTimeSlot(BASE.plusDays(from), BASE.plusDays(to));
+	}
+
+	private List<TimeSlot> expected(RecurrenceRule rule, TimeSlot window) {
+		return rule.expand(window, this.factory).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSlicing() {
+		RecurrenceRule rule = RecurrenceRule.daily(BASE, Duration.ofMinutes(30));
+		ExpansionCache cache = new ExpansionCache(this.factory);
+		List<TimeSlot> month = cache.expand(rule, days(0, 30));
+		assertEquals(expected(rule, days(0, 30)), month);
+		assertEquals(0, cache.stats().getHitCount());
+		List<TimeSlot> week = cache.expand(rule, days(7, 14));
+		assertEquals(expected(rule, days(7, 14)), week);
+		// Sliced from the month, not expanded again.
+		assertSame(month.get(7), week.get(0));
+		assertEquals(1, cache.stats().getHitCount());
+		assertEquals(31, cache.weight());
+	}
+
+	@Test
+	public void testOverlappingWindows() {
+		RecurrenceRule rule = RecurrenceRule.weekly(BASE, Duration.ofHours(1), DayOfWeek.MONDAY, DayOfWeek.THURSDAY)
+				.excluding(BASE.plusWeeks(2));
+		ExpansionCache cache = new ExpansionCache(this.factory);
+		List<TimeSlot> first = cache.expand(rule, days(0, 28));
+		List<TimeSlot> second = cache.expand(rule, days(56, 84));
+		List<TimeSlot> merged = cache.expand(rule, days(14, 70));
+		assertEquals(expected(rule, days(14, 70)), merged);
+		assertSame(first.get(first.size() - 1), merged.get(merged.indexOf(first.get(first.size() - 1))));
+		assertSame(second.get(0), merged.get(merged.indexOf(second.get(0))));
+		assertEquals(expected(rule, days(0, 84)), cache.expand(rule, days(0, 84)));
+		assertEquals(1, cache.stats().getHitCount());
+		assertEquals(3, cache.stats().getMissCount());
+	}
+
+	@Test
+	public void testRandomWindows() {
+		RecurrenceRule rule = RecurrenceRule.daily(BASE, Duration.ofHours(30)).withInterval(2).withCount(200)
+				.excluding(BASE.plusDays(10), BASE.plusDays(200));
+		ExpansionCache cache = new ExpansionCache(this.factory, 100, EvictionPolicy.LRU);
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			int from = random.nextInt(500) - 50;
+			TimeSlot window = days(from, from + random.nextInt(40));
+			assertEquals(expected(rule, window), cache.expand(rule, window));
+		}
+		assertTrue(cache.stats().getHitCount() > 0);
+		assertTrue(cache.weight() <= 100);
+	}
+
+	@Test
+	public void testChangedRule() {
+		RecurrenceRule rule = RecurrenceRule.daily(BASE, Duration.ofMinutes(30));
+		ExpansionCache cache = new ExpansionCache(this.factory);
+		assertEquals(8, cache.expand(rule, days(0, 7)).size());
+		RecurrenceRule changed = rule.excluding(BASE.plusDays(3));
+		assertEquals(expected(changed, days(0, 7)), cache.expand(changed, days(0, 7)));
+		assertEquals(7, cache.expand(changed, days(0, 7)).size());
+		cache.invalidate(rule);
+		assertEquals(7, cache.weight());
+		cache.invalidateAll();
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testEviction() {
+		ExpansionCache cache = new ExpansionCache(this.factory, 20, EvictionPolicy.FIFO);
+		for (int i = 0; i < 5; i++) {
+			RecurrenceRule rule = RecurrenceRule.daily(BASE.plusMinutes(i), Duration.ofMinutes(30));
+			assertEquals(expected(rule, days(0, 7)), cache.expand(rule, days(0, 7)));
+		}
+		assertTrue(cache.weight() <= 20);
+		assertTrue(cache.stats().getEvictionCount() >= 3);
+		assertEquals(0.0, cache.stats().getHitRate(), 0.0);
+	}
+
+	@Test
+	public void testUnboundedWindow() {
+		RecurrenceRule rule = RecurrenceRule.daily(BASE, Duration.ofMinutes(30));
+		ExpansionCache cache = new ExpansionCache(this.factory);
+		TimeSlot forever = TimeSlotFixture.slot(BASE, LocalDateTime.MAX);
+		assertEquals(expected(rule, days(0, 4)), cache.stream(rule, forever).limit(5).collect(Collectors.toList()));
+		assertEquals(0, cache.weight());
+		// Too large to be cached, but still expanded.
+		TimeSlot centuries = days(0, 2 * ExpansionCache.MAXIMUM_RANGE);
+		assertEquals(expected(rule, centuries), cache.expand(rule, centuries));
+		assertEquals(0, cache.weight());
+		// Small windows are still cached.
+		cache.expand(rule, days(0, 30));
+		assertEquals(expected(rule, days(0, 30)), cache.stream(rule, days(0, 30)).collect(Collectors.toList()));
+		assertEquals(1, cache.stats().getHitCount());
+	}
+}
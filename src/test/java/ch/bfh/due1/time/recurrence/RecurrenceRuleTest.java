@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.recurrence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFactory;
+import ch.bfh.due1.time.TimeSlotFixture;
+
+public class RecurrenceRuleTest {
+	private final TimeSlotFactory factory = TimeSlotFixture.factory();
+
+	private TimeSlot window(LocalDateTime start, LocalDateTime finish) {
+		return this.factory.createTimeSlot(start, finish);
+	}
+
+	private List<LocalDateTime> starts(RecurrenceRule rule, TimeSlot window) {
+		return rule.expand(window, this.factory).map(TimeSlot::getStart).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testDailyWithCount() {
+		// Thursday, 9:15 - 9:45
+		RecurrenceRule rule = RecurrenceRule.daily(LocalDateTime.of(2016, 11, 24, 9, 15), Duration.ofMinutes(30))
+				.withInterval(2).withCount(3);
+		List<LocalDateTime> starts = starts(rule,
+				window(LocalDateTime.of(2016, 1, 1, 0, 0), LocalDateTime.of(2017, 1, 1, 0, 0)));
+		assertEquals(3, starts.size());
+		assertEquals(LocalDateTime.of(2016, 11, 24, 9, 15), starts.get(0));
+		assertEquals(LocalDateTime.of(2016, 11, 28, 9, 15), starts.get(2));
+	}
+
+	@Test
+	public void testWindowUsesClosedOverlap() {
+		RecurrenceRule rule = RecurrenceRule.daily(LocalDateTime.of(2016, 11, 24, 9, 15), Duration.ofMinutes(30));
+		// The window touches the finish of the first and the start of the
+		// second occurrence.
+		List<LocalDateTime> starts = starts(rule,
+				window(LocalDateTime.of(2016, 11, 24, 9, 45), LocalDateTime.of(2016, 11, 25, 9, 15)));
+		assertEquals(2, starts.size());
+	}
+
+	@Test
+	public void testWeeklyByDay() {
+		// Thursday; Monday and Tuesday of the first week are skipped
+		RecurrenceRule rule = RecurrenceRule.weekly(LocalDateTime.of(2016, 11, 24, 9, 15), Duration.ofHours(1),
+				DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.FRIDAY).withInterval(2).withCount(5);
+		List<LocalDateTime> starts = starts(rule,
+				window(LocalDateTime.of(2016, 11, 1, 0, 0), LocalDateTime.of(2017, 1, 1, 0, 0)));
+		assertEquals(5, starts.size());
+		assertEquals(LocalDateTime.of(2016, 11, 25, 9, 15), starts.get(0));
+		assertEquals(LocalDateTime.of(2016, 12, 5, 9, 15), starts.get(1));
+		assertEquals(LocalDateTime.of(2016, 12, 6, 9, 15), starts.get(2));
+		assertEquals(LocalDateTime.of(2016, 12, 9, 9, 15), starts.get(3));
+		assertEquals(LocalDateTime.of(2016, 12, 19, 9, 15), starts.get(4));
+	}
+
+	@Test
+	public void testMonthlyUntilAndExclusions() {
+		RecurrenceRule rule = RecurrenceRule.monthly(LocalDateTime.of(2016, 1, 31, 10, 0), Duration.ofHours(1))
+				.withUntil(LocalDateTime.of(2016, 5, 31, 10, 0)).excluding(LocalDateTime.of(2016, 3, 31, 10, 0));
+		List<LocalDateTime> starts = starts(rule,
+				window(LocalDateTime.of(2016, 1, 1, 0, 0), LocalDateTime.of(2017, 1, 1, 0, 0)));
+		assertEquals(4, starts.size());
+		assertEquals(LocalDateTime.of(2016, 2, 29, 10, 0), starts.get(1));
+		assertEquals(LocalDateTime.of(2016, 4, 30, 10, 0), starts.get(2));
+		assertEquals(LocalDateTime.of(2016, 5, 31, 10, 0), starts.get(3));
+	}
+
+	@Test
+	public void testParallelExpansion() {
+		RecurrenceRule rule = RecurrenceRule.weekly(LocalDateTime.of(2016, 11, 24, 9, 15), Duration.ofHours(1),
+				DayOfWeek.MONDAY, DayOfWeek.THURSDAY).excluding(LocalDateTime.of(2020, 1, 2, 9, 15));
+		TimeSlot window = window(LocalDateTime.of(2018, 1, 1, 0, 0), LocalDateTime.of(2118, 1, 1, 0, 0));
+		List<TimeSlot> sequential = rule.expand(window, this.factory).collect(Collectors.toList());
+		List<TimeSlot> parallel = rule.expand(window, this.factory).parallel().collect(Collectors.toList());
+		assertEquals(sequential, parallel);
+		assertTrue(sequential.size() > 10000);
+		for (int i = 1; i < sequential.size(); i++) {
+			assertTrue(sequential.get(i - 1).compareTo(sequential.get(i)) < 0);
+		}
+	}
+
+	@Test
+	public void testEquality() {
+		LocalDateTime start = LocalDateTime.of(2016, 11, 24, 9, 15);
+		RecurrenceRule r1 = RecurrenceRule.daily(start, Duration.ofMinutes(30)).withCount(3);
+		RecurrenceRule r2 = RecurrenceRule.daily(start, Duration.ofMinutes(30)).withCount(3);
+		assertEquals(r1, r2);
+		assertEquals(r1.hashCode(), r2.hashCode());
+		assertTrue(!r1.equals(r2.withInterval(2)));
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.set;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class TimeSlotSetTest {
+	private static TimeSlotSet set(TimeSlot... slots) {
+		return TimeSlotSet.of(Arrays.asList(slots));
+	}
+
+	@Test
+	public void testNormalization() {
+		TimeSlotSet s = set(slot(30, 40), slot(0, 10), slot(10, 20), slot(5, 8), slot(50, 50));
+		assertEquals(Arrays.asList(slot(0, 20), slot(30, 40), slot(50, 50)), s.asList());
+		assertEquals(Duration.ofMinutes(30), s.totalDuration());
+		assertTrue(s.includes(BASE.plusMinutes(10)));
+		assertTrue(s.includes(BASE.plusMinutes(50)));
+		assertFalse(s.includes(BASE.plusMinutes(25)));
+		assertTrue(s.overlaps(slot(20, 25)));
+		assertFalse(s.overlaps(slot(21, 29)));
+	}
+
+	@Test
+	public void testSetOperations() {
+		TimeSlotSet a = set(slot(0, 10), slot(20, 30));
+		TimeSlotSet b = set(slot(5, 20), slot(40, 50));
+		assertEquals(set(slot(0, 30), slot(40, 50)), a.union(b));
+		assertEquals(set(slot(5, 10), slot(20, 20)), a.intersection(b));
+		assertEquals(set(slot(0, 5), slot(20, 30)), a.difference(b));
+		assertEquals(set(slot(10, 20), slot(30, 60)), a.complement(slot(0, 60)));
+		assertEquals(TimeSlotSet.empty(), a.difference(a));
+		assertEquals(TimeSlotSet.empty(), TimeSlotSet.empty().intersection(a));
+	}
+
+	@Test
+	public void testAgainstMinuteGrid() {
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			List<TimeSlot> left = randomSlots(random);
+			List<TimeSlot> right = randomSlots(random);
+			TimeSlotSet a = TimeSlotSet.of(left);
+			TimeSlotSet b = TimeSlotSet.of(right);
+			Collections.shuffle(left, random);
+			assertEquals(a, TimeSlotSet.of(left));
+			boolean[] x = grid(left);
+			boolean[] y = grid(right);
+			boolean[] union = new boolean[x.length];
+			boolean[] both = new boolean[x.length];
+			for (int i = 0; i < x.length; i++) {
+				union[i] = x[i] || y[i];
+				both[i] = x[i] && y[i];
+			}
+			assertGrid(union, a.union(b));
+			assertGrid(both, a.intersection(b));
+			TimeSlotSet d = a.difference(b);
+			for (int i = 0; i < x.length; i++) {
+				// Closures add limits only, so interior minutes must agree.
+				if (x[i] && !y[i]) {
+					assertTrue(d.includes(BASE.plusMinutes(i)));
+				} else if (!x[i]) {
+					assertFalse(d.includes(BASE.plusMinutes(i)));
+				}
+			}
+			assertEquals(a.union(b).totalDuration(),
+					a.totalDuration().plus(b.totalDuration()).minus(a.intersection(b).totalDuration()));
+		}
+	}
+
+	private static List<TimeSlot> randomSlots(Random random) {
+		List<TimeSlot> slots = new ArrayList<>();
+		int n = random.nextInt(10);
+		for (int i = 0; i < n; i++) {
+			int from = random.nextInt(100);
+			slots.add(slot(from, from + random.nextInt(15)));
+		}
+		return slots;
+	}
+
+	private static boolean[] grid(List<TimeSlot> slots) {
+		boolean[] g = new boolean[130];
+		for (TimeSlot ts : slots) {
+			for (int i = 0; i < g.length; i++) {
+				g[i] |= ts.includes(BASE.plusMinutes(i));
+			}
+		}
+		return g;
+	}
+
+	private static void assertGrid(boolean[] expected, TimeSlotSet actual) {
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("Minute " + i, expected[i], actual.includes(BASE.plusMinutes(i)));
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.sort;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.TimeSlotFixture;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.epoch.EpochTimeSlot;
+
+public class TimeSlotSorterTest {
+	private static TimeSlot[] randomSlots(int n, int minutes) {
+		return TimeSlotFixture.randomSlots(n, minutes, 90).toArray(new TimeSlot[n]);
+	}
+
+	private static TimeSlot[] sorted(TimeSlot[] slots) {
+		TimeSlot[] expected = slots.clone();
+		Arrays.sort(expected);
+		return expected;
+	}
+
+	@Test
+	public void testEmpty() {
+		TimeSlot[] slots = new TimeSlot[0];
+		TimeSlotSorter.sort(slots);
+		assertEquals(0, slots.length);
+	}
+
+	@Test
+	public void testSort() {
+		TimeSlot[] slots = randomSlots(10000, 5000);
+		TimeSlot[] expected = sorted(slots);
+		TimeSlotSorter.sort(slots);
+		assertArrayEquals(expected, slots);
+	}
+
+	@Test
+	public void testStable() {
+		TimeSlot[] slots = randomSlots(10000, 50);
+		TimeSlot[] expected = sorted(slots);
+		TimeSlotSorter.sort(slots);
+		for (int i = 0; i < slots.length; i++) {
+			// Arrays.sort of objects is stable as well.
+			assertSame(expected[i], slots[i]);
+		}
+	}
+
+	@Test
+	public void testWideRange() {
+		// Starts and lengths do not fit into one key together.
+		Random random = new Random(7);
+		TimeSlot[] slots = new TimeSlot[5000];
+		for (int i = 0; i < slots.length; i++) {
+			long start = random.nextLong() / 2;
+			long finish = start + (random.nextLong() >>> 2);
+			slots[i] = new EpochTimeSlot(Math.min(start, finish), Math.max(start, finish));
+		}
+		slots[0] = new EpochTimeSlot(Long.MIN_VALUE, Long.MAX_VALUE);
+		slots[1] = new EpochTimeSlot(Long.MAX_VALUE, Long.MAX_VALUE);
+		TimeSlot[] expected = sorted(slots);
+		TimeSlotSorter.sort(slots);
+		assertArrayEquals(expected, slots);
+	}
+
+	@Test
+	public void testList() {
+		List<TimeSlot> slots = new ArrayList<>(Arrays.asList(randomSlots(1000, 500)));
+		List<TimeSlot> expected = new ArrayList<>(slots);
+		Collections.sort(expected);
+		TimeSlotSorter.sort(slots);
+		assertEquals(expected, slots);
+	}
+
+	@Test
+	public void testOrder() {
+		TimeSlot[] slots = randomSlots(1000, 500);
+		long[] starts = new long[slots.length];
+		long[] finishes = new long[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			starts[i] = EpochNanos.startOf(slots[i]);
+			finishes[i] = EpochNanos.finishOf(slots[i]);
+		}
+		int[] order = TimeSlotSorter.order(slots);
+		assertArrayEquals(order, TimeSlotSorter.order(starts, finishes));
+		TimeSlot[] expected = sorted(slots);
+		for (int i = 0; i < slots.length; i++) {
+			assertSame(expected[i], slots[order[i]]);
+		}
+	}
+
+	@Test
+	public void testOrderValues() {
+		long[] values = { 5, Long.MIN_VALUE, -3, 5, Long.MAX_VALUE, 0 };
+		assertArrayEquals(new int[] { 1, 2, 5, 0, 3, 4 }, TimeSlotSorter.order(values));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFinishBeforeStart() {
+		TimeSlotSorter.order(new long[] { 10 }, new long[] { 5 });
+	}
+
+	@Test
+	public void testParallelSort() {
+		TimeSlot[] slots = randomSlots(300000, 500000);
+		TimeSlot[] expected = sorted(slots);
+		TimeSlotSorter.parallelSort(slots, new ForkJoinPool(4));
+		for (int i = 0; i < slots.length; i++) {
+			assertSame(expected[i], slots[i]);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.window;
+
+import static ch.bfh.due1.time.TimeSlotFixture.BASE;
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+
+public class SlidingWindowBufferTest {
+	@Test
+	public void testMatchesModel() {
+		SlidingWindowBuffer buffer = new SlidingWindowBuffer(4);
+		List<TimeSlot> model = new ArrayList<>();
+		Random random = new Random(42);
+		int start = 0;
+		for (int step = 0; step < 5000; step++) {
+			if (random.nextInt(4) > 0) {
+				start += random.nextInt(10);
+				TimeSlot ts = slot(start, start + (random.nextInt(20) == 0 ? 500 : random.nextInt(40)));
+				LocalDateTime w = buffer.getWatermark();
+				boolean live = w == null || !ts.getFinish().isBefore(w);
+				assertEquals(live, buffer.append(ts));
+				if (live) {
+					model.add(ts);
+				}
+			} else {
+				buffer.advance(BASE.plusMinutes(start - random.nextInt(100)));
+				LocalDateTime w = buffer.getWatermark();
+				model.removeIf(ts -> ts.getFinish().isBefore(w));
+			}
+			int from = start - random.nextInt(200);
+			TimeSlot query = slot(from, from + random.nextInt(100));
+			List<TimeSlot> expected = new ArrayList<>();
+			for (TimeSlot ts : model) {
+				if (ts.overlaps(query)) {
+					expected.add(ts);
+				}
+			}
+			assertEquals(expected, buffer.overlapping(query));
+			assertTrue(buffer.size() >= model.size());
+		}
+	}
+
+	@Test
+	public void testContaining() {
+		SlidingWindowBuffer buffer = new SlidingWindowBuffer();
+		buffer.append(slot(0, 100));
+		buffer.append(slot(10, 20));
+		buffer.append(slot(20, 30));
+		assertEquals(3, buffer.containing(BASE.plusMinutes(20)).size());
+		assertEquals(0, buffer.advance(BASE.plusMinutes(25)));
+		// Held back by the first time slot, but no longer reported.
+		assertEquals(3, buffer.size());
+		assertEquals(2, buffer.containing(BASE.plusMinutes(20)).size());
+		assertEquals(3, buffer.advance(BASE.plusMinutes(101)));
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void testBehindWatermark() {
+		SlidingWindowBuffer buffer = new SlidingWindowBuffer();
+		buffer.advance(BASE.plusMinutes(50));
+		assertFalse(buffer.append(slot(0, 49)));
+		assertTrue(buffer.append(slot(0, 50)));
+		// Watermarks never move back.
+		buffer.advance(BASE);
+		assertEquals(BASE.plusMinutes(50), buffer.getWatermark());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutOfOrder() {
+		SlidingWindowBuffer buffer = new SlidingWindowBuffer();
+		buffer.append(slot(10, 20));
+		buffer.append(slot(5, 20));
+	}
+
+	@Test
+	public void testConcurrentReaders() throws InterruptedException {
+		SlidingWindowBuffer buffer = new SlidingWindowBuffer(16);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 3; r++) {
+			Thread reader = new Thread(() -> {
+				Random random = new Random();
+				while (!done.get()) {
+					LocalDateTime probe = BASE.plusMinutes(random.nextInt(100000));
+					for (TimeSlot ts : buffer.containing(probe)) {
+						if (!ts.includes(probe)) {
+							failure.set(ts + " does not include " + probe);
+						}
+					}
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		for (int m = 0; m < 100000; m++) {
+			buffer.append(slot(m, m + 60));
+			if (m % 10 == 0) {
+				buffer.advance(BASE.plusMinutes(m - 120));
+			}
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(null, failure.get());
+		assertEquals(61, buffer.containing(BASE.plusMinutes(99990)).size());
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Berner Fachhochschule, Switzerland.
+ *
+ * Project Time Slot.
+ *
+ * A small library dealing with time slots. Useful for the treatment of
+ * recurring events. See also http://martinfowler.com/apsupp/recurring.pdf
+ *
+ * Distributable under GPL license. See terms of license at gnu.org.
+ */
+package ch.bfh.due1.time.zone;
+
+import static ch.bfh.due1.time.TimeSlotFixture.slot;
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.bfh.due1.time.TimeSlot;
+import ch.bfh.due1.time.epoch.EpochNanos;
+import ch.bfh.due1.time.zone.ZoneConverter.GapPolicy;
+import ch.bfh.due1.time.zone.ZoneConverter.OverlapPolicy;
+
+public class ZoneConverterTest {
+	private static final ZoneId ZURICH = ZoneId.of("Europe/Zurich");
+
+	private static final TimeSlot RANGE = slot(LocalDateTime.of(2010, 1, 1, 0, 0),
+			LocalDateTime.of(2020, 1, 1, 0, 0));
+
+	/**
+	 * The clocks jump from 02:00 to 03:00.
+	 */
+	private static final LocalDateTime GAP = LocalDateTime.of(2016, 3, 27, 2, 30);
+
+	/**
+	 * The clocks are set back from 03:00 to 02:00.
+	 */
+	private static final LocalDateTime OVERLAP = LocalDateTime.of(2016, 10, 30, 2, 30);
+
+	@Test
+	public void testMatchesJavaTime() {
+		ZoneConverter converter = new ZoneConverter(ZURICH, RANGE);
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			// 2005 to 2025, including values outside of the range.
+			LocalDateTime dateTime = LocalDateTime.of(2005, 1, 1, 0, 0).plusMinutes(random.nextInt(20 * 366 * 1440));
+			assertEquals(ZonedDateTime.of(dateTime, ZURICH).toInstant(), converter.toInstant(dateTime));
+		}
+		assertEquals(ZonedDateTime.of(GAP, ZURICH).toInstant(), converter.toInstant(GAP));
+		assertEquals(ZonedDateTime.of(OVERLAP, ZURICH).toInstant(), converter.toInstant(OVERLAP));
+	}
+
+	@Test
+	public void testGapPolicies() {
+		Instant transition = Instant.parse("2016-03-27T01:00:00Z");
+		assertEquals(transition.plusSeconds(1800), new ZoneConverter(ZURICH, RANGE).toInstant(GAP));
+		assertEquals(transition,
+				new ZoneConverter(ZURICH, RANGE, GapPolicy.TRANSITION, OverlapPolicy.EARLIER).toInstant(GAP));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGapRejected() {
+		new ZoneConverter(ZURICH, RANGE, GapPolicy.REJECT, OverlapPolicy.EARLIER).toInstant(GAP);
+	}
+
+	@Test
+	public void testOverlapPolicies() {
+		assertEquals(Instant.parse("2016-10-30T00:30:00Z"), new ZoneConverter(ZURICH, RANGE).toInstant(OVERLAP));
+		assertEquals(Instant.parse("2016-10-30T01:30:00Z"),
+				new ZoneConverter(ZURICH, RANGE, GapPolicy.SHIFT, OverlapPolicy.LATER).toInstant(OVERLAP));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOverlapRejected() {
+		new ZoneConverter(ZURICH, RANGE, GapPolicy.SHIFT, OverlapPolicy.REJECT).toInstant(OVERLAP);
+	}
+
+	@Test
+	public void testPoliciesOutsideOfRange() {
+		TimeSlot range = slot(LocalDateTime.of(2018, 1, 1, 0, 0), LocalDateTime.of(2019, 1, 1, 0, 0));
+		assertEquals(Instant.parse("2016-03-27T01:00:00Z"),
+				new ZoneConverter(ZURICH, range, GapPolicy.TRANSITION, OverlapPolicy.LATER).toInstant(GAP));
+		assertEquals(Instant.parse("2016-10-30T01:30:00Z"),
+				new ZoneConverter(ZURICH, range, GapPolicy.TRANSITION, OverlapPolicy.LATER).toInstant(OVERLAP));
+	}
+
+	@Test
+	public void testBatch() {
+		ZoneConverter converter = new ZoneConverter(ZURICH, RANGE, GapPolicy.TRANSITION, OverlapPolicy.LATER);
+		TimeSlot[] slots = new TimeSlot[2000];
+		LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 0, 30);
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = slot(dateTime, dateTime.plusHours(2));
+			dateTime = dateTime.plusHours(7);
+		}
+		long[] starts = new long[slots.length];
+		long[] finishes = new long[slots.length];
+		converter.toEpochNanos(slots, starts, finishes);
+		ZonedTimeSlot[] zoned = converter.toZoned(slots);
+		for (int i = 0; i < slots.length; i++) {
+			assertEquals(converter.toEpochNanos(EpochNanos.startOf(slots[i])), starts[i]);
+			assertEquals(converter.toEpochNanos(EpochNanos.finishOf(slots[i])), finishes[i]);
+			assertEquals(converter.toZoned(slots[i]), zoned[i]);
+		}
+	}
+
+	@Test
+	public void testToLocal() {
+		ZoneConverter converter = new ZoneConverter(ZURICH, RANGE);
+		Random random = new Random(7);
+		long[] starts = new long[1000];
+		long[] finishes = new long[starts.length];
+		for (int i = 0; i < starts.length; i++) {
+			Instant instant = Instant.parse("2005-01-01T00:00:00Z").plusSeconds(random.nextInt(20 * 366 * 86400));
+			assertEquals(ZonedDateTime.ofInstant(instant, ZURICH).toLocalDateTime(),
+					converter.toLocalDateTime(instant));
+			starts[i] = instant.getEpochSecond() * EpochNanos.NANOS_PER_SECOND;
+			finishes[i] = starts[i] + 7200 * EpochNanos.NANOS_PER_SECOND;
+		}
+		TimeSlot[] slots = converter.toTimeSlots(starts, finishes);
+		for (int i = 0; i < starts.length; i++) {
+			assertEquals(converter.toLocalEpochNanos(starts[i]), EpochNanos.startOf(slots[i]));
+		}
+	}
+
+	@Test
+	public void testCrossZone() {
+		ZoneId newYork = ZoneId.of("America/New_York");
+		TimeSlot ts = slot(LocalDateTime.of(2016, 11, 24, 15, 0), LocalDateTime.of(2016, 11, 24, 16, 0));
+		ZonedTimeSlot zoned = new ZoneConverter(ZURICH, RANGE).toZoned(ts);
+		TimeSlot local = new ZoneConverter(newYork, RANGE).toTimeSlot(zoned);
+		assertEquals(slot(LocalDateTime.of(2016, 11, 24, 9, 0), LocalDateTime.of(2016, 11, 24, 10, 0)),
+				local);
+		assertEquals(LocalDateTime.of(2016, 11, 24, 9, 0), zoned.withZone(newYork).getStart().toLocalDateTime());
+	}
+
+	@Test
+	public void testFixedOffset() {
+		ZoneConverter converter = new ZoneConverter(ZoneOffset.ofHours(2), RANGE);
+		assertEquals(Instant.parse("2016-03-27T00:30:00Z"), converter.toInstant(GAP));
+	}
+}